@@ -7,6 +7,7 @@ import com.example.soundcloud.models.repositories.PlaylistRepository;
 import com.example.soundcloud.models.repositories.UserRepository;
 import com.example.soundcloud.service.CommentService;
 import com.example.soundcloud.service.PlaylistService;
+import com.example.soundcloud.service.SearchService;
 import com.example.soundcloud.service.SongService;
 import com.example.soundcloud.service.UserService;
 import lombok.SneakyThrows;
@@ -55,6 +56,8 @@ public abstract class GlobalController {
     protected SongService songService;
     @Autowired
     protected CommentService commentService;
+    @Autowired
+    protected SearchService searchService;
 
     @ExceptionHandler(NotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
@@ -158,6 +161,17 @@ public abstract class GlobalController {
     }
 
 
+    // FNV-1a of the remote address and user agent, tells anonymous listeners apart without storing either
+    public long getClientHash(HttpServletRequest req) {
+        String client = req.getRemoteAddr() + "|" + req.getHeader("User-Agent");
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < client.length(); i++) {
+            hash ^= client.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
     public long getLoggedUserId(HttpServletRequest req) {
         HttpSession session = req.getSession();
         String ip = req.getRemoteAddr();
@@ -2,6 +2,7 @@ package com.example.soundcloud.controllers;
 
 import com.example.soundcloud.models.dto.playlist.CreatePlaylistDTO;
 import com.example.soundcloud.models.dto.playlist.ResponsePLDTO;
+import com.example.soundcloud.models.dto.song.SongWithoutUserDTO;
 import com.example.soundcloud.models.dto.user.APIResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.web.bind.annotation.*;
@@ -17,6 +18,11 @@ public class PlaylistController extends GlobalController {
         return playlistService.getPlaylistById(playlistId);
     }
 
+    @GetMapping("/playlist/{playlistId}/suggestions")
+    public List<SongWithoutUserDTO> getPlaylistSuggestions(@PathVariable long playlistId) {
+        return playlistService.getPlaylistSuggestions(playlistId);
+    }
+
     @GetMapping("/playlist/{offset}/{pageSize}")
     public APIResponse<Page<ResponsePLDTO>> getAllPlaylists(@PathVariable int offset, @PathVariable int pageSize){
         Page<ResponsePLDTO> pages = playlistService.getAllPlaylists(offset,pageSize);
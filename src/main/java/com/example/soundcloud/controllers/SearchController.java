@@ -0,0 +1,17 @@
+package com.example.soundcloud.controllers;
+
+import com.example.soundcloud.models.dto.search.ResponseSuggestionDTO;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+public class SearchController extends GlobalController {
+
+    @GetMapping("/suggest")
+    public List<ResponseSuggestionDTO> suggest(@RequestParam("q") String query) {
+        return searchService.suggest(query);
+    }
+}
@@ -2,6 +2,8 @@ package com.example.soundcloud.controllers;
 
 import com.example.soundcloud.models.dto.DislikeDTO;
 import com.example.soundcloud.models.dto.LikeDTO;
+import com.example.soundcloud.models.dto.search.RequestSongFacetDTO;
+import com.example.soundcloud.models.dto.search.ResponseSongFacetDTO;
 import com.example.soundcloud.models.dto.song.*;
 import com.example.soundcloud.models.dto.user.APIResponse;
 import com.example.soundcloud.service.SongService;
@@ -34,6 +36,11 @@ public class SongController extends GlobalController {
         return this.songService.searchByUploader(uid);
     }
 
+    @GetMapping("/songs/{sid}/similar")
+    public List<ResponseSongDTO> similarSongs(@PathVariable long sid) {
+        return songService.similarSongs(sid);
+    }
+
     @GetMapping("/songs/{uid}/liked")
     public List<ResponseGetSongDTO> searchLikedSongs(@PathVariable long uid) {
         return this.songService.searchLikedSongsByUser(uid);
@@ -49,6 +56,11 @@ public class SongController extends GlobalController {
         return this.songService.filterSongs(filterType);
     }
 
+    @PostMapping("/songs/facets")
+    public ResponseSongFacetDTO browseSongs(@RequestBody RequestSongFacetDTO dto) {
+        return searchService.browse(dto);
+    }
+
     @GetMapping("/songs/by_title/{title}")
     public List<ResponseGetSongDTO> searchByTitle(@PathVariable String title) {
         return this.songService.searchByTitle(title);
@@ -94,7 +106,18 @@ public class SongController extends GlobalController {
         if (session.getAttribute(LOGGED)!= null){
             userId = (long) session.getAttribute(USER_ID);
         }
-        songService.play(sid, userId, response);
+        songService.countPlay(sid, userId, getClientHash(request));
+        songService.play(sid, response);
+    }
+
+    @PostMapping("/songs/heartbeats")
+    public ResponseHeartbeatDTO heartbeats(@RequestBody long[][] heartbeats) {
+        return songService.ingestHeartbeats(heartbeats);
+    }
+
+    @GetMapping("/songs/{sid}/completion")
+    public ResponseSongCompletionDTO songCompletion(@PathVariable long sid) {
+        return songService.songCompletion(sid);
     }
 
     @GetMapping("/songs/feed/top_genre_for_user/{page}")
@@ -103,11 +126,32 @@ public class SongController extends GlobalController {
         return songService.topGenreSongsForUser(uid, page);
     }
 
+    @GetMapping("/songs/feed/recommended")
+    public List<ResponseSongDTO> recommendedSongs(HttpServletRequest req) {
+        long uid = getLoggedUserId(req);
+        return songService.recommendedSongs(uid);
+    }
+
     @GetMapping("/songs/feed/top_genre/{page}")
     public List<ResponseSongFilterDTO> topGenreSongs(@PathVariable int page) throws SQLException {
         return songService.topGenreSongs(page);
     }
 
+    @GetMapping("/songs/feed/trending/{page}")
+    public List<ResponseSongDTO> trendingSongs(@PathVariable int page) {
+        return songService.trendingSongs(page);
+    }
+
+    @GetMapping("/songs/feed/trending_by_genre/{genre}/{page}")
+    public List<ResponseSongDTO> trendingSongsByGenre(@PathVariable String genre, @PathVariable int page) {
+        return songService.trendingSongsByGenre(genre, page);
+    }
+
+    @GetMapping("/songs/feed/most_played/{window}/{page}")
+    public List<ResponseSongDTO> mostPlayedSongs(@PathVariable String window, @PathVariable int page) {
+        return songService.mostPlayedSongs(window, page);
+    }
+
     @GetMapping("/songs/feed/top_listened/{page}")
     public List<ResponseSongFilterDTO> topTenListened(@PathVariable int page) throws SQLException {
         return songService.topListened( page);
@@ -0,0 +1,58 @@
+package com.example.soundcloud.controllers;
+
+import com.example.soundcloud.models.dto.stats.ResponseEngagementDTO;
+import com.example.soundcloud.models.dto.stats.ResponseEventBusDTO;
+import com.example.soundcloud.models.dto.stats.ResponsePlayDedupDTO;
+import com.example.soundcloud.models.dto.stats.ResponseYearReviewDTO;
+import com.example.soundcloud.service.events.EventBus;
+import com.example.soundcloud.service.stats.EngagementCube;
+import com.example.soundcloud.service.stats.PlayDeduplicator;
+import com.example.soundcloud.service.stats.YearInReview;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+public class StatsController extends GlobalController {
+
+    @Autowired
+    private EngagementCube engagementCube;
+    @Autowired
+    private YearInReview yearInReview;
+    @Autowired
+    private EventBus eventBus;
+    @Autowired
+    private PlayDeduplicator playDeduplicator;
+
+    @GetMapping("/stats/engagement")
+    public List<ResponseEngagementDTO> getEngagement(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                     @RequestParam(required = false) List<String> country,
+                                                     @RequestParam(required = false) List<String> genre,
+                                                     @RequestParam(defaultValue = "genre") List<String> groupBy) {
+        return engagementCube.query(from, to, country, genre, groupBy);
+    }
+
+    @GetMapping("/users/{id}/review/{year}")
+    public ResponseYearReviewDTO getYearReview(@PathVariable long id, @PathVariable int year, HttpServletRequest req) {
+        long loggedId = getLoggedUserId(req);
+        return yearInReview.reviewOf(id, loggedId, year);
+    }
+
+    @GetMapping("/stats/events")
+    public ResponseEventBusDTO getEventBusMetrics() {
+        return eventBus.metrics();
+    }
+
+    @GetMapping("/stats/plays/dedup")
+    public ResponsePlayDedupDTO getPlayDedupMetrics() {
+        return playDeduplicator.metrics();
+    }
+}
@@ -1,14 +1,23 @@
 package com.example.soundcloud.controllers;
 
-import com.example.soundcloud.models.dto.song.ResponseSongDTO;
+import com.example.soundcloud.models.dto.feed.ResponseFeedDTO;
+import com.example.soundcloud.models.dto.song.ResponseSongStatsDTO;
 import com.example.soundcloud.models.dto.user.*;
 import com.example.soundcloud.models.exceptions.BadRequestException;
 import com.example.soundcloud.models.exceptions.MethodNotAllowedException;
 import com.example.soundcloud.models.exceptions.UnauthorizedException;
+import com.example.soundcloud.service.cache.HomeFeedCache;
+import com.example.soundcloud.service.cache.HomePageCache;
+import com.example.soundcloud.service.feed.ActivityFeed;
+import com.example.soundcloud.service.social.FollowSuggestions;
 import lombok.SneakyThrows;
 import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.repository.query.Param;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -16,7 +25,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -26,6 +34,14 @@ public class UserController extends GlobalController {
 
     private ConcurrentHashMap<String,Integer> logManager = new ConcurrentHashMap<>();
     private int counter = 0;
+    @Autowired
+    private HomePageCache homePageCache;
+    @Autowired
+    private HomeFeedCache homeFeedCache;
+    @Autowired
+    private ActivityFeed activityFeed;
+    @Autowired
+    private FollowSuggestions followSuggestions;
 
     @PostMapping("/users")
     public UserWithoutPDTO register(@RequestBody RegisterDTO user, HttpServletRequest request) {
@@ -52,6 +68,16 @@ public class UserController extends GlobalController {
         return userService.getUserSongsById(id);
     }
 
+    @GetMapping("/users/{id}/songs/stats")
+    public ResponseSongStatsDTO getSongStats(@PathVariable long id,
+                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                             @RequestParam(defaultValue = "day") String step,
+                                             HttpServletRequest req) {
+        long loggedId = getLoggedUserId(req);
+        return userService.getSongStats(id, loggedId, from, to, step);
+    }
+
     private void checkLog(HttpServletRequest req, LoginDTO dto,HttpServletResponse resp) {
         if (!userService.checkLog(dto)) {
             String username = dto.getUsername();
@@ -156,6 +182,24 @@ public class UserController extends GlobalController {
         return userService.unfollowUser(followerId, followedId);
     }
 
+    @GetMapping("/users/available")
+    public ResponseAvailabilityDTO checkAvailability(@RequestParam(required = false) String username,
+                                                     @RequestParam(required = false) String email) {
+        return userService.checkAvailability(username, email);
+    }
+
+    @GetMapping("/users/suggestions")
+    public List<SuggestedUserDTO> getFollowSuggestions(@RequestParam(defaultValue = "10") int limit,
+                                                       HttpServletRequest req) {
+        long userId = getLoggedUserId(req);
+        return followSuggestions.suggest(userId, limit);
+    }
+
+    @GetMapping("/users/{id}/follow_stats")
+    public ResponseFollowStatsDTO getFollowStats(@PathVariable long id) {
+        return userService.getFollowStats(id);
+    }
+
 
     @GetMapping("/users/pagination/{offset}/{pageSize}")
     public APIResponse<Page<UserWithoutPDTO>> findAllUserWithPagination(@PathVariable int offset, @PathVariable int pageSize) {
@@ -180,14 +224,22 @@ public class UserController extends GlobalController {
     }
 
     @GetMapping("/home")
-    public HashMap<String, List<ResponseSongDTO>> homePage(HttpServletRequest request) {
+    public ResponseEntity<?> homePage(HttpServletRequest request) {
         HttpSession session = request.getSession();
         if (session.getAttribute(LOGGED) != null) {
             long userId = (long) session.getAttribute(USER_ID);
-            return userService.homePageForLogged(userId);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(homeFeedCache.getHomePage(userId));
         } else {
-            return userService.homePageForNonLoged();
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(homePageCache.getNonLoggedHomePage());
         }
     }
 
+    @GetMapping("/feed")
+    public ResponseFeedDTO getFeed(@RequestParam(defaultValue = "0") long cursor,
+                                   @RequestParam(defaultValue = "20") int size,
+                                   HttpServletRequest req) {
+        long userId = getLoggedUserId(req);
+        return activityFeed.feed(userId, cursor, size);
+    }
+
 }
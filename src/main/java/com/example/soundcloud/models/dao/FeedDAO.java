@@ -0,0 +1,53 @@
+package com.example.soundcloud.models.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class FeedDAO {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // outbox = 1 marks the timeline of an author that followers merge when they read, 0 a follower's own timeline
+    public void createTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS feed_entries (\n" +
+                "owner_id BIGINT NOT NULL,\n" +
+                "outbox TINYINT NOT NULL,\n" +
+                "event_id BIGINT NOT NULL,\n" +
+                "type VARCHAR(16) NOT NULL,\n" +
+                "actor_id BIGINT NOT NULL,\n" +
+                "song_id BIGINT NOT NULL,\n" +
+                "target_id BIGINT NOT NULL,\n" +
+                "created_at DATETIME NOT NULL,\n" +
+                "PRIMARY KEY (owner_id, outbox, event_id))";
+        jdbcTemplate.execute(sql);
+    }
+
+    public long maxEventId() {
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(event_id), 0) FROM feed_entries", Long.class);
+        return max == null ? 0 : max;
+    }
+
+    public void scanEntries(RowCallbackHandler handler) {
+        String sql = "SELECT owner_id, outbox, event_id, type, actor_id, song_id, target_id, created_at \n" +
+                "FROM feed_entries ORDER BY owner_id, outbox, event_id";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public void saveEntries(List<Object[]> rows) {
+        String sql = "INSERT IGNORE INTO feed_entries \n" +
+                "(owner_id, outbox, event_id, type, actor_id, song_id, target_id, created_at) \n" +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    // each row is {owner id, outbox, oldest event id still in memory}
+    public void trim(List<Object[]> rows) {
+        String sql = "DELETE FROM feed_entries WHERE owner_id = ? AND outbox = ? AND event_id < ?";
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.soundcloud.models.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class FollowerDAO {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void scanByFollower(RowCallbackHandler handler) {
+        String sql = "SELECT follower_id, following_id FROM followers ORDER BY follower_id, following_id";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public void scanByFollowing(RowCallbackHandler handler) {
+        String sql = "SELECT following_id, follower_id FROM followers ORDER BY following_id, follower_id";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    // the join table has no primary key, so duplicates are kept out by the insert itself
+    public boolean insert(long followerId, long followingId) {
+        String sql = "INSERT INTO followers (follower_id, following_id) \n" +
+                "SELECT ?, ? FROM DUAL WHERE NOT EXISTS \n" +
+                "(SELECT 1 FROM followers WHERE follower_id = ? AND following_id = ?)";
+        return jdbcTemplate.update(sql, followerId, followingId, followerId, followingId) > 0;
+    }
+
+    public boolean delete(long followerId, long followingId) {
+        String sql = "DELETE FROM followers WHERE follower_id = ? AND following_id = ?";
+        return jdbcTemplate.update(sql, followerId, followingId) > 0;
+    }
+
+    public List<Long> followerIds(long userId) {
+        String sql = "SELECT follower_id FROM followers WHERE following_id = ? ORDER BY follower_id";
+        return jdbcTemplate.queryForList(sql, Long.class, userId);
+    }
+
+    public List<Long> followingIds(long userId) {
+        String sql = "SELECT following_id FROM followers WHERE follower_id = ? ORDER BY following_id";
+        return jdbcTemplate.queryForList(sql, Long.class, userId);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.soundcloud.models.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+@Component
+public class RecommendationDAO {
+
+    // the MySQL driver only streams a result set row by row when the fetch size is Integer.MIN_VALUE
+    private final JdbcTemplate streamingTemplate;
+
+    @Autowired
+    public RecommendationDAO(DataSource dataSource) {
+        this.streamingTemplate = new JdbcTemplate(dataSource);
+        this.streamingTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    public void scanInteractions(RowCallbackHandler handler) {
+        String sql = "SELECT I.user_id, I.song_id, SUM(I.weight) AS weight \n" +
+                "FROM (SELECT ULS.user_id, ULS.song_id, 2 AS weight FROM users_like_songs ULS \n" +
+                "UNION ALL \n" +
+                "SELECT UL.user_id, UL.song_id, LOG(1 + UL.listened) AS weight FROM users_listened_songs UL) I \n" +
+                "GROUP BY I.user_id, I.song_id \n" +
+                "HAVING weight > 0 \n" +
+                "ORDER BY I.user_id";
+        streamingTemplate.query(sql, handler);
+    }
+
+    public void scanSongGenres(RowCallbackHandler handler) {
+        streamingTemplate.query("SELECT id, genre FROM songs", handler);
+    }
+
+    public void scanPlaylistSongs(RowCallbackHandler handler) {
+        streamingTemplate.query("SELECT playlists_id, songs_id FROM playlists_songs ORDER BY playlists_id", handler);
+    }
+}
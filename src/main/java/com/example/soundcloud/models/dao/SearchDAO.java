@@ -0,0 +1,49 @@
+package com.example.soundcloud.models.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SearchDAO {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void scanSongs(RowCallbackHandler handler) {
+        String sql = "SELECT S.id, S.title, S.artist, S.listened FROM songs S";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public void scanSongFacets(RowCallbackHandler handler) {
+        String sql = "SELECT S.id AS songId, \n" +
+                "S.title, \n" +
+                "S.genre, \n" +
+                "S.artist, \n" +
+                "S.listened, \n" +
+                "S.created_at AS upload_date, \n" +
+                "U.username AS uploadedBy, \n" +
+                "(SELECT COUNT(*) FROM users_like_songs ULS WHERE ULS.song_id = S.id) AS likes, \n" +
+                "(SELECT COUNT(*) FROM users_dislike_songs UDS WHERE UDS.song_id = S.id) AS dislikes, \n" +
+                "(SELECT COUNT(*) FROM comments C WHERE C.song_id = S.id) AS comments \n" +
+                "FROM songs S \n" +
+                "LEFT JOIN users U ON S.uploader_id = U.id";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public void scanUsers(RowCallbackHandler handler) {
+        String sql = "SELECT U.id, U.username, U.first_name, U.last_name, COUNT(F.follower_id) AS followers \n" +
+                "FROM users U \n" +
+                "LEFT JOIN followers F ON U.id = F.following_id \n" +
+                "GROUP BY U.id";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public void scanPlaylists(RowCallbackHandler handler) {
+        String sql = "SELECT P.id, P.name, COUNT(PS.songs_id) AS songs \n" +
+                "FROM playlists P \n" +
+                "LEFT JOIN playlists_songs PS ON P.id = PS.playlists_id \n" +
+                "GROUP BY P.id";
+        jdbcTemplate.query(sql, handler);
+    }
+}
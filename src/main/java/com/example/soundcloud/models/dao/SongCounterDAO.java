@@ -0,0 +1,87 @@
+package com.example.soundcloud.models.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class SongCounterDAO {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void createTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS song_counter_shards (\n" +
+                "song_id BIGINT NOT NULL,\n" +
+                "shard TINYINT NOT NULL,\n" +
+                "listened BIGINT NOT NULL DEFAULT 0,\n" +
+                "likes BIGINT NOT NULL DEFAULT 0,\n" +
+                "PRIMARY KEY (song_id, shard))";
+        jdbcTemplate.execute(sql);
+    }
+
+    // likes live only in the shards, so a new table starts from the like table once
+    public void seedLikesIfEmpty() {
+        Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM song_counter_shards", Integer.class);
+        if (rows != null && rows == 0) {
+            jdbcTemplate.update("INSERT INTO song_counter_shards (song_id, shard, listened, likes) \n" +
+                    "SELECT song_id, 0, 0, COUNT(*) FROM users_like_songs GROUP BY song_id");
+        }
+    }
+
+    public void increment(long songId, int shard, long listened, long likes) {
+        String sql = "INSERT INTO song_counter_shards (song_id, shard, listened, likes) VALUES (?, ?, ?, ?)\n" +
+                "ON DUPLICATE KEY UPDATE listened = listened + VALUES(listened), likes = likes + VALUES(likes)";
+        jdbcTemplate.update(sql, songId, shard, listened, likes);
+    }
+
+    // takes back the likes of a user before the user's like rows are deleted with the user
+    public void removeLikesOf(long userId, int shard) {
+        String sql = "INSERT INTO song_counter_shards (song_id, shard, listened, likes) \n" +
+                "SELECT song_id, ?, 0, -COUNT(*) FROM users_like_songs WHERE user_id = ? GROUP BY song_id \n" +
+                "ON DUPLICATE KEY UPDATE likes = likes + VALUES(likes)";
+        jdbcTemplate.update(sql, shard, userId);
+    }
+
+    public void delete(long songId) {
+        jdbcTemplate.update("DELETE FROM song_counter_shards WHERE song_id = ?", songId);
+    }
+
+    // {listened not yet folded into songs.listened, likes}
+    public long[] sum(long songId) {
+        String sql = "SELECT COALESCE(SUM(listened), 0) AS listened, COALESCE(SUM(likes), 0) AS likes \n" +
+                "FROM song_counter_shards WHERE song_id = ?";
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> new long[]{rs.getLong("listened"), rs.getLong("likes")},
+                songId);
+    }
+
+    // Moves up to limit pending listen counts from the shards into songs.listened. The locked shard rows are
+    // decremented by exactly what was read instead of being deleted, so increments that wait on the locks are
+    // applied afterwards and not lost, and the rows are reused by the next writes.
+    @Transactional
+    public int compactListened(int limit) {
+        String select = "SELECT song_id, shard, listened FROM song_counter_shards WHERE listened <> 0 \n" +
+                "ORDER BY song_id, shard LIMIT ? FOR UPDATE";
+        List<Object[]> shards = jdbcTemplate.query(select, (rs, rowNum) ->
+                new Object[]{rs.getLong("listened"), rs.getLong("song_id"), rs.getInt("shard")}, limit);
+        if (shards.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> songs = new ArrayList<>();
+        for (Object[] shard : shards) {
+            Object[] last = songs.isEmpty() ? null : songs.get(songs.size() - 1);
+            if (last != null && last[1].equals(shard[1])) {
+                last[0] = (long) last[0] + (long) shard[0];
+            } else {
+                songs.add(new Object[]{shard[0], shard[1]});
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE songs SET listened = listened + ? WHERE id = ?", songs);
+        jdbcTemplate.batchUpdate("UPDATE song_counter_shards SET listened = listened - ? WHERE song_id = ? AND shard = ?",
+                shards);
+        return shards.size();
+    }
+}
@@ -68,46 +68,7 @@ public class SongDAO {
         return queryToDB(sql);
     }
 
-    public List<ResponseSongFilterDTO> findSongsByGenre(int page, int songsPerPage) throws SQLException {
-        String genre= findTopLikedGenre();
-
-        String sql = "SELECT S.title, \n" +
-                "S.id AS songId, \n" +
-                "U.username AS uploadedBy, \n" +
-                "S.listened, \n" +
-                "COUNT(DISTINCT C.id) AS comments,\n" +
-                "COUNT(DISTINCT ULS.user_id) AS likes, \n" +
-                "COUNT(DISTINCT UDS.user_id) AS dislikes, \n" +
-                "S.created_at AS upload_date \n" +
-                "FROM songs S \n" +
-                "LEFT JOIN comments C ON S.id = C.song_id \n" +
-                "LEFT JOIN users U ON S.uploader_id = U.id \n" +
-                "LEFT JOIN users_like_songs ULS ON S.id = ULS.song_id\n" +
-                "LEFT JOIN users_dislike_songs UDS ON S.id = UDS.song_id \n" +
-                "LEFT JOIN playlists_songs PS ON S.id = PS.songs_id \n" +
-                "WHERE genre = ('%s')\n" +
-                "GROUP BY S.id\n" +
-                "ORDER BY listened DESC\n" +
-                "LIMIT %d OFFSET %d";
-
-        sql = String.format(sql, genre, songsPerPage, (songsPerPage * (page - 1)));
-        return queryToDB(sql);
-    }
-
-    public String findTopLikedGenre() {
-        String sql = "SELECT \n" +
-                "S.genre AS genre\n" +
-                "FROM songs AS S\n" +
-                "JOIN users_like_songs AS ULS ON (ULS.song_id = S.id)\n" +
-                "GROUP BY genre\n" +
-                "ORDER BY COUNT(genre) DESC\n" +
-                "LIMIT 1\n";
-        return jdbcTemplate.queryForObject(sql, String.class);
-    }
-
-    public List<ResponseSongFilterDTO> findSongsByGenreForUser(long uid, int page, int songsPerPage) throws SQLException {
-        String genre = findTopGenreForUser(uid);
-
+    public List<ResponseSongFilterDTO> findSongsByGenre(String genre, int page, int songsPerPage) throws SQLException {
         String sql = "SELECT S.title, \n" +
                 "S.id AS songId, \n" +
                 "U.username AS uploadedBy, \n" +
@@ -122,51 +83,24 @@ public class SongDAO {
                 "LEFT JOIN users_like_songs ULS ON S.id = ULS.song_id\n" +
                 "LEFT JOIN users_dislike_songs UDS ON S.id = UDS.song_id \n" +
                 "LEFT JOIN playlists_songs PS ON S.id = PS.songs_id \n" +
-                "WHERE S.genre = ('%s')\n" +
+                "WHERE S.genre = ?\n" +
                 "GROUP BY S.id\n" +
                 "ORDER BY listened DESC\n" +
                 "LIMIT %d OFFSET %d";
 
-        sql = String.format(sql, genre, songsPerPage, (songsPerPage * (page - 1)));
-        return queryToDB(sql);
-    }
-
-    public String findTopGenreForUser(long uid) throws SQLException {
-        String genre = null;
-        String sql = "SELECT \n" +
-                "S.genre AS genre\n" +
-                "FROM\n" +
-                "songs AS S\n" +
-                "JOIN\n" +
-                "users_like_songs AS ULS ON (ULS.song_id = S.id)\n" +
-                "WHERE\n" +
-                "ULS.user_id = %d\n" +
-                "GROUP BY genre\n" +
-                "ORDER BY COUNT(genre) DESC\n" +
-                "LIMIT 1";
-
-        sql = String.format(sql, uid);
-        DataSource dataSource = jdbcTemplate.getDataSource();
-        if (dataSource != null) {
-            try (Connection connection = dataSource.getConnection();
-                 PreparedStatement ps = connection.prepareStatement(sql)) {
-                ResultSet rs = ps.executeQuery();
-                while (rs.next()) {
-                    genre = rs.getString("genre");
-                }
-            } catch (SQLException e) {
-                throw new SQLException(e.getMessage(), "Problem with connection to DB!");
-            }
-        }
-        return genre;
+        sql = String.format(sql, songsPerPage, (songsPerPage * (page - 1)));
+        return queryToDB(sql, genre);
     }
 
-    public List<ResponseSongFilterDTO> queryToDB(String sql) throws SQLException {
+    public List<ResponseSongFilterDTO> queryToDB(String sql, Object... params) throws SQLException {
         List<ResponseSongFilterDTO> songs = new ArrayList<>();
         DataSource dataSource = jdbcTemplate.getDataSource();
         if(dataSource != null) {
             try (Connection connection = dataSource.getConnection();
                  PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) {
+                    ps.setObject(i + 1, params[i]);
+                }
                 ResultSet rs = ps.executeQuery();
                 while (rs.next()) {
                     long songId = rs.getInt("songId");
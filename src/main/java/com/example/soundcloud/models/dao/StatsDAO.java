@@ -0,0 +1,192 @@
+package com.example.soundcloud.models.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+@Component
+public class StatsDAO {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void createGenreHistogramTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS genre_histograms (\n" +
+                "user_id BIGINT NOT NULL,\n" +
+                "genre VARCHAR(64) NOT NULL,\n" +
+                "likes INT NOT NULL DEFAULT 0,\n" +
+                "listens INT NOT NULL DEFAULT 0,\n" +
+                "PRIMARY KEY (user_id, genre))";
+        jdbcTemplate.execute(sql);
+    }
+
+    public void scanGenreHistograms(RowCallbackHandler handler) {
+        String sql = "SELECT user_id, genre, likes, listens FROM genre_histograms";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public void saveGenreHistograms(List<Object[]> rows) {
+        String sql = "INSERT INTO genre_histograms (user_id, genre, likes, listens) VALUES (?, ?, ?, ?)\n" +
+                "ON DUPLICATE KEY UPDATE likes = VALUES(likes), listens = VALUES(listens)";
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    // genres whose counts fell back to zero, given as {user id, genre}
+    public void deleteGenreHistograms(List<Object[]> keys) {
+        jdbcTemplate.batchUpdate("DELETE FROM genre_histograms WHERE user_id = ? AND genre = ?", keys);
+    }
+
+    // the nightly rebuild also drops the rows of users and genres that are no longer in the like and listen tables
+    @Transactional
+    public void replaceGenreHistograms(List<Object[]> rows) {
+        jdbcTemplate.update("DELETE FROM genre_histograms");
+        saveGenreHistograms(rows);
+    }
+
+    public void scanLikedGenres(RowCallbackHandler handler) {
+        String sql = "SELECT ULS.user_id, S.genre, COUNT(*) AS likes \n" +
+                "FROM users_like_songs ULS \n" +
+                "JOIN songs S ON S.id = ULS.song_id \n" +
+                "GROUP BY ULS.user_id, S.genre";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public void scanListenedGenres(RowCallbackHandler handler) {
+        String sql = "SELECT ULS.user_id, S.genre, SUM(ULS.listened) AS listens \n" +
+                "FROM users_listened_songs ULS \n" +
+                "JOIN songs S ON S.id = ULS.song_id \n" +
+                "GROUP BY ULS.user_id, S.genre";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public void scanTotalListenedGenres(RowCallbackHandler handler) {
+        String sql = "SELECT S.genre, SUM(S.listened) AS listens FROM songs S GROUP BY S.genre";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public void scanComments(LocalDateTime from, LocalDateTime to, RowCallbackHandler handler) {
+        String sql = "SELECT C.song_id, S.genre, C.created_at FROM comments C \n" +
+                "JOIN songs S ON C.song_id = S.id \n" +
+                "WHERE C.created_at >= ? AND C.created_at < ?";
+        jdbcTemplate.query(sql, handler, from, to);
+    }
+
+    public void createListenerSketchTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS song_listener_sketches (\n" +
+                "song_id BIGINT NOT NULL,\n" +
+                "bucket CHAR(7) NOT NULL,\n" +
+                "sketch VARBINARY(2048) NOT NULL,\n" +
+                "PRIMARY KEY (song_id, bucket))";
+        jdbcTemplate.execute(sql);
+    }
+
+    public void scanListenerSketches(long songId, RowCallbackHandler handler) {
+        String sql = "SELECT sketch FROM song_listener_sketches WHERE song_id = ?";
+        jdbcTemplate.query(sql, handler, songId);
+    }
+
+    // the row stays locked between reading and writing, so sketches flushed by other nodes are merged, not lost
+    @Transactional
+    public void mergeListenerSketch(long songId, String bucket, UnaryOperator<byte[]> merge) {
+        String select = "SELECT sketch FROM song_listener_sketches WHERE song_id = ? AND bucket = ? FOR UPDATE";
+        List<byte[]> stored = jdbcTemplate.query(select, (rs, rowNum) -> rs.getBytes("sketch"), songId, bucket);
+        String upsert = "INSERT INTO song_listener_sketches (song_id, bucket, sketch) VALUES (?, ?, ?)\n" +
+                "ON DUPLICATE KEY UPDATE sketch = VALUES(sketch)";
+        jdbcTemplate.update(upsert, songId, bucket, merge.apply(stored.isEmpty() ? null : stored.get(0)));
+    }
+
+    public void createPlayDaysTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS song_play_days (\n" +
+                "song_id BIGINT NOT NULL PRIMARY KEY,\n" +
+                "first_day BIGINT NOT NULL,\n" +
+                "hours_folded_until BIGINT NOT NULL,\n" +
+                "plays MEDIUMBLOB NOT NULL)";
+        jdbcTemplate.execute(sql);
+    }
+
+    public void scanPlayDays(RowCallbackHandler handler) {
+        String sql = "SELECT song_id, first_day, hours_folded_until, plays FROM song_play_days";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public void savePlayDays(List<Object[]> rows) {
+        String sql = "INSERT INTO song_play_days (song_id, first_day, hours_folded_until, plays) VALUES (?, ?, ?, ?)\n" +
+                "ON DUPLICATE KEY UPDATE first_day = VALUES(first_day), hours_folded_until = VALUES(hours_folded_until), " +
+                "plays = VALUES(plays)";
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    public void createEngagementTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS engagement_cube (\n" +
+                "day DATE NOT NULL,\n" +
+                "country VARCHAR(64) NOT NULL,\n" +
+                "genre VARCHAR(64) NOT NULL,\n" +
+                "listens INT NOT NULL DEFAULT 0,\n" +
+                "likes INT NOT NULL DEFAULT 0,\n" +
+                "PRIMARY KEY (day, country, genre))";
+        jdbcTemplate.execute(sql);
+    }
+
+    public void scanEngagementSince(LocalDate since, RowCallbackHandler handler) {
+        String sql = "SELECT day, country, genre, listens, likes FROM engagement_cube WHERE day >= ?";
+        jdbcTemplate.query(sql, handler, since);
+    }
+
+    public void saveEngagement(List<Object[]> rows) {
+        String sql = "INSERT INTO engagement_cube (day, country, genre, listens, likes) VALUES (?, ?, ?, ?, ?)\n" +
+                "ON DUPLICATE KEY UPDATE listens = VALUES(listens), likes = VALUES(likes)";
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    public void createCompletionTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS song_completion (\n" +
+                "song_id BIGINT NOT NULL,\n" +
+                "bucket TINYINT NOT NULL,\n" +
+                "heartbeats BIGINT NOT NULL DEFAULT 0,\n" +
+                "PRIMARY KEY (song_id, bucket))";
+        jdbcTemplate.execute(sql);
+    }
+
+    public void scanCompletion(RowCallbackHandler handler) {
+        String sql = "SELECT song_id, bucket, heartbeats FROM song_completion";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public void saveCompletion(List<Object[]> rows) {
+        String sql = "INSERT INTO song_completion (song_id, bucket, heartbeats) VALUES (?, ?, ?)\n" +
+                "ON DUPLICATE KEY UPDATE heartbeats = heartbeats + VALUES(heartbeats)";
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    public void createSongDurationTable() {
+        String sql = "CREATE TABLE IF NOT EXISTS song_durations (\n" +
+                "song_id BIGINT NOT NULL PRIMARY KEY,\n" +
+                "duration_millis BIGINT NOT NULL)";
+        jdbcTemplate.execute(sql);
+    }
+
+    // every song in id order with its measured duration, null when it was not measured yet
+    public void scanSongDurations(RowCallbackHandler handler) {
+        String sql = "SELECT s.id, s.url, d.duration_millis FROM songs AS s\n" +
+                "LEFT JOIN song_durations AS d ON d.song_id = s.id ORDER BY s.id";
+        jdbcTemplate.query(sql, handler);
+    }
+
+    public String findSongUrl(long songId) {
+        String sql = "SELECT url FROM songs WHERE id = ?";
+        List<String> urls = jdbcTemplate.queryForList(sql, String.class, songId);
+        return urls.isEmpty() ? null : urls.get(0);
+    }
+
+    public void saveSongDuration(long songId, long durationMillis) {
+        String sql = "INSERT INTO song_durations (song_id, duration_millis) VALUES (?, ?)\n" +
+                "ON DUPLICATE KEY UPDATE duration_millis = VALUES(duration_millis)";
+        jdbcTemplate.update(sql, songId, durationMillis);
+    }
+}
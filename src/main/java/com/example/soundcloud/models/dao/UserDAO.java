@@ -0,0 +1,48 @@
+package com.example.soundcloud.models.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+@Component
+public class UserDAO {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // the schema is not generated, so the lookup indexes are added once if the column has none yet
+    public void createLookupIndexes() {
+        createIndexIfMissing("users_username_idx", "username");
+        createIndexIfMissing("users_email_idx", "email");
+    }
+
+    private void createIndexIfMissing(String name, String column) {
+        String sql = "SELECT COUNT(*) FROM information_schema.statistics \n" +
+                "WHERE table_schema = DATABASE() AND table_name = 'users' AND column_name = ? AND seq_in_index = 1";
+        Integer indexes = jdbcTemplate.queryForObject(sql, Integer.class, column);
+        if (indexes != null && indexes == 0) {
+            jdbcTemplate.execute("CREATE INDEX " + name + " ON users (" + column + ")");
+        }
+    }
+
+    public int countUsers() {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    public void scanUsernamesAndEmails(RowCallbackHandler handler) {
+        jdbcTemplate.query("SELECT username, email FROM users", handler);
+    }
+
+    public boolean usernameExists(String username) {
+        Boolean exists = jdbcTemplate.queryForObject("SELECT EXISTS(SELECT 1 FROM users WHERE username = ?)",
+                Boolean.class, username);
+        return exists != null && exists;
+    }
+
+    public boolean emailExists(String email) {
+        Boolean exists = jdbcTemplate.queryForObject("SELECT EXISTS(SELECT 1 FROM users WHERE email = ?)",
+                Boolean.class, email);
+        return exists != null && exists;
+    }
+}
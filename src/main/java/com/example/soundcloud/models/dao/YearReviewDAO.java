@@ -0,0 +1,65 @@
+package com.example.soundcloud.models.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Component
+public class YearReviewDAO {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public void createTables() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS year_reviews (\n" +
+                "user_id BIGINT NOT NULL,\n" +
+                "year INT NOT NULL,\n" +
+                "plays INT NOT NULL,\n" +
+                "songs INT NOT NULL,\n" +
+                "active_days INT NOT NULL,\n" +
+                "longest_streak INT NOT NULL,\n" +
+                "PRIMARY KEY (user_id, year))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS year_review_tops (\n" +
+                "user_id BIGINT NOT NULL,\n" +
+                "year INT NOT NULL,\n" +
+                "kind VARCHAR(8) NOT NULL,\n" +
+                "position TINYINT NOT NULL,\n" +
+                "song_id BIGINT NULL,\n" +
+                "name VARCHAR(255) NOT NULL,\n" +
+                "plays INT NOT NULL,\n" +
+                "PRIMARY KEY (user_id, year, kind, position))");
+    }
+
+    public void scanSongs(RowCallbackHandler handler) {
+        jdbcTemplate.query("SELECT id, title, artist, genre FROM songs", handler);
+    }
+
+    // replaces the reviews of one chunk of users, so a rerun does not leave rows of the previous run behind
+    @Transactional
+    public void saveChunk(int year, long afterId, long lastId, List<Object[]> reviews, List<Object[]> tops) {
+        jdbcTemplate.update("DELETE FROM year_reviews WHERE year = ? AND user_id > ? AND user_id <= ?",
+                year, afterId, lastId);
+        jdbcTemplate.update("DELETE FROM year_review_tops WHERE year = ? AND user_id > ? AND user_id <= ?",
+                year, afterId, lastId);
+        jdbcTemplate.batchUpdate("INSERT INTO year_reviews (user_id, year, plays, songs, active_days, longest_streak) \n" +
+                "VALUES (?, ?, ?, ?, ?, ?)\n" +
+                "ON DUPLICATE KEY UPDATE plays = VALUES(plays), songs = VALUES(songs), " +
+                "active_days = VALUES(active_days), longest_streak = VALUES(longest_streak)", reviews);
+        jdbcTemplate.batchUpdate("INSERT INTO year_review_tops (user_id, year, kind, position, song_id, name, plays) \n" +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)", tops);
+    }
+
+    public void scanReview(long userId, int year, RowCallbackHandler handler) {
+        String sql = "SELECT plays, songs, active_days, longest_streak FROM year_reviews WHERE user_id = ? AND year = ?";
+        jdbcTemplate.query(sql, handler, userId, year);
+    }
+
+    public void scanReviewTops(long userId, int year, RowCallbackHandler handler) {
+        String sql = "SELECT kind, song_id, name, plays FROM year_review_tops WHERE user_id = ? AND year = ? \n" +
+                "ORDER BY kind, position";
+        jdbcTemplate.query(sql, handler, userId, year);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.soundcloud.models.dto.feed;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedItemDTO {
+    private long eventId;
+    private String type;
+    private long actorId;
+    private String actorUsername;
+    private long songId;
+    private String songTitle;
+    private String songArtist;
+    private long playlistId;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+}
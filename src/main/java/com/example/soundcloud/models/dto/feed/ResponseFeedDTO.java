@@ -0,0 +1,16 @@
+package com.example.soundcloud.models.dto.feed;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseFeedDTO {
+    private List<FeedItemDTO> items;
+    // pass as cursor to get the next page, 0 when there is none
+    private long nextCursor;
+}
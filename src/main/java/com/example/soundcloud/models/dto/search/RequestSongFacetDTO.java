@@ -0,0 +1,21 @@
+package com.example.soundcloud.models.dto.search;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class RequestSongFacetDTO {
+    private List<String> genres;
+    private List<String> artists;
+    private List<String> uploaded;
+    private List<String> listened;
+    private List<String> likes;
+    private String sortBy;
+    private String orderBy;
+    private int page;
+}
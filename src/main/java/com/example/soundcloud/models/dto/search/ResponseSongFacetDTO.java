@@ -0,0 +1,19 @@
+package com.example.soundcloud.models.dto.search;
+
+import com.example.soundcloud.models.dto.song.ResponseSongFilterDTO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseSongFacetDTO {
+    private int total;
+    private int page;
+    private List<ResponseSongFilterDTO> songs;
+    private Map<String, Map<String, Integer>> facets;
+}
@@ -0,0 +1,14 @@
+package com.example.soundcloud.models.dto.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseSuggestionDTO {
+    private String text;
+    private String type;
+    private long id;
+}
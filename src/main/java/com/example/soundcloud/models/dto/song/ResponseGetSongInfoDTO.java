@@ -29,5 +29,6 @@ public class ResponseGetSongInfoDTO {
     private int likes;
     private int dislikes;
     private int comments;
+    private long uniqueListeners;
 
 }
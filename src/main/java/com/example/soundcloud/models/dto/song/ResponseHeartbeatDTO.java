@@ -0,0 +1,14 @@
+package com.example.soundcloud.models.dto.song;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseHeartbeatDTO {
+    private int accepted;
+    private int rejected;
+    private int dropped;
+}
@@ -0,0 +1,14 @@
+package com.example.soundcloud.models.dto.song;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseSongCompletionDTO {
+    private long id;
+    private long[] heartbeats;
+    private double completionRate;
+}
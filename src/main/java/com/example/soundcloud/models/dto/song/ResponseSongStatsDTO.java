@@ -0,0 +1,19 @@
+package com.example.soundcloud.models.dto.song;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseSongStatsDTO {
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private String step;
+    private List<LocalDateTime> buckets;
+    private List<SongPlaysDTO> songs;
+}
@@ -0,0 +1,15 @@
+package com.example.soundcloud.models.dto.song;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SongPlaysDTO {
+    private long id;
+    private String title;
+    private long total;
+    private int[] plays;
+}
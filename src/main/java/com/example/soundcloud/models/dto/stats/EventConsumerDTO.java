@@ -0,0 +1,18 @@
+package com.example.soundcloud.models.dto.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventConsumerDTO {
+    private String name;
+    private long sequence;
+    private long lag;
+    private long processed;
+    private long batches;
+    private long maxBatch;
+    private long errors;
+}
@@ -0,0 +1,18 @@
+package com.example.soundcloud.models.dto.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseEngagementDTO {
+    private String country;
+    private String genre;
+    private LocalDate day;
+    private long listens;
+    private long likes;
+}
@@ -0,0 +1,18 @@
+package com.example.soundcloud.models.dto.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseEventBusDTO {
+    private int capacity;
+    private long published;
+    private long dropped;
+    private String backpressure;
+    private List<EventConsumerDTO> consumers;
+}
@@ -0,0 +1,22 @@
+package com.example.soundcloud.models.dto.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponsePlayDedupDTO {
+    private long windowMinutes;
+    private long expectedPlays;
+    private double targetFalsePositiveRate;
+    private long bitsPerFilter;
+    private int hashFunctions;
+    private long memoryBytes;
+    private long playsInWindow;
+    private double currentFalsePositiveRate;
+    private long counted;
+    private long duplicates;
+    private long rotations;
+}
@@ -0,0 +1,22 @@
+package com.example.soundcloud.models.dto.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseYearReviewDTO {
+    private long userId;
+    private int year;
+    private int plays;
+    private int songs;
+    private int activeDays;
+    private int longestStreak;
+    private List<ReviewItemDTO> topSongs;
+    private List<ReviewItemDTO> topArtists;
+    private List<ReviewItemDTO> topGenres;
+}
@@ -0,0 +1,16 @@
+package com.example.soundcloud.models.dto.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// a field is null when that name was not asked about
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseAvailabilityDTO {
+    private String username;
+    private Boolean usernameAvailable;
+    private String email;
+    private Boolean emailAvailable;
+}
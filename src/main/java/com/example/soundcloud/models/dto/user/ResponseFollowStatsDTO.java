@@ -0,0 +1,15 @@
+package com.example.soundcloud.models.dto.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseFollowStatsDTO {
+    private long userId;
+    private int followers;
+    private int following;
+    private long[] mutuals;
+}
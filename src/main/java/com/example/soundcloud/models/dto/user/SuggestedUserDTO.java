@@ -0,0 +1,19 @@
+package com.example.soundcloud.models.dto.user;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestedUserDTO {
+    private long id;
+    private String username;
+    private String firstName;
+    private String lastName;
+    private String profileImageUrl;
+    // how many of the accounts you follow follow this one
+    private int followedBy;
+    private float score;
+}
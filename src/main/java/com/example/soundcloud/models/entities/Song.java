@@ -29,7 +29,8 @@ public class Song {
         private String genre;
         @Column
         private String artist;
-        @Column
+        // only ever incremented in SQL by the counter compaction, a save of a stale entity must not overwrite it
+        @Column(updatable = false)
         private int listened;
         @Column
         private String url;
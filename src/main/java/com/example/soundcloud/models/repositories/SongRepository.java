@@ -44,13 +44,6 @@ public interface SongRepository extends JpaRepository<Song, Long> {
             "ORDER BY s.id DESC LIMIT 5", nativeQuery = true)
     List<Song> findFiveSuitableForUser(String genre);
 
-    @Query(value = "SELECT genre FROM songs\n" +
-            "JOIN users_like_songs ON(songs.id = users_like_songs.song_id)\n" +
-            "WHERE users_like_songs.user_id = :userId\n" +
-            "GROUP BY songs.genre\n" +
-            "ORDER BY COUNT(genre) DESC LIMIT 1", nativeQuery = true)
-    String mostListenedGenreForUser(@Param("userId") long userId);
-
     @Query(value = "SELECT *, COUNT(s.id) total_listens FROM songs AS s\n" +
             "JOIN users_listened_songs AS usl ON(s.id = usl.song_id)\n" +
             "GROUP BY s.id\n" +
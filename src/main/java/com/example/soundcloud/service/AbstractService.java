@@ -11,10 +11,16 @@ import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 public class AbstractService {
 
@@ -39,6 +45,11 @@ public class AbstractService {
         return userRepository.findById(userId).orElseThrow(() -> new NotFoundException("User does not exist!"));
     }
 
+    protected List<Song> findAllInOrder(List<Long> ids) {
+        Map<Long, Song> byId = songRepository.findAllById(ids).stream().collect(Collectors.toMap(Song::getId, song -> song));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
     public Song findSongById(long songId) {
         return songRepository.findById(songId).orElseThrow(() -> new NotFoundException("Song does not exist!"));
     }
@@ -51,6 +62,35 @@ public class AbstractService {
         return commentRepository.findById(commentId).orElseThrow(() -> new NotFoundException("Comment does not exist!"));
     }
 
+    // runs the action once the surrounding transaction has committed, or right away outside of a transaction
+    protected void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // does nothing outside a transaction, where there is nothing to roll back
+    protected void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
     protected void sendEmailToFollowersWhenUpload(Song newSong, User uploader) {
         Song song = newSong;
         User user = uploader;
@@ -13,6 +13,9 @@ import com.example.soundcloud.models.entities.Comment;
 import com.example.soundcloud.models.entities.Song;
 import com.example.soundcloud.models.entities.User;
 import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.service.events.EventBus;
+import com.example.soundcloud.service.events.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,6 +26,9 @@ import java.util.stream.Collectors;
 @Service
 public class CommentService extends AbstractService {
 
+    @Autowired
+    private EventBus eventBus;
+
     @Transactional
     public ResponseCommentDTO createComment(long songId, long userId, CreateCommentDTO dto) {
         User user = findUserById(userId);
@@ -58,6 +64,7 @@ public class CommentService extends AbstractService {
         if (utility.isTextValid(dto)) {
             comment.setText(dto.getText());
             commentRepository.save(comment);
+            afterCommit(() -> eventBus.publishSong(EventType.COMMENT, userId, songId, song.getGenre(), user.getCountry()));
             return getResponseCommentDTO(comment);
         } else {
             throw new BadRequestException("Text is invalid");
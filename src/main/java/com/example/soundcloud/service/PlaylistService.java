@@ -8,7 +8,11 @@ import com.example.soundcloud.models.entities.Playlist;
 import com.example.soundcloud.models.entities.Song;
 import com.example.soundcloud.models.entities.User;
 import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.service.events.EventBus;
+import com.example.soundcloud.service.events.EventType;
+import com.example.soundcloud.service.recommendation.PlaylistContinuation;
 import lombok.Synchronized;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
@@ -21,6 +25,12 @@ import java.util.stream.Collectors;
 @Service
 public class PlaylistService extends AbstractService {
 
+    private static final int SUGGESTED_SONGS = 10;
+
+    @Autowired
+    private PlaylistContinuation playlistContinuation;
+    @Autowired
+    private EventBus eventBus;
 
     public ResponsePLDTO getPlaylistById(long playlistId) {
         Playlist playlist = findPlaylistById(playlistId);
@@ -66,6 +76,7 @@ public class PlaylistService extends AbstractService {
         }
         playlist.getSongsInPlaylist().add(song);
         playlistRepository.save(playlist);
+        afterCommit(() -> eventBus.publishPlaylist(EventType.PLAYLIST_ADD, userId, playlistId, songId));
         ResponsePLDTO dto = modelMapper.map(playlist, ResponsePLDTO.class);
         dto.setSongsInPlaylist(playlist.getSongsInPlaylist().stream().map(song1 -> modelMapper.map(song1, SongWithoutUserDTO.class)).collect(Collectors.toList()));
         return dto;
@@ -103,11 +114,21 @@ public class PlaylistService extends AbstractService {
         }
         playlist.getSongsInPlaylist().remove(song);
         playlistRepository.save(playlist);
+        afterCommit(() -> eventBus.publishPlaylist(EventType.PLAYLIST_REMOVE, userId, playlistId, songId));
         ResponsePLDTO dto = modelMapper.map(playlist, ResponsePLDTO.class);
         dto.setSongsInPlaylist(playlist.getSongsInPlaylist().stream().map(song1 -> modelMapper.map(song1, SongWithoutUserDTO.class)).collect(Collectors.toList()));
         return dto;
     }
 
+    public List<SongWithoutUserDTO> getPlaylistSuggestions(long playlistId) {
+        findPlaylistById(playlistId);
+        List<Long> songIds = playlistRepository.findAllSongsInPlaylist(playlistId);
+        return findAllInOrder(playlistContinuation.suggest(songIds, SUGGESTED_SONGS))
+                .stream()
+                .map(song -> modelMapper.map(song, SongWithoutUserDTO.class))
+                .collect(Collectors.toList());
+    }
+
     public Page<ResponsePLDTO> getAllPlaylists(int offset, int pageSize) {
         Page<ResponsePLDTO> pages = playlistRepository.findAll(PageRequest.of(offset,pageSize)).map(playlist -> modelMapper.map(playlist,ResponsePLDTO.class));
         for (ResponsePLDTO r : pages){
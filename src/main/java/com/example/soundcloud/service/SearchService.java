@@ -0,0 +1,154 @@
+package com.example.soundcloud.service;
+
+import com.example.soundcloud.models.dao.SearchDAO;
+import com.example.soundcloud.models.dto.search.RequestSongFacetDTO;
+import com.example.soundcloud.models.dto.search.ResponseSongFacetDTO;
+import com.example.soundcloud.models.dto.search.ResponseSuggestionDTO;
+import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import com.example.soundcloud.service.search.FacetIndex;
+import com.example.soundcloud.service.search.SuggestionIndex;
+import com.example.soundcloud.service.search.TrigramIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class SearchService implements DomainEventHandler {
+
+    public static final int SUGGESTIONS_LIMIT = 10;
+    public static final int FUZZY_RESULTS_LIMIT = 20;
+    private static final long INDEX_REFRESH_MILLIS = 5 * 60 * 1000;
+    private static final long STALE_CHECK_MILLIS = 10 * 1000;
+
+    @Autowired
+    private SearchDAO searchDAO;
+
+    private volatile SuggestionIndex suggestionIndex = SuggestionIndex.EMPTY;
+    private volatile TrigramIndex songTrigrams = TrigramIndex.EMPTY;
+    private volatile TrigramIndex userTrigrams = TrigramIndex.EMPTY;
+    private volatile FacetIndex facetIndex = FacetIndex.EMPTY;
+    private volatile boolean stale;
+
+    public List<ResponseSuggestionDTO> suggest(String query) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("You can not search without a query!");
+        }
+        return suggestionIndex.suggest(query, SUGGESTIONS_LIMIT);
+    }
+
+    public List<Long> fuzzySongIds(String query) {
+        return songTrigrams.search(query, FUZZY_RESULTS_LIMIT);
+    }
+
+    public List<Long> fuzzyUserIds(String query) {
+        return userTrigrams.search(query, FUZZY_RESULTS_LIMIT);
+    }
+
+    public ResponseSongFacetDTO browse(RequestSongFacetDTO dto) {
+        String sortBy = dto.getSortBy();
+        if (sortBy == null) {
+            sortBy = "listened";
+        } else {
+            sortBy = sortBy.toLowerCase().trim();
+            if (!Arrays.asList(FacetIndex.SORT_KEYS).contains(sortBy)) {
+                throw new BadRequestException("Invalid type of filter!");
+            }
+        }
+        String orderBy = dto.getOrderBy();
+        if (orderBy == null) {
+            orderBy = "desc";
+        } else {
+            orderBy = orderBy.toLowerCase().trim();
+            if (!orderBy.equals("asc") && !orderBy.equals("desc")) {
+                throw new BadRequestException("Invalid type of ordering!");
+            }
+        }
+        int page = dto.getPage();
+        if (page <= 0) {
+            page = SongService.FIRST_PAGE;
+        }
+        Map<String, List<String>> selected = new HashMap<>();
+        selected.put(FacetIndex.GENRE, dto.getGenres());
+        selected.put(FacetIndex.ARTIST, dto.getArtists());
+        selected.put(FacetIndex.UPLOADED, dto.getUploaded());
+        selected.put(FacetIndex.LISTENED, dto.getListened());
+        selected.put(FacetIndex.LIKES, dto.getLikes());
+        return facetIndex.query(selected, sortBy, orderBy.equals("desc"), page, SongService.SONGS_PER_PAGE);
+    }
+
+    // uploads and edits show up in search within seconds instead of at the next full refresh; a burst of them
+    // still costs a single rebuild
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        switch (event.getType()) {
+            case UPLOAD:
+            case SONG_EDIT:
+            case SONG_DELETE:
+                stale = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Scheduled(fixedDelay = STALE_CHECK_MILLIS)
+    public void rebuildStaleIndexes() {
+        if (stale) {
+            rebuildIndexes();
+        }
+    }
+
+    @Scheduled(fixedDelay = INDEX_REFRESH_MILLIS)
+    public synchronized void rebuildIndexes() {
+        stale = false;
+        SuggestionIndex.Builder suggestions = new SuggestionIndex.Builder();
+        TrigramIndex.Builder songs = new TrigramIndex.Builder();
+        TrigramIndex.Builder users = new TrigramIndex.Builder();
+        // artist -> {total plays, most played song id}
+        Map<String, long[]> artists = new HashMap<>();
+        searchDAO.scanSongs(rs -> {
+            long id = rs.getLong("id");
+            int listened = rs.getInt("listened");
+            suggestions.add(rs.getString("title"), SuggestionIndex.SONG, id, listened);
+            String artist = rs.getString("artist");
+            songs.add(rs.getString("title"), id).add(artist, id);
+            if (artist != null) {
+                long[] stats = artists.computeIfAbsent(artist, a -> new long[]{0, id, -1});
+                stats[0] += listened;
+                if (listened > stats[2]) {
+                    stats[1] = id;
+                    stats[2] = listened;
+                }
+            }
+        });
+        for (Map.Entry<String, long[]> artist : artists.entrySet()) {
+            suggestions.add(artist.getKey(), SuggestionIndex.ARTIST, artist.getValue()[1], artist.getValue()[0]);
+        }
+        FacetIndex.Builder facets = new FacetIndex.Builder(LocalDateTime.now());
+        searchDAO.scanSongFacets(rs -> facets.add(rs.getLong("songId"), rs.getString("title"), rs.getString("genre"),
+                rs.getString("artist"), rs.getString("uploadedBy"), rs.getInt("listened"), rs.getInt("likes"),
+                rs.getInt("dislikes"), rs.getInt("comments"),
+                rs.getTimestamp("upload_date") == null ? null : rs.getTimestamp("upload_date").toLocalDateTime()));
+        searchDAO.scanUsers(rs -> {
+            long id = rs.getLong("id");
+            suggestions.add(rs.getString("username"), SuggestionIndex.USER, id, rs.getLong("followers"));
+            users.add(rs.getString("username"), id)
+                    .add(rs.getString("first_name"), id)
+                    .add(rs.getString("last_name"), id);
+        });
+        searchDAO.scanPlaylists(rs -> suggestions.add(rs.getString("name"), SuggestionIndex.PLAYLIST,
+                rs.getLong("id"), rs.getLong("songs")));
+        suggestionIndex = suggestions.build();
+        songTrigrams = songs.build();
+        userTrigrams = users.build();
+        facetIndex = facets.build();
+    }
+}
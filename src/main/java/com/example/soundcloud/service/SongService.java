@@ -20,6 +20,19 @@ import com.example.soundcloud.models.exceptions.BadRequestException;
 import com.example.soundcloud.models.exceptions.FileException;
 import com.example.soundcloud.models.exceptions.MethodNotAllowedException;
 import com.example.soundcloud.models.exceptions.NotFoundException;
+import com.example.soundcloud.service.events.EventBus;
+import com.example.soundcloud.service.events.EventType;
+import com.example.soundcloud.service.events.ListenLog;
+import com.example.soundcloud.service.recommendation.SongEmbeddings;
+import com.example.soundcloud.service.recommendation.SongFactors;
+import com.example.soundcloud.service.recommendation.SongSimilarity;
+import com.example.soundcloud.service.stats.CompletionHistograms;
+import com.example.soundcloud.service.stats.GenreHistograms;
+import com.example.soundcloud.service.stats.PlayCharts;
+import com.example.soundcloud.service.stats.PlayDeduplicator;
+import com.example.soundcloud.service.stats.SongCounters;
+import com.example.soundcloud.service.stats.TrendingChart;
+import com.example.soundcloud.service.stats.UniqueListeners;
 import org.apache.commons.io.IOUtils;
 import org.modelmapper.PropertyMap;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -50,12 +63,40 @@ public class SongService extends AbstractService {
 
     public static final int FIRST_PAGE = 1;
     public static final int SONGS_PER_PAGE = 5;
+    private static final int SIMILAR_SONGS = 10;
+    private static final int RECOMMENDED_SONGS = 10;
     private static final long MAX_FILESIZE = 150 * 1024 * 1024;
     private static final String STORAGE_BUCKET_NAME = "soundcloudtalents";
 
 
     private final SongDAO songDAO;
     private final AmazonS3 storageClient;
+    @Autowired
+    private SearchService searchService;
+    @Autowired
+    private GenreHistograms genreHistograms;
+    @Autowired
+    private TrendingChart trendingChart;
+    @Autowired
+    private PlayCharts playCharts;
+    @Autowired
+    private UniqueListeners uniqueListeners;
+    @Autowired
+    private CompletionHistograms completionHistograms;
+    @Autowired
+    private SongCounters songCounters;
+    @Autowired
+    private PlayDeduplicator playDeduplicator;
+    @Autowired
+    private SongSimilarity songSimilarity;
+    @Autowired
+    private EventBus eventBus;
+    @Autowired
+    private ListenLog listenLog;
+    @Autowired
+    private SongFactors songFactors;
+    @Autowired
+    private SongEmbeddings songEmbeddings;
 
     @Autowired
     public SongService(SongDAO songDAO, AmazonS3 storageClient) {
@@ -98,10 +139,32 @@ public class SongService extends AbstractService {
 
     public List<ResponseGetSongDTO> searchByTitle(String title) {
         List<Song> songs = songRepository.findSongByCharSequence(title).stream().collect(Collectors.toList());
+        if (songs.isEmpty()) {
+            songs = findAllInOrder(searchService.fuzzySongIds(title));
+        }
         List<ResponseGetSongDTO> songsDTO = songs.stream().map(song -> modelMapper.map(song, ResponseGetSongDTO.class)).collect(Collectors.toList());
         return songsDTO;
     }
 
+    public List<ResponseSongDTO> recommendedSongs(long uid) {
+        return findAllInOrder(songFactors.recommendFor(uid, RECOMMENDED_SONGS))
+                .stream()
+                .map(song -> modelMapper.map(song, ResponseSongDTO.class))
+                .collect(Collectors.toList());
+    }
+
+    public List<ResponseSongDTO> similarSongs(long sid) {
+        findSongById(sid);
+        List<Long> similar = songSimilarity.similarTo(sid, SIMILAR_SONGS);
+        if (similar.isEmpty()) {
+            similar = songEmbeddings.similarTo(sid, SIMILAR_SONGS);
+        }
+        return findAllInOrder(similar)
+                .stream()
+                .map(song -> modelMapper.map(song, ResponseSongDTO.class))
+                .collect(Collectors.toList());
+    }
+
     public List<ResponseSongFilterDTO> filterSongs(RequestSongFilterDTO filterType) throws SQLException {
         String title = filterType.getTitle();
         if (title == null) {
@@ -147,15 +210,20 @@ public class SongService extends AbstractService {
         User user = findUserById(uid);
         if (song.getDislikers().contains(user)) {
             user.getDislikedSongs().remove(song);
+            afterCommit(() -> eventBus.publishSong(EventType.UNDISLIKE, uid, sid, song.getGenre(), user.getCountry()));
         }
         if (user.getLikedSongs().contains(song)) {
             user.getLikedSongs().remove(song);
             userRepository.save(user);
-            return new LikeDTO("Your like was successfully removed!", song.getLikers().size());
+            songCounters.liked(sid, -1);
+            afterCommit(() -> eventBus.publishSong(EventType.UNLIKE, uid, sid, song.getGenre(), user.getCountry()));
+            return new LikeDTO("Your like was successfully removed!", (int) songCounters.likes(sid));
         } else {
             user.getLikedSongs().add(song);
             userRepository.save(user);
-            return new LikeDTO("Your like was successfully accepted!", song.getLikers().size());
+            songCounters.liked(sid, 1);
+            afterCommit(() -> eventBus.publishSong(EventType.LIKE, uid, sid, song.getGenre(), user.getCountry()));
+            return new LikeDTO("Your like was successfully accepted!", (int) songCounters.likes(sid));
         }
     }
 
@@ -164,14 +232,18 @@ public class SongService extends AbstractService {
         User user = findUserById(uid);
         if (song.getLikers().contains(user)) {
             user.getLikedSongs().remove(song);
+            songCounters.liked(sid, -1);
+            afterCommit(() -> eventBus.publishSong(EventType.UNLIKE, uid, sid, song.getGenre(), user.getCountry()));
         }
         if (user.getDislikedSongs().contains(song)) {
             user.getDislikedSongs().remove(song);
             userRepository.save(user);
+            afterCommit(() -> eventBus.publishSong(EventType.UNDISLIKE, uid, sid, song.getGenre(), user.getCountry()));
             return new DislikeDTO("Your dislike was successfully removed!", song.getDislikers().size());
         } else {
             user.getDislikedSongs().add(song);
             userRepository.save(user);
+            afterCommit(() -> eventBus.publishSong(EventType.DISLIKE, uid, sid, song.getGenre(), user.getCountry()));
             return new DislikeDTO("Your dislike was successfully accepted!", song.getDislikers().size());
         }
     }
@@ -224,6 +296,8 @@ public class SongService extends AbstractService {
                     uploadedSong.setDescription(description);
                 }
                 this.songRepository.save(uploadedSong);
+                long songId = uploadedSong.getId();
+                afterCommit(() -> eventBus.publishSong(EventType.UPLOAD, uid, songId, genre, currentUser.getCountry()));
                 sendEmailToFollowersWhenUpload(uploadedSong,currentUser);
             } catch (AmazonServiceException | IOException e) {
                 throw new FileException("Problem with the uploading of the song to the server - " + e.getMessage());
@@ -240,6 +314,8 @@ public class SongService extends AbstractService {
             File fileToDelete = new File(songToDelete.getUrl());
             fileToDelete.delete();
             songRepository.delete(songToDelete);
+            afterCommit(() -> eventBus.publishSong(EventType.SONG_DELETE, uid, sid, songToDelete.getGenre(),
+                    user.getCountry()));
             storageClient.deleteObject(STORAGE_BUCKET_NAME, songToDelete.getUrl());
             return new ResponseSongDeleteDTO("Song deleted successfully!", sid);
         } else {
@@ -256,6 +332,7 @@ public class SongService extends AbstractService {
             if (user.getId() == song.getUploader().getId()) {
                 setSongEdit(dto, song);
                 songRepository.save(song);
+                afterCommit(() -> eventBus.publishSong(EventType.SONG_EDIT, uid, sid, song.getGenre(), user.getCountry()));
                 return copySongToDTO(sid);
             } else {
                 throw new MethodNotAllowedException("The song that you are trying to edit was not uploaded by you!");
@@ -273,15 +350,55 @@ public class SongService extends AbstractService {
     }
 
 
+    // Counted in its own short transaction before the song is streamed, so the shard row and the listened row
+    // are not locked for as long as the download takes and a failed download does not roll the play back.
     @Transactional
-    public void play(long sid, long userId, HttpServletResponse response) {
+    public void countPlay(long sid, long userId, long clientHash) {
         Song song = findSongById(sid);
+        songFile(song);
+        // range requests and reconnects of the same listener within the window stream the song without counting
+        if (playDeduplicator.firstPlay(sid, userId, clientHash)) {
+            afterRollback(() -> playDeduplicator.release(sid, userId, clientHash));
+            countPlay(song, userId, clientHash);
+        }
+    }
+
+    public void play(long sid, HttpServletResponse response) {
+        File songToPlay = songFile(findSongById(sid));
+        try {
+            response.setContentType(Files.probeContentType(songToPlay.toPath()));
+            Files.copy(songToPlay.toPath(), response.getOutputStream());
+        } catch (IOException e) {
+            throw new BadRequestException("Problem with output stream.");
+        }
+    }
+
+    private File songFile(Song song) {
+        String nameOfFile = song.getUrl().substring(song.getUrl().indexOf(File.separator));
+        File songFile = new File("uploadedSongs" + File.separator + nameOfFile);
+        if (!songFile.exists()) {
+            throw new NotFoundException("Song does not exist");
+        }
+        return songFile;
+    }
+
+    private void countPlay(Song song, long userId, long clientHash) {
+        long sid = song.getId();
         Optional<User> user = userRepository.findById(userId);
         ListenedKey listenedKey = new ListenedKey();
         listenedKey.setSongId(song.getId());
         Listened listened = new Listened();
         listened.setSong(song);
         boolean isHere = false;
+        long listenerId = user.isPresent() ? userId : 0;
+        String country = user.isPresent() ? user.get().getCountry() : null;
+        // the log is written in the request thread, never through the bus, and only once the counts are committed;
+        // the pair is remembered only then, so a retry of a play that was rolled back still counts
+        afterCommit(() -> {
+            playDeduplicator.recordPlay(sid, userId, clientHash);
+            long time = listenLog.append(sid, listenerId, clientHash);
+            eventBus.publishListen(time, listenerId, sid, song.getGenre(), country, clientHash);
+        });
         if (user.isPresent()) {
             listened.setUser(user.get());
             listenedKey.setUserId(user.get().getId());
@@ -293,34 +410,34 @@ public class SongService extends AbstractService {
                 }
             }
             if (!isHere) {
-                song.setListened(song.getListened() + 1);
+                songCounters.listened(sid);
                 listened.setId(listenedKey);
                 listened.setListened(listened.getListened() + 2);
                 listenedRepository.save(listened);
-                songRepository.save(song);
             } else {
                 listened.setId(listenedKey);
                 listened.setListened(listened.getListened() + 1);
                 listenedRepository.save(listened);
             }
         } else {
-            song.setListened(song.getListened() + 1);
-            songRepository.save(song);
-        }
-        String nameOfFile = song.getUrl().substring(song.getUrl().indexOf(File.separator));
-        File songToPlay = new File("uploadedSongs" + File.separator + nameOfFile);
-        if (!songToPlay.exists()) {
-            throw new NotFoundException("Song does not exist");
-        } else {
-            try {
-                response.setContentType(Files.probeContentType(songToPlay.toPath()));
-                Files.copy(songToPlay.toPath(), response.getOutputStream());
-            } catch (IOException e) {
-                throw new BadRequestException("Problem with output stream.");
-            }
+            songCounters.listened(sid);
         }
     }
 
+    // no entity is loaded per heartbeat, unknown song ids are rejected against an in-memory snapshot
+    public ResponseHeartbeatDTO ingestHeartbeats(long[][] heartbeats) {
+        return completionHistograms.ingest(heartbeats);
+    }
+
+    public ResponseSongCompletionDTO songCompletion(long sid) {
+        findSongById(sid);
+        long[] heartbeats = completionHistograms.heartbeats(sid);
+        // every listener passes the first bucket, so the last one over the first is the share that finished
+        double completionRate = heartbeats[0] == 0 ? 0
+                : Math.min(1, (double) heartbeats[CompletionHistograms.BUCKETS - 1] / heartbeats[0]);
+        return new ResponseSongCompletionDTO(sid, heartbeats, completionRate);
+    }
+
     public byte[] downloadSong(@PathVariable String songName) {
         S3Object songFile = storageClient.getObject(STORAGE_BUCKET_NAME, songName);
         S3ObjectInputStream inputStream = songFile.getObjectContent();
@@ -347,14 +464,14 @@ public class SongService extends AbstractService {
         String description = song.getDescription();
         LocalDateTime createdAt = song.getCreatedAt();
         long id = song.getId();
-        int likes = song.getLikers().size();
+        int likes = (int) songCounters.likes(sid);
         int dislikes = song.getDislikers().size();
         int comments = song.getComments().size();
-        int listened = song.getListened();
+        int listened = song.getListened() + (int) songCounters.pendingListens(sid);
         User user = song.getUploader();
         UserInfoDTO user1 = modelMapper.map(user, UserInfoDTO.class);
         ResponseGetSongInfoDTO dto = new ResponseGetSongInfoDTO(id, title, genre, artist, url, createdAt, listened,
-                description, user1, likes, dislikes, comments);
+                description, user1, likes, dislikes, comments, uniqueListeners.count(sid));
         return dto;
     }
 
@@ -385,14 +502,52 @@ public class SongService extends AbstractService {
         if (page <= 0) {
             page = 1;
         }
-        return songDAO.findSongsByGenreForUser(uid, page, SONGS_PER_PAGE);
+        String genre = genreHistograms.topGenreForUser(uid);
+        if (genre == null) {
+            return new ArrayList<>();
+        }
+        return songDAO.findSongsByGenre(genre, page, SONGS_PER_PAGE);
     }
 
     public List<ResponseSongFilterDTO> topGenreSongs(int page) throws SQLException {
         if (page <= 0) {
             page = 1;
         }
-        return songDAO.findSongsByGenre(page, SONGS_PER_PAGE);
+        String genre = genreHistograms.topGenre();
+        if (genre == null) {
+            return new ArrayList<>();
+        }
+        return songDAO.findSongsByGenre(genre, page, SONGS_PER_PAGE);
+    }
+
+    public List<ResponseSongDTO> trendingSongs(int page) {
+        if (page <= 0) {
+            page = FIRST_PAGE;
+        }
+        return findAllInOrder(trendingChart.trending((page - 1) * SONGS_PER_PAGE, SONGS_PER_PAGE))
+                .stream()
+                .map(song -> modelMapper.map(song, ResponseSongDTO.class))
+                .collect(Collectors.toList());
+    }
+
+    public List<ResponseSongDTO> trendingSongsByGenre(String genre, int page) {
+        if (page <= 0) {
+            page = FIRST_PAGE;
+        }
+        return findAllInOrder(trendingChart.trending(genre, (page - 1) * SONGS_PER_PAGE, SONGS_PER_PAGE))
+                .stream()
+                .map(song -> modelMapper.map(song, ResponseSongDTO.class))
+                .collect(Collectors.toList());
+    }
+
+    public List<ResponseSongDTO> mostPlayedSongs(String window, int page) {
+        if (page <= 0) {
+            page = FIRST_PAGE;
+        }
+        return findAllInOrder(playCharts.mostPlayed(window, (page - 1) * SONGS_PER_PAGE, SONGS_PER_PAGE))
+                .stream()
+                .map(song -> modelMapper.map(song, ResponseSongDTO.class))
+                .collect(Collectors.toList());
     }
 
     public List<ResponseSongFilterDTO> topListened(int page) throws SQLException {
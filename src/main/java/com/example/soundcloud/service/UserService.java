@@ -1,13 +1,25 @@
 package com.example.soundcloud.service;
 
 import com.example.soundcloud.models.dto.song.ResponseSongDTO;
+import com.example.soundcloud.models.dto.song.ResponseSongStatsDTO;
+import com.example.soundcloud.models.dto.song.SongPlaysDTO;
 import com.example.soundcloud.models.dto.song.SongWithoutUserDTO;
 import com.example.soundcloud.models.dto.user.*;
+import com.example.soundcloud.models.entities.Song;
 import com.example.soundcloud.models.entities.User;
 import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.models.exceptions.ForbiddenException;
 import com.example.soundcloud.models.exceptions.MethodNotAllowedException;
 import com.example.soundcloud.models.exceptions.NotFoundException;
 import com.example.soundcloud.models.exceptions.UnauthorizedException;
+import com.example.soundcloud.service.cache.UserAvailability;
+import com.example.soundcloud.service.events.EventBus;
+import com.example.soundcloud.service.events.EventType;
+import com.example.soundcloud.service.recommendation.SongSimilarity;
+import com.example.soundcloud.service.social.FollowerGraph;
+import com.example.soundcloud.service.stats.GenreHistograms;
+import com.example.soundcloud.service.stats.PlayRollups;
+import com.example.soundcloud.service.stats.SongCounters;
 import net.bytebuddy.utility.RandomString;
 import org.apache.commons.io.FilenameUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,18 +42,40 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.file.Files;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Service
 
 public class UserService extends AbstractService {
+    private static final int BECAUSE_YOU_LIKED_SONGS = 5;
     @Autowired
     private BCryptPasswordEncoder bCryptPasswordEncoder;
+    @Autowired
+    private SearchService searchService;
+    @Autowired
+    private GenreHistograms genreHistograms;
+    @Autowired
+    private SongSimilarity songSimilarity;
+    @Autowired
+    private PlayRollups playRollups;
+    @Autowired
+    private EventBus eventBus;
+    @Autowired
+    private FollowerGraph followerGraph;
+    @Autowired
+    private UserAvailability userAvailability;
+    @Autowired
+    private SongCounters songCounters;
 
 
 
@@ -57,6 +91,7 @@ public class UserService extends AbstractService {
             String verificationCode = RandomString.make(64);
             user.setVerificationCode(verificationCode);
             sendVerificationEmail(user, siteURL);
+            userAvailability.add(user.getUsername(), user.getEmail());
             userRepository.save(user);
             return modelMapper.map(user, UserWithoutPDTO.class);
         } else {
@@ -126,7 +161,10 @@ public class UserService extends AbstractService {
     public void deleteNonVerifiedUsers() {
         List<User> users = userRepository.findAllNonVerifiedUserForDelete();
         for (int i = 0; i < users.size(); i++) {
+            long userId = users.get(i).getId();
+            songCounters.userDeleted(userId);
             userRepository.delete(users.get(i));
+            afterCommit(() -> followerGraph.removeUser(userId));
         }
         System.out.println(users);
     }
@@ -164,6 +202,7 @@ public class UserService extends AbstractService {
         if (utility.editProfileValidation(dto, userId)) {
             if (bCryptPasswordEncoder.matches(dto.getCurrentPassword(), user.getPassword())) {
                 setEdit(dto, user);
+                userAvailability.add(user.getUsername(), user.getEmail());
                 userRepository.save(user);
                 return modelMapper.map(user, UserWithoutPDTO.class);
             } else {
@@ -194,10 +233,14 @@ public class UserService extends AbstractService {
         }
     }
 
+    @Transactional
     public String deleteUser(long userId, DeleteDTO dto) {
         User user = findUserById(userId);
         if (bCryptPasswordEncoder.matches(dto.getPassword(), user.getPassword())) {
+            songCounters.userDeleted(user.getId());
             userRepository.deleteById(user.getId());
+            // the graph only forgets the user once the rows are really gone
+            afterCommit(() -> followerGraph.removeUser(userId));
             return "User: " + user.getUsername() + " has been successfully deleted";
         } else {
             throw new BadRequestException("Password does not match!");
@@ -262,6 +305,36 @@ public class UserService extends AbstractService {
         return dto;
     }
 
+    public ResponseSongStatsDTO getSongStats(long id, long loggedId, LocalDateTime from, LocalDateTime to, String step) {
+        if (id != loggedId) {
+            throw new ForbiddenException("You can only see the statistics of your own songs!");
+        }
+        if (from == null || to == null || step == null) {
+            throw new BadRequestException("from, to and step are required!");
+        }
+        User user = findUserById(id);
+        long fromMillis = from.toInstant(ZoneOffset.UTC).toEpochMilli();
+        long toMillis = to.toInstant(ZoneOffset.UTC).toEpochMilli();
+        String resolution = step.toLowerCase().trim();
+        int bucketCount = playRollups.bucketCount(fromMillis, toMillis, resolution);
+        long bucketMillis = playRollups.bucketMillis(resolution);
+        long firstBucket = Math.floorDiv(fromMillis, bucketMillis) * bucketMillis;
+        List<LocalDateTime> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(LocalDateTime.ofEpochSecond((firstBucket + i * bucketMillis) / 1000, 0, ZoneOffset.UTC));
+        }
+        List<SongPlaysDTO> songs = new ArrayList<>();
+        for (Song song : user.getSongs()) {
+            int[] plays = playRollups.plays(song.getId(), fromMillis, toMillis, resolution);
+            long total = 0;
+            for (int count : plays) {
+                total += count;
+            }
+            songs.add(new SongPlaysDTO(song.getId(), song.getTitle(), total, plays));
+        }
+        return new ResponseSongStatsDTO(from, to, resolution, buckets, songs);
+    }
+
     public String verifyAccount(String code) {
         Optional<User> optionalUser = userRepository.findUserByVerificationCode(code);
         if (optionalUser.isPresent()) {
@@ -277,6 +350,11 @@ public class UserService extends AbstractService {
 
     public List<UserWithoutPWithSongsDTO> getUserByName(String userName) {
         List<User> users = userRepository.findByKeyword(userName).stream().collect(Collectors.toList());
+        if (users.isEmpty()) {
+            List<Long> ids = searchService.fuzzyUserIds(userName);
+            Map<Long, User> byId = userRepository.findAllById(ids).stream().collect(Collectors.toMap(User::getId, user -> user));
+            users = ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+        }
         List<UserWithoutPWithSongsDTO> dto = users.
                 stream().
                 map(user -> modelMapper.map(user, UserWithoutPWithSongsDTO.class)).
@@ -295,46 +373,45 @@ public class UserService extends AbstractService {
 
     public String followUser(long followerId, long followedId) {
         User followedUser = findUserById(followedId);
-        User follower = findUserById(followerId);
+        findUserById(followerId);
         if (followedId == followerId) {
             throw new BadRequestException("You can not follow yourself!");
         }
-        boolean isHere = false;
-        for (Long l : userRepository.getFollowingUsersIds(followerId)) {
-            if (l.equals(followedId)) {
-                isHere = true;
-                break;
-            }
-        }
-        if (isHere) {
+        if (!followerGraph.follow(followerId, followedId)) {
             throw new BadRequestException("You already followed this user!");
         }
-        follower.getFollowing().add(followedUser);
-        userRepository.save(follower);
+        afterCommit(() -> eventBus.publishUser(EventType.FOLLOW, followerId, followedId));
         return "You followed successfully " + followedUser.getFirstName() + " " + followedUser.getLastName();
     }
 
     public String unfollowUser(long followerId, long followedId) {
         User followedUser = findUserById(followedId);
-        User follower = findUserById(followerId);
+        findUserById(followerId);
         if (followedId == followerId) {
             throw new BadRequestException("You can not unfollow yourself!");
         }
-        boolean isHere = false;
-        for (Long l : userRepository.getFollowingUsersIds(followerId)) {
-            if (l.equals(followedId)) {
-                isHere = true;
-                break;
-            }
-        }
-        if (!isHere) {
+        if (!followerGraph.unfollow(followerId, followedId)) {
             throw new BadRequestException("You can not unfollow user that u are not following");
         }
-        follower.getFollowing().remove(followedUser);
-        userRepository.save(follower);
+        afterCommit(() -> eventBus.publishUser(EventType.UNFOLLOW, followerId, followedId));
         return "You have unfollowed " + followedUser.getFirstName() + " " + followedUser.getLastName();
     }
 
+    public ResponseAvailabilityDTO checkAvailability(String username, String email) {
+        if (username == null && email == null) {
+            throw new BadRequestException("Username or email is required!");
+        }
+        Boolean usernameAvailable = username == null ? null : !userAvailability.usernameTaken(username);
+        Boolean emailAvailable = email == null ? null : !userAvailability.emailTaken(email);
+        return new ResponseAvailabilityDTO(username, usernameAvailable, email, emailAvailable);
+    }
+
+    public ResponseFollowStatsDTO getFollowStats(long userId) {
+        findUserById(userId);
+        return new ResponseFollowStatsDTO(userId, followerGraph.followerCount(userId),
+                followerGraph.followingCount(userId), followerGraph.mutuals(userId));
+    }
+
     public Page<UserWithoutPDTO> findAllUsersWithPagination(int offset, int pageSize) {
         Page<UserWithoutPDTO> users = userRepository.findAll(PageRequest.of(offset, pageSize)).
                 map(user -> modelMapper.map(user, UserWithoutPDTO.class));
@@ -368,12 +445,14 @@ public class UserService extends AbstractService {
                 .map(song -> modelMapper.map(song, ResponseSongDTO.class))
                 .collect(Collectors.toList());
         suitForUser.put("Five of most played songs", mostListened);
-        List<ResponseSongDTO> mostLiked = songRepository.findFiveMostLikedForUser(userId)
+        List<Song> lastLiked = songRepository.findFiveMostLikedForUser(userId);
+        List<ResponseSongDTO> mostLiked = lastLiked
                 .stream()
                 .map(song -> modelMapper.map(song, ResponseSongDTO.class))
                 .collect(Collectors.toList());
         suitForUser.put("Last five liked songs", mostLiked);
-        String mostListenedGenreForUser = songRepository.mostListenedGenreForUser(userId);
+        suitForUser.put("Because you liked", becauseYouLiked(lastLiked));
+        String mostListenedGenreForUser = genreHistograms.topGenreForUser(userId);
         List<ResponseSongDTO> suitableForUser = songRepository.findFiveSuitableForUser(mostListenedGenreForUser)
                 .stream()
                 .map(song -> modelMapper.map(song, ResponseSongDTO.class))
@@ -383,6 +462,23 @@ public class UserService extends AbstractService {
         return suitForUser;
     }
 
+    // neighbours of the most recently liked songs first, without songs the user already likes
+    private List<ResponseSongDTO> becauseYouLiked(List<Song> lastLiked) {
+        Set<Long> liked = lastLiked.stream().map(Song::getId).collect(Collectors.toSet());
+        Set<Long> picked = new LinkedHashSet<>();
+        for (Song song : lastLiked) {
+            for (long similar : songSimilarity.similarTo(song.getId(), BECAUSE_YOU_LIKED_SONGS)) {
+                if (picked.size() < BECAUSE_YOU_LIKED_SONGS && !liked.contains(similar)) {
+                    picked.add(similar);
+                }
+            }
+        }
+        return findAllInOrder(new ArrayList<>(picked))
+                .stream()
+                .map(song -> modelMapper.map(song, ResponseSongDTO.class))
+                .collect(Collectors.toList());
+    }
+
     public HashMap<String, List<ResponseSongDTO>> homePageForNonLoged() {
         HashMap<String, List<ResponseSongDTO>> responseForNonLoggedUsers = new HashMap<>();
         responseForNonLoggedUsers.put("Most listened songs at all", new ArrayList<>());
@@ -7,6 +7,7 @@ import com.example.soundcloud.models.dto.user.RegisterDTO;
 import com.example.soundcloud.models.exceptions.BadRequestException;
 import com.example.soundcloud.models.repositories.PlaylistRepository;
 import com.example.soundcloud.models.repositories.UserRepository;
+import com.example.soundcloud.service.cache.UserAvailability;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -21,6 +22,8 @@ public class Utility {
     private UserRepository userRepository;
     @Autowired
     protected PlaylistRepository playlistRepository;
+    @Autowired
+    private UserAvailability userAvailability;
 
     protected boolean validateRegistration(RegisterDTO u) {
         if (userExist(u.getEmail(), u.getUsername()) &&
@@ -159,7 +162,7 @@ public class Utility {
     }
 
     protected boolean userExist(String email, String username) {
-        if (userRepository.findAllByEmail(email).size() > 0 || userRepository.findAllByUsername(username).size() > 0) {
+        if (userAvailability.emailTaken(email) || userAvailability.usernameTaken(username)) {
             throw new BadRequestException("User already exist!");
         } else {
             return true;
@@ -167,7 +170,7 @@ public class Utility {
     }
 
     protected boolean userExist(String username) {
-        if (userRepository.findAllByUsername(username).size() > 0) {
+        if (userAvailability.usernameTaken(username)) {
             return true;
         } else {
             return false;
@@ -178,7 +181,7 @@ public class Utility {
         if (userRepository.findById(id).get().getUsername().equals(dto.getUsername())) {
             return true;
         }
-        if (userRepository.findAllByUsername(dto.getUsername()).size() > 0) {
+        if (userAvailability.usernameTaken(dto.getUsername())) {
             throw new BadRequestException("This username already exist!");
         } else {
             return true;
@@ -189,7 +192,7 @@ public class Utility {
         if (userRepository.findById(id).get().getEmail().equals(dto.getEmail())) {
             return true;
         }
-        if (userRepository.findAllByEmail(dto.getEmail()).size() > 0) {
+        if (userAvailability.emailTaken(dto.getEmail())) {
             throw new BadRequestException("This email already exist!");
         } else {
             return true;
@@ -0,0 +1,159 @@
+package com.example.soundcloud.service.cache;
+
+import com.example.soundcloud.service.UserService;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Every change to a user's feed takes a generation from a shared clock and every computed feed is stamped with the
+// generation it was read at, so a feed is served only when it was computed after the user's last change. Changes
+// arrive as events published after their transaction committed, and a compute that read the clock after a change
+// sees it in the database. A slow compute that started before a change can not overwrite a newer feed, and the
+// change stays marked until such a compute has finished.
+@Component
+public class HomeFeedCache implements DomainEventHandler {
+
+    private static final long MAX_BYTES = 32 * 1024 * 1024;
+    private static final long MAX_AGE_MILLIS = 10 * 60 * 1000;
+    private static final long REFRESH_DELAY_MILLIS = 2 * 1000;
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // access ordered, so the least recently served feed is evicted first once the budget is exceeded
+    private final LinkedHashMap<Long, CachedFeed> feeds = new LinkedHashMap<>(1024, 0.75f, true);
+    private final AtomicLong clock = new AtomicLong();
+    // user -> generation of the last change not yet refreshed
+    private final Map<Long, Long> dirtyUsers = new ConcurrentHashMap<>();
+    // user -> number of computes in flight
+    private final Map<Long, Integer> computing = new ConcurrentHashMap<>();
+    private long usedBytes;
+
+    public byte[] getHomePage(long userId) {
+        CachedFeed feed;
+        synchronized (feeds) {
+            feed = feeds.get(userId);
+        }
+        Long changed = dirtyUsers.get(userId);
+        if (feed != null && System.currentTimeMillis() - feed.computedAt < MAX_AGE_MILLIS
+                && (changed == null || changed <= feed.generation)) {
+            return feed.json;
+        }
+        return compute(userId);
+    }
+
+    // the feed of a user depends on their own likes, dislikes and listens
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        switch (event.getType()) {
+            case LISTEN:
+            case LIKE:
+            case UNLIKE:
+            case DISLIKE:
+            case UNDISLIKE:
+                if (event.getUserId() != 0) {
+                    markDirty(event.getUserId());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void markDirty(long userId) {
+        dirtyUsers.put(userId, clock.incrementAndGet());
+    }
+
+    // a mark is only dropped if no newer change came in meanwhile
+    @Scheduled(fixedDelay = REFRESH_DELAY_MILLIS)
+    public void refreshDirtyFeeds() {
+        for (Map.Entry<Long, Long> dirty : dirtyUsers.entrySet()) {
+            long userId = dirty.getKey();
+            boolean cached;
+            synchronized (feeds) {
+                cached = feeds.containsKey(userId);
+            }
+            if (cached) {
+                try {
+                    compute(userId);
+                } catch (RuntimeException e) {
+                    evict(userId);
+                }
+                dirtyUsers.remove(userId, dirty.getValue());
+            } else if (!computing.containsKey(userId)) {
+                // feeds that are not cached will be computed on the next visit anyway
+                dirtyUsers.remove(userId, dirty.getValue());
+            }
+        }
+    }
+
+    public void evict(long userId) {
+        synchronized (feeds) {
+            CachedFeed removed = feeds.remove(userId);
+            if (removed != null) {
+                usedBytes -= removed.json.length;
+            }
+        }
+    }
+
+    private byte[] compute(long userId) {
+        computing.merge(userId, 1, Integer::sum);
+        try {
+            long generation = clock.get();
+            byte[] json;
+            try {
+                json = objectMapper.writeValueAsBytes(userService.homePageForLogged(userId));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+            return store(userId, new CachedFeed(json, System.currentTimeMillis(), generation));
+        } finally {
+            computing.computeIfPresent(userId, (id, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    // keeps the cached feed if it was computed at a later generation
+    private byte[] store(long userId, CachedFeed feed) {
+        synchronized (feeds) {
+            CachedFeed previous = feeds.get(userId);
+            if (previous != null && previous.generation > feed.generation) {
+                return previous.json;
+            }
+            feeds.put(userId, feed);
+            if (previous != null) {
+                usedBytes -= previous.json.length;
+            }
+            usedBytes += feed.json.length;
+            Iterator<Map.Entry<Long, CachedFeed>> it = feeds.entrySet().iterator();
+            while (usedBytes > MAX_BYTES && it.hasNext()) {
+                usedBytes -= it.next().getValue().json.length;
+                it.remove();
+            }
+        }
+        return feed.json;
+    }
+
+    private static class CachedFeed {
+        private final byte[] json;
+        private final long computedAt;
+        private final long generation;
+
+        private CachedFeed(byte[] json, long computedAt, long generation) {
+            this.json = json;
+            this.computedAt = computedAt;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.soundcloud.service.cache;
+
+import com.example.soundcloud.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Component
+public class HomePageCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HomePageCache.class);
+    private static final long TTL_MILLIS = 60 * 1000;
+    // refreshing well before the TTL runs out means visitors never wait for the aggregations
+    private static final long REFRESH_AHEAD_MILLIS = 45 * 1000;
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private volatile CachedPage current;
+    private final AtomicReference<CompletableFuture<CachedPage>> inFlight = new AtomicReference<>();
+
+    public byte[] getNonLoggedHomePage() {
+        return getNonLoggedHomePage(System.currentTimeMillis());
+    }
+
+    byte[] getNonLoggedHomePage(long now) {
+        CachedPage page = current;
+        if (page != null && now - page.computedAt < TTL_MILLIS) {
+            return page.json;
+        }
+        try {
+            return load().join().json;
+        } catch (CompletionException e) {
+            if (page != null) {
+                return page.json;
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedRate = REFRESH_AHEAD_MILLIS)
+    public void refreshAhead() {
+        try {
+            load().join();
+        } catch (CompletionException e) {
+            LOGGER.warn("Refreshing the home page failed, serving the previous one", e.getCause());
+        }
+    }
+
+    // concurrent misses share the future of the computation that is already running
+    private CompletableFuture<CachedPage> load() {
+        CompletableFuture<CachedPage> mine = new CompletableFuture<>();
+        CompletableFuture<CachedPage> running = inFlight.compareAndExchange(null, mine);
+        if (running != null) {
+            return running;
+        }
+        try {
+            CachedPage page = new CachedPage(objectMapper.writeValueAsBytes(userService.homePageForNonLoged()),
+                    System.currentTimeMillis());
+            current = page;
+            mine.complete(page);
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+        } finally {
+            inFlight.set(null);
+        }
+        return mine;
+    }
+
+    private static class CachedPage {
+        private final byte[] json;
+        private final long computedAt;
+
+        private CachedPage(byte[] json, long computedAt) {
+            this.json = json;
+            this.computedAt = computedAt;
+        }
+    }
+}
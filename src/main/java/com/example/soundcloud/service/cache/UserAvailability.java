@@ -0,0 +1,132 @@
+package com.example.soundcloud.service.cache;
+
+import com.example.soundcloud.models.dao.UserDAO;
+import com.example.soundcloud.service.stats.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Bloom filters over every username and email in use, in front of the users table. A miss means the name is
+// definitely free and costs no query; only probable hits are checked with an indexed existence query. Names are
+// added when they are registered or edited in, before the user is saved. Names given up by an edit stay in the
+// filters as false positives until the next rebuild, which happens at startup and whenever a filter holds more
+// names than it was sized for. The filters are case insensitive like the column collation.
+@Component
+public class UserAvailability {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserAvailability.class);
+    private static final long MIN_EXPECTED_NAMES = 10_000;
+    private static final double FALSE_POSITIVE_RATE = 0.001;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    // null until the first build, when every check goes to the table
+    private volatile Filters filters;
+    // names added while a build reads the table, added again to the new filters; guarded by this
+    private List<String[]> addedWhileBuilding = new ArrayList<>();
+    private final Object building = new Object();
+
+    public boolean usernameTaken(String username) {
+        Filters f = filters;
+        if (f != null && !f.usernames.mightContain(key(username))) {
+            return false;
+        }
+        return userDAO.usernameExists(username);
+    }
+
+    public boolean emailTaken(String email) {
+        Filters f = filters;
+        if (f != null && !f.emails.mightContain(key(email))) {
+            return false;
+        }
+        return userDAO.emailExists(email);
+    }
+
+    public synchronized void add(String username, String email) {
+        Filters f = filters;
+        if (f != null) {
+            f.add(username, email);
+        }
+        if (addedWhileBuilding != null) {
+            addedWhileBuilding.add(new String[]{username, email});
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        userDAO.createLookupIndexes();
+        rebuild();
+    }
+
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void rebuildIfFull() {
+        Filters f = filters;
+        if (f != null && (f.usernames.approximateKeys() > f.usernames.expectedKeys()
+                || f.emails.approximateKeys() > f.emails.expectedKeys())) {
+            rebuild();
+        }
+    }
+
+    // one build at a time, the startup build and a scheduled one may overlap
+    private void rebuild() {
+        synchronized (building) {
+            synchronized (this) {
+                if (addedWhileBuilding == null) {
+                    addedWhileBuilding = new ArrayList<>();
+                }
+            }
+            long started = System.currentTimeMillis();
+            int users = userDAO.countUsers();
+            Filters built = new Filters(Math.max(MIN_EXPECTED_NAMES, 2L * users));
+            userDAO.scanUsernamesAndEmails(rs -> built.add(rs.getString("username"), rs.getString("email")));
+            synchronized (this) {
+                for (String[] names : addedWhileBuilding) {
+                    built.add(names[0], names[1]);
+                }
+                addedWhileBuilding = null;
+                filters = built;
+            }
+            LOGGER.info("Username and email filters for {} users built in {} ms", users,
+                    System.currentTimeMillis() - started);
+        }
+    }
+
+    // FNV-1a of the lower cased name, the filter mixes it further
+    private static long key(String name) {
+        String normalized = name.trim().toLowerCase(Locale.ROOT);
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static class Filters {
+        private final BloomFilter usernames;
+        private final BloomFilter emails;
+
+        private Filters(long expectedNames) {
+            usernames = new BloomFilter(expectedNames, FALSE_POSITIVE_RATE);
+            emails = new BloomFilter(expectedNames, FALSE_POSITIVE_RATE);
+        }
+
+        private void add(String username, String email) {
+            if (username != null) {
+                usernames.put(key(username));
+            }
+            if (email != null) {
+                emails.put(key(email));
+            }
+        }
+    }
+}
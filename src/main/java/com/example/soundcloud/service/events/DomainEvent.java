@@ -0,0 +1,30 @@
+package com.example.soundcloud.service.events;
+
+import lombok.Getter;
+
+// One preallocated slot of the event bus. Slots are reused, so a handler must copy what it keeps past onEvent.
+// targetId is the followed user for follows and the playlist for playlist changes.
+@Getter
+public class DomainEvent {
+
+    private EventType type;
+    private long time;
+    private long userId;
+    private long songId;
+    private long targetId;
+    private String genre;
+    private String country;
+    private long clientHash;
+
+    void set(EventType type, long time, long userId, long songId, long targetId, String genre, String country,
+             long clientHash) {
+        this.type = type;
+        this.time = time;
+        this.userId = userId;
+        this.songId = songId;
+        this.targetId = targetId;
+        this.genre = genre;
+        this.country = country;
+        this.clientHash = clientHash;
+    }
+}
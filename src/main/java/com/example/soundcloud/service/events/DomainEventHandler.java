@@ -0,0 +1,8 @@
+package com.example.soundcloud.service.events;
+
+// Every bean implementing this gets its own consumer thread on the event bus. endOfBatch marks the last event
+// that was available when the batch started, which is the place for work worth amortizing over many events.
+public interface DomainEventHandler {
+
+    void onEvent(DomainEvent event, boolean endOfBatch);
+}
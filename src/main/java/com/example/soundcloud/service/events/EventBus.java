@@ -0,0 +1,243 @@
+package com.example.soundcloud.service.events;
+
+import com.example.soundcloud.models.dto.stats.EventConsumerDTO;
+import com.example.soundcloud.models.dto.stats.ResponseEventBusDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// In-process event bus on a ring of preallocated slots, after the LMAX disruptor. A producer claims a sequence
+// with one CAS on the cursor, fills the slot of that sequence and publishes it by recording the sequence's lap in
+// the availability array. Every handler has its own thread and sequence: it processes everything published up to
+// the cursor as one batch and then advances its sequence, and producers may not lap the slowest handler.
+// When the ring is full, producers wait up to the block timeout (policy "block") or drop the event ("drop").
+// Only derived state hangs off the bus: charts, sketches, rollups, the cube, feeds and caches. A dropped event
+// is missing from those until they are rebuilt, while the listen log, the tables and the counters are written by
+// the services themselves. Services publish only after their transaction commits, so rolled back changes never
+// reach a handler.
+@Component
+public class EventBus {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventBus.class);
+    private static final long IDLE_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    @Autowired
+    private ObjectProvider<DomainEventHandler> handlers;
+    @Value("${events.ring-size:16384}")
+    private int ringSize;
+    @Value("${events.backpressure:block}")
+    private String backpressure;
+    @Value("${events.block-timeout-millis:50}")
+    private long blockTimeoutMillis;
+
+    private DomainEvent[] slots;
+    private AtomicIntegerArray published;
+    private int mask;
+    private int laps;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final AtomicLong dropped = new AtomicLong();
+    // until the consumers start, events queue up in the ring as if a consumer at -1 was stuck
+    private volatile Consumer[] consumers = new Consumer[0];
+    private volatile boolean started;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        int size = Integer.highestOneBit(Math.max(2, ringSize - 1)) << 1;
+        slots = new DomainEvent[size];
+        published = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new DomainEvent();
+            published.set(i, -1);
+        }
+        mask = size - 1;
+        laps = Integer.numberOfTrailingZeros(size);
+    }
+
+    // Readiness is published after every ApplicationReadyEvent listener has returned, so handlers only see
+    // events once their startup loads and replays are done. Events published before queue up in the ring.
+    @EventListener
+    public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC) {
+            start();
+        }
+    }
+
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        List<Consumer> created = new ArrayList<>();
+        handlers.orderedStream().forEach(handler -> created.add(new Consumer(handler)));
+        running = true;
+        consumers = created.toArray(new Consumer[0]);
+        started = true;
+        for (Consumer consumer : consumers) {
+            consumer.thread.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Consumer consumer : consumers) {
+            LockSupport.unpark(consumer.thread);
+        }
+        for (Consumer consumer : consumers) {
+            try {
+                consumer.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // the time is the one the play was appended to the listen log with
+    public void publishListen(long timeMillis, long userId, long songId, String genre, String country,
+                              long clientHash) {
+        publish(EventType.LISTEN, timeMillis, userId, songId, 0, genre, country, clientHash);
+    }
+
+    public void publishSong(EventType type, long userId, long songId, String genre, String country) {
+        publish(type, System.currentTimeMillis(), userId, songId, 0, genre, country, 0);
+    }
+
+    public void publishUser(EventType type, long userId, long targetUserId) {
+        publish(type, System.currentTimeMillis(), userId, 0, targetUserId, null, null, 0);
+    }
+
+    public void publishPlaylist(EventType type, long userId, long playlistId, long songId) {
+        publish(type, System.currentTimeMillis(), userId, songId, playlistId, null, null, 0);
+    }
+
+    private void publish(EventType type, long timeMillis, long userId, long songId, long targetId, String genre,
+                         String country, long clientHash) {
+        long sequence = claim();
+        if (sequence < 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+        slots[(int) sequence & mask].set(type, timeMillis, userId, songId, targetId, genre, country,
+                clientHash);
+        published.lazySet((int) sequence & mask, (int) (sequence >>> laps));
+    }
+
+    private long claim() {
+        boolean block = !"drop".equalsIgnoreCase(backpressure);
+        long deadline = 0;
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            if (next - slots.length > slowestConsumer(current)) {
+                if (!block) {
+                    return -1;
+                }
+                long now = System.nanoTime();
+                if (deadline == 0) {
+                    deadline = now + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+                } else if (now - deadline > 0) {
+                    return -1;
+                }
+                LockSupport.parkNanos(BACKOFF_NANOS);
+                continue;
+            }
+            if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private long slowestConsumer(long cursorValue) {
+        if (!started) {
+            return -1;
+        }
+        long slowest = cursorValue;
+        for (Consumer consumer : consumers) {
+            slowest = Math.min(slowest, consumer.sequence.get());
+        }
+        return slowest;
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == (int) (sequence >>> laps);
+    }
+
+    public ResponseEventBusDTO metrics() {
+        long head = cursor.get();
+        List<EventConsumerDTO> result = new ArrayList<>();
+        for (Consumer consumer : consumers) {
+            long sequence = consumer.sequence.get();
+            result.add(new EventConsumerDTO(consumer.name, sequence, head - sequence, consumer.processed.get(),
+                    consumer.batches.get(), consumer.maxBatch, consumer.errors.get()));
+        }
+        return new ResponseEventBusDTO(slots.length, head + 1, dropped.get(), backpressure, result);
+    }
+
+    private class Consumer implements Runnable {
+        private final DomainEventHandler handler;
+        private final String name;
+        private final Thread thread;
+        private final AtomicLong sequence = new AtomicLong(-1);
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private volatile long maxBatch;
+
+        private Consumer(DomainEventHandler handler) {
+            this.handler = handler;
+            this.name = ClassUtils.getUserClass(handler).getSimpleName();
+            this.thread = new Thread(this, "events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (running || next <= cursor.get()) {
+                long available = cursor.get();
+                long last = next - 1;
+                // sequences are claimed in order but may be published out of order, a batch ends at the first gap
+                while (last < available && isPublished(last + 1)) {
+                    last++;
+                }
+                if (last < next) {
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                for (long s = next; s <= last; s++) {
+                    try {
+                        handler.onEvent(slots[(int) s & mask], s == last);
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                        LOGGER.error("Event handler {} failed", name, e);
+                    }
+                }
+                long size = last - next + 1;
+                processed.addAndGet(size);
+                batches.incrementAndGet();
+                if (size > maxBatch) {
+                    maxBatch = size;
+                }
+                sequence.lazySet(last);
+                next = last + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.soundcloud.service.events;
+
+public enum EventType {
+    LISTEN,
+    LIKE,
+    UNLIKE,
+    DISLIKE,
+    UNDISLIKE,
+    COMMENT,
+    FOLLOW,
+    UNFOLLOW,
+    UPLOAD,
+    SONG_EDIT,
+    SONG_DELETE,
+    PLAYLIST_ADD,
+    PLAYLIST_REMOVE
+}
@@ -0,0 +1,68 @@
+package com.example.soundcloud.service.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bounded lock-free ring of packed heartbeats for many producers and a single consumer. Every slot carries a
+// sequence number: a producer claims a position with one CAS and publishes the slot by advancing its sequence,
+// the consumer only reads slots whose sequence says they are published, and frees them the same way.
+public class HeartbeatRing {
+
+    private final long[] values;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    public HeartbeatRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        values = new long[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    // false when the ring is full, the caller decides whether to drop or retry
+    public boolean offer(long value) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    values[slot] = value;
+                    sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    // single consumer only
+    public int drain(long[] out) {
+        long position = head;
+        int count = 0;
+        while (count < out.length) {
+            int slot = (int) position & mask;
+            if (sequences.get(slot) != position + 1) {
+                break;
+            }
+            out[count++] = values[slot];
+            sequences.lazySet(slot, position + mask + 1);
+            position++;
+        }
+        head = position;
+        return count;
+    }
+
+    public long size() {
+        return Math.max(0, tail.get() - head);
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.soundcloud.service.events;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Append-only log of every play as 32 byte records (time, song id, user id, client hash) in memory-mapped segment
+// files. A segment is named after the time of its first record, so a scan can skip segments outside its range,
+// and the unused tail of a segment stays zero, which is how the write position is found again after a restart.
+// The log is the source of truth for plays and is written synchronously once the play is committed, it never
+// depends on the event bus. Times never go backwards, so mark() splits the log into what a replay reads and what
+// it gets from the bus.
+@Component
+public class ListenLog {
+
+    static final int RECORD_BYTES = 32;
+    private static final int RECORDS_PER_SEGMENT = 2 * 1024 * 1024;
+    private static final long SEGMENT_BYTES = (long) RECORD_BYTES * RECORDS_PER_SEGMENT;
+    private static final String SUFFIX = ".log";
+
+    @Value("${listens.log.dir:listens}")
+    private String directory;
+    @Value("${listens.log.retention-days:400}")
+    private int retentionDays;
+
+    private File dir;
+    // written under the lock, read without it by force
+    private volatile MappedByteBuffer active;
+    private long activeStart;
+    private int activeRecords;
+    // no record appended from now on gets a smaller time
+    private long floorMillis;
+
+    @PostConstruct
+    public void open() throws IOException {
+        dir = new File(directory);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Can not create the listen log directory " + dir.getAbsolutePath());
+        }
+        File[] segments = segments();
+        if (segments.length > 0) {
+            File last = segments[segments.length - 1];
+            activeStart = startOf(last);
+            active = map(last, FileChannel.MapMode.READ_WRITE);
+            activeRecords = countRecords(active);
+            if (activeRecords > 0) {
+                floorMillis = active.getLong((activeRecords - 1) * RECORD_BYTES);
+            }
+        }
+    }
+
+    // returns the time of the record, which is also the time the play is published with
+    public synchronized long append(long songId, long userId, long clientHash) {
+        long timeMillis = Math.max(System.currentTimeMillis(), floorMillis);
+        floorMillis = timeMillis;
+        if (active == null || activeRecords == RECORDS_PER_SEGMENT) {
+            roll(timeMillis);
+        }
+        int position = activeRecords * RECORD_BYTES;
+        // the time goes last: a record only counts once its non-zero time is written
+        active.putLong(position + 8, songId);
+        active.putLong(position + 16, userId);
+        active.putLong(position + 24, clientHash);
+        active.putLong(position, timeMillis);
+        activeRecords++;
+        return timeMillis;
+    }
+
+    // Every record appended before the call has a time below the returned cutoff and every record appended after
+    // it has a time at or above it. A replay reads [from, cutoff) and skips bus events before the cutoff.
+    public synchronized long mark() {
+        long cutoff = Math.max(System.currentTimeMillis(), floorMillis + 1);
+        floorMillis = cutoff;
+        return cutoff;
+    }
+
+    // reads the records with fromMillis <= time < toMillis segment by segment, in the order they were appended
+    public void scan(long fromMillis, long toMillis, ListenVisitor visitor) {
+        File[] segments = segments();
+        for (int i = 0; i < segments.length; i++) {
+            if (startOf(segments[i]) >= toMillis) {
+                break;
+            }
+            if (i + 1 < segments.length && startOf(segments[i + 1]) <= fromMillis) {
+                continue;
+            }
+            MappedByteBuffer segment;
+            try {
+                segment = map(segments[i], FileChannel.MapMode.READ_ONLY);
+            } catch (IOException e) {
+                // removed by retention while we were scanning
+                continue;
+            }
+            for (int position = 0; position < SEGMENT_BYTES; position += RECORD_BYTES) {
+                long time = segment.getLong(position);
+                if (time == 0) {
+                    break;
+                }
+                if (time >= fromMillis && time < toMillis) {
+                    visitor.visit(time, segment.getLong(position + 8), segment.getLong(position + 16),
+                            segment.getLong(position + 24));
+                }
+            }
+        }
+    }
+
+    // the start of the oldest segment still kept, Long.MAX_VALUE while the log is empty
+    public long oldestMillis() {
+        File[] segments = segments();
+        return segments.length == 0 ? Long.MAX_VALUE : startOf(segments[0]);
+    }
+
+    // Not under the append lock, a flush of a busy segment can take a while and appends must not wait for it. Records
+    // are written with absolute puts, so flushing the mapping while one is written only has to catch it next time.
+    @Scheduled(fixedDelay = 1000)
+    public void force() {
+        MappedByteBuffer segment = active;
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    @Scheduled(cron = "0 10 * * * *")
+    public void deleteExpiredSegments() {
+        long expiry = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+        File[] segments = segments();
+        // a segment holds records up to the start of the next one; the newest segment is always kept
+        for (int i = 0; i + 1 < segments.length; i++) {
+            if (startOf(segments[i + 1]) < expiry) {
+                segments[i].delete();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        force();
+    }
+
+    private void roll(long timeMillis) {
+        force();
+        // names have to stay unique and ordered even if the clock does not move between two segments
+        long start = Math.max(timeMillis, activeStart + 1);
+        File segment = new File(dir, String.format("%020d%s", start, SUFFIX));
+        try {
+            active = map(segment, FileChannel.MapMode.READ_WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not create listen log segment " + segment, e);
+        }
+        activeStart = start;
+        activeRecords = 0;
+    }
+
+    private File[] segments() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static long startOf(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static MappedByteBuffer map(File segment, FileChannel.MapMode mode) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+             FileChannel channel = file.getChannel()) {
+            // the mapping stays valid after the channel is closed
+            return channel.map(mode, 0, SEGMENT_BYTES);
+        }
+    }
+
+    // written records form a prefix of the segment, so the first empty slot can be found by binary search
+    private static int countRecords(MappedByteBuffer segment) {
+        int lo = 0;
+        int hi = RECORDS_PER_SEGMENT;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (segment.getLong(mid * RECORD_BYTES) != 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.soundcloud.service.events;
+
+public interface ListenVisitor {
+
+    void visit(long timeMillis, long songId, long userId, long clientHash);
+}
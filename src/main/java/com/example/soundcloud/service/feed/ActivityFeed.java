@@ -0,0 +1,217 @@
+package com.example.soundcloud.service.feed;
+
+import com.example.soundcloud.models.dao.FeedDAO;
+import com.example.soundcloud.models.dto.feed.FeedItemDTO;
+import com.example.soundcloud.models.dto.feed.ResponseFeedDTO;
+import com.example.soundcloud.models.entities.Song;
+import com.example.soundcloud.models.entities.User;
+import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.models.repositories.SongRepository;
+import com.example.soundcloud.models.repositories.UserRepository;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import com.example.soundcloud.service.events.EventType;
+import com.example.soundcloud.service.social.FollowerGraph;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Activity of followed users, fanned out on write: an upload, like or playlist add is appended to the timeline
+// of every follower of its author, so reading a feed is a scan of one ring. Authors with at least the fan-out
+// threshold of followers would make one event cost that many writes, so their activity goes only to their own
+// outbox, and readers merge the outboxes of the big accounts they follow into their timeline on read.
+// Timelines are written behind to feed_entries and loaded back at startup.
+@Component
+public class ActivityFeed implements DomainEventHandler {
+
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final EventType[] TYPES = EventType.values();
+
+    @Autowired
+    private FeedDAO feedDAO;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private SongRepository songRepository;
+    @Autowired
+    private FollowerGraph followerGraph;
+    @Value("${feed.timeline-size:200}")
+    private int timelineSize;
+    @Value("${feed.fan-out-threshold:5000}")
+    private int fanOutThreshold;
+
+    private final Map<Long, Timeline> inboxes = new ConcurrentHashMap<>();
+    private final Map<Long, Timeline> outboxes = new ConcurrentHashMap<>();
+    private final AtomicLong lastEventId = new AtomicLong();
+    private final Queue<Object[]> unsaved = new ConcurrentLinkedQueue<>();
+    private final Set<Long> touchedInboxes = ConcurrentHashMap.newKeySet();
+    private final Set<Long> touchedOutboxes = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        switch (event.getType()) {
+            case UPLOAD:
+            case LIKE:
+            case PLAYLIST_ADD:
+                fanOut(event);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public ResponseFeedDTO feed(long userId, long cursor, int size) {
+        if (size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_PAGE_SIZE + "!");
+        }
+        long before = cursor <= 0 ? Long.MAX_VALUE : cursor;
+        long[] following = followerGraph.following(userId);
+        List<FeedEntry> entries = new ArrayList<>();
+        boolean more = false;
+        // entries of users who were unfollowed stay in the ring until they are overwritten, they are skipped
+        Timeline inbox = inboxes.get(userId);
+        if (inbox != null) {
+            more = inbox.before(before, size, following, entries) == size;
+        }
+        for (long followed : following) {
+            Timeline outbox = outboxes.get(followed);
+            if (outbox != null) {
+                more |= outbox.before(before, size, null, entries) == size;
+            }
+        }
+        entries.sort(Comparator.comparingLong((FeedEntry e) -> e.eventId).reversed());
+        if (entries.size() > size) {
+            entries = entries.subList(0, size);
+            more = true;
+        }
+        long nextCursor = more ? entries.get(entries.size() - 1).eventId : 0;
+        return new ResponseFeedDTO(hydrate(entries), nextCursor);
+    }
+
+    private void fanOut(DomainEvent event) {
+        long actorId = event.getUserId();
+        if (actorId == 0) {
+            return;
+        }
+        long eventId = lastEventId.incrementAndGet();
+        byte type = (byte) event.getType().ordinal();
+        long[] followers = followerGraph.followers(actorId);
+        if (followers.length >= fanOutThreshold) {
+            append(outboxes, touchedOutboxes, true, actorId, eventId, type, event);
+            return;
+        }
+        for (long followerId : followers) {
+            append(inboxes, touchedInboxes, false, followerId, eventId, type, event);
+        }
+    }
+
+    private void append(Map<Long, Timeline> timelines, Set<Long> touched, boolean outbox, long ownerId,
+                        long eventId, byte type, DomainEvent event) {
+        timelines.computeIfAbsent(ownerId, id -> new Timeline(timelineSize))
+                .add(eventId, type, event.getUserId(), event.getSongId(), event.getTargetId(), event.getTime());
+        unsaved.add(new Object[]{ownerId, outbox ? 1 : 0, eventId, event.getType().name(), event.getUserId(),
+                event.getSongId(), event.getTargetId(), new Timestamp(event.getTime())});
+        touched.add(ownerId);
+    }
+
+    // entries of deleted songs or users are left out of the page
+    private List<FeedItemDTO> hydrate(List<FeedEntry> entries) {
+        Set<Long> songIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (FeedEntry entry : entries) {
+            songIds.add(entry.songId);
+            userIds.add(entry.actorId);
+        }
+        Map<Long, Song> songs = new HashMap<>();
+        songRepository.findAllById(songIds).forEach(song -> songs.put(song.getId(), song));
+        Map<Long, User> users = new HashMap<>();
+        userRepository.findAllById(userIds).forEach(user -> users.put(user.getId(), user));
+        List<FeedItemDTO> items = new ArrayList<>();
+        for (FeedEntry entry : entries) {
+            Song song = songs.get(entry.songId);
+            User actor = users.get(entry.actorId);
+            if (song == null || actor == null) {
+                continue;
+            }
+            EventType type = TYPES[entry.type];
+            items.add(new FeedItemDTO(entry.eventId, type.name(), entry.actorId, actor.getUsername(), song.getId(),
+                    song.getTitle(), song.getArtist(), type == EventType.PLAYLIST_ADD ? entry.targetId : 0,
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.time), ZoneId.systemDefault())));
+        }
+        return items;
+    }
+
+    // event ids continue from the stored ones; the bus delivers events only after this has run, see EventBus
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        feedDAO.createTable();
+        lastEventId.set(feedDAO.maxEventId());
+        feedDAO.scanEntries(rs -> {
+            Map<Long, Timeline> timelines = rs.getInt("outbox") == 1 ? outboxes : inboxes;
+            timelines.computeIfAbsent(rs.getLong("owner_id"), id -> new Timeline(timelineSize))
+                    .add(rs.getLong("event_id"), (byte) EventType.valueOf(rs.getString("type")).ordinal(),
+                            rs.getLong("actor_id"), rs.getLong("song_id"), rs.getLong("target_id"),
+                            rs.getTimestamp("created_at").getTime());
+        });
+    }
+
+    // Inserts the new entries, then deletes the rows that fell out of full rings so the table stays bounded
+    // by the timeline size.
+    @Scheduled(fixedDelay = 5 * 1000)
+    public void flush() {
+        List<Object[]> rows = new ArrayList<>();
+        Object[] row;
+        while ((row = unsaved.poll()) != null) {
+            rows.add(row);
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        feedDAO.saveEntries(rows);
+        List<Object[]> trims = new ArrayList<>();
+        collectTrims(inboxes, touchedInboxes, 0, trims);
+        collectTrims(outboxes, touchedOutboxes, 1, trims);
+        if (!trims.isEmpty()) {
+            feedDAO.trim(trims);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    private void collectTrims(Map<Long, Timeline> timelines, Set<Long> touched, int outbox, List<Object[]> trims) {
+        Iterator<Long> it = touched.iterator();
+        while (it.hasNext()) {
+            long ownerId = it.next();
+            it.remove();
+            Timeline timeline = timelines.get(ownerId);
+            long oldest = timeline == null ? 0 : timeline.oldestIfFull();
+            if (oldest > 0) {
+                trims.add(new Object[]{ownerId, outbox, oldest});
+            }
+        }
+    }
+}
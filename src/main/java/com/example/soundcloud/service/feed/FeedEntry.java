@@ -0,0 +1,19 @@
+package com.example.soundcloud.service.feed;
+
+class FeedEntry {
+    final long eventId;
+    final byte type;
+    final long actorId;
+    final long songId;
+    final long targetId;
+    final long time;
+
+    FeedEntry(long eventId, byte type, long actorId, long songId, long targetId, long time) {
+        this.eventId = eventId;
+        this.type = type;
+        this.actorId = actorId;
+        this.songId = songId;
+        this.targetId = targetId;
+        this.time = time;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.soundcloud.service.feed;
+
+import java.util.Arrays;
+import java.util.List;
+
+// The newest entries of one timeline in a ring of parallel primitive arrays. The arrays start small and double
+// up to the capacity, so the many users who rarely get activity cost a few hundred bytes. Entries are appended
+// with increasing event ids, so the ring is always sorted from oldest to newest.
+class Timeline {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final int capacity;
+    private long[] eventIds;
+    private long[] actors;
+    private long[] songs;
+    private long[] targets;
+    private long[] times;
+    private byte[] types;
+    private int head;
+    private int size;
+
+    Timeline(int capacity) {
+        this.capacity = capacity;
+        allocate(Math.min(capacity, INITIAL_CAPACITY));
+    }
+
+    synchronized void add(long eventId, byte type, long actorId, long songId, long targetId, long time) {
+        if (size == eventIds.length && size < capacity) {
+            grow();
+        }
+        int slot = (head + size) % eventIds.length;
+        if (size == eventIds.length) {
+            // full, the oldest entry is overwritten
+            head = (head + 1) % eventIds.length;
+        } else {
+            size++;
+        }
+        eventIds[slot] = eventId;
+        types[slot] = type;
+        actors[slot] = actorId;
+        songs[slot] = songId;
+        targets[slot] = targetId;
+        times[slot] = time;
+    }
+
+    // Copies up to limit entries older than the cursor, newest first, skipping actors not in the sorted
+    // allowed array when it is given. Returns how many entries were copied.
+    synchronized int before(long cursor, int limit, long[] allowedActors, List<FeedEntry> out) {
+        int copied = 0;
+        for (int i = size - 1; i >= 0 && copied < limit; i--) {
+            int slot = (head + i) % eventIds.length;
+            if (eventIds[slot] >= cursor) {
+                continue;
+            }
+            if (allowedActors != null && Arrays.binarySearch(allowedActors, actors[slot]) < 0) {
+                continue;
+            }
+            out.add(new FeedEntry(eventIds[slot], types[slot], actors[slot], songs[slot], targets[slot], times[slot]));
+            copied++;
+        }
+        return copied;
+    }
+
+    // the oldest event id kept, or 0 while the ring still has room and nothing was dropped
+    synchronized long oldestIfFull() {
+        return size == capacity ? eventIds[head] : 0;
+    }
+
+    private void grow() {
+        int length = eventIds.length;
+        long[] oldEventIds = eventIds;
+        long[] oldActors = actors;
+        long[] oldSongs = songs;
+        long[] oldTargets = targets;
+        long[] oldTimes = times;
+        byte[] oldTypes = types;
+        allocate(Math.min(capacity, length * 2));
+        for (int i = 0; i < size; i++) {
+            int from = (head + i) % length;
+            eventIds[i] = oldEventIds[from];
+            actors[i] = oldActors[from];
+            songs[i] = oldSongs[from];
+            targets[i] = oldTargets[from];
+            times[i] = oldTimes[from];
+            types[i] = oldTypes[from];
+        }
+        head = 0;
+    }
+
+    private void allocate(int length) {
+        eventIds = new long[length];
+        actors = new long[length];
+        songs = new long[length];
+        targets = new long[length];
+        times = new long[length];
+        types = new byte[length];
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.soundcloud.service.recommendation;
+
+// Benchmark of one training run: holds out one song per user, trains on the rest and measures how often the
+// held-out song comes back in the user's top K.
+public class AlsEvaluation {
+
+    private final int users;
+    private final int songs;
+    private final int interactions;
+    private final long trainingMillis;
+    private final long modelBytes;
+    private final int k;
+    private final double recall;
+
+    private AlsEvaluation(int users, int songs, int interactions, long trainingMillis, long modelBytes, int k,
+                          double recall) {
+        this.users = users;
+        this.songs = songs;
+        this.interactions = interactions;
+        this.trainingMillis = trainingMillis;
+        this.modelBytes = modelBytes;
+        this.k = k;
+        this.recall = recall;
+    }
+
+    public double recall() {
+        return recall;
+    }
+
+    public long trainingMillis() {
+        return trainingMillis;
+    }
+
+    public static AlsEvaluation run(Interactions interactions, AlsTrainer trainer, int parallelism, int k,
+                                    int maxTestUsers) {
+        CsrMatrix all = interactions.userSongs();
+        CsrMatrix.Builder train = new CsrMatrix.Builder();
+        int[] testUsers = new int[all.rows()];
+        int[] heldOut = new int[all.rows()];
+        int tests = 0;
+        for (int user = 0; user < all.rows(); user++) {
+            train.startRow();
+            int length = all.end(user) - all.start(user);
+            // users with a single song would lose all their history
+            int held = length >= 2 ? all.start(user) + Math.floorMod(user * 0x9E3779B9, length) : -1;
+            for (int p = all.start(user); p < all.end(user); p++) {
+                if (p == held) {
+                    testUsers[tests] = user;
+                    heldOut[tests++] = all.col(p);
+                } else {
+                    train.add(all.col(p), all.value(p));
+                }
+            }
+        }
+        Interactions split = new Interactions(interactions.users(), interactions.songs(), train.build(all.columns()));
+
+        long started = System.nanoTime();
+        AlsModel model = trainer.train(split, parallelism);
+        long trainingMillis = (System.nanoTime() - started) / 1_000_000;
+
+        int step = Math.max(1, tests / Math.max(1, maxTestUsers));
+        int evaluated = 0;
+        int hits = 0;
+        int[] recommended = new int[k];
+        for (int t = 0; t < tests; t += step) {
+            int count = model.recommend(testUsers[t], recommended);
+            for (int i = 0; i < count; i++) {
+                if (recommended[i] == heldOut[t]) {
+                    hits++;
+                    break;
+                }
+            }
+            evaluated++;
+        }
+        long modelBytes = model.bytes() + 8L * split.userSongs().nonZeros();
+        return new AlsEvaluation(all.rows(), all.columns(), all.nonZeros(), trainingMillis, modelBytes, k,
+                evaluated == 0 ? 0 : (double) hits / evaluated);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ALS evaluation: %d users, %d songs, %d interactions, trained in %d ms, "
+                        + "%.1f MB of factors and ratings, recall@%d = %.4f",
+                users, songs, interactions, trainingMillis, modelBytes / (1024.0 * 1024.0), k, recall);
+    }
+}
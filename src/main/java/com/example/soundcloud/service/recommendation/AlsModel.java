@@ -0,0 +1,72 @@
+package com.example.soundcloud.service.recommendation;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// Latent factors of users and songs, row-major: the vector of ordinal i is factors[i * rank .. (i + 1) * rank).
+public class AlsModel {
+
+    public static final AlsModel EMPTY = new AlsModel(0, new Interactions(new LongIndex(0), new LongIndex(0),
+            new CsrMatrix.Builder().build(0)), new float[0], new float[0]);
+
+    private final int rank;
+    private final Interactions interactions;
+    private final float[] userFactors;
+    private final float[] songFactors;
+
+    public AlsModel(int rank, Interactions interactions, float[] userFactors, float[] songFactors) {
+        this.rank = rank;
+        this.interactions = interactions;
+        this.userFactors = userFactors;
+        this.songFactors = songFactors;
+    }
+
+    public int rank() {
+        return rank;
+    }
+
+    public float[] songFactors() {
+        return songFactors;
+    }
+
+    public Interactions interactions() {
+        return interactions;
+    }
+
+    public long bytes() {
+        return 4L * (userFactors.length + songFactors.length);
+    }
+
+    public List<Long> recommend(long userId, int limit) {
+        List<Long> result = new ArrayList<>();
+        int user = interactions.users().get(userId);
+        if (user < 0) {
+            return result;
+        }
+        int[] songs = new int[limit];
+        int count = recommend(user, songs);
+        for (int i = 0; i < count; i++) {
+            result.add(interactions.songs().idOf(songs[i]));
+        }
+        return result;
+    }
+
+    // scores every song the user has not interacted with yet and writes the best ordinals into out
+    int recommend(int user, int[] out) {
+        CsrMatrix userSongs = interactions.userSongs();
+        BitSet seen = new BitSet();
+        for (int p = userSongs.start(user); p < userSongs.end(user); p++) {
+            seen.set(userSongs.col(p));
+        }
+        TopK top = new TopK(out.length);
+        int songs = songFactors.length / Math.max(1, rank);
+        int offset = user * rank;
+        for (int song = 0; song < songs; song++) {
+            if (!seen.get(song)) {
+                top.offer(song, VectorMath.dot(userFactors, offset, songFactors, song * rank, rank));
+            }
+        }
+        return top.drainTo(out, new float[out.length], 0);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.soundcloud.service.recommendation;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Alternating least squares for implicit feedback (Hu, Koren, Volinsky): a weight r becomes the confidence
+// 1 + alpha * r that the user prefers the song. Every half step solves one small rank x rank system per row,
+// and the rows are independent, so they are spread over a fork/join pool.
+public class AlsTrainer {
+
+    private static final int LEAF_SIZE = 128;
+
+    private final int rank;
+    private final int iterations;
+    private final double regularization;
+    private final double alpha;
+
+    public AlsTrainer(int rank, int iterations, double regularization, double alpha) {
+        this.rank = rank;
+        this.iterations = iterations;
+        this.regularization = regularization;
+        this.alpha = alpha;
+    }
+
+    public AlsModel train(Interactions interactions, int parallelism) {
+        CsrMatrix userSongs = interactions.userSongs();
+        CsrMatrix songUsers = userSongs.transpose();
+        float[] userFactors = new float[userSongs.rows() * rank];
+        float[] songFactors = new float[songUsers.rows() * rank];
+        Random random = new Random(42);
+        for (int i = 0; i < songFactors.length; i++) {
+            songFactors[i] = (float) (random.nextGaussian() * 0.01);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                new HalfStep(userSongs, songFactors, userFactors).run(pool);
+                new HalfStep(songUsers, userFactors, songFactors).run(pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return new AlsModel(rank, interactions, userFactors, songFactors);
+    }
+
+    // recomputes every row of target while the factors on the other side stay fixed
+    private class HalfStep {
+        private final CsrMatrix ratings;
+        private final float[] fixed;
+        private final float[] target;
+        private final double[] gram;
+        private final ThreadLocal<double[]> systems = ThreadLocal.withInitial(() -> new double[rank * rank + rank]);
+
+        private HalfStep(CsrMatrix ratings, float[] fixed, float[] target) {
+            this.ratings = ratings;
+            this.fixed = fixed;
+            this.target = target;
+            this.gram = gram(fixed);
+        }
+
+        private void run(ForkJoinPool pool) {
+            pool.invoke(new Range(this, 0, ratings.rows()));
+        }
+
+        private void solveRow(int row) {
+            double[] system = systems.get();
+            System.arraycopy(gram, 0, system, 0, rank * rank);
+            for (int f = 0; f < rank; f++) {
+                system[f * rank + f] += regularization;
+                system[rank * rank + f] = 0;
+            }
+            // Y'CuY = Y'Y + Y'(Cu - I)Y, and only the rated columns have Cu - I != 0
+            for (int p = ratings.start(row); p < ratings.end(row); p++) {
+                int offset = ratings.col(p) * rank;
+                double confidence = 1 + alpha * ratings.value(p);
+                for (int a = 0; a < rank; a++) {
+                    double scaled = (confidence - 1) * fixed[offset + a];
+                    for (int b = 0; b <= a; b++) {
+                        system[a * rank + b] += scaled * fixed[offset + b];
+                    }
+                    system[rank * rank + a] += confidence * fixed[offset + a];
+                }
+            }
+            solve(system, target, row * rank);
+        }
+    }
+
+    private double[] gram(float[] factors) {
+        double[] gram = new double[rank * rank];
+        for (int offset = 0; offset < factors.length; offset += rank) {
+            for (int a = 0; a < rank; a++) {
+                double value = factors[offset + a];
+                for (int b = 0; b <= a; b++) {
+                    gram[a * rank + b] += value * factors[offset + b];
+                }
+            }
+        }
+        return gram;
+    }
+
+    // Cholesky on the lower triangle of the rank x rank matrix, the right-hand side follows it in the same array
+    private void solve(double[] system, float[] out, int outOffset) {
+        int rhs = rank * rank;
+        for (int j = 0; j < rank; j++) {
+            double diagonal = system[j * rank + j];
+            for (int k = 0; k < j; k++) {
+                diagonal -= system[j * rank + k] * system[j * rank + k];
+            }
+            diagonal = Math.sqrt(diagonal);
+            system[j * rank + j] = diagonal;
+            for (int i = j + 1; i < rank; i++) {
+                double value = system[i * rank + j];
+                for (int k = 0; k < j; k++) {
+                    value -= system[i * rank + k] * system[j * rank + k];
+                }
+                system[i * rank + j] = value / diagonal;
+            }
+        }
+        for (int i = 0; i < rank; i++) {
+            double value = system[rhs + i];
+            for (int k = 0; k < i; k++) {
+                value -= system[i * rank + k] * system[rhs + k];
+            }
+            system[rhs + i] = value / system[i * rank + i];
+        }
+        for (int i = rank - 1; i >= 0; i--) {
+            double value = system[rhs + i];
+            for (int k = i + 1; k < rank; k++) {
+                value -= system[k * rank + i] * system[rhs + k];
+            }
+            system[rhs + i] = value / system[i * rank + i];
+            out[outOffset + i] = (float) system[rhs + i];
+        }
+    }
+
+    private static class Range extends RecursiveAction {
+        private final HalfStep step;
+        private final int from;
+        private final int to;
+
+        private Range(HalfStep step, int from, int to) {
+            this.step = step;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int row = from; row < to; row++) {
+                    step.solveRow(row);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Range(step, from, mid), new Range(step, mid, to));
+        }
+    }
+}
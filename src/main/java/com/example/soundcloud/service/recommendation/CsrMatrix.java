@@ -0,0 +1,107 @@
+package com.example.soundcloud.service.recommendation;
+
+import java.util.Arrays;
+
+// Compressed sparse rows: the entries of row r are cols/values[rowStart[r] .. rowStart[r + 1]).
+public class CsrMatrix {
+
+    private final int rows;
+    private final int columns;
+    private final int[] rowStart;
+    private final int[] cols;
+    private final float[] values;
+
+    private CsrMatrix(int rows, int columns, int[] rowStart, int[] cols, float[] values) {
+        this.rows = rows;
+        this.columns = columns;
+        this.rowStart = rowStart;
+        this.cols = cols;
+        this.values = values;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int nonZeros() {
+        return rowStart[rows];
+    }
+
+    public int start(int row) {
+        return rowStart[row];
+    }
+
+    public int end(int row) {
+        return rowStart[row + 1];
+    }
+
+    public int col(int position) {
+        return cols[position];
+    }
+
+    public float value(int position) {
+        return values[position];
+    }
+
+    public CsrMatrix transpose() {
+        int[] start = new int[columns + 1];
+        for (int p = 0; p < nonZeros(); p++) {
+            start[cols[p] + 1]++;
+        }
+        for (int c = 0; c < columns; c++) {
+            start[c + 1] += start[c];
+        }
+        int[] next = Arrays.copyOf(start, columns);
+        int[] transposedCols = new int[nonZeros()];
+        float[] transposedValues = new float[nonZeros()];
+        for (int r = 0; r < rows; r++) {
+            for (int p = rowStart[r]; p < rowStart[r + 1]; p++) {
+                int position = next[cols[p]]++;
+                transposedCols[position] = r;
+                transposedValues[position] = values[p];
+            }
+        }
+        return new CsrMatrix(columns, rows, start, transposedCols, transposedValues);
+    }
+
+    // rows have to be appended in order; a row is finished by starting the next one or by build()
+    public static class Builder {
+        private int[] rowStart = new int[1024];
+        private int[] cols = new int[4096];
+        private float[] values = new float[4096];
+        private int rows;
+        private int size;
+        private int columns;
+
+        public int rows() {
+            return rows;
+        }
+
+        public void startRow() {
+            if (rows + 1 == rowStart.length) {
+                rowStart = Arrays.copyOf(rowStart, rowStart.length * 2);
+            }
+            rowStart[rows++] = size;
+        }
+
+        public void add(int col, float value) {
+            if (size == cols.length) {
+                cols = Arrays.copyOf(cols, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            cols[size] = col;
+            values[size++] = value;
+            columns = Math.max(columns, col + 1);
+        }
+
+        public CsrMatrix build(int columnCount) {
+            rowStart[rows] = size;
+            return new CsrMatrix(rows, Math.max(columns, columnCount), Arrays.copyOf(rowStart, rows + 1),
+                    Arrays.copyOf(cols, size), Arrays.copyOf(values, size));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.soundcloud.service.recommendation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Recall of the graph search against the exact brute force answer, and the latency of both, for a few ef values.
+public class HnswEvaluation {
+
+    private HnswEvaluation() {
+    }
+
+    public static String run(HnswIndex index, int queries, int k, int... efs) {
+        long[] sample = index.sample(queries);
+        float[][] vectors = new float[sample.length][index.dimensions()];
+        for (int q = 0; q < sample.length; q++) {
+            index.vectorOf(sample[q], vectors[q]);
+        }
+        StringBuilder report = new StringBuilder(String.format("HNSW evaluation over %d songs, %d queries, k = %d",
+                index.size(), sample.length, k));
+        long started = System.nanoTime();
+        List<Set<Long>> exact = exact(index, sample, vectors, k);
+        report.append(String.format("%n  brute force: %.1f us/query", micros(started, sample.length)));
+        for (int ef : efs) {
+            int hits = 0;
+            started = System.nanoTime();
+            for (int q = 0; q < sample.length; q++) {
+                for (long id : index.nearest(vectors[q], k, ef, sample[q])) {
+                    if (exact.get(q).contains(id)) {
+                        hits++;
+                    }
+                }
+            }
+            double latency = micros(started, sample.length);
+            int expected = 0;
+            for (Set<Long> answer : exact) {
+                expected += answer.size();
+            }
+            report.append(String.format("%n  ef = %d: recall@%d = %.4f, %.1f us/query", ef, k,
+                    expected == 0 ? 1.0 : (double) hits / expected, latency));
+        }
+        return report.toString();
+    }
+
+    private static List<Set<Long>> exact(HnswIndex index, long[] sample, float[][] vectors, int k) {
+        List<Set<Long>> exact = new ArrayList<>(sample.length);
+        for (int q = 0; q < sample.length; q++) {
+            exact.add(new HashSet<>(index.bruteForce(vectors[q], k, sample[q])));
+        }
+        return exact;
+    }
+
+    private static double micros(long started, int queries) {
+        return (System.nanoTime() - started) / 1000.0 / Math.max(1, queries);
+    }
+}
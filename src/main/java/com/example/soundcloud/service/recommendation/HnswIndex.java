@@ -0,0 +1,467 @@
+package com.example.soundcloud.service.recommendation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Hierarchical navigable small world graph over unit vectors, so the dot product is the cosine similarity.
+// Vectors and the level 0 links, which hold almost all edges, are flat arrays indexed by node; the few nodes
+// that reach the upper levels keep their links in a small array per node. Inserts take the write lock and
+// queries share the read lock, which is fine while inserts are single uploads.
+public class HnswIndex {
+
+    private static final int M = 16;
+    private static final int M0 = 2 * M;
+    private static final int EF_CONSTRUCTION = 100;
+    private static final double LEVEL_FACTOR = 1 / Math.log(M);
+
+    private final int dimensions;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Random random = new Random(42);
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+    private final LongIndex nodes;
+
+    private float[] vectors;
+    private long[] ids;
+    private int[] links;
+    private int[] linkCounts;
+    private int[][] upperLinks;
+    private int[] levels;
+    private boolean[] deleted;
+    private int size;
+    private int entryPoint = -1;
+    private int topLevel = -1;
+
+    public HnswIndex(int dimensions, int expected) {
+        this.dimensions = dimensions;
+        int capacity = Math.max(16, expected);
+        nodes = new LongIndex(capacity);
+        vectors = new float[capacity * dimensions];
+        ids = new long[capacity];
+        links = new int[capacity * M0];
+        linkCounts = new int[capacity];
+        upperLinks = new int[capacity][];
+        levels = new int[capacity];
+        deleted = new boolean[capacity];
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            int node = nodes.get(id);
+            return node >= 0 && !deleted[node];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // copies the stored vector of the id into out, false if the id is not indexed
+    public boolean vectorOf(long id, float[] out) {
+        lock.readLock().lock();
+        try {
+            int node = nodes.get(id);
+            if (node < 0) {
+                return false;
+            }
+            System.arraycopy(vectors, node * dimensions, out, 0, dimensions);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // evenly spaced ids, used as benchmark queries
+    public long[] sample(int count) {
+        lock.readLock().lock();
+        try {
+            long[] sampled = new long[Math.min(count, size)];
+            for (int i = 0; i < sampled.length; i++) {
+                sampled[i] = ids[(int) ((long) i * size / sampled.length)];
+            }
+            return sampled;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // the graph keeps the node as a waypoint, it is only hidden from results
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int node = nodes.get(id);
+            if (node >= 0) {
+                deleted[node] = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(long id, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            int existing = nodes.get(id);
+            if (existing >= 0) {
+                // re-uploads keep their links, only the vector moves
+                normalizeInto(vector, vectors, existing * dimensions);
+                deleted[existing] = false;
+                return;
+            }
+            int node = newNode(id, vector);
+            insert(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Long> nearest(float[] vector, int k, int ef, long exclude) {
+        lock.readLock().lock();
+        try {
+            List<Long> result = new ArrayList<>();
+            if (entryPoint < 0) {
+                return result;
+            }
+            float[] query = new float[dimensions];
+            normalizeInto(vector, query, 0);
+            Scratch s = scratch.get();
+            s.ensureCapacity(size);
+            int current = greedyDescent(query, 0, topLevel, 1);
+            Heap found = searchLayer(query, 0, current, Math.max(ef, k + 1), 0, s);
+            int[] best = new int[found.size()];
+            for (int i = best.length - 1; i >= 0; i--) {
+                best[i] = found.peekId();
+                found.pop();
+            }
+            for (int i = 0; i < best.length && result.size() < k; i++) {
+                if (!deleted[best[i]] && ids[best[i]] != exclude) {
+                    result.add(ids[best[i]]);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // exact answer over all live vectors, the baseline the graph search is measured against
+    public List<Long> bruteForce(float[] vector, int k, long exclude) {
+        lock.readLock().lock();
+        try {
+            float[] query = new float[dimensions];
+            normalizeInto(vector, query, 0);
+            TopK top = new TopK(k);
+            for (int node = 0; node < size; node++) {
+                if (!deleted[node] && ids[node] != exclude) {
+                    top.offer(node, VectorMath.dot(query, 0, vectors, node * dimensions, dimensions));
+                }
+            }
+            int[] best = new int[k];
+            int count = top.drainTo(best, new float[k], 0);
+            List<Long> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(ids[best[i]]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int newNode(long id, float[] vector) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            vectors = Arrays.copyOf(vectors, capacity * dimensions);
+            ids = Arrays.copyOf(ids, capacity);
+            links = Arrays.copyOf(links, capacity * M0);
+            linkCounts = Arrays.copyOf(linkCounts, capacity);
+            upperLinks = Arrays.copyOf(upperLinks, capacity);
+            levels = Arrays.copyOf(levels, capacity);
+            deleted = Arrays.copyOf(deleted, capacity);
+        }
+        int node = size++;
+        nodes.getOrAdd(id);
+        ids[node] = id;
+        normalizeInto(vector, vectors, node * dimensions);
+        int level = (int) (-Math.log(1 - random.nextDouble()) * LEVEL_FACTOR);
+        levels[node] = level;
+        if (level > 0) {
+            // per level: a count followed by M slots
+            upperLinks[node] = new int[level * (M + 1)];
+        }
+        return node;
+    }
+
+    private void insert(int node) {
+        if (entryPoint < 0) {
+            entryPoint = node;
+            topLevel = levels[node];
+            return;
+        }
+        int offset = node * dimensions;
+        Scratch s = scratch.get();
+        s.ensureCapacity(size);
+        int current = greedyDescent(vectors, offset, topLevel, levels[node] + 1);
+        for (int level = Math.min(levels[node], topLevel); level >= 0; level--) {
+            Heap candidates = searchLayer(vectors, offset, current, EF_CONSTRUCTION, level, s);
+            int[] selected = selectNeighbours(candidates, level == 0 ? M0 : M);
+            for (int neighbour : selected) {
+                connect(node, neighbour, level);
+                connect(neighbour, node, level);
+            }
+            current = selected.length > 0 ? selected[0] : current;
+        }
+        if (levels[node] > topLevel) {
+            topLevel = levels[node];
+            entryPoint = node;
+        }
+    }
+
+    // walks down from the top level to stopLevel, always moving to the most similar neighbour
+    private int greedyDescent(float[] query, int queryOffset, int fromLevel, int stopLevel) {
+        int current = entryPoint;
+        float currentScore = similarity(query, queryOffset, current);
+        for (int level = fromLevel; level >= stopLevel; level--) {
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                int[] linked = linksOf(current, level);
+                int start = linkStart(current, level);
+                int count = linkCount(current, level);
+                for (int i = 0; i < count; i++) {
+                    int neighbour = linked[start + i];
+                    float score = similarity(query, queryOffset, neighbour);
+                    if (score > currentScore) {
+                        currentScore = score;
+                        current = neighbour;
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    // best-first search that keeps the ef most similar nodes found, returned as a heap with the worst on top
+    private Heap searchLayer(float[] query, int queryOffset, int start, int ef, int level, Scratch s) {
+        int visit = s.nextVisit();
+        Heap candidates = s.candidates;
+        Heap found = s.found;
+        candidates.clear();
+        found.clear();
+        float startScore = similarity(query, queryOffset, start);
+        s.visited[start] = visit;
+        // candidates pops the most similar first, found pops the least similar first
+        candidates.push(start, -startScore);
+        found.push(start, startScore);
+        while (candidates.size() > 0) {
+            int node = candidates.peekId();
+            float score = -candidates.peekKey();
+            if (score < found.peekKey() && found.size() >= ef) {
+                break;
+            }
+            candidates.pop();
+            int[] linked = linksOf(node, level);
+            int from = linkStart(node, level);
+            int count = linkCount(node, level);
+            for (int i = 0; i < count; i++) {
+                int neighbour = linked[from + i];
+                if (s.visited[neighbour] == visit) {
+                    continue;
+                }
+                s.visited[neighbour] = visit;
+                float neighbourScore = similarity(query, queryOffset, neighbour);
+                if (found.size() < ef || neighbourScore > found.peekKey()) {
+                    candidates.push(neighbour, -neighbourScore);
+                    found.push(neighbour, neighbourScore);
+                    if (found.size() > ef) {
+                        found.pop();
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    // the heuristic of the HNSW paper: a candidate is skipped when an already selected neighbour is closer to it
+    // than the new node is, which keeps links pointing in different directions
+    private int[] selectNeighbours(Heap found, int max) {
+        int count = found.size();
+        int[] candidates = new int[count];
+        float[] scores = new float[count];
+        for (int i = count - 1; i >= 0; i--) {
+            candidates[i] = found.peekId();
+            scores[i] = found.peekKey();
+            found.pop();
+        }
+        int[] selected = new int[Math.min(max, count)];
+        int chosen = 0;
+        for (int i = 0; i < count && chosen < selected.length; i++) {
+            boolean keep = true;
+            for (int j = 0; j < chosen && keep; j++) {
+                keep = similarity(vectors, candidates[i] * dimensions, selected[j]) <= scores[i];
+            }
+            if (keep) {
+                selected[chosen++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(selected, chosen);
+    }
+
+    private void connect(int from, int to, int level) {
+        int max = level == 0 ? M0 : M;
+        int[] linked = linksOf(from, level);
+        int start = linkStart(from, level);
+        int count = linkCount(from, level);
+        if (count < max) {
+            linked[start + count] = to;
+            setLinkCount(from, level, count + 1);
+            return;
+        }
+        // full: keep the most similar max out of the current links and the new one
+        int offset = from * dimensions;
+        int worst = -1;
+        float worstScore = similarity(vectors, offset, to);
+        for (int i = 0; i < count; i++) {
+            float score = similarity(vectors, offset, linked[start + i]);
+            if (score < worstScore) {
+                worstScore = score;
+                worst = i;
+            }
+        }
+        if (worst >= 0) {
+            linked[start + worst] = to;
+        }
+    }
+
+    private int[] linksOf(int node, int level) {
+        return level == 0 ? links : upperLinks[node];
+    }
+
+    private int linkStart(int node, int level) {
+        return level == 0 ? node * M0 : (level - 1) * (M + 1) + 1;
+    }
+
+    private int linkCount(int node, int level) {
+        if (level == 0) {
+            return linkCounts[node];
+        }
+        return level <= levels[node] ? upperLinks[node][(level - 1) * (M + 1)] : 0;
+    }
+
+    private void setLinkCount(int node, int level, int count) {
+        if (level == 0) {
+            linkCounts[node] = count;
+        } else {
+            upperLinks[node][(level - 1) * (M + 1)] = count;
+        }
+    }
+
+    private float similarity(float[] query, int queryOffset, int node) {
+        return VectorMath.dot(query, queryOffset, vectors, node * dimensions, dimensions);
+    }
+
+    private void normalizeInto(float[] vector, float[] out, int offset) {
+        float norm = (float) Math.sqrt(VectorMath.dot(vector, 0, vector, 0, dimensions));
+        for (int i = 0; i < dimensions; i++) {
+            out[offset + i] = norm == 0 ? 0 : vector[i] / norm;
+        }
+    }
+
+    private static class Scratch {
+        private int[] visited = new int[0];
+        private int visit;
+        private final Heap candidates = new Heap();
+        private final Heap found = new Heap();
+
+        private void ensureCapacity(int size) {
+            if (visited.length < size) {
+                visited = new int[Math.max(size, visited.length * 2)];
+                visit = 0;
+            }
+        }
+
+        private int nextVisit() {
+            if (++visit == Integer.MAX_VALUE) {
+                Arrays.fill(visited, 0);
+                visit = 1;
+            }
+            return visit;
+        }
+    }
+
+    // growable binary min-heap of (node, key)
+    private static class Heap {
+        private int[] ids = new int[64];
+        private float[] keys = new float[64];
+        private int size;
+
+        private int size() {
+            return size;
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        private int peekId() {
+            return ids[0];
+        }
+
+        private float peekKey() {
+            return keys[0];
+        }
+
+        private void push(int id, float key) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                ids[i] = ids[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            keys[i] = key;
+        }
+
+        private void pop() {
+            int id = ids[--size];
+            float key = keys[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= key) {
+                    break;
+                }
+                ids[i] = ids[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            ids[i] = id;
+            keys[i] = key;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.soundcloud.service.recommendation;
+
+import com.example.soundcloud.models.dao.RecommendationDAO;
+
+// Implicit feedback as a user x song CSR matrix, with the maps between database ids and matrix ordinals.
+public class Interactions {
+
+    private final LongIndex users;
+    private final LongIndex songs;
+    private final CsrMatrix userSongs;
+
+    public Interactions(LongIndex users, LongIndex songs, CsrMatrix userSongs) {
+        this.users = users;
+        this.songs = songs;
+        this.userSongs = userSongs;
+    }
+
+    public LongIndex users() {
+        return users;
+    }
+
+    public LongIndex songs() {
+        return songs;
+    }
+
+    public CsrMatrix userSongs() {
+        return userSongs;
+    }
+
+    public static Interactions load(RecommendationDAO recommendationDAO) {
+        LongIndex users = new LongIndex(1024);
+        LongIndex songs = new LongIndex(1024);
+        CsrMatrix.Builder builder = new CsrMatrix.Builder();
+        // rows arrive ordered by user, so a new user id always starts the next row
+        recommendationDAO.scanInteractions(rs -> {
+            if (users.getOrAdd(rs.getLong("user_id")) == builder.rows()) {
+                builder.startRow();
+            }
+            builder.add(songs.getOrAdd(rs.getLong("song_id")), rs.getFloat("weight"));
+        });
+        return new Interactions(users, songs, builder.build(songs.size()));
+    }
+}
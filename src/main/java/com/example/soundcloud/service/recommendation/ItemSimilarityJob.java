@@ -0,0 +1,113 @@
+package com.example.soundcloud.service.recommendation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Cosine similarity between the interaction columns of every pair of songs that share a user.
+public class ItemSimilarityJob {
+
+    private static final int LEAF_SIZE = 64;
+    // a handful of heavy users would otherwise dominate both the cost and the similarities
+    private static final int MAX_USER_ITEMS = 2000;
+
+    private final CsrMatrix userItems;
+    private final CsrMatrix itemUsers;
+    private final int perSong;
+    private final float[] norms;
+    private final int[] neighbours;
+    private final float[] scores;
+    private final int[] counts;
+    private final ThreadLocal<Scratch> scratch;
+
+    public ItemSimilarityJob(CsrMatrix userItems, int perSong) {
+        this.userItems = userItems;
+        this.itemUsers = userItems.transpose();
+        this.perSong = perSong;
+        int items = itemUsers.rows();
+        norms = new float[items];
+        for (int i = 0; i < items; i++) {
+            double sum = 0;
+            for (int p = itemUsers.start(i); p < itemUsers.end(i); p++) {
+                sum += (double) itemUsers.value(p) * itemUsers.value(p);
+            }
+            norms[i] = (float) Math.sqrt(sum);
+        }
+        neighbours = new int[items * perSong];
+        scores = new float[items * perSong];
+        counts = new int[items];
+        scratch = ThreadLocal.withInitial(() -> new Scratch(items, perSong));
+    }
+
+    public NeighbourTable run(LongIndex songs, int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new Range(0, itemUsers.rows()));
+        } finally {
+            pool.shutdown();
+        }
+        return new NeighbourTable(songs, perSong, neighbours, scores, counts);
+    }
+
+    private void computeItem(int item, Scratch s) {
+        int touched = 0;
+        for (int p = itemUsers.start(item); p < itemUsers.end(item); p++) {
+            int user = itemUsers.col(p);
+            if (userItems.end(user) - userItems.start(user) > MAX_USER_ITEMS) {
+                continue;
+            }
+            float weight = itemUsers.value(p);
+            for (int q = userItems.start(user); q < userItems.end(user); q++) {
+                int other = userItems.col(q);
+                if (other == item) {
+                    continue;
+                }
+                if (s.accumulator[other] == 0) {
+                    s.touched[touched++] = other;
+                }
+                s.accumulator[other] += weight * userItems.value(q);
+            }
+        }
+        s.top.clear();
+        for (int t = 0; t < touched; t++) {
+            int other = s.touched[t];
+            s.top.offer(other, s.accumulator[other] / (norms[item] * norms[other]));
+            s.accumulator[other] = 0;
+        }
+        counts[item] = s.top.drainTo(neighbours, scores, item * perSong);
+    }
+
+    private class Range extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        private Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                Scratch s = scratch.get();
+                for (int item = from; item < to; item++) {
+                    computeItem(item, s);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Range(from, mid), new Range(mid, to));
+        }
+    }
+
+    private static class Scratch {
+        private final float[] accumulator;
+        private final int[] touched;
+        private final TopK top;
+
+        private Scratch(int items, int perSong) {
+            accumulator = new float[items];
+            touched = new int[items];
+            top = new TopK(perSong);
+        }
+    }
+}
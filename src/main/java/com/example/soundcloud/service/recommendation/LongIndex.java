@@ -0,0 +1,87 @@
+package com.example.soundcloud.service.recommendation;
+
+import java.util.Arrays;
+
+// Open addressing map from database ids to dense ordinals 0..size-1, without boxing.
+public class LongIndex {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private long[] ids;
+    private int size;
+
+    public LongIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+        ids = new long[Math.max(16, expected)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long idOf(int ordinal) {
+        return ids[ordinal];
+    }
+
+    public int get(long id) {
+        int mask = keys.length - 1;
+        for (int slot = mix(id) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                return values[slot];
+            }
+            if (keys[slot] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    public int getOrAdd(long id) {
+        int mask = keys.length - 1;
+        int slot = mix(id) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == id) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        values[slot] = size;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size] = id;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        values = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.soundcloud.service.recommendation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Immutable top-N neighbours per song, stored flat: the neighbours of ordinal i start at i * perSong.
+public class NeighbourTable {
+
+    public static final NeighbourTable EMPTY = new NeighbourTable(new LongIndex(0), 0, new int[0], new float[0], new int[0]);
+
+    private final LongIndex songs;
+    private final int perSong;
+    private final int[] neighbours;
+    private final float[] scores;
+    private final int[] counts;
+
+    public NeighbourTable(LongIndex songs, int perSong, int[] neighbours, float[] scores, int[] counts) {
+        this.songs = songs;
+        this.perSong = perSong;
+        this.neighbours = neighbours;
+        this.scores = scores;
+        this.counts = counts;
+    }
+
+    public int size() {
+        return counts.length;
+    }
+
+    public List<Long> neighboursOf(long songId, int limit) {
+        List<Long> result = new ArrayList<>();
+        int ordinal = songs.get(songId);
+        if (ordinal < 0 || ordinal >= counts.length) {
+            return result;
+        }
+        int from = ordinal * perSong;
+        for (int i = 0; i < counts[ordinal] && i < limit; i++) {
+            result.add(songs.idOf(neighbours[from + i]));
+        }
+        return result;
+    }
+
+    // Sums the neighbour scores of every song in the basket; songs of the basket itself are never suggested. The
+    // scratch is sized to the neighbours actually reached, not to the catalog, and lives for one call.
+    public List<Long> continuation(List<Long> basket, int limit) {
+        int[] inBasket = new int[basket.size()];
+        int basketSize = 0;
+        int reached = 0;
+        for (long songId : basket) {
+            int ordinal = songs.get(songId);
+            if (ordinal >= 0 && ordinal < counts.length) {
+                inBasket[basketSize++] = ordinal;
+                reached += counts[ordinal];
+            }
+        }
+        Arrays.sort(inBasket, 0, basketSize);
+        SparseAccumulator acc = new SparseAccumulator(Math.min(reached, counts.length));
+        for (int b = 0; b < basketSize; b++) {
+            // the basket may hold a song twice
+            if (b > 0 && inBasket[b] == inBasket[b - 1]) {
+                continue;
+            }
+            int from = inBasket[b] * perSong;
+            for (int i = 0; i < counts[inBasket[b]]; i++) {
+                int neighbour = neighbours[from + i];
+                if (Arrays.binarySearch(inBasket, 0, basketSize, neighbour) < 0) {
+                    acc.add(neighbour, scores[from + i]);
+                }
+            }
+        }
+        TopK top = new TopK(limit);
+        for (int entry = 0; entry < acc.size(); entry++) {
+            top.offer(acc.key(entry), acc.sum(entry));
+        }
+        int[] best = new int[limit];
+        int count = top.drainTo(best, new float[limit], 0);
+        List<Long> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(songs.idOf(best[i]));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.soundcloud.service.recommendation;
+
+import com.example.soundcloud.models.dao.RecommendationDAO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Songs that are often put in the same playlists, pruned to the strongest neighbours per song.
+@Component
+public class PlaylistContinuation {
+
+    private static final int NEIGHBOURS_PER_SONG = 50;
+
+    @Autowired
+    private RecommendationDAO recommendationDAO;
+
+    private volatile NeighbourTable table = NeighbourTable.EMPTY;
+
+    public List<Long> suggest(List<Long> playlistSongs, int limit) {
+        return table.continuation(playlistSongs, limit);
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(cron = "0 15 4 * * *")
+    public synchronized void rebuild() {
+        LongIndex playlists = new LongIndex(1024);
+        LongIndex songs = new LongIndex(1024);
+        CsrMatrix.Builder builder = new CsrMatrix.Builder();
+        recommendationDAO.scanPlaylistSongs(rs -> {
+            if (playlists.getOrAdd(rs.getLong("playlists_id")) == builder.rows()) {
+                builder.startRow();
+            }
+            builder.add(songs.getOrAdd(rs.getLong("songs_id")), 1);
+        });
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        table = new ItemSimilarityJob(builder.build(songs.size()), NEIGHBOURS_PER_SONG).run(songs, parallelism);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.soundcloud.service.recommendation;
+
+import com.example.soundcloud.models.dao.RecommendationDAO;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import com.example.soundcloud.service.events.EventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// ANN index over the ALS song factors. Songs without plays or likes, new uploads included, get the centroid of
+// their genre so they are reachable from day one.
+@Component
+public class SongEmbeddings implements DomainEventHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SongEmbeddings.class);
+    private static final int EF_SEARCH = 64;
+    private static final int EVALUATION_QUERIES = 500;
+    private static final int EVALUATION_K = 10;
+
+    @Autowired
+    private RecommendationDAO recommendationDAO;
+
+    private volatile HnswIndex index;
+    private volatile Map<String, float[]> genreCentroids = new HashMap<>();
+
+    public List<Long> similarTo(long songId, int limit) {
+        HnswIndex current = index;
+        if (current == null) {
+            return new ArrayList<>();
+        }
+        float[] vector = new float[current.dimensions()];
+        if (!current.vectorOf(songId, vector)) {
+            return new ArrayList<>();
+        }
+        return current.nearest(vector, limit, EF_SEARCH, songId);
+    }
+
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        if (event.getType() == EventType.UPLOAD) {
+            add(event.getSongId(), event.getGenre());
+        } else if (event.getType() == EventType.SONG_DELETE) {
+            remove(event.getSongId());
+        }
+    }
+
+    public void add(long songId, String genre) {
+        HnswIndex current = index;
+        float[] centroid = genreCentroids.get(genre);
+        if (current != null && centroid != null) {
+            current.add(songId, centroid);
+        }
+    }
+
+    public void remove(long songId) {
+        HnswIndex current = index;
+        if (current != null) {
+            current.remove(songId);
+        }
+    }
+
+    @EventListener
+    public void rebuild(AlsModel model) {
+        int rank = model.rank();
+        float[] factors = model.songFactors();
+        LongIndex songs = model.interactions().songs();
+        Map<String, float[]> centroids = new HashMap<>();
+        List<Long> coldSongs = new ArrayList<>();
+        List<String> coldGenres = new ArrayList<>();
+        recommendationDAO.scanSongGenres(rs -> {
+            long id = rs.getLong("id");
+            String genre = rs.getString("genre");
+            int song = songs.get(id);
+            if (song < 0) {
+                coldSongs.add(id);
+                coldGenres.add(genre);
+                return;
+            }
+            if (genre != null) {
+                float[] centroid = centroids.computeIfAbsent(genre, g -> new float[rank]);
+                for (int f = 0; f < rank; f++) {
+                    centroid[f] += factors[song * rank + f];
+                }
+            }
+        });
+
+        HnswIndex built = new HnswIndex(rank, songs.size() + coldSongs.size());
+        float[] vector = new float[rank];
+        for (int song = 0; song < songs.size(); song++) {
+            System.arraycopy(factors, song * rank, vector, 0, rank);
+            built.add(songs.idOf(song), vector);
+        }
+        for (int i = 0; i < coldSongs.size(); i++) {
+            float[] centroid = centroids.get(coldGenres.get(i));
+            if (centroid != null) {
+                built.add(coldSongs.get(i), centroid);
+            }
+        }
+        genreCentroids = centroids;
+        index = built;
+    }
+
+    @Scheduled(cron = "0 30 5 * * SUN")
+    public void evaluate() {
+        HnswIndex current = index;
+        if (current != null) {
+            LOGGER.info(HnswEvaluation.run(current, EVALUATION_QUERIES, EVALUATION_K, 16, 32, 64, 128));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.soundcloud.service.recommendation;
+
+import com.example.soundcloud.models.dao.RecommendationDAO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class SongFactors {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SongFactors.class);
+    private static final int RANK = 32;
+    private static final int ITERATIONS = 10;
+    private static final double REGULARIZATION = 0.1;
+    private static final double ALPHA = 20;
+    private static final int EVALUATION_K = 20;
+    private static final int EVALUATION_USERS = 5000;
+
+    @Autowired
+    private RecommendationDAO recommendationDAO;
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private final AlsTrainer trainer = new AlsTrainer(RANK, ITERATIONS, REGULARIZATION, ALPHA);
+    private volatile AlsModel model = AlsModel.EMPTY;
+
+    public List<Long> recommendFor(long userId, int limit) {
+        return model.recommend(userId, limit);
+    }
+
+    public AlsModel model() {
+        return model;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        retrain();
+    }
+
+    @Scheduled(cron = "0 30 4 * * *")
+    public synchronized void retrain() {
+        model = trainer.train(Interactions.load(recommendationDAO), parallelism());
+        applicationEventPublisher.publishEvent(model);
+    }
+
+    // a second full training on a held-out split, so it only runs once a week
+    @Scheduled(cron = "0 0 5 * * SUN")
+    public synchronized void evaluate() {
+        AlsEvaluation evaluation = AlsEvaluation.run(Interactions.load(recommendationDAO), trainer, parallelism(),
+                EVALUATION_K, EVALUATION_USERS);
+        LOGGER.info(evaluation.toString());
+    }
+
+    private static int parallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.soundcloud.service.recommendation;
+
+import com.example.soundcloud.models.dao.RecommendationDAO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class SongSimilarity {
+
+    private static final int NEIGHBOURS_PER_SONG = 20;
+
+    @Autowired
+    private RecommendationDAO recommendationDAO;
+
+    private volatile NeighbourTable table = NeighbourTable.EMPTY;
+
+    public List<Long> similarTo(long songId, int limit) {
+        return table.neighboursOf(songId, limit);
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(cron = "0 0 4 * * *")
+    public synchronized void rebuild() {
+        Interactions interactions = Interactions.load(recommendationDAO);
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        table = new ItemSimilarityJob(interactions.userSongs(), NEIGHBOURS_PER_SONG)
+                .run(interactions.songs(), parallelism);
+    }
+}
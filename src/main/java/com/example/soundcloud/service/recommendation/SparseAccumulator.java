@@ -0,0 +1,97 @@
+package com.example.soundcloud.service.recommendation;
+
+import java.util.Arrays;
+
+// Sums and hit counts per int key for scoring walks that touch a small part of a large ordinal space. The table
+// grows with the keys actually touched instead of being sized to the whole space, so it is cheap to create one
+// per query. Entries stay in insertion order in dense arrays and are read back by entry index.
+public class SparseAccumulator {
+
+    private int[] slots;
+    private int[] keys;
+    private float[] sums;
+    private int[] hits;
+    private int size;
+
+    public SparseAccumulator(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(8, expected * 2 - 1)) << 1;
+        slots = new int[capacity];
+        keys = new int[capacity / 2];
+        sums = new float[capacity / 2];
+        hits = new int[capacity / 2];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int key(int entry) {
+        return keys[entry];
+    }
+
+    public float sum(int entry) {
+        return sums[entry];
+    }
+
+    public int hits(int entry) {
+        return hits[entry];
+    }
+
+    public void add(int key, float weight) {
+        int mask = slots.length - 1;
+        int slot = mix(key) & mask;
+        while (slots[slot] != 0) {
+            int entry = slots[slot] - 1;
+            if (keys[entry] == key) {
+                sums[entry] += weight;
+                hits[entry]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == keys.length) {
+            grow();
+            add(key, weight);
+            return;
+        }
+        keys[size] = key;
+        sums[size] = weight;
+        hits[size] = 1;
+        slots[slot] = ++size;
+    }
+
+    // false when the key was never added
+    public boolean addIfPresent(int key, float weight) {
+        int mask = slots.length - 1;
+        for (int slot = mix(key) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = slots[slot] - 1;
+            if (keys[entry] == key) {
+                sums[entry] += weight;
+                hits[entry]++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the slot table stays at most half full
+    private void grow() {
+        slots = new int[slots.length * 2];
+        keys = Arrays.copyOf(keys, slots.length / 2);
+        sums = Arrays.copyOf(sums, slots.length / 2);
+        hits = Arrays.copyOf(hits, slots.length / 2);
+        int mask = slots.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int slot = mix(keys[entry]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.soundcloud.service.recommendation;
+
+// Bounded min-heap of (ordinal, score) pairs that keeps the k highest scores.
+public class TopK {
+
+    private final int[] ids;
+    private final float[] scores;
+    private int size;
+
+    public TopK(int k) {
+        ids = new int[k];
+        scores = new float[k];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void offer(int id, float score) {
+        if (size < ids.length) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (ids.length > 0 && score > scores[0]) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    // empties the heap into the arrays, best first
+    public int drainTo(int[] outIds, float[] outScores, int offset) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            outIds[offset + i] = ids[0];
+            outScores[offset + i] = scores[0];
+            ids[0] = ids[--size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return count;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && scores[left] < scores[smallest]) {
+                smallest = left;
+            }
+            if (right < size && scores[right] < scores[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.soundcloud.service.search;
+
+import com.example.soundcloud.models.dto.search.ResponseSongFacetDTO;
+import com.example.soundcloud.models.dto.song.ResponseSongFilterDTO;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable snapshot of the catalog with one compressed bitmap per facet value; filters are bitmap AND/OR.
+public class FacetIndex {
+
+    public static final String GENRE = "genre";
+    public static final String ARTIST = "artist";
+    public static final String UPLOADED = "uploaded";
+    public static final String LISTENED = "listened";
+    public static final String LIKES = "likes";
+    public static final String[] SORT_KEYS = {"likes", "dislikes", "upload_date", "listened", "comments"};
+
+    private static final String[] FACETS = {GENRE, ARTIST, UPLOADED, LISTENED, LIKES};
+    // age ranges that do not overlap, like the count ranges; selecting several of them adds them up
+    private static final String[] UPLOAD_BUCKETS = {"0-1_days", "1-7_days", "7-30_days", "30-365_days", "365+_days"};
+    private static final String[] RANGE_BUCKETS = {"0-9", "10-99", "100-999", "1000+"};
+    private static final int MAX_FACET_VALUES = 20;
+    // below this share of the catalog it is cheaper to sort the matches than to walk a presorted order
+    private static final int SORT_MATCHES_RATIO = 16;
+
+    public static final FacetIndex EMPTY = new Builder(LocalDateTime.now()).build();
+
+    private final int size;
+    private final long[] songIds;
+    private final String[] titles;
+    private final String[] uploaders;
+    private final int[] listened;
+    private final int[] likes;
+    private final int[] dislikes;
+    private final int[] comments;
+    private final LocalDateTime[] createdAt;
+    private final Facet[] facets;
+    private final RoaringBitmap all;
+    private final Map<String, int[]> orders = new HashMap<>();
+    private final Map<String, int[]> positions = new HashMap<>();
+
+    private FacetIndex(Builder b) {
+        size = b.size;
+        songIds = Arrays.copyOf(b.songIds, size);
+        titles = b.titles.toArray(new String[0]);
+        uploaders = b.uploaders.toArray(new String[0]);
+        listened = Arrays.copyOf(b.listened, size);
+        likes = Arrays.copyOf(b.likes, size);
+        dislikes = Arrays.copyOf(b.dislikes, size);
+        comments = Arrays.copyOf(b.comments, size);
+        createdAt = b.createdAt.toArray(new LocalDateTime[0]);
+        facets = new Facet[FACETS.length];
+        for (int f = 0; f < FACETS.length; f++) {
+            facets[f] = b.facets[f].build(size);
+        }
+        all = new RoaringBitmap();
+        all.add(0L, (long) size);
+        addOrder("likes", likes);
+        addOrder("dislikes", dislikes);
+        addOrder("listened", listened);
+        addOrder("comments", comments);
+        long[] uploadKeys = new long[size];
+        for (int doc = 0; doc < size; doc++) {
+            uploadKeys[doc] = createdAt[doc] == null ? Long.MIN_VALUE : createdAt[doc].toLocalDate().toEpochDay() * 86400
+                    + createdAt[doc].toLocalTime().toSecondOfDay();
+        }
+        addOrder("upload_date", uploadKeys);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void addOrder(String key, int[] values) {
+        long[] keys = new long[size];
+        for (int doc = 0; doc < size; doc++) {
+            keys[doc] = values[doc];
+        }
+        addOrder(key, keys);
+    }
+
+    // sorts (value, doc) pairs without boxing: values are rank-compressed first so both fit in one long
+    private void addOrder(String key, long[] values) {
+        long[] sortedValues = values.clone();
+        Arrays.sort(sortedValues);
+        long[] packed = new long[size];
+        for (int doc = 0; doc < size; doc++) {
+            long rank = Arrays.binarySearch(sortedValues, values[doc]);
+            packed[doc] = (rank << 32) | doc;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[size];
+        int[] position = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = (int) packed[i];
+            position[order[i]] = i;
+        }
+        orders.put(key, order);
+        positions.put(key, position);
+    }
+
+    public ResponseSongFacetDTO query(Map<String, List<String>> selected, String sortBy, boolean descending,
+                                      int page, int pageSize) {
+        RoaringBitmap[] selections = new RoaringBitmap[FACETS.length];
+        for (int f = 0; f < FACETS.length; f++) {
+            List<String> values = selected.get(FACETS[f]);
+            if (values != null && !values.isEmpty()) {
+                selections[f] = facets[f].union(values);
+            }
+        }
+        RoaringBitmap matches = intersect(selections, -1);
+
+        Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+        for (int f = 0; f < FACETS.length; f++) {
+            // a facet does not filter its own counts, so users can see the alternatives to what they picked
+            counts.put(FACETS[f], facets[f].counts(intersect(selections, f), all));
+        }
+
+        List<ResponseSongFilterDTO> songs = new ArrayList<>(pageSize);
+        int skip = (page - 1) * pageSize;
+        int total = matches.getCardinality();
+        if (skip < total) {
+            for (int doc : page(matches, total, sortBy, descending, skip, pageSize)) {
+                songs.add(new ResponseSongFilterDTO(titles[doc], uploaders[doc], songIds[doc], listened[doc],
+                        likes[doc], dislikes[doc], createdAt[doc], comments[doc]));
+            }
+        }
+        return new ResponseSongFacetDTO(total, page, songs, counts);
+    }
+
+    private RoaringBitmap intersect(RoaringBitmap[] selections, int excluded) {
+        RoaringBitmap result = null;
+        for (int f = 0; f < selections.length; f++) {
+            if (f == excluded || selections[f] == null) {
+                continue;
+            }
+            result = result == null ? selections[f] : RoaringBitmap.and(result, selections[f]);
+        }
+        return result == null ? all : result;
+    }
+
+    private int[] page(RoaringBitmap matches, int total, String sortBy, boolean descending, int skip, int pageSize) {
+        int[] order = orders.get(sortBy);
+        int count = Math.min(pageSize, total - skip);
+        int[] result = new int[count];
+        if ((long) total * SORT_MATCHES_RATIO < size) {
+            int[] position = positions.get(sortBy);
+            long[] packed = new long[total];
+            PeekableIntIterator it = matches.getIntIterator();
+            for (int i = 0; it.hasNext(); i++) {
+                int doc = it.next();
+                packed[i] = ((long) position[doc] << 32) | doc;
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < count; i++) {
+                result[i] = (int) packed[descending ? total - 1 - skip - i : skip + i];
+            }
+            return result;
+        }
+        int found = 0;
+        int filled = 0;
+        for (int i = 0; i < size && filled < count; i++) {
+            int doc = order[descending ? size - 1 - i : i];
+            if (matches.contains(doc) && found++ >= skip) {
+                result[filled++] = doc;
+            }
+        }
+        return result;
+    }
+
+    private static class Facet {
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private final List<RoaringBitmap> bitmaps = new ArrayList<>();
+        private int[] valueOfDoc = new int[16];
+        private final boolean openEnded;
+        private int[] totals;
+
+        private Facet(boolean openEnded, String... fixedValues) {
+            this.openEnded = openEnded;
+            for (String value : fixedValues) {
+                ordinal(value);
+            }
+        }
+
+        private int ordinal(String value) {
+            Integer ordinal = ordinals.get(value);
+            if (ordinal == null) {
+                ordinal = values.size();
+                ordinals.put(value, ordinal);
+                values.add(value);
+                bitmaps.add(new RoaringBitmap());
+            }
+            return ordinal;
+        }
+
+        private void add(int doc, String value) {
+            int ordinal = ordinal(value);
+            if (doc == valueOfDoc.length) {
+                valueOfDoc = Arrays.copyOf(valueOfDoc, doc * 2);
+            }
+            valueOfDoc[doc] = ordinal;
+            bitmaps.get(ordinal).add(doc);
+        }
+
+        private Facet build(int size) {
+            valueOfDoc = Arrays.copyOf(valueOfDoc, size);
+            totals = new int[values.size()];
+            for (int v = 0; v < totals.length; v++) {
+                bitmaps.get(v).runOptimize();
+                totals[v] = bitmaps.get(v).getCardinality();
+            }
+            return this;
+        }
+
+        private RoaringBitmap union(List<String> selected) {
+            RoaringBitmap result = new RoaringBitmap();
+            for (String value : selected) {
+                Integer ordinal = ordinals.get(value);
+                if (ordinal != null) {
+                    result.or(bitmaps.get(ordinal));
+                }
+            }
+            return result;
+        }
+
+        private Map<String, Integer> counts(RoaringBitmap base, RoaringBitmap all) {
+            int[] counts;
+            if (base == all) {
+                counts = totals;
+            } else {
+                counts = new int[values.size()];
+                PeekableIntIterator it = base.getIntIterator();
+                while (it.hasNext()) {
+                    counts[valueOfDoc[it.next()]]++;
+                }
+            }
+            Map<String, Integer> result = new LinkedHashMap<>();
+            if (!openEnded) {
+                for (int v = 0; v < counts.length; v++) {
+                    result.put(values.get(v), counts[v]);
+                }
+                return result;
+            }
+            // dictionary facets can have thousands of values, only the largest ones are returned
+            long[] packed = new long[counts.length];
+            for (int v = 0; v < counts.length; v++) {
+                packed[v] = ((long) counts[v] << 32) | v;
+            }
+            Arrays.sort(packed);
+            for (int i = packed.length - 1; i >= 0 && result.size() < MAX_FACET_VALUES; i--) {
+                int count = (int) (packed[i] >>> 32);
+                if (count == 0) {
+                    break;
+                }
+                result.put(values.get((int) packed[i]), count);
+            }
+            return result;
+        }
+    }
+
+    public static class Builder {
+        private final LocalDateTime now;
+        private int size;
+        private long[] songIds = new long[16];
+        private final List<String> titles = new ArrayList<>();
+        private final List<String> uploaders = new ArrayList<>();
+        private int[] listened = new int[16];
+        private int[] likes = new int[16];
+        private int[] dislikes = new int[16];
+        private int[] comments = new int[16];
+        private final List<LocalDateTime> createdAt = new ArrayList<>();
+        private final Facet[] facets = {
+                new Facet(true), new Facet(true), new Facet(false, UPLOAD_BUCKETS),
+                new Facet(false, RANGE_BUCKETS), new Facet(false, RANGE_BUCKETS)};
+
+        public Builder(LocalDateTime now) {
+            this.now = now;
+        }
+
+        public Builder add(long songId, String title, String genre, String artist, String uploader, int listenedCount,
+                           int likesCount, int dislikesCount, int commentsCount, LocalDateTime uploadedAt) {
+            if (size == songIds.length) {
+                int capacity = size * 2;
+                songIds = Arrays.copyOf(songIds, capacity);
+                listened = Arrays.copyOf(listened, capacity);
+                likes = Arrays.copyOf(likes, capacity);
+                dislikes = Arrays.copyOf(dislikes, capacity);
+                comments = Arrays.copyOf(comments, capacity);
+            }
+            int doc = size++;
+            songIds[doc] = songId;
+            titles.add(title);
+            uploaders.add(uploader);
+            listened[doc] = listenedCount;
+            likes[doc] = likesCount;
+            dislikes[doc] = dislikesCount;
+            comments[doc] = commentsCount;
+            createdAt.add(uploadedAt);
+            facets[0].add(doc, genre == null ? "" : genre);
+            facets[1].add(doc, artist == null ? "" : artist);
+            facets[2].add(doc, uploadBucket(uploadedAt));
+            facets[3].add(doc, rangeBucket(listenedCount));
+            facets[4].add(doc, rangeBucket(likesCount));
+            return this;
+        }
+
+        private String uploadBucket(LocalDateTime uploadedAt) {
+            if (uploadedAt == null || uploadedAt.isBefore(now.minusDays(365))) {
+                return UPLOAD_BUCKETS[4];
+            } else if (uploadedAt.isBefore(now.minusDays(30))) {
+                return UPLOAD_BUCKETS[3];
+            } else if (uploadedAt.isBefore(now.minusDays(7))) {
+                return UPLOAD_BUCKETS[2];
+            } else if (uploadedAt.isBefore(now.minusDays(1))) {
+                return UPLOAD_BUCKETS[1];
+            }
+            return UPLOAD_BUCKETS[0];
+        }
+
+        private static String rangeBucket(int value) {
+            if (value < 10) {
+                return RANGE_BUCKETS[0];
+            } else if (value < 100) {
+                return RANGE_BUCKETS[1];
+            } else if (value < 1000) {
+                return RANGE_BUCKETS[2];
+            }
+            return RANGE_BUCKETS[3];
+        }
+
+        public FacetIndex build() {
+            return new FacetIndex(this);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.soundcloud.service.search;
+
+import com.example.soundcloud.models.dto.search.ResponseSuggestionDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// Immutable ternary search tree; every node keeps the K most popular entries that share its prefix.
+public class SuggestionIndex {
+
+    public static final String SONG = "song";
+    public static final String ARTIST = "artist";
+    public static final String USER = "user";
+    public static final String PLAYLIST = "playlist";
+
+    private static final int TOP_K = 10;
+    private static final int MAX_KEY_LENGTH = 32;
+    private static final int NONE = -1;
+    private static final int[] NO_ENTRIES = new int[0];
+
+    public static final SuggestionIndex EMPTY = new Builder().build();
+
+    private final char[] splitChars;
+    private final int[] lo;
+    private final int[] eq;
+    private final int[] hi;
+    private final int[][] top;
+    private final int root;
+    private final ResponseSuggestionDTO[] entries;
+
+    private SuggestionIndex(char[] splitChars, int[] lo, int[] eq, int[] hi, int[][] top, int root,
+                            ResponseSuggestionDTO[] entries) {
+        this.splitChars = splitChars;
+        this.lo = lo;
+        this.eq = eq;
+        this.hi = hi;
+        this.top = top;
+        this.root = root;
+        this.entries = entries;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    public List<ResponseSuggestionDTO> suggest(String query, int limit) {
+        int node = root;
+        int matched = NONE;
+        int consumed = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < query.length() && consumed < MAX_KEY_LENGTH; i++) {
+            char c = Character.toLowerCase(query.charAt(i));
+            if (Character.isWhitespace(c)) {
+                pendingSpace = consumed > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                matched = step(node, ' ');
+                if (matched == NONE) {
+                    return Collections.emptyList();
+                }
+                node = eq[matched];
+                consumed++;
+                pendingSpace = false;
+            }
+            matched = step(node, c);
+            if (matched == NONE) {
+                return Collections.emptyList();
+            }
+            node = eq[matched];
+            consumed++;
+        }
+        if (matched == NONE) {
+            return Collections.emptyList();
+        }
+        int[] best = top[matched];
+        int count = Math.min(limit, best.length);
+        List<ResponseSuggestionDTO> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(entries[best[i]]);
+        }
+        return result;
+    }
+
+    private int step(int node, char c) {
+        while (node != NONE) {
+            if (c < splitChars[node]) {
+                node = lo[node];
+            } else if (c > splitChars[node]) {
+                node = hi[node];
+            } else {
+                return node;
+            }
+        }
+        return NONE;
+    }
+
+    static String normalize(String text) {
+        StringBuilder sb = new StringBuilder(Math.min(text.length(), MAX_KEY_LENGTH));
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length() && sb.length() < MAX_KEY_LENGTH; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+                if (sb.length() == MAX_KEY_LENGTH) {
+                    break;
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    public static class Builder {
+        private final List<ResponseSuggestionDTO> entries = new ArrayList<>();
+        private final List<String> keys = new ArrayList<>();
+        private long[] weights = new long[16];
+
+        private char[] splitChars;
+        private int[] lo;
+        private int[] eq;
+        private int[] hi;
+        private int[] termStart;
+        private int[] termEnd;
+        private int nodes;
+        private int root = NONE;
+        private int[] order;
+        private int[][] top;
+
+        public Builder add(String text, String type, long id, long weight) {
+            if (text == null) {
+                return this;
+            }
+            String key = normalize(text);
+            if (key.isEmpty()) {
+                return this;
+            }
+            if (keys.size() == weights.length) {
+                weights = Arrays.copyOf(weights, weights.length * 2);
+            }
+            weights[keys.size()] = weight;
+            keys.add(key);
+            entries.add(new ResponseSuggestionDTO(text, type, id));
+            return this;
+        }
+
+        public SuggestionIndex build() {
+            int n = keys.size();
+            Integer[] sorted = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = i;
+            }
+            Arrays.sort(sorted, Comparator.<Integer, String>comparing(keys::get)
+                    .thenComparing(i -> weights[i], Comparator.reverseOrder()));
+            order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = sorted[i];
+            }
+
+            int capacity = Math.max(16, n * 4);
+            splitChars = new char[capacity];
+            lo = new int[capacity];
+            eq = new int[capacity];
+            hi = new int[capacity];
+            termStart = new int[capacity];
+            termEnd = new int[capacity];
+
+            // insert distinct keys median-first so the lo/hi links stay balanced
+            List<Integer> groupStarts = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                if (i == 0 || !keys.get(order[i]).equals(keys.get(order[i - 1]))) {
+                    groupStarts.add(i);
+                }
+            }
+            groupStarts.add(n);
+            insertBalanced(groupStarts, 0, groupStarts.size() - 2);
+
+            top = new int[nodes][];
+            collect(root);
+
+            ResponseSuggestionDTO[] built = entries.toArray(new ResponseSuggestionDTO[0]);
+            return new SuggestionIndex(Arrays.copyOf(splitChars, nodes), Arrays.copyOf(lo, nodes),
+                    Arrays.copyOf(eq, nodes), Arrays.copyOf(hi, nodes), top, root, built);
+        }
+
+        private void insertBalanced(List<Integer> groupStarts, int from, int to) {
+            if (from > to) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            int start = groupStarts.get(mid);
+            int node = insert(keys.get(order[start]));
+            termStart[node] = start;
+            termEnd[node] = groupStarts.get(mid + 1);
+            insertBalanced(groupStarts, from, mid - 1);
+            insertBalanced(groupStarts, mid + 1, to);
+        }
+
+        private int insert(String key) {
+            if (root == NONE) {
+                root = newNode(key.charAt(0));
+            }
+            int node = root;
+            int i = 0;
+            while (true) {
+                char c = key.charAt(i);
+                if (c < splitChars[node]) {
+                    if (lo[node] == NONE) {
+                        int child = newNode(c);
+                        lo[node] = child;
+                    }
+                    node = lo[node];
+                } else if (c > splitChars[node]) {
+                    if (hi[node] == NONE) {
+                        int child = newNode(c);
+                        hi[node] = child;
+                    }
+                    node = hi[node];
+                } else {
+                    if (++i == key.length()) {
+                        return node;
+                    }
+                    if (eq[node] == NONE) {
+                        int child = newNode(key.charAt(i));
+                        eq[node] = child;
+                    }
+                    node = eq[node];
+                }
+            }
+        }
+
+        private int newNode(char c) {
+            if (nodes == splitChars.length) {
+                int capacity = nodes * 2;
+                splitChars = Arrays.copyOf(splitChars, capacity);
+                lo = Arrays.copyOf(lo, capacity);
+                eq = Arrays.copyOf(eq, capacity);
+                hi = Arrays.copyOf(hi, capacity);
+                termStart = Arrays.copyOf(termStart, capacity);
+                termEnd = Arrays.copyOf(termEnd, capacity);
+            }
+            splitChars[nodes] = c;
+            lo[nodes] = NONE;
+            eq[nodes] = NONE;
+            hi[nodes] = NONE;
+            termStart[nodes] = 0;
+            termEnd[nodes] = 0;
+            return nodes++;
+        }
+
+        // fills top[] for the node's prefix and returns the best entries of the node and its lo/hi siblings
+        private int[] collect(int node) {
+            if (node == NONE) {
+                return NO_ENTRIES;
+            }
+            int[] below = collect(eq[node]);
+            int terminals = Math.min(TOP_K, termEnd[node] - termStart[node]);
+            int[] own = new int[terminals];
+            for (int i = 0; i < terminals; i++) {
+                own[i] = order[termStart[node] + i];
+            }
+            top[node] = merge(own, below, NO_ENTRIES);
+            return merge(top[node], collect(lo[node]), collect(hi[node]));
+        }
+
+        private int[] merge(int[] a, int[] b, int[] c) {
+            int[] result = new int[Math.min(TOP_K, a.length + b.length + c.length)];
+            int ia = 0;
+            int ib = 0;
+            int ic = 0;
+            for (int i = 0; i < result.length; i++) {
+                long wa = ia < a.length ? weights[a[ia]] : Long.MIN_VALUE;
+                long wb = ib < b.length ? weights[b[ib]] : Long.MIN_VALUE;
+                long wc = ic < c.length ? weights[c[ic]] : Long.MIN_VALUE;
+                if (ia < a.length && wa >= wb && wa >= wc) {
+                    result[i] = a[ia++];
+                } else if (ib < b.length && wb >= wc) {
+                    result[i] = b[ib++];
+                } else {
+                    result[i] = c[ic++];
+                }
+            }
+            return result;
+        }
+    }
+}
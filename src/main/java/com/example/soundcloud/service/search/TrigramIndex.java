@@ -0,0 +1,260 @@
+package com.example.soundcloud.service.search;
+
+import com.example.soundcloud.service.recommendation.SparseAccumulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable trigram index over the distinct words of the indexed texts and over the whole multi word texts.
+// Candidates sharing enough trigrams with the query are re-ranked by Damerau-Levenshtein distance once per distinct
+// term, so a common word costs one distance however many texts contain it; the matching terms are then expanded to
+// their texts. Single word queries are matched against the words, longer queries against the whole texts.
+public class TrigramIndex {
+
+    public static final TrigramIndex EMPTY = new Builder().build();
+
+    private static final int MAX_TEXT_LENGTH = 64;
+    private static final int MAX_EXPECTED_CANDIDATES = 4096;
+
+    private final Terms words;
+    private final Terms phrases;
+    private final long[] ids;
+
+    private TrigramIndex(Terms words, Terms phrases, long[] ids) {
+        this.words = words;
+        this.phrases = phrases;
+        this.ids = ids;
+    }
+
+    // A term sharing minShared of the query trigrams that are in the index misses at most found - minShared of
+    // their posting lists, so it is in one of the found - minShared + 1 shortest ones. Only those lists add
+    // candidates, the longer ones just count for candidates already there, which keeps the per query
+    // accumulator to the size of the rare lists instead of the vocabulary.
+    public List<Long> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || ids.length == 0) {
+            return new ArrayList<>();
+        }
+        Terms terms = normalized.indexOf(' ') < 0 ? words : phrases;
+        int maxDistance = normalized.length() <= 4 ? 1 : 2;
+        long[] queryTrigrams = distinctTrigrams(normalized);
+        int minShared = Math.max(1, queryTrigrams.length - 3 * maxDistance);
+
+        // posting lists of the query, packed as (length, trigram index) so that sorting puts the shortest first
+        long[] lists = new long[queryTrigrams.length];
+        int found = 0;
+        for (long trigram : queryTrigrams) {
+            int t = Arrays.binarySearch(terms.trigrams, trigram);
+            if (t >= 0) {
+                lists[found++] = ((long) (terms.offsets[t + 1] - terms.offsets[t]) << 32) | t;
+            }
+        }
+        if (found < minShared) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(lists, 0, found);
+        int seeding = found - minShared + 1;
+        int seeded = 0;
+        for (int i = 0; i < seeding; i++) {
+            seeded += (int) (lists[i] >>> 32);
+        }
+        SparseAccumulator shared = new SparseAccumulator(Math.min(seeded, MAX_EXPECTED_CANDIDATES));
+        for (int i = 0; i < found; i++) {
+            int t = (int) lists[i];
+            for (int p = terms.offsets[t]; p < terms.offsets[t + 1]; p++) {
+                if (i < seeding) {
+                    shared.add(terms.postings[p], 1);
+                } else {
+                    shared.addIfPresent(terms.postings[p], 1);
+                }
+            }
+        }
+
+        long[] ranked = new long[shared.size()];
+        int candidates = 0;
+        for (int entry = 0; entry < shared.size(); entry++) {
+            int term = shared.key(entry);
+            int count = shared.hits(entry);
+            if (count < minShared) {
+                continue;
+            }
+            int distance = distance(normalized, terms.texts[term], maxDistance);
+            if (distance <= maxDistance) {
+                // pack so that ascending order is by distance, then by most shared trigrams
+                ranked[candidates++] = ((long) distance << 48) | ((long) (0xFFFF - Math.min(count, 0xFFFF)) << 32) | term;
+            }
+        }
+        Arrays.sort(ranked, 0, candidates);
+
+        List<Long> result = new ArrayList<>();
+        for (int i = 0; i < candidates && result.size() < limit; i++) {
+            int term = (int) ranked[i];
+            for (int p = terms.docOffsets[term]; p < terms.docOffsets[term + 1] && result.size() < limit; p++) {
+                long id = ids[terms.docs[p]];
+                if (!result.contains(id)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    // optimal string alignment distance, gives up with maxDistance + 1 as soon as the bound is exceeded
+    static int distance(String a, String b, int maxDistance) {
+        if (Math.abs(a.length() - b.length()) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[] previous2 = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[b.length()], maxDistance + 1);
+    }
+
+    static String normalize(String text) {
+        StringBuilder sb = new StringBuilder();
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length() && sb.length() < MAX_TEXT_LENGTH; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (!Character.isLetterOrDigit(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static long[] distinctTrigrams(String normalized) {
+        String padded = "  " + normalized + " ";
+        long[] result = new long[padded.length() - 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        Arrays.sort(result);
+        int distinct = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    // distinct terms with a trigram index over them and, per term, the texts it occurs in
+    private static class Terms {
+        private final String[] texts;
+        private final long[] trigrams;
+        private final int[] offsets;
+        private final int[] postings;
+        private final int[] docOffsets;
+        private final int[] docs;
+
+        private Terms(Map<String, int[]> termDocs) {
+            texts = termDocs.keySet().toArray(new String[0]);
+            docOffsets = new int[texts.length + 1];
+            for (int term = 0; term < texts.length; term++) {
+                docOffsets[term + 1] = docOffsets[term] + termDocs.get(texts[term])[0];
+            }
+            docs = new int[docOffsets[texts.length]];
+            Map<Long, int[]> trigramTerms = new HashMap<>();
+            for (int term = 0; term < texts.length; term++) {
+                int[] list = termDocs.get(texts[term]);
+                System.arraycopy(list, 1, docs, docOffsets[term], list[0]);
+                for (long trigram : distinctTrigrams(texts[term])) {
+                    append(trigramTerms, trigram, term);
+                }
+            }
+            trigrams = new long[trigramTerms.size()];
+            int k = 0;
+            for (Long trigram : trigramTerms.keySet()) {
+                trigrams[k++] = trigram;
+            }
+            Arrays.sort(trigrams);
+            offsets = new int[trigrams.length + 1];
+            for (int t = 0; t < trigrams.length; t++) {
+                offsets[t + 1] = offsets[t] + trigramTerms.get(trigrams[t])[0];
+            }
+            postings = new int[offsets[trigrams.length]];
+            for (int t = 0; t < trigrams.length; t++) {
+                int[] list = trigramTerms.get(trigrams[t]);
+                System.arraycopy(list, 1, postings, offsets[t], list[0]);
+            }
+        }
+    }
+
+    // slot 0 of a list holds its size, the rest is the growing list
+    private static <K> void append(Map<K, int[]> lists, K key, int value) {
+        int[] list = lists.computeIfAbsent(key, k -> new int[4]);
+        if (list[0] > 0 && list[list[0]] == value) {
+            return;
+        }
+        if (list[0] + 1 == list.length) {
+            list = Arrays.copyOf(list, list.length * 2);
+            lists.put(key, list);
+        }
+        list[++list[0]] = value;
+    }
+
+    public static class Builder {
+        private final Map<String, int[]> words = new HashMap<>();
+        private final Map<String, int[]> phrases = new HashMap<>();
+        private long[] ids = new long[16];
+        private int size;
+
+        public Builder add(String text, long id) {
+            if (text == null) {
+                return this;
+            }
+            String normalized = normalize(text);
+            if (normalized.isEmpty()) {
+                return this;
+            }
+            int doc = size++;
+            if (doc == ids.length) {
+                ids = Arrays.copyOf(ids, doc * 2);
+            }
+            ids[doc] = id;
+            if (normalized.indexOf(' ') >= 0) {
+                append(phrases, normalized, doc);
+            }
+            for (String word : normalized.split(" ")) {
+                append(words, word, doc);
+            }
+            return this;
+        }
+
+        public TrigramIndex build() {
+            return new TrigramIndex(new Terms(words), new Terms(phrases), Arrays.copyOf(ids, size));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.soundcloud.service.social;
+
+import com.example.soundcloud.models.dto.user.SuggestedUserDTO;
+import com.example.soundcloud.models.entities.User;
+import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.models.repositories.UserRepository;
+import com.example.soundcloud.service.recommendation.CsrMatrix;
+import com.example.soundcloud.service.recommendation.LongIndex;
+import com.example.soundcloud.service.recommendation.SparseAccumulator;
+import com.example.soundcloud.service.recommendation.TopK;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// "Who to follow": accounts followed by the people a user follows. Each followee votes for the accounts it
+// follows with a weight that shrinks with the number of accounts it follows, so a few selective followees count
+// more than one that follows everybody, and the accounts with the highest total win. The walk runs on a CSR
+// snapshot of the follower graph with dense ordinals, accumulating into a per call sparse table that grows with the
+// accounts the walk reaches rather than with the graph. Snapshots are rebuilt in the background and swapped in as
+// a whole.
+@Component
+public class FollowSuggestions {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FollowSuggestions.class);
+    public static final int MAX_SUGGESTIONS = 50;
+    private static final int MAX_EXPECTED_CANDIDATES = 4096;
+
+    @Autowired
+    private FollowerGraph followerGraph;
+    @Autowired
+    private UserRepository userRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(new LongIndex(16), new CsrMatrix.Builder().build(0));
+
+    public List<SuggestedUserDTO> suggest(long userId, int limit) {
+        if (limit <= 0 || limit > MAX_SUGGESTIONS) {
+            throw new BadRequestException("Limit must be between 1 and " + MAX_SUGGESTIONS + "!");
+        }
+        Snapshot s = snapshot;
+        // the live following list, so accounts followed since the snapshot are not suggested
+        long[] following = followerGraph.following(userId);
+        int reached = 0;
+        for (long followed : following) {
+            int row = s.users.get(followed);
+            if (row >= 0) {
+                reached += s.following.end(row) - s.following.start(row);
+            }
+        }
+        SparseAccumulator acc = new SparseAccumulator(Math.min(reached, MAX_EXPECTED_CANDIDATES));
+        for (long followed : following) {
+            int row = s.users.get(followed);
+            if (row < 0) {
+                continue;
+            }
+            int start = s.following.start(row);
+            int end = s.following.end(row);
+            float weight = (float) (1 / Math.log(2 + end - start));
+            for (int p = start; p < end; p++) {
+                acc.add(s.following.col(p), weight);
+            }
+        }
+        int self = s.users.get(userId);
+        TopK top = new TopK(limit);
+        for (int entry = 0; entry < acc.size(); entry++) {
+            int candidate = acc.key(entry);
+            long candidateId = s.users.idOf(candidate);
+            if (candidate != self && Arrays.binarySearch(following, candidateId) < 0) {
+                // the entry rides along as the item, the ordinal and overlap are read back from it
+                top.offer(entry, acc.sum(entry));
+            }
+        }
+        int[] entries = new int[limit];
+        float[] scores = new float[limit];
+        int count = top.drainTo(entries, scores, 0);
+        return hydrate(s, acc, entries, scores, count);
+    }
+
+    // the graph is loaded by then, see FollowerGraph.load
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void rebuild() {
+        if (!followerGraph.isLoaded()) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        // users who follow someone get the first ordinals, in the order of their rows
+        List<long[]> rows = new ArrayList<>();
+        LongIndex users = new LongIndex(Math.max(16, snapshot.users.size()));
+        followerGraph.forEachFollowing((user, ids) -> {
+            users.getOrAdd(user);
+            rows.add(ids);
+        });
+        CsrMatrix.Builder builder = new CsrMatrix.Builder();
+        for (long[] ids : rows) {
+            builder.startRow();
+            for (long id : ids) {
+                builder.add(users.getOrAdd(id), 1f);
+            }
+        }
+        while (builder.rows() < users.size()) {
+            builder.startRow();
+        }
+        CsrMatrix following = builder.build(users.size());
+        snapshot = new Snapshot(users, following);
+        LOGGER.info("Follow suggestion snapshot with {} users and {} follows built in {} ms", users.size(),
+                following.nonZeros(), System.currentTimeMillis() - started);
+    }
+
+    private List<SuggestedUserDTO> hydrate(Snapshot s, SparseAccumulator acc, int[] entries, float[] scores,
+                                           int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(s.users.idOf(acc.key(entries[i])));
+        }
+        Map<Long, User> users = new HashMap<>();
+        userRepository.findAllById(ids).forEach(user -> users.put(user.getId(), user));
+        List<SuggestedUserDTO> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = users.get(ids.get(i));
+            if (user != null) {
+                result.add(new SuggestedUserDTO(user.getId(), user.getUsername(), user.getFirstName(),
+                        user.getLastName(), user.getProfileImageUrl(), acc.hits(entries[i]), scores[i]));
+            }
+        }
+        return result;
+    }
+
+    private static class Snapshot {
+        private final LongIndex users;
+        private final CsrMatrix following;
+
+        private Snapshot(LongIndex users, CsrMatrix following) {
+            this.users = users;
+            this.following = following;
+        }
+    }
+}
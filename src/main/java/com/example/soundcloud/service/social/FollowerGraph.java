@@ -0,0 +1,275 @@
+package com.example.soundcloud.service.social;
+
+import com.example.soundcloud.models.dao.FollowerDAO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+// Who follows whom, as two sorted long[] per user: the users they follow and their followers. Arrays are never
+// changed in place, a follow or unfollow copies the two arrays it touches and swaps them in, so readers need no
+// lock and get O(log n) membership, O(1) counts and merge intersections. A writer holds the stripe of the
+// (follower, followed) pair while it changes the followers table and the arrays, so a follow and an unfollow of
+// the same pair can not leave the table and memory disagreeing, while follows of one popular user by different
+// listeners do not wait on each other's database round trip. Each array is swapped with an atomic compute, so
+// writers of different pairs touching the same user do not lose each other's changes.
+// Until the graph is loaded at startup, reads go to the table.
+@Component
+public class FollowerGraph {
+
+    private static final long[] EMPTY = new long[0];
+    private static final int STRIPES = 256;
+
+    @Autowired
+    private FollowerDAO followerDAO;
+
+    private final Map<Long, long[]> following = new ConcurrentHashMap<>();
+    private final Map<Long, long[]> followers = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+    // changes made while the table was being read, applied again on top of what was read
+    private final List<long[]> changedWhileLoading = new ArrayList<>();
+    private volatile boolean loaded;
+
+    public FollowerGraph() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    // false when the follower already follows the user
+    public boolean follow(long followerId, long followedId) {
+        synchronized (stripe(followerId, followedId)) {
+            if (loaded && contains(following.get(followerId), followedId)) {
+                return false;
+            }
+            if (!followerDAO.insert(followerId, followedId)) {
+                return false;
+            }
+            apply(followerId, followedId, true);
+            return true;
+        }
+    }
+
+    // false when the follower does not follow the user
+    public boolean unfollow(long followerId, long followedId) {
+        synchronized (stripe(followerId, followedId)) {
+            if (loaded && !contains(following.get(followerId), followedId)) {
+                return false;
+            }
+            if (!followerDAO.delete(followerId, followedId)) {
+                return false;
+            }
+            apply(followerId, followedId, false);
+            return true;
+        }
+    }
+
+    // forgets a deleted user, whose rows went with the user
+    public void removeUser(long userId) {
+        for (long followedId : following(userId)) {
+            forget(userId, followedId);
+        }
+        for (long followerId : followers(userId)) {
+            forget(followerId, userId);
+        }
+    }
+
+    public boolean isFollowing(long followerId, long followedId) {
+        return contains(following(followerId), followedId);
+    }
+
+    // sorted and shared, callers must not change the arrays
+    public long[] following(long userId) {
+        if (!loaded) {
+            return toArray(followerDAO.followingIds(userId));
+        }
+        return following.getOrDefault(userId, EMPTY);
+    }
+
+    public long[] followers(long userId) {
+        if (!loaded) {
+            return toArray(followerDAO.followerIds(userId));
+        }
+        return followers.getOrDefault(userId, EMPTY);
+    }
+
+    public int followingCount(long userId) {
+        return following(userId).length;
+    }
+
+    public int followerCount(long userId) {
+        return followers(userId).length;
+    }
+
+    // users that the user follows and that follow the user back
+    public long[] mutuals(long userId) {
+        return intersect(following(userId), followers(userId));
+    }
+
+    private void forget(long followerId, long followedId) {
+        synchronized (stripe(followerId, followedId)) {
+            apply(followerId, followedId, false);
+        }
+    }
+
+    public static long[] intersect(long[] a, long[] b) {
+        long[] result = new long[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // every user who follows someone with the sorted ids they follow, weakly consistent with concurrent changes
+    public void forEachFollowing(BiConsumer<Long, long[]> action) {
+        following.forEach(action);
+    }
+
+    // before anything that reads the graph when the application is ready
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Map<Long, long[]> loadedFollowing = new HashMap<>();
+        Map<Long, long[]> loadedFollowers = new HashMap<>();
+        AdjacencyBuilder byFollower = new AdjacencyBuilder(loadedFollowing);
+        followerDAO.scanByFollower(byFollower);
+        byFollower.finish();
+        AdjacencyBuilder byFollowing = new AdjacencyBuilder(loadedFollowers);
+        followerDAO.scanByFollowing(byFollowing);
+        byFollowing.finish();
+        synchronized (changedWhileLoading) {
+            following.putAll(loadedFollowing);
+            followers.putAll(loadedFollowers);
+            for (long[] change : changedWhileLoading) {
+                update(change[0], change[1], change[2] == 1);
+            }
+            changedWhileLoading.clear();
+            loaded = true;
+        }
+    }
+
+    // the caller holds the stripe of the pair
+    private void apply(long followerId, long followedId, boolean add) {
+        if (!loaded) {
+            synchronized (changedWhileLoading) {
+                if (!loaded) {
+                    changedWhileLoading.add(new long[]{followerId, followedId, add ? 1 : 0});
+                    return;
+                }
+            }
+        }
+        update(followerId, followedId, add);
+    }
+
+    private void update(long followerId, long followedId, boolean add) {
+        following.compute(followerId, (id, ids) -> add ? insert(ids, followedId) : remove(ids, followedId));
+        followers.compute(followedId, (id, ids) -> add ? insert(ids, followerId) : remove(ids, followerId));
+    }
+
+    private static boolean contains(long[] ids, long id) {
+        return ids != null && Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    private static long[] insert(long[] ids, long id) {
+        if (ids == null) {
+            return new long[]{id};
+        }
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return ids;
+        }
+        int insertAt = -index - 1;
+        long[] updated = new long[ids.length + 1];
+        System.arraycopy(ids, 0, updated, 0, insertAt);
+        updated[insertAt] = id;
+        System.arraycopy(ids, insertAt, updated, insertAt + 1, ids.length - insertAt);
+        return updated;
+    }
+
+    // null removes the user from the map once the last id is gone
+    private static long[] remove(long[] ids, long id) {
+        int index = ids == null ? -1 : Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        long[] updated = new long[ids.length - 1];
+        System.arraycopy(ids, 0, updated, 0, index);
+        System.arraycopy(ids, index + 1, updated, index, ids.length - index - 1);
+        return updated;
+    }
+
+    private static long[] toArray(List<Long> ids) {
+        return ids.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+    }
+
+    private Object stripe(long followerId, long followedId) {
+        long hash = (followerId * 0x9E3779B97F4A7C15L) ^ followedId;
+        hash ^= hash >>> 32;
+        return stripes[(int) ((hash ^ (hash >>> 16)) & (STRIPES - 1))];
+    }
+
+    // rows arrive sorted by the first column and then the second, so each user's run is already a sorted array
+    private static class AdjacencyBuilder implements RowCallbackHandler {
+        private final Map<Long, long[]> target;
+        private long[] buffer = new long[16];
+        private int size;
+        private long current = -1;
+
+        private AdjacencyBuilder(Map<Long, long[]> target) {
+            this.target = target;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long user = rs.getLong(1);
+            long other = rs.getLong(2);
+            if (user != current) {
+                finish();
+                current = user;
+            }
+            if (size > 0 && buffer[size - 1] == other) {
+                return;
+            }
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = other;
+        }
+
+        private void finish() {
+            if (size > 0) {
+                target.put(current, Arrays.copyOf(buffer, size));
+            }
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.soundcloud.service.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bloom filter over 64 bit keys, sized from the expected number of keys and the wanted false positive rate.
+// The k bit positions come from double hashing one mixed key. Bits are only ever set, with a CAS per word, so
+// any number of threads can add and test at the same time without locks.
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private final long expectedKeys;
+    private final double targetFalsePositiveRate;
+    private final LongAdder added = new LongAdder();
+
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid bloom filter size " + expectedKeys + ", " + falsePositiveRate);
+        }
+        long optimalBits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) / 64));
+        this.bits = (long) words.length() * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedKeys * Math.log(2)));
+        this.expectedKeys = expectedKeys;
+        this.targetFalsePositiveRate = falsePositiveRate;
+    }
+
+    // true when the key was not in the filter before, i.e. at least one of its bits was still clear
+    public boolean put(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1 ^ 0x5DEECE66DL) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0) {
+                if (words.compareAndSet(word, current, current | mask)) {
+                    changed = true;
+                    break;
+                }
+                current = words.get(word);
+            }
+        }
+        if (changed) {
+            added.increment();
+        }
+        return changed;
+    }
+
+    public boolean mightContain(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1 ^ 0x5DEECE66DL) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bits() {
+        return bits;
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+    public long bytes() {
+        return bits / 8;
+    }
+
+    public long expectedKeys() {
+        return expectedKeys;
+    }
+
+    public double targetFalsePositiveRate() {
+        return targetFalsePositiveRate;
+    }
+
+    // keys whose put changed the filter; a few are lost to false positives, so it slightly undercounts
+    public long approximateKeys() {
+        return added.sum();
+    }
+
+    // the chance that a key never added tests positive right now: the share of set bits to the power of k
+    public double currentFalsePositiveRate() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) {
+            set += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) set / bits, hashes);
+    }
+
+    static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+}
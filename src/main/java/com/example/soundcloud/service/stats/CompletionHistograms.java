@@ -0,0 +1,312 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.StatsDAO;
+import com.example.soundcloud.models.dto.song.ResponseHeartbeatDTO;
+import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import com.example.soundcloud.service.events.EventType;
+import com.example.soundcloud.service.events.HeartbeatRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Players post a heartbeat (song id, position) every few seconds. Heartbeats are validated against an in-memory
+// snapshot of the song ids and their durations, packed into one long each and handed to worker threads through
+// lock-free rings. The number of heartbeats in each twentieth of a song is its retention curve: with a fixed
+// heartbeat interval every bucket sees one heartbeat per listener that got that far. The buckets come from the
+// duration measured on the uploaded file, not from the client, and only the heartbeats added since the last flush
+// are written, so nodes flushing the same song add up instead of overwriting each other.
+@Component
+public class CompletionHistograms implements DomainEventHandler {
+
+    public static final int BUCKETS = 20;
+    public static final int MAX_BATCH = 1000;
+    // players may report positions a little past the measured end
+    private static final long MAX_OVERRUN_MILLIS = 1000;
+    private static final int BUCKET_BITS = 5;
+    private static final long BUCKET_MASK = (1 << BUCKET_BITS) - 1;
+    private static final int RING_CAPACITY = 1 << 16;
+    private static final int DRAIN_BATCH = 4096;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompletionHistograms.class);
+
+    @Autowired
+    private StatsDAO statsDAO;
+    @Value("${heartbeats.workers:2}")
+    private int workerCount;
+
+    // replaced as a whole on upload and delete, which are rare next to heartbeats
+    private volatile Songs knownSongs = new Songs(new long[0], new long[0]);
+    // per song, the heartbeats per bucket followed by the ones not flushed yet
+    private final Map<Long, AtomicLongArray> histograms = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private volatile HeartbeatRing[] rings = new HeartbeatRing[0];
+    private Thread[] workers = new Thread[0];
+    private volatile boolean running;
+
+    // each record is {song id, position millis}; a duration sent by older players as a third value is ignored
+    public ResponseHeartbeatDTO ingest(long[][] heartbeats) {
+        if (heartbeats == null || heartbeats.length > MAX_BATCH) {
+            throw new BadRequestException("At most " + MAX_BATCH + " heartbeats can be sent at a time!");
+        }
+        Songs songs = knownSongs;
+        HeartbeatRing[] targets = rings;
+        int accepted = 0;
+        int rejected = 0;
+        int dropped = 0;
+        for (long[] heartbeat : heartbeats) {
+            long duration = heartbeat == null || heartbeat.length < 2 ? 0 : songs.duration(heartbeat[0]);
+            if (duration <= 0 || heartbeat[1] < 0 || heartbeat[1] > duration + MAX_OVERRUN_MILLIS) {
+                rejected++;
+                continue;
+            }
+            long songId = heartbeat[0];
+            int bucket = (int) Math.min(BUCKETS - 1, heartbeat[1] * BUCKETS / duration);
+            // one ring per song keeps the heartbeats of a song on one worker
+            if (targets.length > 0 && targets[(int) (songId % targets.length)].offer(songId << BUCKET_BITS | bucket)) {
+                accepted++;
+            } else {
+                dropped++;
+            }
+        }
+        return new ResponseHeartbeatDTO(accepted, rejected, dropped);
+    }
+
+    public long[] heartbeats(long songId) {
+        long[] result = new long[BUCKETS];
+        AtomicLongArray histogram = histograms.get(songId);
+        for (int b = 0; histogram != null && b < BUCKETS; b++) {
+            result[b] = histogram.get(b);
+        }
+        return result;
+    }
+
+    public long pending() {
+        long pending = 0;
+        for (HeartbeatRing ring : rings) {
+            pending += ring.size();
+        }
+        return pending;
+    }
+
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        if (event.getType() == EventType.UPLOAD) {
+            songAdded(event.getSongId());
+        } else if (event.getType() == EventType.SONG_DELETE) {
+            songRemoved(event.getSongId());
+        }
+    }
+
+    public void songAdded(long songId) {
+        long duration = measure(songId, statsDAO.findSongUrl(songId));
+        synchronized (this) {
+            Songs songs = knownSongs;
+            int index = Arrays.binarySearch(songs.ids, songId);
+            if (index >= 0) {
+                return;
+            }
+            int insertAt = -index - 1;
+            long[] ids = new long[songs.ids.length + 1];
+            long[] durations = new long[ids.length];
+            System.arraycopy(songs.ids, 0, ids, 0, insertAt);
+            System.arraycopy(songs.durations, 0, durations, 0, insertAt);
+            ids[insertAt] = songId;
+            durations[insertAt] = duration;
+            System.arraycopy(songs.ids, insertAt, ids, insertAt + 1, songs.ids.length - insertAt);
+            System.arraycopy(songs.durations, insertAt, durations, insertAt + 1, songs.ids.length - insertAt);
+            knownSongs = new Songs(ids, durations);
+        }
+    }
+
+    public synchronized void songRemoved(long songId) {
+        Songs songs = knownSongs;
+        int index = Arrays.binarySearch(songs.ids, songId);
+        if (index < 0) {
+            return;
+        }
+        long[] ids = new long[songs.ids.length - 1];
+        long[] durations = new long[ids.length];
+        System.arraycopy(songs.ids, 0, ids, 0, index);
+        System.arraycopy(songs.durations, 0, durations, 0, index);
+        System.arraycopy(songs.ids, index + 1, ids, index, songs.ids.length - index - 1);
+        System.arraycopy(songs.durations, index + 1, durations, index, songs.ids.length - index - 1);
+        knownSongs = new Songs(ids, durations);
+        histograms.remove(songId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        statsDAO.createCompletionTable();
+        statsDAO.createSongDurationTable();
+        statsDAO.scanCompletion(rs -> histogram(rs.getLong("song_id")).set(rs.getInt("bucket"), rs.getLong("heartbeats")));
+        refreshSongs();
+        HeartbeatRing[] created = new HeartbeatRing[Math.max(1, workerCount)];
+        workers = new Thread[created.length];
+        running = true;
+        for (int w = 0; w < created.length; w++) {
+            HeartbeatRing ring = new HeartbeatRing(RING_CAPACITY);
+            created[w] = ring;
+            workers[w] = new Thread(() -> work(ring), "heartbeat-worker-" + w);
+            workers[w].setDaemon(true);
+            workers[w].start();
+        }
+        rings = created;
+    }
+
+    // picks up songs that changed on other nodes and measures the ones that were never measured
+    @Scheduled(cron = "0 45 * * * *")
+    public void refreshSongs() {
+        List<Long> ids = new ArrayList<>();
+        List<Long> durations = new ArrayList<>();
+        Map<Integer, String> unmeasured = new HashMap<>();
+        statsDAO.scanSongDurations(rs -> {
+            long duration = rs.getLong("duration_millis");
+            if (rs.wasNull()) {
+                unmeasured.put(ids.size(), rs.getString("url"));
+            }
+            ids.add(rs.getLong("id"));
+            durations.add(duration);
+        });
+        for (Map.Entry<Integer, String> song : unmeasured.entrySet()) {
+            durations.set(song.getKey(), measure(ids.get(song.getKey()), song.getValue()));
+        }
+        Songs songs = new Songs(ids.stream().mapToLong(Long::longValue).toArray(),
+                durations.stream().mapToLong(Long::longValue).toArray());
+        synchronized (this) {
+            knownSongs = songs;
+        }
+    }
+
+    // 0 when the file is missing or holds no mp3 frames, heartbeats of the song are rejected then
+    private long measure(long songId, String url) {
+        if (url == null) {
+            return 0;
+        }
+        long duration;
+        try {
+            duration = Mp3Frames.durationMillis(new File(url));
+        } catch (IOException e) {
+            LOGGER.warn("Can not measure the duration of song {} from {}", songId, url, e);
+            return 0;
+        }
+        if (duration > 0) {
+            statsDAO.saveSongDuration(songId, duration);
+        }
+        return duration;
+    }
+
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void flush() {
+        List<Object[]> rows = new ArrayList<>();
+        Iterator<Long> it = dirty.iterator();
+        while (it.hasNext()) {
+            long songId = it.next();
+            it.remove();
+            AtomicLongArray histogram = histograms.get(songId);
+            for (int b = 0; histogram != null && b < BUCKETS; b++) {
+                long added = histogram.getAndSet(BUCKETS + b, 0);
+                if (added != 0) {
+                    rows.add(new Object[]{songId, b, added});
+                }
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            statsDAO.saveCompletion(rows);
+        } catch (RuntimeException e) {
+            // the next flush writes them again
+            for (Object[] row : rows) {
+                long songId = (Long) row[0];
+                histogram(songId).addAndGet(BUCKETS + (Integer) row[1], (Long) row[2]);
+                dirty.add(songId);
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    // sorting a drained batch puts the heartbeats of a song and bucket next to each other, so a hot song costs
+    // one map lookup and two atomic adds per batch instead of per heartbeat
+    private void work(HeartbeatRing ring) {
+        long[] batch = new long[DRAIN_BATCH];
+        while (running || ring.size() > 0) {
+            int count = ring.drain(batch);
+            if (count == 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            Arrays.sort(batch, 0, count);
+            int start = 0;
+            for (int i = 1; i <= count; i++) {
+                if (i == count || batch[i] != batch[start]) {
+                    long songId = batch[start] >>> BUCKET_BITS;
+                    int bucket = (int) (batch[start] & BUCKET_MASK);
+                    AtomicLongArray histogram = histogram(songId);
+                    histogram.addAndGet(bucket, i - start);
+                    histogram.addAndGet(BUCKETS + bucket, i - start);
+                    dirty.add(songId);
+                    start = i;
+                }
+            }
+        }
+    }
+
+    private AtomicLongArray histogram(long songId) {
+        return histograms.computeIfAbsent(songId, id -> new AtomicLongArray(2 * BUCKETS));
+    }
+
+    // sorted song ids with their durations in millis
+    private static class Songs {
+        private final long[] ids;
+        private final long[] durations;
+
+        private Songs(long[] ids, long[] durations) {
+            this.ids = ids;
+            this.durations = durations;
+        }
+
+        private long duration(long songId) {
+            int index = Arrays.binarySearch(ids, songId);
+            return index < 0 ? 0 : durations[index];
+        }
+    }
+}
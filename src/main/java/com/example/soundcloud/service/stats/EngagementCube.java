@@ -0,0 +1,266 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.StatsDAO;
+import com.example.soundcloud.models.dto.stats.ResponseEngagementDTO;
+import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import com.example.soundcloud.service.events.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Listens and likes per country x genre x UTC day. Countries and genres are dictionary encoded, and every day is
+// one dense array of [country][genre][measure] counters. Events only take the read lock; the write lock is
+// needed when a new country or genre outgrows the array shape of all days.
+@Component
+public class EngagementCube implements DomainEventHandler {
+
+    public static final String COUNTRY = "country";
+    public static final String GENRE = "genre";
+    public static final String DAY = "day";
+
+    private static final String UNKNOWN = "unknown";
+    private static final int LISTENS = 0;
+    private static final int LIKES = 1;
+    private static final int MEASURES = 2;
+    private static final int RETENTION_DAYS = 400;
+
+    @Autowired
+    private StatsDAO statsDAO;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> countryCodes = new ConcurrentHashMap<>();
+    private final List<String> countries = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> genreCodes = new ConcurrentHashMap<>();
+    private final List<String> genres = new CopyOnWriteArrayList<>();
+    private final Map<Long, AtomicIntegerArray> days = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private int countryCapacity = 64;
+    private int genreCapacity = 32;
+
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        if (event.getType() == EventType.LISTEN) {
+            listen(event.getCountry(), event.getGenre(), event.getTime());
+        } else if (event.getType() == EventType.LIKE) {
+            like(event.getCountry(), event.getGenre(), event.getTime());
+        }
+    }
+
+    public void listen(String country, String genre, long timeMillis) {
+        add(country, genre, Math.floorDiv(timeMillis, 86400000L), LISTENS, 1);
+    }
+
+    public void like(String country, String genre, long timeMillis) {
+        add(country, genre, Math.floorDiv(timeMillis, 86400000L), LIKES, 1);
+    }
+
+    private void add(String country, String genre, long day, int measure, int delta) {
+        int c = code(countryCodes, countries, country == null || country.trim().isEmpty() ? UNKNOWN : country);
+        int g = code(genreCodes, genres, genre == null ? UNKNOWN : genre);
+        lock.readLock().lock();
+        try {
+            if (c < countryCapacity && g < genreCapacity) {
+                cells(day).addAndGet(cell(c, g, measure), delta);
+                dirty.add(day);
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            reshape(c, g);
+            cells(day).addAndGet(cell(c, g, measure), delta);
+            dirty.add(day);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // slice: keep only the listed countries and genres (all when empty); roll up: sum over the dimensions that
+    // are not in groupBy
+    public List<ResponseEngagementDTO> query(LocalDate from, LocalDate to, Collection<String> countryFilter,
+                                             Collection<String> genreFilter, Collection<String> groupBy) {
+        for (String dimension : groupBy) {
+            if (!dimension.equals(COUNTRY) && !dimension.equals(GENRE) && !dimension.equals(DAY)) {
+                throw new BadRequestException("Invalid dimension " + dimension + ", use country, genre or day!");
+            }
+        }
+        if (to.isBefore(from)) {
+            throw new BadRequestException("to can not be before from!");
+        }
+        boolean byCountry = groupBy.contains(COUNTRY);
+        boolean byGenre = groupBy.contains(GENRE);
+        boolean byDay = groupBy.contains(DAY);
+        Map<Long, long[]> groups = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            // codes past the capacity belong to an event that is still waiting for the write lock
+            int[] countrySlice = slice(countryCodes, Math.min(countries.size(), countryCapacity), countryFilter);
+            int[] genreSlice = slice(genreCodes, Math.min(genres.size(), genreCapacity), genreFilter);
+            for (long day = from.toEpochDay(); day <= to.toEpochDay(); day++) {
+                AtomicIntegerArray cells = days.get(day);
+                if (cells == null) {
+                    continue;
+                }
+                for (int c : countrySlice) {
+                    for (int g : genreSlice) {
+                        int listens = cells.get(cell(c, g, LISTENS));
+                        int likes = cells.get(cell(c, g, LIKES));
+                        if (listens == 0 && likes == 0) {
+                            continue;
+                        }
+                        // 20 bits per code and the day in the upper bits, -1 marks a rolled up dimension
+                        long key = ((byDay ? day : -1) << 40) | ((byCountry ? c : 0xFFFFFL) << 20) | (byGenre ? g : 0xFFFFFL);
+                        long[] sums = groups.computeIfAbsent(key, k -> new long[MEASURES]);
+                        sums[LISTENS] += listens;
+                        sums[LIKES] += likes;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<ResponseEngagementDTO> result = new ArrayList<>(groups.size());
+        for (Map.Entry<Long, long[]> group : groups.entrySet()) {
+            long key = group.getKey();
+            int c = (int) ((key >>> 20) & 0xFFFFF);
+            int g = (int) (key & 0xFFFFF);
+            long day = key >> 40;
+            result.add(new ResponseEngagementDTO(c == 0xFFFFF ? null : countries.get(c),
+                    g == 0xFFFFF ? null : genres.get(g), day < 0 ? null : LocalDate.ofEpochDay(day),
+                    group.getValue()[LISTENS], group.getValue()[LIKES]));
+        }
+        result.sort(Comparator.comparing(ResponseEngagementDTO::getDay, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(ResponseEngagementDTO::getListens, Comparator.reverseOrder()));
+        return result;
+    }
+
+    private int[] slice(Map<String, Integer> codes, int size, Collection<String> filter) {
+        if (filter == null || filter.isEmpty()) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        return filter.stream().map(codes::get).filter(code -> code != null && code < size)
+                .mapToInt(Integer::intValue).distinct().toArray();
+    }
+
+    private int code(Map<String, Integer> codes, List<String> values, String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (values) {
+            return codes.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+    }
+
+    private AtomicIntegerArray cells(long day) {
+        return days.computeIfAbsent(day, d -> new AtomicIntegerArray(countryCapacity * genreCapacity * MEASURES));
+    }
+
+    private int cell(int country, int genre, int measure) {
+        return (country * genreCapacity + genre) * MEASURES + measure;
+    }
+
+    private void reshape(int country, int genre) {
+        int newCountries = countryCapacity;
+        int newGenres = genreCapacity;
+        while (country >= newCountries) {
+            newCountries *= 2;
+        }
+        while (genre >= newGenres) {
+            newGenres *= 2;
+        }
+        if (newCountries == countryCapacity && newGenres == genreCapacity) {
+            return;
+        }
+        for (Map.Entry<Long, AtomicIntegerArray> entry : days.entrySet()) {
+            AtomicIntegerArray old = entry.getValue();
+            AtomicIntegerArray grown = new AtomicIntegerArray(newCountries * newGenres * MEASURES);
+            for (int c = 0; c < countryCapacity; c++) {
+                for (int g = 0; g < genreCapacity; g++) {
+                    for (int m = 0; m < MEASURES; m++) {
+                        grown.set((c * newGenres + g) * MEASURES + m, old.get(cell(c, g, m)));
+                    }
+                }
+            }
+            entry.setValue(grown);
+        }
+        countryCapacity = newCountries;
+        genreCapacity = newGenres;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        statsDAO.createEngagementTable();
+        statsDAO.scanEngagementSince(LocalDate.now(ZoneOffset.UTC).minusDays(RETENTION_DAYS), rs -> {
+            long day = rs.getDate("day").toLocalDate().toEpochDay();
+            add(rs.getString("country"), rs.getString("genre"), day, LISTENS, rs.getInt("listens"));
+            add(rs.getString("country"), rs.getString("genre"), day, LIKES, rs.getInt("likes"));
+        });
+        dirty.clear();
+    }
+
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void flush() {
+        List<Object[]> rows = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Iterator<Long> it = dirty.iterator();
+            while (it.hasNext()) {
+                long day = it.next();
+                it.remove();
+                AtomicIntegerArray cells = days.get(day);
+                Date date = Date.valueOf(LocalDate.ofEpochDay(day));
+                for (int c = 0; c < Math.min(countries.size(), countryCapacity); c++) {
+                    for (int g = 0; g < Math.min(genres.size(), genreCapacity); g++) {
+                        int listens = cells.get(cell(c, g, LISTENS));
+                        int likes = cells.get(cell(c, g, LIKES));
+                        if (listens != 0 || likes != 0) {
+                            rows.add(new Object[]{date, countries.get(c), genres.get(g), listens, likes});
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!rows.isEmpty()) {
+            statsDAO.saveEngagement(rows);
+        }
+    }
+
+    @Scheduled(cron = "0 20 0 * * *")
+    public void dropExpiredDays() {
+        long oldest = LocalDate.now(ZoneOffset.UTC).minusDays(RETENTION_DAYS).toEpochDay();
+        days.keySet().removeIf(day -> day < oldest);
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.StatsDAO;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@Component
+public class GenreHistograms implements DomainEventHandler {
+
+    // user id 0 is never assigned by the database, so it holds the global histogram
+    private static final long GLOBAL = 0;
+    private static final long FLUSH_DELAY_MILLIS = 60 * 1000;
+
+    @Autowired
+    private StatsDAO statsDAO;
+
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private final List<String> genres = new CopyOnWriteArrayList<>();
+    private volatile ConcurrentHashMap<Long, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        switch (event.getType()) {
+            case LISTEN:
+                listen(event.getUserId(), event.getGenre());
+                break;
+            case LIKE:
+                like(event.getUserId(), event.getGenre());
+                break;
+            case UNLIKE:
+                unlike(event.getUserId(), event.getGenre());
+                break;
+            // A dislike that replaces a like publishes an UNLIKE first, which is handled above. The dislike itself
+            // is not counted: the top genre is the most liked one, as it was with the GROUP BY it replaces.
+            default:
+                break;
+        }
+    }
+
+    public void like(long userId, String genre) {
+        addLikes(userId, genre, 1);
+    }
+
+    public void unlike(long userId, String genre) {
+        addLikes(userId, genre, -1);
+    }
+
+    public void listen(long userId, String genre) {
+        if (genre == null) {
+            return;
+        }
+        int ordinal = ordinal(genre);
+        histogram(GLOBAL).addListens(ordinal, 1);
+        dirty.add(GLOBAL);
+        if (userId != GLOBAL) {
+            histogram(userId).addListens(ordinal, 1);
+            dirty.add(userId);
+        }
+    }
+
+    public String topGenre() {
+        return topGenreForUser(GLOBAL);
+    }
+
+    public String topGenreForUser(long userId) {
+        Histogram histogram = histograms.get(userId);
+        if (histogram == null) {
+            return null;
+        }
+        int top = histogram.top();
+        return top < 0 ? null : genres.get(top);
+    }
+
+    private void addLikes(long userId, String genre, int delta) {
+        if (genre == null) {
+            return;
+        }
+        int ordinal = ordinal(genre);
+        histogram(GLOBAL).addLikes(ordinal, delta);
+        histogram(userId).addLikes(ordinal, delta);
+        dirty.add(GLOBAL);
+        dirty.add(userId);
+    }
+
+    private Histogram histogram(long userId) {
+        return histograms.computeIfAbsent(userId, id -> new Histogram());
+    }
+
+    private int ordinal(String genre) {
+        Integer ordinal = ordinals.get(genre);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        synchronized (genres) {
+            return ordinals.computeIfAbsent(genre, g -> {
+                genres.add(g);
+                return genres.size() - 1;
+            });
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        statsDAO.createGenreHistogramTable();
+        ConcurrentHashMap<Long, Histogram> loaded = new ConcurrentHashMap<>();
+        statsDAO.scanGenreHistograms(rs -> {
+            Histogram histogram = loaded.computeIfAbsent(rs.getLong("user_id"), id -> new Histogram());
+            int ordinal = ordinal(rs.getString("genre"));
+            histogram.addLikes(ordinal, rs.getInt("likes"));
+            histogram.addListens(ordinal, rs.getInt("listens"));
+        });
+        if (loaded.isEmpty()) {
+            rebuild();
+        } else {
+            histograms = loaded;
+        }
+    }
+
+    // the persisted snapshot can drift from the like and listen tables (deleted users and songs), so it is
+    // recomputed from them once a night
+    @Scheduled(cron = "0 30 3 * * *")
+    public void rebuild() {
+        ConcurrentHashMap<Long, Histogram> rebuilt = new ConcurrentHashMap<>();
+        Histogram global = rebuilt.computeIfAbsent(GLOBAL, id -> new Histogram());
+        statsDAO.scanLikedGenres(rs -> {
+            int ordinal = ordinal(rs.getString("genre"));
+            int likes = rs.getInt("likes");
+            rebuilt.computeIfAbsent(rs.getLong("user_id"), id -> new Histogram()).addLikes(ordinal, likes);
+            global.addLikes(ordinal, likes);
+        });
+        statsDAO.scanListenedGenres(rs -> rebuilt.computeIfAbsent(rs.getLong("user_id"), id -> new Histogram())
+                .addListens(ordinal(rs.getString("genre")), rs.getInt("listens")));
+        statsDAO.scanTotalListenedGenres(rs -> global.addListens(ordinal(rs.getString("genre")), rs.getInt("listens")));
+        histograms = rebuilt;
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<Long, Histogram> entry : rebuilt.entrySet()) {
+            entry.getValue().appendRows(entry.getKey(), genres, rows, new ArrayList<>());
+        }
+        statsDAO.replaceGenreHistograms(rows);
+    }
+
+    @Scheduled(fixedDelay = FLUSH_DELAY_MILLIS)
+    public void flush() {
+        List<Object[]> rows = new ArrayList<>();
+        List<Object[]> cleared = new ArrayList<>();
+        Iterator<Long> it = dirty.iterator();
+        while (it.hasNext()) {
+            long userId = it.next();
+            it.remove();
+            Histogram histogram = histograms.get(userId);
+            if (histogram != null) {
+                histogram.appendRows(userId, genres, rows, cleared);
+            }
+        }
+        if (!rows.isEmpty()) {
+            statsDAO.saveGenreHistograms(rows);
+        }
+        // otherwise the last non-zero counts would be loaded back after a restart
+        if (!cleared.isEmpty()) {
+            statsDAO.deleteGenreHistograms(cleared);
+        }
+    }
+
+    private static class Histogram {
+        private int[] likes = new int[8];
+        private int[] listens = new int[8];
+        private int topLiked = -1;
+        private int topListened = -1;
+        // genres changed since their rows were last appended
+        private final BitSet changed = new BitSet();
+
+        synchronized void addLikes(int genre, int delta) {
+            likes = ensureCapacity(likes, genre);
+            likes[genre] += delta;
+            changed.set(genre);
+            topLiked = updateTop(likes, topLiked, genre, delta);
+        }
+
+        synchronized void addListens(int genre, int delta) {
+            listens = ensureCapacity(listens, genre);
+            listens[genre] += delta;
+            changed.set(genre);
+            topListened = updateTop(listens, topListened, genre, delta);
+        }
+
+        // likes decide like the old GROUP BY did; listens only matter for users who have not liked anything yet
+        synchronized int top() {
+            return topLiked >= 0 ? topLiked : topListened;
+        }
+
+        // rows to save for the changed genres, and {user id, genre} keys to delete for the ones back at zero
+        synchronized void appendRows(long userId, List<String> genres, List<Object[]> rows, List<Object[]> cleared) {
+            for (int g = changed.nextSetBit(0); g >= 0; g = changed.nextSetBit(g + 1)) {
+                int liked = g < likes.length ? likes[g] : 0;
+                int listened = g < listens.length ? listens[g] : 0;
+                if (liked != 0 || listened != 0) {
+                    rows.add(new Object[]{userId, genres.get(g), liked, listened});
+                } else {
+                    cleared.add(new Object[]{userId, genres.get(g)});
+                }
+            }
+            changed.clear();
+        }
+
+        private static int[] ensureCapacity(int[] counts, int genre) {
+            if (genre < counts.length) {
+                return counts;
+            }
+            return Arrays.copyOf(counts, Math.max(genre + 1, counts.length * 2));
+        }
+
+        // increments only need a comparison with the current leader; only a decrement of the leader needs a rescan
+        private static int updateTop(int[] counts, int top, int genre, int delta) {
+            if (delta > 0) {
+                return top < 0 || counts[genre] > counts[top] ? genre : top;
+            }
+            if (genre != top) {
+                return top;
+            }
+            int best = -1;
+            for (int g = 0; g < counts.length; g++) {
+                if (counts[g] > 0 && (best < 0 || counts[g] > counts[best])) {
+                    best = g;
+                }
+            }
+            return best;
+        }
+    }
+}
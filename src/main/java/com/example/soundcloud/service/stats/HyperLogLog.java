@@ -0,0 +1,179 @@
+package com.example.soundcloud.service.stats;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// HyperLogLog with 2^11 six bit registers (1536 bytes, about 2.3% standard error). Cold sketches keep only their
+// non-zero registers as sorted (index << 8 | rank) ints and switch to the packed form once that stops saving space.
+// Merging takes the maximum of every register, so it is safe to merge the same sketch twice.
+public class HyperLogLog {
+
+    private static final int PRECISION = 11;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final int DENSE_BYTES = REGISTERS * 6 / 8;
+    private static final int SPARSE_LIMIT = DENSE_BYTES / 4 / 2;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+
+    private int[] sparse = new int[8];
+    private int sparseSize;
+    private byte[] dense;
+
+    public synchronized void add(long key) {
+        long hash = mix(key);
+        int index = (int) (hash >>> (64 - PRECISION));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), 64 - PRECISION) + 1;
+        update(index, rank);
+    }
+
+    public synchronized void merge(HyperLogLog other) {
+        byte[] registers;
+        int[] entries;
+        int entryCount;
+        synchronized (other) {
+            registers = other.dense == null ? null : other.dense.clone();
+            entries = other.dense == null ? Arrays.copyOf(other.sparse, other.sparseSize) : null;
+            entryCount = other.sparseSize;
+        }
+        if (registers != null) {
+            for (int i = 0; i < REGISTERS; i++) {
+                int rank = get(registers, i);
+                if (rank > 0) {
+                    update(i, rank);
+                }
+            }
+        } else {
+            for (int i = 0; i < entryCount; i++) {
+                update(entries[i] >>> 8, entries[i] & 0xFF);
+            }
+        }
+    }
+
+    public synchronized long count() {
+        double sum = 0;
+        int zeros;
+        if (dense == null) {
+            zeros = REGISTERS - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += Math.scalb(1.0, -(sparse[i] & 0xFF));
+            }
+        } else {
+            zeros = 0;
+            for (int i = 0; i < REGISTERS; i++) {
+                int rank = get(dense, i);
+                if (rank == 0) {
+                    zeros++;
+                }
+                sum += Math.scalb(1.0, -rank);
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        // linear counting is more accurate while many registers are still empty
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public synchronized byte[] toBytes() {
+        if (dense != null) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 + DENSE_BYTES);
+            buffer.put(DENSE).put(dense);
+            return buffer.array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 * sparseSize);
+        buffer.put(SPARSE);
+        for (int i = 0; i < sparseSize; i++) {
+            buffer.putInt(sparse[i]);
+        }
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.get() == DENSE) {
+            sketch.dense = new byte[DENSE_BYTES];
+            buffer.get(sketch.dense);
+        } else {
+            sketch.sparse = new int[Math.max(8, buffer.remaining() / 4)];
+            while (buffer.remaining() >= 4) {
+                sketch.sparse[sketch.sparseSize++] = buffer.getInt();
+            }
+        }
+        return sketch;
+    }
+
+    private void update(int index, int rank) {
+        if (dense != null) {
+            if (rank > get(dense, index)) {
+                set(dense, index, rank);
+            }
+            return;
+        }
+        int position = Arrays.binarySearch(sparse, 0, sparseSize, index << 8);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        if (position < sparseSize && sparse[position] >>> 8 == index) {
+            if (rank > (sparse[position] & 0xFF)) {
+                sparse[position] = index << 8 | rank;
+            }
+            return;
+        }
+        if (sparseSize == SPARSE_LIMIT) {
+            toDense();
+            set(dense, index, rank);
+            return;
+        }
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, sparse.length * 2);
+        }
+        System.arraycopy(sparse, position, sparse, position + 1, sparseSize - position);
+        sparse[position] = index << 8 | rank;
+        sparseSize++;
+    }
+
+    private void toDense() {
+        dense = new byte[DENSE_BYTES];
+        for (int i = 0; i < sparseSize; i++) {
+            set(dense, sparse[i] >>> 8, sparse[i] & 0xFF);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    private static int get(byte[] registers, int index) {
+        int bit = index * 6;
+        int at = bit >>> 3;
+        int word = registers[at] & 0xFF;
+        if (at + 1 < registers.length) {
+            word |= (registers[at + 1] & 0xFF) << 8;
+        }
+        return (word >>> (bit & 7)) & 0x3F;
+    }
+
+    private static void set(byte[] registers, int index, int rank) {
+        int bit = index * 6;
+        int at = bit >>> 3;
+        int shift = bit & 7;
+        int word = registers[at] & 0xFF;
+        if (at + 1 < registers.length) {
+            word |= (registers[at + 1] & 0xFF) << 8;
+        }
+        word = (word & ~(0x3F << shift)) | (rank << shift);
+        registers[at] = (byte) word;
+        if (at + 1 < registers.length) {
+            registers[at + 1] = (byte) (word >>> 8);
+        }
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.soundcloud.service.stats;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Duration of an MPEG audio layer III stream from its frame headers: every frame holds a fixed number of samples,
+// so the duration is the sum of samples over the sample rate. Works for constant and variable bitrate files and
+// needs only the four header bytes of each frame. A leading ID3v2 tag is skipped; bytes that are not a frame
+// header, like a trailing ID3v1 tag, are stepped over one at a time.
+class Mp3Frames {
+
+    private static final int[] MPEG1_KBPS = {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320};
+    private static final int[] MPEG2_KBPS = {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160};
+    private static final int[] MPEG1_SAMPLE_RATES = {44100, 48000, 32000};
+
+    private Mp3Frames() {
+    }
+
+    // 0 when the file holds no layer III frames
+    static long durationMillis(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return durationMillis(in);
+        }
+    }
+
+    static long durationMillis(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        long micros = 0;
+        int header = 0;
+        int buffered = 0;
+        try {
+            header = in.readInt();
+            buffered = 4;
+            if ((header >>> 8) == 0x494433) {
+                // "ID3", two version bytes, flags, then a 28 bit size in four 7 bit bytes
+                int flags = in.readUnsignedShort() & 0xFF;
+                int size = 0;
+                for (int i = 0; i < 4; i++) {
+                    size = size << 7 | (in.readUnsignedByte() & 0x7F);
+                }
+                skip(in, size + ((flags & 0x10) != 0 ? 10 : 0));
+                buffered = 0;
+            }
+            while (true) {
+                while (buffered < 4) {
+                    header = header << 8 | in.readUnsignedByte();
+                    buffered++;
+                }
+                int frameLength = frameLength(header);
+                if (frameLength == 0) {
+                    // not a header, slide by one byte
+                    buffered--;
+                    continue;
+                }
+                micros += samplesPerFrame(header) * 1_000_000L / sampleRate(header);
+                skip(in, frameLength - 4);
+                buffered = 0;
+            }
+        } catch (EOFException e) {
+            return micros / 1000;
+        }
+    }
+
+    // 0 when the bytes are not a valid layer III frame header
+    static int frameLength(int header) {
+        int version = header >>> 19 & 3;
+        int layer = header >>> 17 & 3;
+        int bitrateIndex = header >>> 12 & 0xF;
+        int sampleRateIndex = header >>> 10 & 3;
+        if ((header >>> 21 & 0x7FF) != 0x7FF || version == 1 || layer != 1 || bitrateIndex == 0
+                || bitrateIndex == 0xF || sampleRateIndex == 3) {
+            return 0;
+        }
+        int bitrate = (version == 3 ? MPEG1_KBPS : MPEG2_KBPS)[bitrateIndex] * 1000;
+        int padding = header >>> 9 & 1;
+        return samplesPerFrame(header) / 8 * bitrate / sampleRate(header) + padding;
+    }
+
+    private static int samplesPerFrame(int header) {
+        return (header >>> 19 & 3) == 3 ? 1152 : 576;
+    }
+
+    // version 3 is MPEG 1, 2 is MPEG 2 at half the rates and 0 is MPEG 2.5 at a quarter
+    private static int sampleRate(int header) {
+        int version = header >>> 19 & 3;
+        int rate = MPEG1_SAMPLE_RATES[header >>> 10 & 3];
+        return version == 3 ? rate : version == 2 ? rate / 2 : rate / 4;
+    }
+
+    private static void skip(DataInputStream in, int bytes) throws IOException {
+        if (bytes > 0) {
+            in.skipBytes(bytes - 1);
+            // skipBytes stops quietly at the end of the stream, a read does not
+            in.readUnsignedByte();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import com.example.soundcloud.service.events.EventType;
+import com.example.soundcloud.service.events.ListenLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Most played songs of the last hour, day and week, approximated in a fixed amount of memory.
+@Component
+public class PlayCharts implements DomainEventHandler {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final int CANDIDATES = 200;
+
+    private final SlidingCountMin lastHour = new SlidingCountMin(5 * MINUTE, 12, CANDIDATES);
+    private final SlidingCountMin lastDay = new SlidingCountMin(60 * MINUTE, 24, CANDIDATES);
+    private final SlidingCountMin lastWeek = new SlidingCountMin(6 * 60 * MINUTE, 28, CANDIDATES);
+
+    @Autowired
+    private ListenLog listenLog;
+    // plays before this time came from the listen log at startup, their events are skipped
+    private volatile long replayedUntil;
+
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        if (event.getType() == EventType.LISTEN && event.getTime() >= replayedUntil) {
+            play(event.getSongId(), event.getTime());
+        }
+    }
+
+    private void play(long songId, long timeMillis) {
+        lastHour.add(songId, timeMillis);
+        lastDay.add(songId, timeMillis);
+        lastWeek.add(songId, timeMillis);
+    }
+
+    // the bus delivers nothing before this has run, plays after the cutoff arrive as events
+    @EventListener(ApplicationReadyEvent.class)
+    public void replay() {
+        long cutoff = listenLog.mark();
+        listenLog.scan(cutoff - TimeUnit.DAYS.toMillis(7), cutoff,
+                (time, songId, userId, clientHash) -> play(songId, time));
+        replayedUntil = cutoff;
+    }
+
+    public List<Long> mostPlayed(String window, int offset, int limit) {
+        return chart(window).top(offset, limit, System.currentTimeMillis());
+    }
+
+    private SlidingCountMin chart(String window) {
+        switch (window) {
+            case "hour":
+                return lastHour;
+            case "day":
+                return lastDay;
+            case "week":
+                return lastWeek;
+            default:
+                throw new BadRequestException("Invalid chart window, use hour, day or week!");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dto.stats.ResponsePlayDedupDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Remembers which (song, listener) pairs already played in a pair of Bloom filters: a play counts only if the
+// pair is in neither the current nor the previous window's filter. When the current window is over, the first
+// play to notice swaps in a fresh filter with one CAS and the current one becomes the previous, so a pair is
+// remembered for one to two windows. False positives make a rare real play not count; nothing makes a replay
+// count twice within a window. A pair is only put into the filter once its play is committed, and until then it
+// is held in a set of plays being counted, so a concurrent request of the same pair does not count as well and a
+// play that was rolled back is counted when the listener retries.
+@Component
+public class PlayDeduplicator {
+
+    // keeps a user id and an anonymous client hash with the same value apart
+    private static final long ANONYMOUS = 0x8000000000000000L;
+
+    @Value("${plays.dedup.window-minutes:30}")
+    private long windowMinutes;
+    @Value("${plays.dedup.expected-plays:1000000}")
+    private long expectedPlays;
+    @Value("${plays.dedup.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    private final AtomicReference<Window> window = new AtomicReference<>();
+    private final Set<Long> counting = ConcurrentHashMap.newKeySet();
+    private final LongAdder counted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        init(System.currentTimeMillis());
+    }
+
+    void init(long now) {
+        window.set(new Window(newFilter(), newFilter(), now));
+    }
+
+    // true claims the play for the caller, who then calls recordPlay once it is committed or release if not
+    public boolean firstPlay(long songId, long userId, long clientHash) {
+        return firstPlay(songId, userId, clientHash, System.currentTimeMillis());
+    }
+
+    boolean firstPlay(long songId, long userId, long clientHash, long now) {
+        long key = key(songId, userId, clientHash);
+        Window w = current(now);
+        if (w.previous.mightContain(key) || w.current.mightContain(key) || !counting.add(key)) {
+            duplicates.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public void recordPlay(long songId, long userId, long clientHash) {
+        recordPlay(songId, userId, clientHash, System.currentTimeMillis());
+    }
+
+    void recordPlay(long songId, long userId, long clientHash, long now) {
+        long key = key(songId, userId, clientHash);
+        current(now).current.put(key);
+        counting.remove(key);
+        counted.increment();
+    }
+
+    public void release(long songId, long userId, long clientHash) {
+        counting.remove(key(songId, userId, clientHash));
+    }
+
+    public ResponsePlayDedupDTO metrics() {
+        Window w = window.get();
+        BloomFilter current = w.current;
+        return new ResponsePlayDedupDTO(windowMinutes, current.expectedKeys(), current.targetFalsePositiveRate(),
+                current.bits(), current.hashes(), 2 * current.bytes(), current.approximateKeys(),
+                current.currentFalsePositiveRate(), counted.sum(), duplicates.sum(), rotations.sum());
+    }
+
+    private Window current(long now) {
+        Window w = window.get();
+        long windowMillis = TimeUnit.MINUTES.toMillis(windowMinutes);
+        while (now - w.startedAt >= windowMillis) {
+            // after a gap of more than a window the current filter is older than the previous window
+            BloomFilter previous = now - w.startedAt >= 2 * windowMillis ? newFilter() : w.current;
+            Window next = new Window(newFilter(), previous, now);
+            if (window.compareAndSet(w, next)) {
+                rotations.increment();
+                return next;
+            }
+            w = window.get();
+        }
+        return w;
+    }
+
+    private static long key(long songId, long userId, long clientHash) {
+        long listener = userId != 0 ? userId : clientHash | ANONYMOUS;
+        return BloomFilter.mix(songId) ^ listener;
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(expectedPlays, falsePositiveRate);
+    }
+
+    private static class Window {
+        private final BloomFilter current;
+        private final BloomFilter previous;
+        private final long startedAt;
+
+        private Window(BloomFilter current, BloomFilter previous, long startedAt) {
+            this.current = current;
+            this.previous = previous;
+            this.startedAt = startedAt;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.StatsDAO;
+import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import com.example.soundcloud.service.events.EventType;
+import com.example.soundcloud.service.events.ListenLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Plays per song in UTC minute, hour and day buckets. Each resolution is a plain int column starting at the
+// song's first bucket. Plays land in minutes; completed minutes are folded into hours and completed hours into
+// days, and every resolution keeps its own retention. Only the day columns are stored, the finer ones are
+// replayed from the listen log on startup.
+@Component
+public class PlayRollups implements DomainEventHandler {
+
+    public static final String MINUTE = "minute";
+    public static final String HOUR = "hour";
+    public static final String DAY = "day";
+
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long MINUTE_RETENTION = TimeUnit.DAYS.toMinutes(2);
+    private static final long HOUR_RETENTION = TimeUnit.DAYS.toHours(30);
+    private static final int MAX_BUCKETS = 10000;
+
+    @Autowired
+    private StatsDAO statsDAO;
+    @Autowired
+    private ListenLog listenLog;
+
+    private final Map<Long, SongRollup> rollups = new ConcurrentHashMap<>();
+    // plays before this time came from the listen log at startup, their events are skipped
+    private volatile long replayedUntil;
+
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        if (event.getType() == EventType.LISTEN && event.getTime() >= replayedUntil) {
+            play(rollups, event.getSongId(), event.getTime());
+        }
+    }
+
+    private static void play(Map<Long, SongRollup> target, long songId, long timeMillis) {
+        SongRollup rollup = target.computeIfAbsent(songId, id -> new SongRollup());
+        synchronized (rollup) {
+            rollup.minutes.add(timeMillis / MINUTE_MILLIS, 1);
+        }
+    }
+
+    public long bucketMillis(String step) {
+        switch (step) {
+            case MINUTE:
+                return MINUTE_MILLIS;
+            case HOUR:
+                return HOUR_MILLIS;
+            case DAY:
+                return DAY_MILLIS;
+            default:
+                throw new BadRequestException("Invalid step, use minute, hour or day!");
+        }
+    }
+
+    public int bucketCount(long fromMillis, long toMillis, String step) {
+        long bucket = bucketMillis(step);
+        long count = Math.floorDiv(toMillis - 1, bucket) - Math.floorDiv(fromMillis, bucket) + 1;
+        if (toMillis <= fromMillis || count > MAX_BUCKETS) {
+            throw new BadRequestException("The range has to be positive and at most " + MAX_BUCKETS + " steps long!");
+        }
+        return (int) count;
+    }
+
+    // plays of the song for every bucket overlapping [fromMillis, toMillis)
+    public int[] plays(long songId, long fromMillis, long toMillis, String step) {
+        int[] plays = new int[bucketCount(fromMillis, toMillis, step)];
+        SongRollup rollup = rollups.get(songId);
+        if (rollup == null) {
+            return plays;
+        }
+        long bucket = bucketMillis(step);
+        long first = Math.floorDiv(fromMillis, bucket);
+        synchronized (rollup) {
+            Series series = step.equals(MINUTE) ? rollup.minutes : step.equals(HOUR) ? rollup.hours : rollup.days;
+            series.copyInto(first, plays);
+            // the buckets that were not compacted yet still count towards the coarser steps
+            if (!step.equals(MINUTE)) {
+                long minutesPerBucket = bucket / MINUTE_MILLIS;
+                for (long minute = Math.max(rollup.minutesFoldedUntil, rollup.minutes.first);
+                     minute < rollup.minutes.end(); minute++) {
+                    addTo(plays, minute / minutesPerBucket - first, rollup.minutes.get(minute));
+                }
+            }
+            if (step.equals(DAY)) {
+                for (long hour = Math.max(rollup.hoursFoldedUntil, rollup.hours.first);
+                     hour < rollup.hours.end(); hour++) {
+                    addTo(plays, hour / 24 - first, rollup.hours.get(hour));
+                }
+            }
+        }
+        return plays;
+    }
+
+    private static void addTo(int[] plays, long index, int count) {
+        if (index >= 0 && index < plays.length) {
+            plays[(int) index] += count;
+        }
+    }
+
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void compact() {
+        long now = System.currentTimeMillis();
+        long currentMinute = now / MINUTE_MILLIS;
+        long currentHour = now / HOUR_MILLIS;
+        for (SongRollup rollup : rollups.values()) {
+            synchronized (rollup) {
+                for (long minute = Math.max(rollup.minutesFoldedUntil, rollup.minutes.first); minute < currentMinute
+                        && minute < rollup.minutes.end(); minute++) {
+                    rollup.hours.add(minute / 60, rollup.minutes.get(minute));
+                }
+                rollup.minutesFoldedUntil = Math.max(rollup.minutesFoldedUntil, currentMinute);
+                for (long hour = Math.max(rollup.hoursFoldedUntil, rollup.hours.first); hour < currentHour
+                        && hour < rollup.hours.end(); hour++) {
+                    int plays = rollup.hours.get(hour);
+                    if (plays != 0) {
+                        rollup.days.add(hour / 24, plays);
+                        rollup.dirty = true;
+                    }
+                }
+                rollup.hoursFoldedUntil = Math.max(rollup.hoursFoldedUntil, currentHour);
+                rollup.minutes.trimBefore(Math.min(rollup.minutesFoldedUntil, currentMinute - MINUTE_RETENTION));
+                rollup.hours.trimBefore(Math.min(rollup.hoursFoldedUntil, currentHour - HOUR_RETENTION));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelay = 10 * 60 * 1000)
+    public void flush() {
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<Long, SongRollup> entry : rollups.entrySet()) {
+            SongRollup rollup = entry.getValue();
+            synchronized (rollup) {
+                if (rollup.dirty) {
+                    rows.add(new Object[]{entry.getKey(), rollup.days.first, rollup.hoursFoldedUntil,
+                            rollup.days.toBytes()});
+                    rollup.dirty = false;
+                }
+            }
+        }
+        if (!rows.isEmpty()) {
+            statsDAO.savePlayDays(rows);
+        }
+    }
+
+    // Stored days already contain every hour before hours_folded_until, so replayed hours only fold after it.
+    // Plays older than the minute retention go straight into hours, a 30 day replay would otherwise hold 43200
+    // minute buckets per song until the first compaction. The replay goes into a map of its own that the scheduled
+    // compaction can not fold halfway, and the bus delivers nothing before it is swapped in; plays after the cutoff
+    // arrive as events.
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        statsDAO.createPlayDaysTable();
+        Map<Long, SongRollup> loaded = new HashMap<>();
+        statsDAO.scanPlayDays(rs -> {
+            SongRollup rollup = new SongRollup();
+            rollup.days = Series.fromBytes(rs.getLong("first_day"), rs.getBytes("plays"));
+            rollup.hoursFoldedUntil = rs.getLong("hours_folded_until");
+            loaded.put(rs.getLong("song_id"), rollup);
+        });
+        long cutoff = listenLog.mark();
+        long from = cutoff - HOUR_RETENTION * HOUR_MILLIS;
+        long minutesFrom = (cutoff / MINUTE_MILLIS - MINUTE_RETENTION) * MINUTE_MILLIS;
+        listenLog.scan(from, cutoff, (time, songId, userId, clientHash) -> {
+            if (time >= minutesFrom) {
+                play(loaded, songId, time);
+            } else {
+                loaded.computeIfAbsent(songId, id -> new SongRollup()).hours.add(time / HOUR_MILLIS, 1);
+            }
+        });
+        replayedUntil = cutoff;
+        rollups.putAll(loaded);
+        compact();
+    }
+
+    private static class SongRollup {
+        private final Series minutes = new Series();
+        private final Series hours = new Series();
+        private Series days = new Series();
+        private long minutesFoldedUntil;
+        private long hoursFoldedUntil;
+        private boolean dirty;
+    }
+
+    // counts of consecutive buckets starting at bucket `first`
+    private static class Series {
+        private long first = -1;
+        private int[] counts = new int[0];
+        private int length;
+
+        private long end() {
+            return first + length;
+        }
+
+        private int get(long bucket) {
+            return bucket < first || bucket >= end() ? 0 : counts[(int) (bucket - first)];
+        }
+
+        private void add(long bucket, int delta) {
+            if (length == 0) {
+                first = bucket;
+            } else if (bucket < first) {
+                int shift = (int) (first - bucket);
+                int[] grown = new int[Math.max(counts.length, length + shift)];
+                System.arraycopy(counts, 0, grown, shift, length);
+                counts = grown;
+                first = bucket;
+                length += shift;
+            }
+            int index = (int) (bucket - first);
+            if (index >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(index + 1, Math.max(16, counts.length * 2)));
+            }
+            counts[index] += delta;
+            length = Math.max(length, index + 1);
+        }
+
+        private void copyInto(long from, int[] out) {
+            long start = Math.max(from, first);
+            long stop = Math.min(from + out.length, end());
+            for (long bucket = start; bucket < stop; bucket++) {
+                out[(int) (bucket - from)] = counts[(int) (bucket - first)];
+            }
+        }
+
+        // drops buckets before the given one, but only moves memory once a quarter of the column is dead
+        private void trimBefore(long bucket) {
+            int dead = (int) Math.min(length, Math.max(0, bucket - first));
+            if (dead == 0 || dead * 4 < length && dead < length) {
+                return;
+            }
+            System.arraycopy(counts, dead, counts, 0, length - dead);
+            Arrays.fill(counts, length - dead, length, 0);
+            length -= dead;
+            first += dead;
+        }
+
+        private byte[] toBytes() {
+            ByteBuffer buffer = ByteBuffer.allocate(4 * length);
+            for (int i = 0; i < length; i++) {
+                buffer.putInt(counts[i]);
+            }
+            return buffer.array();
+        }
+
+        private static Series fromBytes(long first, byte[] bytes) {
+            Series series = new Series();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            series.counts = new int[Math.max(16, bytes.length / 4)];
+            while (buffer.remaining() >= 4) {
+                series.counts[series.length++] = buffer.getInt();
+            }
+            series.first = series.length == 0 ? -1 : first;
+            return series;
+        }
+    }
+}
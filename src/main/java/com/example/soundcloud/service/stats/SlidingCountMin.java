@@ -0,0 +1,143 @@
+package com.example.soundcloud.service.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Approximate play counts over a sliding window: a ring of Count-Min sketches, one per time slice, plus their
+// running sum. An estimate over-counts by at most e / WIDTH of the plays in the window with probability
+// 1 - exp(-DEPTH), and the memory is fixed by the slice count whatever the number of songs. A small candidate
+// set remembers the songs with the highest estimates so top K queries never scan the catalog.
+public class SlidingCountMin {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 2048;
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L,
+            0xD6E8FEB86659FD93L};
+
+    private final long sliceMillis;
+    private final int[][] slices;
+    private final int[] window = new int[DEPTH * WIDTH];
+    private long currentSlice;
+    private long total;
+
+    private final long[] candidates;
+    private final long[] estimates;
+    private int candidateCount;
+
+    public SlidingCountMin(long sliceMillis, int sliceCount, int candidateCount) {
+        this.sliceMillis = sliceMillis;
+        this.slices = new int[sliceCount][DEPTH * WIDTH];
+        this.candidates = new long[candidateCount];
+        this.estimates = new long[candidateCount];
+    }
+
+    // the play goes into the slice of its own time; plays that already left the window are ignored
+    public synchronized void add(long songId, long timeMillis) {
+        advance(timeMillis);
+        long sliceOfPlay = timeMillis / sliceMillis;
+        if (sliceOfPlay <= currentSlice - slices.length) {
+            return;
+        }
+        int[] slice = slices[(int) (sliceOfPlay % slices.length)];
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int cell = cell(row, songId);
+            slice[cell]++;
+            estimate = Math.min(estimate, ++window[cell]);
+        }
+        total++;
+        offerCandidate(songId, estimate);
+    }
+
+    public synchronized long estimate(long songId, long timeMillis) {
+        advance(timeMillis);
+        return estimate(songId);
+    }
+
+    public synchronized long total(long timeMillis) {
+        advance(timeMillis);
+        return total;
+    }
+
+    public synchronized List<Long> top(int offset, int limit, long timeMillis) {
+        advance(timeMillis);
+        Integer[] order = new Integer[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(estimates[b], estimates[a]));
+        List<Long> result = new ArrayList<>();
+        for (int i = offset; i < candidateCount && result.size() < limit; i++) {
+            if (estimates[order[i]] > 0) {
+                result.add(candidates[order[i]]);
+            }
+        }
+        return result;
+    }
+
+    // the candidate set is small, so a linear scan is cheaper than keeping a map and a heap in sync
+    private void offerCandidate(long songId, long estimate) {
+        int min = -1;
+        for (int i = 0; i < candidateCount; i++) {
+            if (candidates[i] == songId) {
+                estimates[i] = estimate;
+                return;
+            }
+            if (min < 0 || estimates[i] < estimates[min]) {
+                min = i;
+            }
+        }
+        if (candidateCount < candidates.length) {
+            candidates[candidateCount] = songId;
+            estimates[candidateCount++] = estimate;
+        } else if (estimate > estimates[min]) {
+            candidates[min] = songId;
+            estimates[min] = estimate;
+        }
+    }
+
+    private long estimate(long songId) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, window[cell(row, songId)]);
+        }
+        return estimate;
+    }
+
+    // expires every slice that fell out of the window since the last call, then refreshes the candidates
+    private void advance(long timeMillis) {
+        long slice = timeMillis / sliceMillis;
+        if (slice <= currentSlice) {
+            return;
+        }
+        long expired = Math.min(slice - currentSlice, slices.length);
+        for (long s = 1; s <= expired; s++) {
+            int[] old = slices[(int) ((currentSlice + s) % slices.length)];
+            for (int cell = 0; cell < old.length; cell++) {
+                window[cell] -= old[cell];
+            }
+            total -= sliceTotal(old);
+            Arrays.fill(old, 0);
+        }
+        currentSlice = slice;
+        for (int i = 0; i < candidateCount; i++) {
+            estimates[i] = estimate(candidates[i]);
+        }
+    }
+
+    // every play increments exactly one cell per row, so the first row sums to the plays of the slice
+    private static long sliceTotal(int[] slice) {
+        long sum = 0;
+        for (int cell = 0; cell < WIDTH; cell++) {
+            sum += slice[cell];
+        }
+        return sum;
+    }
+
+    private static int cell(int row, long songId) {
+        long h = (songId ^ SEEDS[row]) * 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return row * WIDTH + (int) (h & (WIDTH - 1));
+    }
+}
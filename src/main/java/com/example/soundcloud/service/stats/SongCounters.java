@@ -0,0 +1,76 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.SongCounterDAO;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import com.example.soundcloud.service.events.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Durable play and like counters that do not serialize on the songs row. Every write increments one of SHARDS
+// rows of song_counter_shards picked at random, so concurrent writers of a viral song rarely wait on the same
+// row lock. Reads add the shards to songs.listened, and the listen counts are folded into songs.listened every
+// few seconds so the listened column that feeds sorting and search stays close to the truth. The shards are the
+// like count that song pages and like responses show.
+@Component
+public class SongCounters implements DomainEventHandler {
+
+    private static final int SHARDS = 16;
+    private static final int COMPACTION_BATCH = 1000;
+
+    @Autowired
+    private SongCounterDAO songCounterDAO;
+
+    public void listened(long songId) {
+        songCounterDAO.increment(songId, shard(), 1, 0);
+    }
+
+    public void liked(long songId, int delta) {
+        songCounterDAO.increment(songId, shard(), 0, delta);
+    }
+
+    // in the transaction that deletes the user, while the user's likes are still in the like table
+    public void userDeleted(long userId) {
+        songCounterDAO.removeLikesOf(userId, shard());
+    }
+
+    // listens that are still in the shards
+    public long pendingListens(long songId) {
+        return songCounterDAO.sum(songId)[0];
+    }
+
+    public long likes(long songId) {
+        return songCounterDAO.sum(songId)[1];
+    }
+
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        if (event.getType() == EventType.SONG_DELETE) {
+            songCounterDAO.delete(event.getSongId());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createTable() {
+        songCounterDAO.createTable();
+        songCounterDAO.seedLikesIfEmpty();
+    }
+
+    @Scheduled(fixedDelay = 10 * 1000)
+    public void compact() {
+        int compacted;
+        do {
+            compacted = songCounterDAO.compactListened(COMPACTION_BATCH);
+        } while (compacted == COMPACTION_BATCH);
+    }
+
+    // shard 0 holds the likes copied from the like table when the shards were created
+    private static int shard() {
+        return 1 + ThreadLocalRandom.current().nextInt(SHARDS);
+    }
+}
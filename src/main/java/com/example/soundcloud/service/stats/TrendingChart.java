@@ -0,0 +1,286 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.RecommendationDAO;
+import com.example.soundcloud.models.dao.StatsDAO;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import com.example.soundcloud.service.events.ListenLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Exponentially decayed engagement per song. Instead of decaying every counter, each event is scaled up by
+// exp(lambda * (now - base)): all counters then decay by the same factor, so their order never changes and the
+// top K of every genre only has to be touched by the song that just received an event. An unlike takes back a
+// like at its current weight, so toggling a like leaves the score where it was; a song whose score drops keeps
+// its place in a heap until a song that received an event grows past it.
+@Component
+public class TrendingChart implements DomainEventHandler {
+
+    private static final double HALF_LIFE_MILLIS = 24 * 60 * 60 * 1000.0;
+    private static final double LAMBDA = Math.log(2) / HALF_LIFE_MILLIS;
+    // keeps the scaled scores far below the double range, exp(300) is about 1e130
+    private static final double MAX_EXPONENT = 300;
+    private static final double FORGET_BELOW = 0.01;
+    private static final int TOP_K = 100;
+    private static final int SEED_DAYS = 7;
+
+    public static final double LISTEN = 1;
+    public static final double LIKE = 3;
+    public static final double COMMENT = 2;
+
+    @Autowired
+    private StatsDAO statsDAO;
+    @Autowired
+    private RecommendationDAO recommendationDAO;
+    @Autowired
+    private ListenLog listenLog;
+
+    private final Map<Long, Counter> counters = new HashMap<>();
+    private final Map<String, TopHeap> genres = new HashMap<>();
+    private final TopHeap global = new TopHeap(true);
+    private long base = System.currentTimeMillis();
+    // plays and comments before this time were seeded at startup, their events are skipped
+    private volatile long seededUntil;
+
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        switch (event.getType()) {
+            case LISTEN:
+                if (event.getTime() >= seededUntil) {
+                    record(event.getSongId(), event.getGenre(), LISTEN, event.getTime());
+                }
+                break;
+            case LIKE:
+                record(event.getSongId(), event.getGenre(), LIKE, event.getTime());
+                break;
+            case UNLIKE:
+                record(event.getSongId(), event.getGenre(), -LIKE, event.getTime());
+                break;
+            case SONG_DELETE:
+                remove(event.getSongId());
+                break;
+            case COMMENT:
+                if (event.getTime() >= seededUntil) {
+                    record(event.getSongId(), event.getGenre(), COMMENT, event.getTime());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    synchronized void record(long songId, String genre, double weight, long timeMillis) {
+        if (weight < 0 && !counters.containsKey(songId)) {
+            return;
+        }
+        double exponent = LAMBDA * (timeMillis - base);
+        if (exponent > MAX_EXPONENT) {
+            rebase(timeMillis);
+            exponent = 0;
+        }
+        Counter counter = counters.computeIfAbsent(songId, id -> new Counter(id, genre));
+        counter.score = Math.max(0, counter.score + weight * Math.exp(exponent));
+        global.update(counter);
+        if (counter.genre != null) {
+            genres.computeIfAbsent(counter.genre, g -> new TopHeap(false)).update(counter);
+        }
+    }
+
+    synchronized void remove(long songId) {
+        Counter counter = counters.remove(songId);
+        if (counter == null) {
+            return;
+        }
+        global.remove(counter);
+        TopHeap heap = counter.genre == null ? null : genres.get(counter.genre);
+        if (heap != null) {
+            heap.remove(counter);
+        }
+    }
+
+    public synchronized List<Long> trending(int offset, int limit) {
+        return global.page(offset, limit);
+    }
+
+    public synchronized List<Long> trending(String genre, int offset, int limit) {
+        TopHeap heap = genres.get(genre);
+        return heap == null ? new ArrayList<>() : heap.page(offset, limit);
+    }
+
+    // a uniform rescale, so the heaps stay valid
+    private void rebase(long now) {
+        double factor = Math.exp(-LAMBDA * (now - base));
+        for (Counter counter : counters.values()) {
+            counter.score *= factor;
+        }
+        base = now;
+    }
+
+    // songs that decayed to nothing and sit in no chart would only be memory
+    @Scheduled(fixedDelay = 60 * 60 * 1000)
+    public synchronized void forgetColdSongs() {
+        double threshold = FORGET_BELOW * Math.exp(LAMBDA * (System.currentTimeMillis() - base));
+        Iterator<Counter> it = counters.values().iterator();
+        while (it.hasNext()) {
+            Counter counter = it.next();
+            if (counter.score < threshold && counter.globalPosition < 0 && counter.genrePosition < 0) {
+                it.remove();
+            }
+        }
+    }
+
+    // The listen log has the plays of the last days; likes are not timestamped, so comments stand in for them.
+    // Both are read up to one cutoff, the bus delivers nothing before this has run and skips what came before it.
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        long cutoff = listenLog.mark();
+        long from = cutoff - TimeUnit.DAYS.toMillis(SEED_DAYS);
+        statsDAO.scanComments(toLocalDateTime(from), toLocalDateTime(cutoff), rs -> record(rs.getLong("song_id"),
+                rs.getString("genre"), COMMENT, rs.getTimestamp("created_at").getTime()));
+        Map<Long, String> songGenres = new HashMap<>();
+        recommendationDAO.scanSongGenres(rs -> songGenres.put(rs.getLong("id"), rs.getString("genre")));
+        listenLog.scan(from, cutoff, (time, songId, userId, clientHash) -> {
+            if (songGenres.containsKey(songId)) {
+                record(songId, songGenres.get(songId), LISTEN, time);
+            }
+        });
+        seededUntil = cutoff;
+    }
+
+    private static LocalDateTime toLocalDateTime(long timeMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneId.systemDefault());
+    }
+
+    private static class Counter {
+        private final long songId;
+        private final String genre;
+        private double score;
+        private int globalPosition = -1;
+        private int genrePosition = -1;
+
+        private Counter(long songId, String genre) {
+            this.songId = songId;
+            this.genre = genre;
+        }
+    }
+
+    // min-heap of the TOP_K highest counters; every counter remembers its slot so an increase is one sift down
+    private static class TopHeap {
+        private final boolean global;
+        private final Counter[] heap = new Counter[TOP_K];
+        private int size;
+
+        private TopHeap(boolean global) {
+            this.global = global;
+        }
+
+        // a counter outside the heap can enter only when it grows past the minimum
+        private void update(Counter counter) {
+            int position = position(counter);
+            if (position >= 0) {
+                siftDown(siftUp(position));
+            } else if (size < heap.length) {
+                place(counter, size++);
+                siftUp(size - 1);
+            } else if (counter.score > heap[0].score) {
+                setPosition(heap[0], -1);
+                place(counter, 0);
+                siftDown(0);
+            }
+        }
+
+        private List<Long> page(int offset, int limit) {
+            Counter[] sorted = Arrays.copyOf(heap, size);
+            Arrays.sort(sorted, Comparator.comparingDouble((Counter c) -> c.score).reversed());
+            List<Long> result = new ArrayList<>();
+            for (int i = offset; i < sorted.length && result.size() < limit; i++) {
+                result.add(sorted[i].songId);
+            }
+            return result;
+        }
+
+        private void remove(Counter counter) {
+            int position = position(counter);
+            if (position < 0) {
+                return;
+            }
+            setPosition(counter, -1);
+            Counter last = heap[--size];
+            heap[size] = null;
+            if (position < size) {
+                place(last, position);
+                siftDown(siftUp(position));
+            }
+        }
+
+        // returns where the counter ended up
+        private int siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent].score <= heap[i].score) {
+                    return i;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+            return i;
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && heap[left].score < heap[smallest].score) {
+                    smallest = left;
+                }
+                if (right < size && heap[right].score < heap[smallest].score) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            Counter counter = heap[a];
+            place(heap[b], a);
+            place(counter, b);
+        }
+
+        private void place(Counter counter, int position) {
+            heap[position] = counter;
+            setPosition(counter, position);
+        }
+
+        private int position(Counter counter) {
+            return global ? counter.globalPosition : counter.genrePosition;
+        }
+
+        private void setPosition(Counter counter, int position) {
+            if (global) {
+                counter.globalPosition = position;
+            } else {
+                counter.genrePosition = position;
+            }
+        }
+    }
+}
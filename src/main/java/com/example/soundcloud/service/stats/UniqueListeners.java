@@ -0,0 +1,107 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.StatsDAO;
+import com.example.soundcloud.service.events.DomainEvent;
+import com.example.soundcloud.service.events.DomainEventHandler;
+import com.example.soundcloud.service.events.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// One HyperLogLog per song and month. Plays only touch in-memory sketches of the month they were played in, which
+// are merged into the stored ones and dropped on every flush; the unique count merges all months of the song.
+@Component
+public class UniqueListeners implements DomainEventHandler {
+
+    private static final long FLUSH_DELAY_MILLIS = 60 * 1000;
+
+    @Autowired
+    private StatsDAO statsDAO;
+
+    // song -> month -> listeners since the last flush; the inner maps are only touched inside compute
+    private final Map<Long, Map<YearMonth, HyperLogLog>> pending = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    // anonymous listeners are told apart by their client hash
+    @Override
+    public void onEvent(DomainEvent event, boolean endOfBatch) {
+        if (event.getType() == EventType.LISTEN) {
+            listen(event.getSongId(), event.getUserId() != 0 ? event.getUserId() : event.getClientHash(),
+                    event.getTime());
+        }
+    }
+
+    // listenerKey is the user id for logged users and the client fingerprint for anonymous plays
+    public void listen(long songId, long listenerKey, long timeMillis) {
+        YearMonth month = YearMonth.from(Instant.ofEpochMilli(timeMillis).atZone(ZoneId.systemDefault()));
+        // the add happens inside compute so a flush either sees it or leaves it to a fresh sketch
+        pending.compute(songId, (id, months) -> {
+            Map<YearMonth, HyperLogLog> current = months == null ? new HashMap<>(2) : months;
+            current.computeIfAbsent(month, m -> new HyperLogLog()).add(listenerKey);
+            return current;
+        });
+        dirty.add(songId);
+    }
+
+    public long count(long songId) {
+        HyperLogLog merged = new HyperLogLog();
+        statsDAO.scanListenerSketches(songId, rs -> merged.merge(HyperLogLog.fromBytes(rs.getBytes("sketch"))));
+        pending.computeIfPresent(songId, (id, months) -> {
+            months.values().forEach(merged::merge);
+            return months;
+        });
+        return merged.count();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createTable() {
+        statsDAO.createListenerSketchTable();
+    }
+
+    @Scheduled(fixedDelay = FLUSH_DELAY_MILLIS)
+    public synchronized void flush() {
+        Iterator<Long> it = dirty.iterator();
+        while (it.hasNext()) {
+            long songId = it.next();
+            it.remove();
+            Map<YearMonth, HyperLogLog> months = pending.remove(songId);
+            if (months == null) {
+                continue;
+            }
+            for (Map.Entry<YearMonth, HyperLogLog> entry : months.entrySet()) {
+                HyperLogLog sketch = entry.getValue();
+                try {
+                    statsDAO.mergeListenerSketch(songId, entry.getKey().toString(), stored -> {
+                        if (stored != null) {
+                            sketch.merge(HyperLogLog.fromBytes(stored));
+                        }
+                        return sketch.toBytes();
+                    });
+                } catch (DataAccessException e) {
+                    // keep the plays of the month for the next flush
+                    pending.compute(songId, (id, newer) -> {
+                        Map<YearMonth, HyperLogLog> current = newer == null ? new HashMap<>(2) : newer;
+                        current.merge(entry.getKey(), sketch, (later, older) -> {
+                            later.merge(older);
+                            return later;
+                        });
+                        return current;
+                    });
+                    dirty.add(songId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.service.events.ListenLog;
+import com.example.soundcloud.service.recommendation.LongIndex;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Plays, active days and plays per song of every logged in listener in one year, collected in a single pass over
+// the listen log into flat arrays instead of maps of boxed values: about 60 bytes per user and, once the scan is
+// done, 8 bytes per distinct (user, song) pair. The pairs are counted in an open addressing table during the scan
+// and then laid out per user, CSR style.
+class YearActivity {
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int WORDS = 6;
+
+    private final LongIndex users = new LongIndex(1 << 16);
+    private final LongIndex songs = new LongIndex(1 << 14);
+    private int[] plays = new int[1 << 16];
+    private long[] days = new long[(1 << 16) * WORDS];
+    private PairCounts pairs = new PairCounts(1 << 16);
+
+    // per user ordinal, the range of songOrdinals and songPlays holding the user's songs
+    private int[] songOffsets;
+    private int[] songOrdinals;
+    private int[] songPlays;
+
+    static YearActivity scan(ListenLog listenLog, int year) {
+        YearActivity activity = new YearActivity();
+        long from = startOf(year);
+        long to = startOf(year + 1);
+        listenLog.scan(from, to, (time, songId, userId, clientHash) -> {
+            if (userId != 0) {
+                activity.add(userId, songId, (int) ((time - from) / DAY_MILLIS));
+            }
+        });
+        activity.finish();
+        return activity;
+    }
+
+    static long startOf(int year) {
+        return LocalDate.of(year, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private void add(long userId, long songId, int day) {
+        int user = users.getOrAdd(userId);
+        if (user == plays.length) {
+            plays = Arrays.copyOf(plays, user * 2);
+            days = Arrays.copyOf(days, user * 2 * WORDS);
+        }
+        plays[user]++;
+        days[user * WORDS + (day >>> 6)] |= 1L << day;
+        pairs.increment(user, songs.getOrAdd(songId));
+    }
+
+    private void finish() {
+        songOffsets = new int[users.size() + 1];
+        pairs.forEach((user, song, count) -> songOffsets[user + 1]++);
+        for (int user = 0; user < users.size(); user++) {
+            songOffsets[user + 1] += songOffsets[user];
+        }
+        int[] next = Arrays.copyOf(songOffsets, users.size());
+        songOrdinals = new int[songOffsets[users.size()]];
+        songPlays = new int[songOrdinals.length];
+        pairs.forEach((user, song, count) -> {
+            int p = next[user]++;
+            songOrdinals[p] = song;
+            songPlays[p] = count;
+        });
+        pairs = null;
+    }
+
+    // every logged in listener of the year, in id order
+    long[] userIds() {
+        long[] ids = new long[users.size()];
+        for (int user = 0; user < ids.length; user++) {
+            ids[user] = users.idOf(user);
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    int songCount() {
+        return songs.size();
+    }
+
+    long songId(int songOrdinal) {
+        return songs.idOf(songOrdinal);
+    }
+
+    // -1 when nobody played the song in the year
+    int songOrdinal(long songId) {
+        return songs.get(songId);
+    }
+
+    void forEachSong(long userId, SongVisitor visitor) {
+        int user = users.get(userId);
+        if (user < 0) {
+            return;
+        }
+        for (int p = songOffsets[user]; p < songOffsets[user + 1]; p++) {
+            visitor.visit(songOrdinals[p], songPlays[p]);
+        }
+    }
+
+    int plays(long userId) {
+        int user = users.get(userId);
+        return user < 0 ? 0 : plays[user];
+    }
+
+    int activeDays(long userId) {
+        int user = users.get(userId);
+        int count = 0;
+        for (int w = 0; user >= 0 && w < WORDS; w++) {
+            count += Long.bitCount(days[user * WORDS + w]);
+        }
+        return count;
+    }
+
+    int longestStreak(long userId) {
+        int user = users.get(userId);
+        int longest = 0;
+        int current = 0;
+        for (int day = 0; user >= 0 && day < WORDS * 64; day++) {
+            if ((days[user * WORDS + (day >>> 6)] & (1L << day)) != 0) {
+                longest = Math.max(longest, ++current);
+            } else {
+                current = 0;
+            }
+        }
+        return longest;
+    }
+
+    interface SongVisitor {
+        void visit(int songOrdinal, int plays);
+    }
+
+    private interface PairVisitor {
+        void visit(int user, int song, int count);
+    }
+
+    // open addressing counts keyed by user ordinal in the high and song ordinal in the low half of a long
+    private static class PairCounts {
+        private static final long EMPTY = -1;
+
+        private long[] keys;
+        private int[] counts;
+        private int size;
+
+        private PairCounts(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            counts = new int[capacity];
+        }
+
+        private void increment(int user, int song) {
+            long key = (long) user << 32 | song;
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    counts[slot]++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            counts[slot] = 1;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+        }
+
+        private void forEach(PairVisitor visitor) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY) {
+                    visitor.visit((int) (keys[slot] >>> 32), (int) keys[slot], counts[slot]);
+                }
+            }
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            counts = new int[keys.length];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = mix(oldKeys[i]) & mask;
+                    while (keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
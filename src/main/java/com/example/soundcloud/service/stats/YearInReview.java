@@ -0,0 +1,180 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.YearReviewDAO;
+import com.example.soundcloud.models.dto.stats.ResponseYearReviewDTO;
+import com.example.soundcloud.models.dto.stats.ReviewItemDTO;
+import com.example.soundcloud.models.exceptions.ForbiddenException;
+import com.example.soundcloud.models.exceptions.NotFoundException;
+import com.example.soundcloud.service.events.ListenLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class YearInReview {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(YearInReview.class);
+    // a review run on the first of January needs the whole previous year
+    private static final int MIN_RETENTION_DAYS = 366;
+
+    @Autowired
+    private YearReviewDAO yearReviewDAO;
+    @Autowired
+    private ListenLog listenLog;
+    @Value("${listens.log.retention-days:400}")
+    private int retentionDays;
+    @Value("${year-review.chunk-users:5000}")
+    private int chunkUsers;
+    @Value("${year-review.parallelism:0}")
+    private int parallelism;
+    // set to a year to compute its reviews on demand when the application starts
+    @Value("${year-review.run-year:0}")
+    private int runYear;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void runOnStartup() {
+        yearReviewDAO.createTables();
+        if (runYear > 0) {
+            run(runYear);
+        }
+    }
+
+    @Scheduled(cron = "0 0 2 1 1 *")
+    public void runLastYear() {
+        run(LocalDate.now(ZoneOffset.UTC).getYear() - 1);
+    }
+
+    // The listeners of the year are reviewed in chunks of consecutive ids on a fork/join pool. A single writer
+    // thread saves a chunk while the next one is reviewed, and the reviewer waits for it before handing over
+    // another, so the job never holds more than one connection of the pool the requests are served from. Every
+    // number comes from the listen log, which has to reach back to the first of January.
+    public synchronized void run(int year) {
+        if (retentionDays < MIN_RETENTION_DAYS) {
+            LOGGER.error("Year in review {} skipped: listens.log.retention-days is {}, it needs at least {}", year,
+                    retentionDays, MIN_RETENTION_DAYS);
+            return;
+        }
+        long oldest = listenLog.oldestMillis();
+        if (oldest > YearActivity.startOf(year)) {
+            LOGGER.warn("Year in review {}: the listen log starts at {}, earlier plays are missing", year,
+                    Instant.ofEpochMilli(oldest));
+        }
+        long started = System.nanoTime();
+        YearActivity activity = YearActivity.scan(listenLog, year);
+        String[] titles = new String[activity.songCount()];
+        String[] artists = new String[titles.length];
+        String[] genres = new String[titles.length];
+        yearReviewDAO.scanSongs(rs -> {
+            int song = activity.songOrdinal(rs.getLong("id"));
+            if (song >= 0) {
+                titles[song] = rs.getString("title");
+                artists[song] = rs.getString("artist");
+                genres[song] = rs.getString("genre");
+            }
+        });
+        long[] userIds = activity.userIds();
+        int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> pending = null;
+            long afterId = 0;
+            for (int chunk = 0; chunk < userIds.length; chunk += chunkUsers) {
+                YearReviewJob job = new YearReviewJob(year, activity);
+                int end = Math.min(userIds.length, chunk + chunkUsers);
+                for (int u = chunk; u < end; u++) {
+                    job.addUser(userIds[u]);
+                    // songs deleted since they were played count as plays but are left out of the top lists
+                    activity.forEachSong(userIds[u], (song, plays) -> {
+                        if (titles[song] != null) {
+                            job.addSong(activity.songId(song), plays, titles[song], artists[song], genres[song]);
+                        }
+                    });
+                }
+                job.run(pool);
+                await(pending);
+                long from = afterId;
+                long to = userIds[end - 1];
+                pending = writer.submit(() -> yearReviewDAO.saveChunk(year, from, to, job.reviewRows(), job.topRows()));
+                afterId = to;
+            }
+            await(pending);
+        } finally {
+            pool.shutdown();
+            writer.shutdown();
+        }
+        LOGGER.info("Year in review {}: {} users in {} s", year, userIds.length,
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+    }
+
+    public ResponseYearReviewDTO reviewOf(long userId, long loggedId, int year) {
+        if (userId != loggedId) {
+            throw new ForbiddenException("You can only see your own year in review!");
+        }
+        ResponseYearReviewDTO review = new ResponseYearReviewDTO();
+        yearReviewDAO.scanReview(userId, year, rs -> {
+            review.setUserId(userId);
+            review.setYear(year);
+            review.setPlays(rs.getInt("plays"));
+            review.setSongs(rs.getInt("songs"));
+            review.setActiveDays(rs.getInt("active_days"));
+            review.setLongestStreak(rs.getInt("longest_streak"));
+        });
+        if (review.getYear() != year) {
+            throw new NotFoundException("There is no review of " + year + " for this user!");
+        }
+        review.setTopSongs(new ArrayList<>());
+        review.setTopArtists(new ArrayList<>());
+        review.setTopGenres(new ArrayList<>());
+        yearReviewDAO.scanReviewTops(userId, year, rs -> {
+            long songId = rs.getLong("song_id");
+            ReviewItemDTO item = new ReviewItemDTO(rs.wasNull() ? null : songId, rs.getString("name"), rs.getInt("plays"));
+            listOf(review, rs.getString("kind")).add(item);
+        });
+        return review;
+    }
+
+    private static List<ReviewItemDTO> listOf(ResponseYearReviewDTO review, String kind) {
+        switch (kind) {
+            case YearReviewJob.SONG:
+                return review.getTopSongs();
+            case YearReviewJob.ARTIST:
+                return review.getTopArtists();
+            default:
+                return review.getTopGenres();
+        }
+    }
+
+    private static void await(Future<?> pending) {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while saving year reviews", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Saving year reviews failed", e.getCause());
+        }
+    }
+}
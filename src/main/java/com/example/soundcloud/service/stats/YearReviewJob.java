@@ -0,0 +1,169 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.service.recommendation.TopK;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// The reviews of one chunk of users. The songs a user played in the year are added right after the user, so every
+// user owns a contiguous range of the row arrays and the users can be split between fork/join tasks without any
+// locking.
+class YearReviewJob {
+
+    static final String SONG = "song";
+    static final String ARTIST = "artist";
+    static final String GENRE = "genre";
+    static final int TOP = 5;
+    private static final int LEAF_SIZE = 128;
+
+    private final int year;
+    private final YearActivity activity;
+    private long[] userIds = new long[64];
+    private int[] offsets = new int[65];
+    private int users;
+    private long[] songIds = new long[1024];
+    private int[] listened = new int[1024];
+    private String[] titles = new String[1024];
+    private String[] artists = new String[1024];
+    private String[] genres = new String[1024];
+    private int rows;
+
+    private Object[][] reviews;
+    // one slot per user, each set by the task that reviews the user
+    private List<List<Object[]>> tops;
+
+    YearReviewJob(int year, YearActivity activity) {
+        this.year = year;
+        this.activity = activity;
+    }
+
+    void addUser(long userId) {
+        if (users == userIds.length) {
+            userIds = Arrays.copyOf(userIds, users * 2);
+            offsets = Arrays.copyOf(offsets, users * 2 + 1);
+        }
+        userIds[users++] = userId;
+        offsets[users] = rows;
+    }
+
+    // a song the last added user played in the year, with the number of plays
+    void addSong(long songId, int plays, String title, String artist, String genre) {
+        if (rows == songIds.length) {
+            int capacity = rows * 2;
+            songIds = Arrays.copyOf(songIds, capacity);
+            listened = Arrays.copyOf(listened, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            artists = Arrays.copyOf(artists, capacity);
+            genres = Arrays.copyOf(genres, capacity);
+        }
+        songIds[rows] = songId;
+        listened[rows] = plays;
+        titles[rows] = title;
+        artists[rows] = artist;
+        genres[rows] = genre;
+        offsets[users] = ++rows;
+    }
+
+    void run(ForkJoinPool pool) {
+        reviews = new Object[users][];
+        tops = new ArrayList<>(Collections.nCopies(users, null));
+        pool.invoke(new Range(0, users));
+    }
+
+    List<Object[]> reviewRows() {
+        return Arrays.asList(reviews);
+    }
+
+    List<Object[]> topRows() {
+        List<Object[]> result = new ArrayList<>();
+        for (List<Object[]> userTops : tops) {
+            result.addAll(userTops);
+        }
+        return result;
+    }
+
+    private void review(int user, Scratch s) {
+        long userId = userIds[user];
+        int from = offsets[user];
+        int to = offsets[user + 1];
+        reviews[user] = new Object[]{userId, year, activity.plays(userId), to - from,
+                activity.activeDays(userId), activity.longestStreak(userId)};
+        List<Object[]> userTops = new ArrayList<>(3 * TOP);
+
+        s.top.clear();
+        for (int r = from; r < to; r++) {
+            s.top.offer(r, listened[r]);
+        }
+        int count = s.top.drainTo(s.ids, s.scores, 0);
+        for (int i = 0; i < count; i++) {
+            int r = s.ids[i];
+            userTops.add(new Object[]{userId, year, SONG, i, songIds[r], titles[r], listened[r]});
+        }
+        addTop(userId, ARTIST, artists, from, to, s, userTops);
+        addTop(userId, GENRE, genres, from, to, s, userTops);
+        tops.set(user, userTops);
+    }
+
+    // a user has listened to few enough songs that a small map per user is cheaper than a global dictionary
+    private void addTop(long userId, String kind, String[] names, int from, int to, Scratch s, List<Object[]> out) {
+        s.totals.clear();
+        s.names.clear();
+        for (int r = from; r < to; r++) {
+            if (names[r] == null) {
+                continue;
+            }
+            int[] total = s.totals.get(names[r]);
+            if (total == null) {
+                total = new int[]{s.names.size(), 0};
+                s.totals.put(names[r], total);
+                s.names.add(names[r]);
+            }
+            total[1] += listened[r];
+        }
+        s.top.clear();
+        for (int[] total : s.totals.values()) {
+            s.top.offer(total[0], total[1]);
+        }
+        int count = s.top.drainTo(s.ids, s.scores, 0);
+        for (int i = 0; i < count; i++) {
+            out.add(new Object[]{userId, year, kind, i, null, s.names.get(s.ids[i]), (int) s.scores[i]});
+        }
+    }
+
+    private static class Scratch {
+        private final TopK top = new TopK(TOP);
+        private final int[] ids = new int[TOP];
+        private final float[] scores = new float[TOP];
+        private final Map<String, int[]> totals = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+    }
+
+    private class Range extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        private Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                Scratch s = new Scratch();
+                for (int user = from; user < to; user++) {
+                    review(user, s);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Range(from, mid), new Range(mid, to));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.soundcloud.models.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Concurrent like increments of one song against an embedded database in MySQL mode, all on one row versus
+// spread over the shards. Run with -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class SongCounterDAOBenchmarkTests {
+
+    private static final long SONG = 1;
+    private static final int THREADS = 16;
+    private static final int INCREMENTS_PER_THREAD = 2000;
+
+    private SongCounterDAO songCounterDAO;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:counters;MODE=MySQL;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        songCounterDAO = new SongCounterDAO();
+        ReflectionTestUtils.setField(songCounterDAO, "jdbcTemplate", jdbcTemplate);
+        songCounterDAO.createTable();
+        jdbcTemplate.update("DELETE FROM song_counter_shards");
+    }
+
+    @Test
+    void shardedIncrementsAgainstOneRow() throws Exception {
+        run(1);
+        for (int shards : new int[]{1, 4, 16}) {
+            jdbcTemplate.update("DELETE FROM song_counter_shards");
+            long nanos = run(shards);
+            long increments = (long) THREADS * INCREMENTS_PER_THREAD;
+            assertEquals(increments, songCounterDAO.sum(SONG)[1]);
+            System.out.printf("%2d shards: %,d increments from %d threads in %d ms, %,.0f per second%n", shards,
+                    increments, THREADS, TimeUnit.NANOSECONDS.toMillis(nanos), increments * 1e9 / nanos);
+        }
+    }
+
+    private long run(int shards) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            long started = System.nanoTime();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                        songCounterDAO.increment(SONG, 1 + ThreadLocalRandom.current().nextInt(shards), 0, 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - started;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.soundcloud.service.cache;
+
+import com.example.soundcloud.models.dto.song.ResponseSongDTO;
+import com.example.soundcloud.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HomeFeedCacheTests {
+
+    private static final int MB = 1024 * 1024;
+
+    private FakeUserService userService;
+    private HomeFeedCache cache;
+
+    @BeforeEach
+    void setUp() {
+        userService = new FakeUserService();
+        cache = new HomeFeedCache();
+        ReflectionTestUtils.setField(cache, "userService", userService);
+        ReflectionTestUtils.setField(cache, "objectMapper", new PaddingObjectMapper(MB));
+    }
+
+    @Test
+    void servesTheCachedFeedUntilTheUserChangesIt() {
+        String first = feed(1);
+        assertEquals(first, feed(1));
+        assertEquals(1, userService.computes(1));
+
+        cache.markDirty(1);
+        assertEquals("feed 1 #2", feed(1));
+        assertEquals("feed 1 #2", feed(1));
+        // a change of another user leaves this feed alone
+        cache.markDirty(2);
+        assertEquals("feed 1 #2", feed(1));
+        assertEquals(2, userService.computes(1));
+    }
+
+    @Test
+    void aChangeDuringAComputeIsNotHiddenByIt() {
+        feed(1);
+        // the user likes a song while the feed is read, after the compute took its generation
+        userService.during = () -> cache.markDirty(1);
+        cache.markDirty(1);
+        assertEquals("feed 1 #2", feed(1));
+        userService.during = null;
+
+        assertEquals("feed 1 #3", feed(1));
+        assertEquals("feed 1 #3", feed(1));
+    }
+
+    @Test
+    void refreshesOnlyTheDirtyFeedsThatAreCached() {
+        feed(1);
+        cache.markDirty(1);
+        cache.markDirty(2);
+        cache.refreshDirtyFeeds();
+
+        assertEquals(2, userService.computes(1));
+        assertEquals(0, userService.computes(2));
+        assertEquals("feed 1 #2", feed(1));
+        assertEquals(2, userService.computes(1));
+
+        cache.evict(1);
+        assertEquals("feed 1 #3", feed(1));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyServedFeedsOverTheByteBudget() {
+        // 32 feeds of 1 MB fill the budget exactly
+        for (long user = 1; user <= 32; user++) {
+            feed(user);
+        }
+        feed(1);
+        feed(33);
+
+        // 2 was served longest ago, 1 was just served again
+        feed(1);
+        assertEquals(1, userService.computes(1));
+        feed(2);
+        assertEquals(2, userService.computes(2));
+        // bringing 2 back pushed out 3, the next least recent one
+        feed(4);
+        assertEquals(1, userService.computes(4));
+        feed(3);
+        assertEquals(2, userService.computes(3));
+    }
+
+    private String feed(long userId) {
+        byte[] json = cache.getHomePage(userId);
+        int end = 0;
+        while (end < json.length && json[end] != 0) {
+            end++;
+        }
+        return new String(json, 0, end);
+    }
+
+    // every computed feed is numbered per user, so a recomputed one differs from the one before
+    private static class FakeUserService extends UserService {
+        private final Map<Long, Integer> computes = new ConcurrentHashMap<>();
+        private volatile Runnable during;
+
+        @Override
+        public HashMap<String, List<ResponseSongDTO>> homePageForLogged(long userId) {
+            int count = computes.merge(userId, 1, Integer::sum);
+            if (during != null) {
+                during.run();
+            }
+            HashMap<String, List<ResponseSongDTO>> feed = new HashMap<>();
+            feed.put("feed " + userId + " #" + count, new ArrayList<>());
+            return feed;
+        }
+
+        private int computes(long userId) {
+            return computes.getOrDefault(userId, 0);
+        }
+    }
+
+    // writes the only key of the feed, padded with zeros to a fixed size
+    private static class PaddingObjectMapper extends ObjectMapper {
+        private final int size;
+
+        private PaddingObjectMapper(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public byte[] writeValueAsBytes(Object value) {
+            byte[] key = ((Map<?, ?>) value).keySet().iterator().next().toString().getBytes();
+            return Arrays.copyOf(key, size);
+        }
+    }
+}
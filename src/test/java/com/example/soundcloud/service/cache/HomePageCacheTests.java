@@ -0,0 +1,128 @@
+package com.example.soundcloud.service.cache;
+
+import com.example.soundcloud.models.dto.song.ResponseSongDTO;
+import com.example.soundcloud.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HomePageCacheTests {
+
+    private static final long TTL = TimeUnit.MINUTES.toMillis(1);
+
+    private FakeUserService userService;
+    private HomePageCache cache;
+
+    @BeforeEach
+    void setUp() {
+        userService = new FakeUserService();
+        cache = new HomePageCache();
+        ReflectionTestUtils.setField(cache, "userService", userService);
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+    }
+
+    @Test
+    void servesThePageUntilTheTtlRunsOut() {
+        long now = System.currentTimeMillis();
+        byte[] first = cache.getNonLoggedHomePage(now);
+        assertArrayEquals(first, cache.getNonLoggedHomePage(now + TTL / 2));
+        assertEquals(1, userService.computes.get());
+
+        byte[] second = cache.getNonLoggedHomePage(now + 2 * TTL);
+        assertEquals(2, userService.computes.get());
+        assertTrue(new String(second).contains("page 2"));
+    }
+
+    @Test
+    void concurrentMissesShareOneComputation() throws InterruptedException {
+        userService.entered = new CountDownLatch(1);
+        userService.release = new CountDownLatch(1);
+        byte[][] pages = new byte[8][];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < pages.length; i++) {
+            int index = i;
+            threads.add(new Thread(() -> pages[index] = cache.getNonLoggedHomePage()));
+        }
+        threads.get(0).start();
+        assertTrue(userService.entered.await(10, TimeUnit.SECONDS));
+        for (Thread thread : threads.subList(1, threads.size())) {
+            thread.start();
+        }
+        // everybody else waits on the running computation before it is let go
+        for (Thread thread : threads.subList(1, threads.size())) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.yield();
+            }
+        }
+        userService.release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, userService.computes.get());
+        for (byte[] page : pages) {
+            assertArrayEquals(pages[0], page);
+        }
+    }
+
+    @Test
+    void refreshesAheadAndKeepsThePreviousPageWhenThatFails() {
+        cache.getNonLoggedHomePage();
+        cache.refreshAhead();
+        byte[] refreshed = cache.getNonLoggedHomePage();
+        assertEquals(2, userService.computes.get());
+        assertTrue(new String(refreshed).contains("page 2"));
+
+        userService.failing = true;
+        cache.refreshAhead();
+        assertArrayEquals(refreshed, cache.getNonLoggedHomePage());
+        // an expired page is still served when it can not be recomputed
+        assertArrayEquals(refreshed, cache.getNonLoggedHomePage(System.currentTimeMillis() + 2 * TTL));
+    }
+
+    @Test
+    void failsWhenThereIsNoPageToFallBackTo() {
+        userService.failing = true;
+
+        assertThrows(IllegalStateException.class, () -> cache.getNonLoggedHomePage());
+    }
+
+    // every computed page is numbered, so a recomputed one differs from the one before
+    private static class FakeUserService extends UserService {
+        private final AtomicInteger computes = new AtomicInteger();
+        private volatile boolean failing;
+        private CountDownLatch entered;
+        private CountDownLatch release;
+
+        @Override
+        public HashMap<String, List<ResponseSongDTO>> homePageForNonLoged() {
+            if (failing) {
+                throw new IllegalStateException("database down");
+            }
+            if (entered != null) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            HashMap<String, List<ResponseSongDTO>> page = new HashMap<>();
+            page.put("page " + computes.incrementAndGet(), new ArrayList<>());
+            return page;
+        }
+    }
+}
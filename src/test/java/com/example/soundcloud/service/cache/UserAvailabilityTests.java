@@ -0,0 +1,135 @@
+package com.example.soundcloud.service.cache;
+
+import com.example.soundcloud.models.dao.UserDAO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserAvailabilityTests {
+
+    private FakeUserDAO userDAO;
+    private UserAvailability availability;
+
+    @BeforeEach
+    void setUp() {
+        userDAO = new FakeUserDAO();
+        userDAO.users.add(new String[]{"Alice", "alice@example.com"});
+        userDAO.users.add(new String[]{"bob", "bob@example.com"});
+        availability = new UserAvailability();
+        ReflectionTestUtils.setField(availability, "userDAO", userDAO);
+    }
+
+    @Test
+    void asksTheTableUntilTheFiltersAreBuilt() {
+        assertTrue(availability.usernameTaken("bob"));
+        assertFalse(availability.usernameTaken("carol"));
+        assertEquals(2, userDAO.existenceQueries);
+    }
+
+    @Test
+    void freeNamesCostNoQuery() {
+        availability.build();
+
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(availability.usernameTaken("free" + i));
+            assertFalse(availability.emailTaken("free" + i + "@example.com"));
+        }
+        // the filters are sized for a 0.1% false positive rate
+        assertTrue(userDAO.existenceQueries < 10, userDAO.existenceQueries + " queries");
+    }
+
+    @Test
+    void takenNamesAreConfirmedByTheTableIgnoringCase() {
+        availability.build();
+
+        assertTrue(availability.usernameTaken("alice"));
+        assertTrue(availability.usernameTaken(" ALICE "));
+        assertTrue(availability.emailTaken("Bob@Example.com"));
+        assertEquals(3, userDAO.existenceQueries);
+    }
+
+    @Test
+    void namesAddedAfterTheBuildAreTaken() {
+        availability.build();
+        userDAO.users.add(new String[]{"carol", "carol@example.com"});
+        availability.add("carol", "carol@example.com");
+
+        assertTrue(availability.usernameTaken("carol"));
+        assertTrue(availability.emailTaken("carol@example.com"));
+    }
+
+    @Test
+    void rebuildsOnlyOnceAFilterHoldsMoreNamesThanItWasSizedFor() {
+        availability.build();
+        availability.rebuildIfFull();
+        assertEquals(1, userDAO.builds);
+
+        for (int i = 0; i < 10_100; i++) {
+            userDAO.users.add(new String[]{"user" + i, "user" + i + "@example.com"});
+            availability.add("user" + i, "user" + i + "@example.com");
+        }
+        availability.rebuildIfFull();
+        assertEquals(2, userDAO.builds);
+        assertTrue(availability.usernameTaken("user10099"));
+    }
+
+    private static class FakeUserDAO extends UserDAO {
+        private final List<String[]> users = new ArrayList<>();
+        private int existenceQueries;
+        private int builds;
+
+        @Override
+        public void createLookupIndexes() {
+        }
+
+        @Override
+        public int countUsers() {
+            builds++;
+            return users.size();
+        }
+
+        @Override
+        public void scanUsernamesAndEmails(RowCallbackHandler handler) {
+            try {
+                for (String[] user : users) {
+                    handler.processRow(row(user));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public boolean usernameExists(String username) {
+            return exists(0, username);
+        }
+
+        @Override
+        public boolean emailExists(String email) {
+            return exists(1, email);
+        }
+
+        private boolean exists(int column, String name) {
+            existenceQueries++;
+            return users.stream().anyMatch(user -> user[column].equalsIgnoreCase(name.trim()));
+        }
+
+        private static ResultSet row(String[] user) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> "username".equals(((String) args[0]).toLowerCase(Locale.ROOT))
+                            ? user[0] : user[1]);
+        }
+    }
+}
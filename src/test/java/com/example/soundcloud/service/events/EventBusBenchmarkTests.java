@@ -0,0 +1,89 @@
+package com.example.soundcloud.service.events;
+
+import com.example.soundcloud.models.dto.stats.EventConsumerDTO;
+import com.example.soundcloud.models.dto.stats.ResponseEventBusDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Events per second from 4 producers through the default 16384 slot ring under the block policy to 3 handlers,
+// one of which does a little work per event, until every handler has seen every event. Run with
+// -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class EventBusBenchmarkTests {
+
+    private static final int PRODUCERS = 4;
+    private static final int EVENTS_PER_PRODUCER = 1_000_000;
+
+    @Test
+    void publishesMillionsOfEventsPerSecondWithoutDrops() throws InterruptedException {
+        CountingHandler[] handlers = {new CountingHandler(0), new CountingHandler(0), new CountingHandler(50)};
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        for (int i = 0; i < handlers.length; i++) {
+            beans.addBean("handler" + i, handlers[i]);
+        }
+        EventBus bus = new EventBus();
+        ReflectionTestUtils.setField(bus, "handlers", beans.getBeanProvider(DomainEventHandler.class));
+        ReflectionTestUtils.setField(bus, "ringSize", 16384);
+        ReflectionTestUtils.setField(bus, "backpressure", "block");
+        ReflectionTestUtils.setField(bus, "blockTimeoutMillis", 10_000L);
+        bus.init();
+        bus.start();
+
+        long total = (long) PRODUCERS * EVENTS_PER_PRODUCER;
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            producers.add(new Thread(() -> {
+                for (long i = 0; i < EVENTS_PER_PRODUCER; i++) {
+                    bus.publishListen(i, 1, i, "rock", "BG", 0);
+                }
+            }));
+        }
+        long started = System.nanoTime();
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        while (bus.metrics().getConsumers().stream().anyMatch(c -> c.getProcessed() < total)) {
+            Thread.yield();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        ResponseEventBusDTO metrics = bus.metrics();
+        bus.stop();
+
+        long maxBatch = metrics.getConsumers().stream().mapToLong(EventConsumerDTO::getMaxBatch).max().orElse(0);
+        System.out.printf("%.2fM events/s from %d producers to %d handlers on %d cores, %d dropped, "
+                        + "largest batch %d%n", total / seconds / 1e6, PRODUCERS, handlers.length,
+                Runtime.getRuntime().availableProcessors(), metrics.getDropped(), maxBatch);
+        assertEquals(0, metrics.getDropped());
+        for (CountingHandler handler : handlers) {
+            assertEquals(total, handler.events);
+        }
+        assertTrue(total / seconds > 500_000);
+    }
+
+    private static class CountingHandler implements DomainEventHandler {
+        private final int work;
+        private long events;
+        private long sink;
+
+        private CountingHandler(int work) {
+            this.work = work;
+        }
+
+        @Override
+        public void onEvent(DomainEvent event, boolean endOfBatch) {
+            events++;
+            for (int i = 0; i < work; i++) {
+                sink += event.getSongId() * 31 + i;
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.soundcloud.service.events;
+
+import com.example.soundcloud.models.dto.stats.EventConsumerDTO;
+import com.example.soundcloud.models.dto.stats.ResponseEventBusDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventBusTests {
+
+    private EventBus bus;
+
+    @AfterEach
+    void tearDown() {
+        if (bus != null) {
+            bus.stop();
+        }
+    }
+
+    @Test
+    void everyHandlerSeesEveryEventInPublishOrder() throws InterruptedException {
+        RecordingHandler first = new RecordingHandler();
+        RecordingHandler second = new RecordingHandler();
+        bus = bus(64, "block", 10_000, first, second);
+        bus.start();
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 2; p++) {
+            long producer = p;
+            producers.add(new Thread(() -> {
+                for (long i = 0; i < 10_000; i++) {
+                    bus.publishListen(i, producer, i, null, null, 0);
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        awaitProcessed(20_000);
+
+        for (RecordingHandler handler : new RecordingHandler[]{first, second}) {
+            List<long[]> events = handler.events();
+            assertEquals(20_000, events.size());
+            long[] last = {-1, -1};
+            for (long[] event : events) {
+                int producer = (int) event[0];
+                // a producer's events keep their order, however the two producers interleave
+                assertEquals(last[producer] + 1, event[1]);
+                last[producer] = event[1];
+            }
+        }
+        assertEquals(0, bus.metrics().getDropped());
+        assertEquals(20_000, bus.metrics().getPublished());
+    }
+
+    @Test
+    void queuesEventsUntilTheHandlersStart() {
+        RecordingHandler handler = new RecordingHandler();
+        bus = bus(16, "drop", 0, handler);
+        for (long i = 0; i < 10; i++) {
+            bus.publishUser(EventType.FOLLOW, i, i + 1);
+        }
+        assertEquals(0, handler.events().size());
+
+        bus.start();
+        awaitProcessed(10);
+        assertEquals(10, handler.events().size());
+        assertEquals(9, handler.events().get(9)[0]);
+    }
+
+    @Test
+    void dropsWhatDoesNotFitWithTheDropPolicy() {
+        RecordingHandler handler = new RecordingHandler();
+        bus = bus(8, "drop", 0, handler);
+        for (long i = 0; i < 20; i++) {
+            bus.publishUser(EventType.FOLLOW, i, 0);
+        }
+
+        assertEquals(12, bus.metrics().getDropped());
+        assertEquals(8, bus.metrics().getPublished());
+        bus.start();
+        awaitProcessed(8);
+        assertEquals(7, handler.events().get(7)[0]);
+    }
+
+    @Test
+    void blockingGivesUpAfterTheTimeout() {
+        bus = bus(8, "block", 5, new RecordingHandler());
+        for (long i = 0; i < 8; i++) {
+            bus.publishUser(EventType.FOLLOW, i, 0);
+        }
+
+        long started = System.nanoTime();
+        bus.publishUser(EventType.FOLLOW, 8, 0);
+        assertTrue(System.nanoTime() - started >= 5_000_000);
+        assertEquals(1, bus.metrics().getDropped());
+    }
+
+    @Test
+    void aFailingHandlerKeepsConsuming() {
+        RecordingHandler failing = new EvenUserFailingHandler();
+        bus = bus(16, "block", 1000, failing);
+        bus.start();
+        for (long i = 0; i < 10; i++) {
+            bus.publishUser(EventType.FOLLOW, i, 0);
+        }
+
+        awaitProcessed(10);
+        assertEquals(5, failing.events().size());
+        assertEquals(5, bus.metrics().getConsumers().get(0).getErrors());
+    }
+
+    private void awaitProcessed(long expected) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            ResponseEventBusDTO metrics = bus.metrics();
+            if (metrics.getConsumers().stream().allMatch(c -> c.getProcessed() >= expected)) {
+                return;
+            }
+            Thread.yield();
+        }
+        List<Long> processed = new ArrayList<>();
+        for (EventConsumerDTO consumer : bus.metrics().getConsumers()) {
+            processed.add(consumer.getProcessed());
+        }
+        throw new AssertionError("handlers processed " + processed + " of " + expected);
+    }
+
+    private static EventBus bus(int ringSize, String backpressure, long blockTimeoutMillis,
+                                DomainEventHandler... handlers) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        for (int i = 0; i < handlers.length; i++) {
+            beans.addBean("handler" + i, handlers[i]);
+        }
+        EventBus bus = new EventBus();
+        ReflectionTestUtils.setField(bus, "handlers", beans.getBeanProvider(DomainEventHandler.class));
+        ReflectionTestUtils.setField(bus, "ringSize", ringSize);
+        ReflectionTestUtils.setField(bus, "backpressure", backpressure);
+        ReflectionTestUtils.setField(bus, "blockTimeoutMillis", blockTimeoutMillis);
+        bus.init();
+        return bus;
+    }
+
+    // slots are reused, so the handler copies the user and song ids
+    private static class RecordingHandler implements DomainEventHandler {
+        private final List<long[]> events = new ArrayList<>();
+
+        @Override
+        public void onEvent(DomainEvent event, boolean endOfBatch) {
+            synchronized (events) {
+                events.add(new long[]{event.getUserId(), event.getSongId()});
+            }
+        }
+
+        List<long[]> events() {
+            synchronized (events) {
+                return new ArrayList<>(events);
+            }
+        }
+    }
+
+    private static class EvenUserFailingHandler extends RecordingHandler {
+        @Override
+        public void onEvent(DomainEvent event, boolean endOfBatch) {
+            if (event.getUserId() % 2 == 0) {
+                throw new IllegalStateException("even user " + event.getUserId());
+            }
+            super.onEvent(event, endOfBatch);
+        }
+    }
+}
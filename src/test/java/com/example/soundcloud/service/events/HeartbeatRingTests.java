@@ -0,0 +1,91 @@
+package com.example.soundcloud.service.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeartbeatRingTests {
+
+    @Test
+    void drainsInOfferOrder() {
+        HeartbeatRing ring = new HeartbeatRing(8);
+        for (long v = 1; v <= 5; v++) {
+            assertTrue(ring.offer(v));
+        }
+        assertEquals(5, ring.size());
+        long[] out = new long[3];
+        assertEquals(3, ring.drain(out));
+        assertArrayEquals(new long[]{1, 2, 3}, out);
+        assertEquals(2, ring.drain(out));
+        assertEquals(4, out[0]);
+        assertEquals(5, out[1]);
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void refusesOffersWhenFullUntilDrained() {
+        HeartbeatRing ring = new HeartbeatRing(4);
+        for (long v = 0; v < 4; v++) {
+            assertTrue(ring.offer(v));
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(1, ring.drain(new long[1]));
+        assertTrue(ring.offer(4));
+        long[] out = new long[8];
+        assertEquals(4, ring.drain(out));
+        assertArrayEquals(new long[]{1, 2, 3, 4}, Arrays.copyOf(out, 4));
+    }
+
+    @Test
+    void wrapsAroundManyTimes() {
+        HeartbeatRing ring = new HeartbeatRing(4);
+        long[] out = new long[4];
+        for (long v = 0; v < 1000; v += 3) {
+            ring.offer(v);
+            ring.offer(v + 1);
+            ring.offer(v + 2);
+            assertEquals(3, ring.drain(out));
+            assertArrayEquals(new long[]{v, v + 1, v + 2}, Arrays.copyOf(out, 3));
+        }
+    }
+
+    @Test
+    void concurrentProducersLoseNothingThatWasAccepted() throws InterruptedException {
+        HeartbeatRing ring = new HeartbeatRing(1 << 10);
+        int producers = 4;
+        int perProducer = 100_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p << 32;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(base | i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        // every producer's values must come out in its own order
+        long[] next = new long[producers];
+        long[] out = new long[256];
+        long received = 0;
+        while (received < (long) producers * perProducer) {
+            int count = ring.drain(out);
+            for (int i = 0; i < count; i++) {
+                int producer = (int) (out[i] >>> 32);
+                assertEquals(next[producer]++, out[i] & 0xFFFFFFFFL);
+            }
+            received += count;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, ring.size());
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.soundcloud.service.events;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Appends per second from one thread and scan speed over 6M records, three 64 MB segments, in a temporary
+// directory. Run with -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class ListenLogBenchmarkTests {
+
+    private static final int RECORDS = 6_000_000;
+
+    @Test
+    void appendsAndScansMillionsOfRecordsPerSecond() throws IOException {
+        File directory = Files.createTempDirectory("listens").toFile();
+        try {
+            ListenLog log = ListenLogTests.open(directory, 400);
+            long started = System.nanoTime();
+            for (int i = 0; i < RECORDS; i++) {
+                log.append(i, i & 1023, 0);
+            }
+            double appendsPerSecond = RECORDS / ((System.nanoTime() - started) / 1e9);
+            log.force();
+
+            double bytesPerSecond = 0;
+            long[] seen = new long[1];
+            for (int run = 0; run < 3; run++) {
+                seen[0] = 0;
+                // song ids were appended as 0, 1, 2..., so this only counts records read back in order
+                started = System.nanoTime();
+                log.scan(0, Long.MAX_VALUE, (time, songId, userId, clientHash) -> seen[0] += songId == seen[0] ? 1 : 0);
+                bytesPerSecond = Math.max(bytesPerSecond,
+                        (double) RECORDS * ListenLog.RECORD_BYTES / ((System.nanoTime() - started) / 1e9));
+            }
+            System.out.printf("%.1fM appends/s, %.2f GB/s scanned over %d segments%n", appendsPerSecond / 1e6,
+                    bytesPerSecond / 1e9, directory.listFiles().length);
+            assertEquals(RECORDS, seen[0]);
+            assertTrue(appendsPerSecond > 1_000_000);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.soundcloud.service.events;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ListenLogTests {
+
+    private File directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("listens").toFile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    void scansAppendedRecordsInOrderWithinTheRange() throws IOException {
+        ListenLog log = open(directory, 400);
+        long first = log.append(1, 10, 0);
+        log.append(2, 0, 99);
+        long last = log.append(3, 30, 0);
+
+        List<long[]> all = scan(log, 0, Long.MAX_VALUE);
+        assertEquals(3, all.size());
+        assertEquals(first, all.get(0)[0]);
+        assertEquals(1, all.get(0)[1]);
+        assertEquals(10, all.get(0)[2]);
+        assertEquals(99, all.get(1)[3]);
+        assertEquals(3, all.get(2)[1]);
+        assertTrue(scan(log, last + 1, Long.MAX_VALUE).isEmpty());
+        assertEquals(all.stream().filter(record -> record[0] == last).count(), scan(log, last, last + 1).size());
+    }
+
+    @Test
+    void markSplitsTheLogBetweenReplayAndBus() throws IOException {
+        ListenLog log = open(directory, 400);
+        long before = log.append(1, 1, 0);
+        long cutoff = log.mark();
+        long after = log.append(2, 1, 0);
+
+        assertTrue(before < cutoff);
+        assertTrue(after >= cutoff);
+        List<long[]> replayed = scan(log, 0, cutoff);
+        assertEquals(1, replayed.size());
+        assertEquals(1, replayed.get(0)[1]);
+    }
+
+    @Test
+    void continuesAfterTheLastRecordWhenReopened() throws IOException {
+        ListenLog log = open(directory, 400);
+        for (long song = 1; song <= 5; song++) {
+            log.append(song, 1, 0);
+        }
+        log.close();
+
+        ListenLog reopened = open(directory, 400);
+        reopened.append(6, 1, 0);
+        List<long[]> all = scan(reopened, 0, Long.MAX_VALUE);
+        assertEquals(6, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(i + 1, all.get(i)[1]);
+            assertTrue(i == 0 || all.get(i)[0] >= all.get(i - 1)[0]);
+        }
+    }
+
+    @Test
+    void deletesSegmentsWhoseRecordsAreAllExpired() throws IOException {
+        long now = System.currentTimeMillis();
+        segment(now - TimeUnit.DAYS.toMillis(10));
+        segment(now - TimeUnit.DAYS.toMillis(5));
+        // the newest segment is reopened for appends
+        segment(now - TimeUnit.HOURS.toMillis(1));
+        ListenLog log = open(directory, 1);
+        log.append(1, 1, 0);
+
+        log.deleteExpiredSegments();
+        // the second segment still holds records up to the start of the newest one
+        assertEquals(now - TimeUnit.DAYS.toMillis(5), log.oldestMillis());
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    private void segment(long start) throws IOException {
+        assertTrue(new File(directory, String.format("%020d.log", start)).createNewFile());
+    }
+
+    static ListenLog open(File directory, int retentionDays) throws IOException {
+        ListenLog log = new ListenLog();
+        ReflectionTestUtils.setField(log, "directory", directory.getPath());
+        ReflectionTestUtils.setField(log, "retentionDays", retentionDays);
+        log.open();
+        return log;
+    }
+
+    private static List<long[]> scan(ListenLog log, long from, long to) {
+        List<long[]> records = new ArrayList<>();
+        log.scan(from, to, (time, songId, userId, clientHash) -> records.add(new long[]{time, songId, userId,
+                clientHash}));
+        return records;
+    }
+}
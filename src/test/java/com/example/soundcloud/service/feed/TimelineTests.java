@@ -0,0 +1,82 @@
+package com.example.soundcloud.service.feed;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimelineTests {
+
+    @Test
+    void pagesNewestFirstBeforeTheCursor() {
+        Timeline timeline = timeline(100, 20);
+
+        assertArrayEquals(new long[]{20, 19, 18}, page(timeline, Long.MAX_VALUE, 3, null));
+        assertArrayEquals(new long[]{17, 16, 15}, page(timeline, 18, 3, null));
+        assertArrayEquals(new long[]{2, 1}, page(timeline, 3, 10, null));
+        assertArrayEquals(new long[0], page(timeline, 1, 10, null));
+        assertEquals(0, timeline.oldestIfFull());
+    }
+
+    @Test
+    void growsPastTheInitialArraysWithoutLosingOrder() {
+        Timeline timeline = new Timeline(100);
+        for (long id = 1; id <= 5; id++) {
+            timeline.add(id, (byte) 1, id * 10, id * 100, 0, id * 1000);
+        }
+        for (long id = 6; id <= 50; id++) {
+            timeline.add(id, (byte) 2, id * 10, id * 100, 7, id * 1000);
+        }
+
+        List<FeedEntry> out = new ArrayList<>();
+        assertEquals(50, timeline.before(Long.MAX_VALUE, 100, null, out));
+        assertEquals(50, out.get(0).eventId);
+        assertEquals(1, out.get(49).eventId);
+        FeedEntry first = out.get(49);
+        assertEquals(1, first.type);
+        assertEquals(10, first.actorId);
+        assertEquals(100, first.songId);
+        assertEquals(1000, first.time);
+        assertEquals(7, out.get(0).targetId);
+    }
+
+    @Test
+    void dropsTheOldestOnceFull() {
+        Timeline timeline = timeline(16, 40);
+
+        assertArrayEquals(new long[]{40, 39, 38, 37, 36, 35, 34, 33, 32, 31, 30, 29, 28, 27, 26, 25},
+                page(timeline, Long.MAX_VALUE, 100, null));
+        assertEquals(25, timeline.oldestIfFull());
+        timeline.add(41, (byte) 1, 41, 0, 0, 0);
+        assertEquals(26, timeline.oldestIfFull());
+        assertArrayEquals(new long[]{41, 40}, page(timeline, Long.MAX_VALUE, 2, null));
+    }
+
+    @Test
+    void skipsActorsThatAreNotAllowed() {
+        Timeline timeline = timeline(100, 10);
+
+        // actors are the event id modulo 3 here
+        assertArrayEquals(new long[]{9, 6, 3}, page(timeline, Long.MAX_VALUE, 10, new long[]{0}));
+        assertArrayEquals(new long[]{10, 8, 7}, page(timeline, Long.MAX_VALUE, 3, new long[]{1, 2}));
+        assertArrayEquals(new long[0], page(timeline, Long.MAX_VALUE, 10, new long[]{5}));
+    }
+
+    private static Timeline timeline(int capacity, int entries) {
+        Timeline timeline = new Timeline(capacity);
+        for (long id = 1; id <= entries; id++) {
+            timeline.add(id, (byte) 1, id % 3, id, 0, id);
+        }
+        return timeline;
+    }
+
+    private static long[] page(Timeline timeline, long cursor, int limit, long[] allowedActors) {
+        List<FeedEntry> out = new ArrayList<>();
+        int copied = timeline.before(cursor, limit, allowedActors, out);
+        assertEquals(out.size(), copied);
+        return out.stream().mapToLong(entry -> entry.eventId).toArray();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.soundcloud.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Training time, model memory and recall@20 on synthetic listening data: 50k users who each stick to one or two
+// of 40 genres and play 20 songs out of them, with song popularity skewed inside every genre. Run with
+// -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class AlsBenchmarkTests {
+
+    private static final int USERS = 50_000;
+    private static final int GENRES = 40;
+    private static final int SONGS_PER_GENRE = 250;
+    private static final int PLAYS_PER_USER = 20;
+
+    @Test
+    void beatsPopularityOnHeldOutSongs() {
+        Random random = new Random(42);
+        LongIndex users = new LongIndex(USERS);
+        LongIndex songs = new LongIndex(GENRES * SONGS_PER_GENRE);
+        CsrMatrix.Builder builder = new CsrMatrix.Builder();
+        for (int u = 0; u < USERS; u++) {
+            users.getOrAdd(u);
+            builder.startRow();
+            int first = random.nextInt(GENRES);
+            int second = random.nextBoolean() ? first : random.nextInt(GENRES);
+            boolean[] played = new boolean[GENRES * SONGS_PER_GENRE];
+            for (int p = 0; p < PLAYS_PER_USER; p++) {
+                int genre = random.nextBoolean() ? first : second;
+                double r = random.nextDouble();
+                int song = genre * SONGS_PER_GENRE + (int) (SONGS_PER_GENRE * r * r);
+                if (!played[song]) {
+                    played[song] = true;
+                    builder.add(songs.getOrAdd(song), (float) Math.log(2 + random.nextInt(10)));
+                }
+            }
+        }
+        Interactions interactions = new Interactions(users, songs, builder.build(songs.size()));
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        AlsEvaluation evaluation = AlsEvaluation.run(interactions, new AlsTrainer(32, 10, 0.1, 10), parallelism,
+                20, 5000);
+        double popularity = popularityRecall(interactions, 20);
+        System.out.println(evaluation + " on " + parallelism + " threads, most played songs recall@20 = "
+                + String.format("%.4f", popularity));
+        assertTrue(evaluation.recall() > 2 * popularity, evaluation.toString());
+    }
+
+    // the held out song of AlsEvaluation against the 20 most played songs the user has not played
+    private static double popularityRecall(Interactions interactions, int k) {
+        CsrMatrix all = interactions.userSongs();
+        int[] plays = new int[all.columns()];
+        for (int p = 0; p < all.nonZeros(); p++) {
+            plays[all.col(p)]++;
+        }
+        int candidates = k + 64;
+        TopK top = new TopK(candidates);
+        for (int song = 0; song < plays.length; song++) {
+            top.offer(song, plays[song]);
+        }
+        int[] popular = new int[candidates];
+        int count = top.drainTo(popular, new float[candidates], 0);
+        int hits = 0;
+        int tests = 0;
+        for (int user = 0; user < all.rows(); user++) {
+            int length = all.end(user) - all.start(user);
+            if (length < 2) {
+                continue;
+            }
+            int held = all.col(all.start(user) + Math.floorMod(user * 0x9E3779B9, length));
+            int offered = 0;
+            for (int i = 0; i < count && offered < k; i++) {
+                boolean played = false;
+                for (int p = all.start(user); p < all.end(user); p++) {
+                    played |= all.col(p) == popular[i] && popular[i] != held;
+                }
+                if (!played) {
+                    offered++;
+                    if (popular[i] == held) {
+                        hits++;
+                    }
+                }
+            }
+            tests++;
+        }
+        return tests == 0 ? 0 : (double) hits / tests;
+    }
+}
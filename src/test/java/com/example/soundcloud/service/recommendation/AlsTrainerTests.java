@@ -0,0 +1,73 @@
+package com.example.soundcloud.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlsTrainerTests {
+
+    // the users of the first community only play songs 1000 and up, the users of the second 2000 and up
+    static Interactions communities(int usersPerCommunity, int songsPerCommunity, int playsPerUser, long seed) {
+        Random random = new Random(seed);
+        LongIndex users = new LongIndex(2 * usersPerCommunity);
+        LongIndex songs = new LongIndex(2 * songsPerCommunity);
+        CsrMatrix.Builder builder = new CsrMatrix.Builder();
+        for (int community = 0; community < 2; community++) {
+            for (int u = 0; u < usersPerCommunity; u++) {
+                users.getOrAdd(community * usersPerCommunity + u);
+                builder.startRow();
+                boolean[] played = new boolean[songsPerCommunity];
+                for (int p = 0; p < playsPerUser; p++) {
+                    int song = random.nextInt(songsPerCommunity);
+                    if (!played[song]) {
+                        played[song] = true;
+                        builder.add(songs.getOrAdd((community + 1) * 1000L + song), 1 + random.nextInt(3));
+                    }
+                }
+            }
+        }
+        return new Interactions(users, songs, builder.build(songs.size()));
+    }
+
+    @Test
+    void recommendsUnseenSongsOfTheUsersOwnCommunity() {
+        Interactions interactions = communities(200, 30, 10, 1);
+        AlsModel model = new AlsTrainer(4, 10, 0.1, 10).train(interactions, 2);
+        for (long user : new long[]{0, 42, 200, 399}) {
+            List<Long> recommended = model.recommend(user, 10);
+            assertEquals(10, recommended.size());
+            long community = user < 200 ? 1000 : 2000;
+            int own = interactions.users().get(user);
+            CsrMatrix userSongs = interactions.userSongs();
+            for (long song : recommended) {
+                assertEquals(community, song / 1000 * 1000, "user " + user + " got song " + song);
+                for (int p = userSongs.start(own); p < userSongs.end(own); p++) {
+                    assertTrue(interactions.songs().idOf(userSongs.col(p)) != song, "already played " + song);
+                }
+            }
+        }
+        assertTrue(model.recommend(12345, 10).isEmpty());
+    }
+
+    @Test
+    void factorsAreFlatRankSizedRows() {
+        Interactions interactions = communities(10, 5, 3, 2);
+        AlsModel model = new AlsTrainer(4, 2, 0.1, 10).train(interactions, 1);
+        assertEquals(4, model.rank());
+        assertEquals(4 * interactions.songs().size(), model.songFactors().length);
+        assertEquals(4L * 4 * (interactions.users().size() + interactions.songs().size()), model.bytes());
+    }
+
+    @Test
+    void heldOutSongsComeBackFarMoreOftenThanByChance() {
+        Interactions interactions = communities(200, 100, 15, 3);
+        AlsEvaluation evaluation = AlsEvaluation.run(interactions, new AlsTrainer(8, 10, 0.1, 10), 2, 20, 400);
+        // about 86 unseen songs of their own community and as many of the other: 20 random picks hit one time in
+        // nine, 20 picks that only stay inside the right community a bit under one in four
+        assertTrue(evaluation.recall() > 0.18, evaluation.toString());
+    }
+}
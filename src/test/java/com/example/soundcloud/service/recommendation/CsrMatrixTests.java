@@ -0,0 +1,83 @@
+package com.example.soundcloud.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsrMatrixTests {
+
+    // 1 0 2
+    // 0 0 0
+    // 0 3 0
+    private static CsrMatrix small() {
+        CsrMatrix.Builder builder = new CsrMatrix.Builder();
+        builder.startRow();
+        builder.add(0, 1);
+        builder.add(2, 2);
+        builder.startRow();
+        builder.startRow();
+        builder.add(1, 3);
+        return builder.build(0);
+    }
+
+    @Test
+    void rowsHoldTheirEntriesInOrder() {
+        CsrMatrix m = small();
+        assertEquals(3, m.rows());
+        assertEquals(3, m.columns());
+        assertEquals(3, m.nonZeros());
+        assertEquals(0, m.start(0));
+        assertEquals(2, m.end(0));
+        assertEquals(2, m.col(1));
+        assertEquals(2f, m.value(1), 0f);
+        assertEquals(m.start(1), m.end(1));
+        assertEquals(1, m.col(m.start(2)));
+    }
+
+    @Test
+    void transposeSwapsRowsAndColumns() {
+        CsrMatrix t = small().transpose();
+        assertEquals(3, t.rows());
+        assertEquals(3, t.nonZeros());
+        // column 0 held row 0, column 1 row 2, column 2 row 0
+        assertEquals(0, t.col(t.start(0)));
+        assertEquals(1f, t.value(t.start(0)), 0f);
+        assertEquals(2, t.col(t.start(1)));
+        assertEquals(3f, t.value(t.start(1)), 0f);
+        assertEquals(0, t.col(t.start(2)));
+        assertEquals(2f, t.value(t.start(2)), 0f);
+    }
+
+    @Test
+    void transposingTwiceGivesTheMatrixBack() {
+        CsrMatrix.Builder builder = new CsrMatrix.Builder();
+        java.util.Random random = new java.util.Random(3);
+        for (int r = 0; r < 500; r++) {
+            builder.startRow();
+            for (int c = 0; c < 300; c++) {
+                if (random.nextInt(20) == 0) {
+                    builder.add(c, random.nextFloat());
+                }
+            }
+        }
+        CsrMatrix m = builder.build(300);
+        CsrMatrix back = m.transpose().transpose();
+        assertEquals(m.rows(), back.rows());
+        assertEquals(m.columns(), back.columns());
+        for (int r = 0; r < m.rows(); r++) {
+            assertEquals(m.start(r), back.start(r));
+            for (int p = m.start(r); p < m.end(r); p++) {
+                assertEquals(m.col(p), back.col(p));
+                assertEquals(m.value(p), back.value(p), 0f);
+            }
+        }
+    }
+
+    @Test
+    void columnCountCoversEmptyTrailingColumns() {
+        CsrMatrix.Builder builder = new CsrMatrix.Builder();
+        builder.startRow();
+        builder.add(1, 1);
+        assertEquals(10, builder.build(10).columns());
+    }
+}
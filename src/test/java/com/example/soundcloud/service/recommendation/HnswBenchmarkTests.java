@@ -0,0 +1,35 @@
+package com.example.soundcloud.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Build time, recall@10 and per query latency of the graph search against brute force on 100k synthetic 32
+// dimensional song factors around 200 genre centres, through the same evaluation the weekly job logs. Run with
+// -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class HnswBenchmarkTests {
+
+    @Test
+    void graphSearchKeepsRecallAtAFractionOfBruteForce() {
+        long started = System.nanoTime();
+        HnswIndex index = HnswIndexTests.clustered(100_000, 32, 200, new Random(42));
+        System.out.printf("built %d nodes in %.1f s%n", index.size(), (System.nanoTime() - started) / 1e9);
+
+        // warm up both paths before measuring
+        HnswEvaluation.run(index, 500, 10, 64);
+        String report = HnswEvaluation.run(index, 2000, 10, 16, 32, 64, 128);
+        System.out.println(report);
+
+        Matcher brute = Pattern.compile("brute force: ([0-9.]+) us").matcher(report);
+        Matcher ef64 = Pattern.compile("ef = 64: recall@10 = ([0-9.]+), ([0-9.]+) us").matcher(report);
+        assertTrue(brute.find() && ef64.find(), report);
+        assertTrue(Double.parseDouble(ef64.group(1)) > 0.95, report);
+        assertTrue(Double.parseDouble(ef64.group(2)) * 5 < Double.parseDouble(brute.group(1)), report);
+    }
+}
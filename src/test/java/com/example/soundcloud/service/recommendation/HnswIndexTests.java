@@ -0,0 +1,107 @@
+package com.example.soundcloud.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTests {
+
+    @Test
+    void emptyIndexFindsNothing() {
+        HnswIndex index = new HnswIndex(4, 0);
+
+        assertTrue(index.nearest(new float[]{1, 0, 0, 0}, 5, 16, -1).isEmpty());
+        assertTrue(index.bruteForce(new float[]{1, 0, 0, 0}, 5, -1).isEmpty());
+    }
+
+    @Test
+    void nearestIsByCosineNotLength() {
+        HnswIndex index = new HnswIndex(2, 4);
+        index.add(1, new float[]{10, 0});
+        index.add(2, new float[]{0.1f, 0.1f});
+        index.add(3, new float[]{0, 5});
+
+        assertEquals(List.of(1L, 2L), index.nearest(new float[]{1, 0.1f}, 2, 16, -1));
+        assertEquals(List.of(3L, 2L), index.nearest(new float[]{0.1f, 1}, 2, 16, -1));
+    }
+
+    @Test
+    void graphSearchAgreesWithBruteForce() {
+        HnswIndex index = clustered(3000, 16, 30, new Random(7));
+        Random random = new Random(11);
+        int hits = 0;
+        int expected = 0;
+        for (int q = 0; q < 200; q++) {
+            long id = random.nextInt(3000);
+            float[] query = new float[16];
+            assertTrue(index.vectorOf(id, query));
+            Set<Long> exact = new HashSet<>(index.bruteForce(query, 10, id));
+            List<Long> found = index.nearest(query, 10, 64, id);
+            assertFalse(found.contains(id));
+            for (long neighbour : found) {
+                if (exact.contains(neighbour)) {
+                    hits++;
+                }
+            }
+            expected += exact.size();
+        }
+        double recall = (double) hits / expected;
+        assertTrue(recall > 0.95, "recall@10 = " + recall);
+    }
+
+    @Test
+    void removedSongsAreHiddenUntilAddedAgain() {
+        HnswIndex index = clustered(500, 8, 5, new Random(3));
+        float[] query = new float[8];
+        index.vectorOf(42, query);
+        long nearest = index.bruteForce(query, 1, 42).get(0);
+
+        index.remove(nearest);
+        assertFalse(index.nearest(query, 10, 64, 42).contains(nearest));
+        assertFalse(index.bruteForce(query, 10, 42).contains(nearest));
+        assertFalse(index.contains(nearest));
+
+        index.add(nearest, query);
+        assertTrue(index.contains(nearest));
+        assertEquals(nearest, (long) index.nearest(query, 1, 64, 42).get(0));
+        assertEquals(500, index.size());
+    }
+
+    @Test
+    void growsPastTheExpectedSize() {
+        HnswIndex index = clustered(1000, 8, 10, new Random(5));
+
+        assertEquals(1000, index.size());
+        float[] vector = new float[8];
+        assertTrue(index.vectorOf(999, vector));
+        assertEquals(999L, (long) index.nearest(vector, 1, 32, -1).get(0));
+        assertFalse(index.vectorOf(1000, vector));
+    }
+
+    // ids 0..count-1 spread around a few random centres, the shape song factors have
+    static HnswIndex clustered(int count, int dimensions, int clusters, Random random) {
+        float[][] centres = new float[clusters][dimensions];
+        for (float[] centre : centres) {
+            for (int d = 0; d < dimensions; d++) {
+                centre[d] = (float) random.nextGaussian();
+            }
+        }
+        HnswIndex index = new HnswIndex(dimensions, 16);
+        for (int id = 0; id < count; id++) {
+            float[] centre = centres[random.nextInt(clusters)];
+            float[] vector = new float[dimensions];
+            for (int d = 0; d < dimensions; d++) {
+                vector[d] = centre[d] + 0.5f * (float) random.nextGaussian();
+            }
+            index.add(id, vector);
+        }
+        return index;
+    }
+}
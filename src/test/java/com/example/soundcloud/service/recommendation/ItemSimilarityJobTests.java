@@ -0,0 +1,87 @@
+package com.example.soundcloud.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ItemSimilarityJobTests {
+
+    @Test
+    void songsSharingTheSameListenersAreNeighbours() {
+        // users 0-1 play songs 10 and 11, users 3-4 play songs 12 and 13, user 2 bridges 10 and 12
+        long[][] plays = {{10, 11}, {10, 11}, {10, 12}, {12, 13}, {12, 13}};
+        LongIndex songs = new LongIndex(4);
+        CsrMatrix.Builder builder = new CsrMatrix.Builder();
+        for (long[] user : plays) {
+            builder.startRow();
+            for (long song : user) {
+                builder.add(songs.getOrAdd(song), 1);
+            }
+        }
+        NeighbourTable table = new ItemSimilarityJob(builder.build(songs.size()), 2).run(songs, 2);
+        assertEquals(List.of(11L, 12L), table.neighboursOf(10, 5));
+        assertEquals(List.of(13L, 10L), table.neighboursOf(12, 5));
+        assertEquals(List.of(13L), table.neighboursOf(12, 1));
+        assertTrue(table.neighboursOf(99, 5).isEmpty());
+    }
+
+    @Test
+    void matchesBruteForceCosineOnRandomData() {
+        Random random = new Random(11);
+        int users = 300;
+        int items = 120;
+        float[][] dense = new float[users][items];
+        LongIndex songs = new LongIndex(items);
+        for (int i = 0; i < items; i++) {
+            songs.getOrAdd(1000 + i);
+        }
+        CsrMatrix.Builder builder = new CsrMatrix.Builder();
+        for (int u = 0; u < users; u++) {
+            builder.startRow();
+            for (int i = 0; i < items; i++) {
+                if (random.nextInt(10) == 0) {
+                    dense[u][i] = 1 + random.nextInt(4);
+                    builder.add(i, dense[u][i]);
+                }
+            }
+        }
+        int perSong = 5;
+        NeighbourTable table = new ItemSimilarityJob(builder.build(items), perSong).run(songs, 4);
+        for (int item = 0; item < items; item++) {
+            List<Long> found = table.neighboursOf(1000 + item, perSong);
+            double[] cosine = new double[items];
+            for (int other = 0; other < items; other++) {
+                cosine[other] = other == item ? -1 : cosine(dense, item, other);
+            }
+            // the scores of what was returned must be the best ones brute force finds
+            List<Double> expected = new ArrayList<>();
+            for (double c : cosine) {
+                if (c > 0) {
+                    expected.add(c);
+                }
+            }
+            expected.sort((a, b) -> Double.compare(b, a));
+            assertEquals(Math.min(perSong, expected.size()), found.size());
+            for (int i = 0; i < found.size(); i++) {
+                assertEquals(expected.get(i), cosine[(int) (found.get(i) - 1000)], 1e-5);
+            }
+        }
+    }
+
+    private static double cosine(float[][] dense, int a, int b) {
+        double dot = 0;
+        double na = 0;
+        double nb = 0;
+        for (float[] user : dense) {
+            dot += user[a] * user[b];
+            na += user[a] * user[a];
+            nb += user[b] * user[b];
+        }
+        return na == 0 || nb == 0 ? 0 : dot / Math.sqrt(na * nb);
+    }
+}
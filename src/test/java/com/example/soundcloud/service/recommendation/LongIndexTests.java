@@ -0,0 +1,47 @@
+package com.example.soundcloud.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongIndexTests {
+
+    @Test
+    void handsOutDenseOrdinalsInInsertionOrder() {
+        LongIndex index = new LongIndex(4);
+        assertEquals(0, index.getOrAdd(42));
+        assertEquals(1, index.getOrAdd(-7));
+        assertEquals(0, index.getOrAdd(42));
+        assertEquals(2, index.size());
+        assertEquals(-7, index.idOf(1));
+        assertEquals(1, index.get(-7));
+        assertEquals(-1, index.get(43));
+    }
+
+    @Test
+    void survivesGrowingFarPastTheExpectedSize() {
+        LongIndex index = new LongIndex(1);
+        Random random = new Random(5);
+        long[] ids = new long[100_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = random.nextLong();
+            assertEquals(i, index.getOrAdd(ids[i]));
+        }
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(i, index.get(ids[i]));
+            assertEquals(ids[i], index.idOf(i));
+        }
+    }
+
+    @Test
+    void worksWithSequentialIds() {
+        LongIndex index = new LongIndex(16);
+        for (long id = 1; id <= 10_000; id++) {
+            index.getOrAdd(id << 20);
+        }
+        assertEquals(10_000, index.size());
+        assertEquals(4999, index.get(5000L << 20));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.soundcloud.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Playlist continuation latency over 200k songs with 50 neighbours each, the size PlaylistContinuation keeps, for
+// playlists of 10 to 5000 songs. Run with -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class NeighbourTableBenchmarkTests {
+
+    private static final int SONGS = 200_000;
+    private static final int PER_SONG = 50;
+    private static final int QUERIES = 500;
+
+    @Test
+    void scoresPlaylistsOfThousandsOfSongsInMilliseconds() {
+        Random random = new Random(42);
+        NeighbourTable table = NeighbourTableTests.random(SONGS, PER_SONG, random, null);
+        for (int basketSize : new int[]{10, 100, 1000, 5000}) {
+            List<List<Long>> baskets = new ArrayList<>();
+            for (int q = 0; q < QUERIES; q++) {
+                List<Long> basket = new ArrayList<>();
+                for (int i = 0; i < basketSize; i++) {
+                    basket.add((long) random.nextInt(SONGS));
+                }
+                baskets.add(basket);
+            }
+            // warm up
+            for (List<Long> basket : baskets) {
+                table.continuation(basket, 20);
+            }
+            long[] nanos = new long[QUERIES];
+            for (int q = 0; q < QUERIES; q++) {
+                long started = System.nanoTime();
+                List<Long> found = table.continuation(baskets.get(q), 20);
+                nanos[q] = System.nanoTime() - started;
+                assertEquals(20, found.size());
+            }
+            Arrays.sort(nanos);
+            double p50 = nanos[QUERIES / 2] / 1e6;
+            double p99 = nanos[QUERIES * 99 / 100] / 1e6;
+            System.out.printf("%4d songs: p50 %.3f ms, p99 %.3f ms%n", basketSize, p50, p99);
+            assertTrue(p50 < 500);
+        }
+    }
+}
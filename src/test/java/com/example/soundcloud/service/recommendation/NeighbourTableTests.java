@@ -0,0 +1,110 @@
+package com.example.soundcloud.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NeighbourTableTests {
+
+    // songs 10 to 15; each row lists up to two neighbours with their scores
+    private static NeighbourTable small() {
+        LongIndex songs = new LongIndex(6);
+        for (long song = 10; song <= 15; song++) {
+            songs.getOrAdd(song);
+        }
+        int[] neighbours = {1, 2, 0, 3, 0, 4, 1, 0, 5, 0, 0, 0};
+        float[] scores = {0.9f, 0.5f, 0.9f, 0.4f, 0.5f, 0.8f, 0.4f, 0, 0.7f, 0, 0, 0};
+        int[] counts = {2, 2, 2, 1, 1, 0};
+        return new NeighbourTable(songs, 2, neighbours, scores, counts);
+    }
+
+    @Test
+    void sumsTheNeighbourScoresOfTheWholeBasket() {
+        NeighbourTable table = small();
+
+        // 11 gets 0.9 from 10, 13 gets 0.4 from 11, 12 gets 0.5 from 10
+        assertEquals(Arrays.asList(12L, 13L), table.continuation(Arrays.asList(10L, 11L), 5));
+        // 11 gets 0.9 from 10, 14 gets 0.8 from 12
+        assertEquals(Arrays.asList(11L, 14L), table.continuation(Arrays.asList(10L, 12L), 5));
+        assertEquals(Arrays.asList(11L), table.continuation(Arrays.asList(10L, 12L), 1));
+        // 11 gets 0.9 from 10 and 0.4 from 13, which puts it further ahead of 12
+        assertEquals(Arrays.asList(11L, 12L), table.continuation(Arrays.asList(10L, 13L), 5));
+        assertEquals(Arrays.asList(11L, 12L), table.continuation(Arrays.asList(10L, 14L, 15L), 5));
+    }
+
+    @Test
+    void neverSuggestsTheBasketAndIgnoresUnknownAndRepeatedSongs() {
+        NeighbourTable table = small();
+
+        List<Long> once = table.continuation(Arrays.asList(12L, 99L), 5);
+        assertEquals(Arrays.asList(14L, 10L), once);
+        assertEquals(once, table.continuation(Arrays.asList(12L, 12L, 99L, 12L), 5));
+        assertTrue(table.continuation(Arrays.asList(15L, 98L), 5).isEmpty());
+        assertTrue(NeighbourTable.EMPTY.continuation(Arrays.asList(10L, 11L), 5).isEmpty());
+    }
+
+    @Test
+    void matchesBruteForceSumsOnARandomTable() {
+        Random random = new Random(5);
+        int songCount = 2000;
+        int perSong = 20;
+        float[][] dense = new float[songCount][songCount];
+        NeighbourTable table = random(songCount, perSong, random, dense);
+
+        List<Long> basket = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            basket.add((long) random.nextInt(songCount));
+        }
+        float[] sums = new float[songCount];
+        for (int song = 0; song < songCount; song++) {
+            if (basket.contains((long) song)) {
+                continue;
+            }
+            for (long inBasket : basket.stream().distinct().mapToLong(Long::longValue).toArray()) {
+                sums[song] += dense[(int) inBasket][song];
+            }
+        }
+        List<Long> found = table.continuation(basket, 10);
+        assertEquals(10, found.size());
+        float weakest = sums[(int) (long) found.get(found.size() - 1)];
+        for (int song = 0; song < songCount; song++) {
+            if (!found.contains((long) song)) {
+                assertTrue(sums[song] <= weakest + 1e-5, "song " + song);
+            }
+        }
+        for (long song : found) {
+            assertFalse(basket.contains(song));
+        }
+    }
+
+    // song ids equal their ordinals, every song has perSong distinct random neighbours; dense gets the scores
+    // when it is not null
+    static NeighbourTable random(int songCount, int perSong, Random random, float[][] dense) {
+        LongIndex songs = new LongIndex(songCount);
+        for (long song = 0; song < songCount; song++) {
+            songs.getOrAdd(song);
+        }
+        int[] neighbours = new int[songCount * perSong];
+        float[] scores = new float[neighbours.length];
+        int[] counts = new int[songCount];
+        for (int song = 0; song < songCount; song++) {
+            counts[song] = perSong;
+            int[] picked = random.ints(0, songCount).filter(n -> n != 0).distinct().limit(perSong).toArray();
+            for (int i = 0; i < perSong; i++) {
+                neighbours[song * perSong + i] = (picked[i] + song) % songCount;
+                scores[song * perSong + i] = random.nextFloat();
+                if (dense != null) {
+                    dense[song][neighbours[song * perSong + i]] = scores[song * perSong + i];
+                }
+            }
+        }
+        return new NeighbourTable(songs, perSong, neighbours, scores, counts);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.soundcloud.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SparseAccumulatorTests {
+
+    @Test
+    void sumsAndCountsPerKeyInInsertionOrder() {
+        SparseAccumulator acc = new SparseAccumulator(2);
+        acc.add(7, 1.5f);
+        acc.add(3, 1f);
+        acc.add(7, 0.5f);
+        assertEquals(2, acc.size());
+        assertEquals(7, acc.key(0));
+        assertEquals(2f, acc.sum(0), 0f);
+        assertEquals(2, acc.hits(0));
+        assertEquals(3, acc.key(1));
+        assertEquals(1, acc.hits(1));
+    }
+
+    @Test
+    void addIfPresentIgnoresNewKeys() {
+        SparseAccumulator acc = new SparseAccumulator(4);
+        acc.add(1, 1f);
+        assertTrue(acc.addIfPresent(1, 1f));
+        assertFalse(acc.addIfPresent(2, 1f));
+        assertEquals(1, acc.size());
+        assertEquals(2, acc.hits(0));
+    }
+
+    @Test
+    void growsPastTheExpectedSizeWithoutLosingEntries() {
+        SparseAccumulator acc = new SparseAccumulator(1);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(20_000) * 31;
+            acc.add(key, 1f);
+            expected.merge(key, 1, Integer::sum);
+        }
+        assertEquals(expected.size(), acc.size());
+        for (int entry = 0; entry < acc.size(); entry++) {
+            int hits = expected.get(acc.key(entry));
+            assertEquals(hits, acc.hits(entry));
+            assertEquals(hits, acc.sum(entry), 0f);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.soundcloud.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TopKTests {
+
+    @Test
+    void keepsTheHighestScoresBestFirst() {
+        TopK top = new TopK(3);
+        float[] offered = {0.5f, 0.1f, 0.9f, 0.7f, 0.3f};
+        for (int i = 0; i < offered.length; i++) {
+            top.offer(i, offered[i]);
+        }
+        int[] ids = new int[3];
+        float[] scores = new float[3];
+        assertEquals(3, top.drainTo(ids, scores, 0));
+        assertArrayEquals(new int[]{2, 3, 0}, ids);
+        assertEquals(0.9f, scores[0], 0f);
+        assertEquals(0, top.size());
+    }
+
+    @Test
+    void drainsFewerThanKAtAnOffset() {
+        TopK top = new TopK(5);
+        top.offer(1, 1f);
+        top.offer(2, 2f);
+        int[] ids = new int[8];
+        assertEquals(2, top.drainTo(ids, new float[8], 4));
+        assertArrayEquals(new int[]{0, 0, 0, 0, 2, 1, 0, 0}, ids);
+    }
+
+    @Test
+    void matchesSortingOnRandomScores() {
+        Random random = new Random(9);
+        float[] scores = new float[10_000];
+        TopK top = new TopK(20);
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextFloat();
+            top.offer(i, scores[i]);
+        }
+        float[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        int[] ids = new int[20];
+        float[] best = new float[20];
+        top.drainTo(ids, best, 0);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(sorted[sorted.length - 1 - i], best[i], 0f);
+            assertEquals(scores[ids[i]], best[i], 0f);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.soundcloud.service.search;
+
+import com.example.soundcloud.models.dto.search.ResponseSongFacetDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FacetIndexTests {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 6, 1, 12, 0);
+
+    private final FacetIndex index = new FacetIndex.Builder(NOW)
+            .add(1, "a", "rock", "x", "u", 5, 50, 0, 0, NOW.minusHours(12))
+            .add(2, "b", "rock", "x", "u", 50, 5, 0, 0, NOW.minusDays(3))
+            .add(3, "c", "jazz", "y", "u", 500, 0, 0, 0, NOW.minusDays(10))
+            .add(4, "d", "jazz", "y", "u", 5000, 0, 0, 0, NOW.minusDays(100))
+            .add(5, "e", "rock", "y", "u", 0, 0, 0, 0, NOW.minusDays(400))
+            .add(6, "f", "pop", "z", "u", 0, 0, 0, 0, null)
+            .build();
+
+    @Test
+    void everySongFallsInExactlyOneAgeRange() {
+        Map<String, Integer> uploaded = query(new HashMap<>()).getFacets().get(FacetIndex.UPLOADED);
+        assertEquals(1, (int) uploaded.get("0-1_days"));
+        assertEquals(1, (int) uploaded.get("1-7_days"));
+        assertEquals(1, (int) uploaded.get("7-30_days"));
+        assertEquals(1, (int) uploaded.get("30-365_days"));
+        assertEquals(2, (int) uploaded.get("365+_days"));
+    }
+
+    @Test
+    void selectedAgeRangesAddUp() {
+        Map<String, List<String>> selected = new HashMap<>();
+        selected.put(FacetIndex.UPLOADED, Arrays.asList("0-1_days", "1-7_days"));
+        assertEquals(2, query(selected).getTotal());
+    }
+
+    @Test
+    void aFacetDoesNotFilterItsOwnCounts() {
+        Map<String, List<String>> selected = new HashMap<>();
+        selected.put(FacetIndex.GENRE, Arrays.asList("jazz"));
+        ResponseSongFacetDTO result = query(selected);
+        assertEquals(2, result.getTotal());
+        assertEquals(3, (int) result.getFacets().get(FacetIndex.GENRE).get("rock"));
+        assertEquals(2, (int) result.getFacets().get(FacetIndex.ARTIST).get("y"));
+        assertNull(result.getFacets().get(FacetIndex.ARTIST).get("x"));
+    }
+
+    @Test
+    void pagesInTheRequestedOrder() {
+        ResponseSongFacetDTO result = index.query(new HashMap<>(), "listened", true, 1, 2);
+        assertEquals(6, result.getTotal());
+        assertEquals(4L, result.getSongs().get(0).getSongId());
+        assertEquals(3L, result.getSongs().get(1).getSongId());
+    }
+
+    private ResponseSongFacetDTO query(Map<String, List<String>> selected) {
+        return index.query(selected, "listened", true, 1, 10);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.soundcloud.service.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Typeahead latency and allocation on a synthetic index of a million titles of two to four random words, queried
+// with one to six letter prefixes of indexed titles. Run with -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class SuggestionIndexBenchmarkTests {
+
+    private static final int ENTRIES = 1_000_000;
+    private static final int QUERIES = 100_000;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void lookupsTakeMicrosecondsAndAllocateOnlyTheResult() {
+        String[] titles = new String[ENTRIES];
+        SuggestionIndex.Builder builder = new SuggestionIndex.Builder();
+        for (int i = 0; i < ENTRIES; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 2 + random.nextInt(3);
+            for (int w = 0; w < words; w++) {
+                title.append(w == 0 ? "" : " ").append(word());
+            }
+            titles[i] = title.toString();
+            builder.add(titles[i], SuggestionIndex.SONG, i, random.nextInt(1_000_000));
+        }
+        long started = System.nanoTime();
+        SuggestionIndex index = builder.build();
+        long buildMillis = (System.nanoTime() - started) / 1_000_000;
+
+        String[] queries = new String[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            String title = titles[random.nextInt(ENTRIES)];
+            queries[q] = title.substring(0, Math.min(title.length(), 1 + random.nextInt(6)));
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] nanos = new long[QUERIES];
+        long allocated = 0;
+        for (int round = 0; round < 3; round++) {
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            for (int q = 0; q < QUERIES; q++) {
+                long start = System.nanoTime();
+                index.suggest(queries[q], 10);
+                nanos[q] = System.nanoTime() - start;
+            }
+            allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        }
+        Arrays.sort(nanos);
+        long p50 = nanos[QUERIES / 2];
+        long p99 = nanos[QUERIES * 99 / 100];
+        System.out.printf("%,d entries built in %,d ms: p50 %.1f us, p99 %.1f us, %d bytes allocated per lookup%n",
+                ENTRIES, buildMillis, p50 / 1e3, p99 / 1e3, allocated / QUERIES);
+        assertTrue(p99 < 1_000_000, "p99 was " + p99 / 1e3 + " us");
+        // an ArrayList and its backing array of up to ten references
+        assertTrue(allocated / QUERIES < 128, "allocated " + allocated / QUERIES + " bytes per lookup");
+    }
+
+    private String word() {
+        char[] letters = new char[3 + random.nextInt(8)];
+        for (int c = 0; c < letters.length; c++) {
+            letters[c] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.soundcloud.service.search;
+
+import com.example.soundcloud.models.dto.search.ResponseSuggestionDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestionIndexTests {
+
+    private final SuggestionIndex index = new SuggestionIndex.Builder()
+            .add("Metallica", SuggestionIndex.ARTIST, 1, 500)
+            .add("Metal Gods", SuggestionIndex.SONG, 2, 900)
+            .add("metalhead", SuggestionIndex.USER, 3, 10)
+            .add("Madonna", SuggestionIndex.ARTIST, 4, 1000)
+            .add("Nothing Else Matters", SuggestionIndex.SONG, 5, 700)
+            .build();
+
+    @Test
+    void ordersPrefixMatchesByWeight() {
+        assertEquals(List.of(2L, 1L, 3L), ids(index.suggest("met", 10)));
+        assertEquals(List.of(4L, 2L, 1L, 3L), ids(index.suggest("m", 10)));
+    }
+
+    @Test
+    void ignoresCaseAndRepeatedWhitespace() {
+        assertEquals(List.of(2L), ids(index.suggest("  METAL   g", 10)));
+        assertEquals(List.of(5L), ids(index.suggest("nothing else", 10)));
+    }
+
+    @Test
+    void stopsAtTheLimit() {
+        assertEquals(List.of(2L, 1L), ids(index.suggest("metal", 2)));
+    }
+
+    @Test
+    void returnsNothingForUnknownPrefixes() {
+        assertTrue(index.suggest("xyz", 10).isEmpty());
+        assertTrue(index.suggest("metallicaa", 10).isEmpty());
+        assertTrue(index.suggest("   ", 10).isEmpty());
+        assertTrue(SuggestionIndex.EMPTY.suggest("a", 10).isEmpty());
+    }
+
+    @Test
+    void keepsTheTopTenOfEveryPrefix() {
+        SuggestionIndex.Builder builder = new SuggestionIndex.Builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.add("song " + i, SuggestionIndex.SONG, i, i);
+        }
+        SuggestionIndex many = builder.build();
+        assertEquals(List.of(999L, 998L, 997L, 996L, 995L, 994L, 993L, 992L, 991L, 990L),
+                ids(many.suggest("song", 20)));
+        assertEquals(List.of(199L, 198L, 197L, 196L, 195L, 194L, 193L, 192L, 191L, 190L),
+                ids(many.suggest("song 1", 20)));
+        // "song 42" itself is the eleventh best of its prefix
+        assertEquals(List.of(429L, 428L, 427L, 426L, 425L, 424L, 423L, 422L, 421L, 420L),
+                ids(many.suggest("song 42", 20)));
+    }
+
+    private static List<Long> ids(List<ResponseSuggestionDTO> suggestions) {
+        List<Long> ids = new ArrayList<>();
+        for (ResponseSuggestionDTO suggestion : suggestions) {
+            ids.add(suggestion.getId());
+        }
+        return ids;
+    }
+}
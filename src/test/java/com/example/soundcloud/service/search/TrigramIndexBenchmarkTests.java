@@ -0,0 +1,85 @@
+package com.example.soundcloud.service.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Fuzzy search latency on a synthetic catalog of a million titles of two to four words out of a vocabulary of
+// random words where a few words are very common, queried with a typo in single title words and, one time out of
+// five, in whole titles. Run with -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class TrigramIndexBenchmarkTests {
+
+    private static final int TITLES = 1_000_000;
+    private static final int QUERIES = 5000;
+    private static final int VOCABULARY = 100_000;
+
+    private final Random random = new Random(42);
+    private final String[] vocabulary = new String[VOCABULARY];
+
+    @Test
+    void p99UnderTwentyMillisOnAMillionTitles() {
+        for (int i = 0; i < VOCABULARY; i++) {
+            char[] letters = new char[3 + random.nextInt(8)];
+            for (int c = 0; c < letters.length; c++) {
+                letters[c] = (char) ('a' + random.nextInt(26));
+            }
+            vocabulary[i] = new String(letters);
+        }
+        String[] titles = new String[TITLES];
+        TrigramIndex.Builder builder = new TrigramIndex.Builder();
+        for (int i = 0; i < TITLES; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 2 + random.nextInt(3);
+            for (int w = 0; w < words; w++) {
+                title.append(w == 0 ? "" : " ").append(word());
+            }
+            titles[i] = title.toString();
+            builder.add(titles[i], i);
+        }
+        TrigramIndex index = builder.build();
+
+        long[] nanos = new long[QUERIES];
+        for (int round = 0; round < 2; round++) {
+            for (int q = 0; q < QUERIES; q++) {
+                String title = titles[random.nextInt(TITLES)];
+                String[] words = title.split(" ");
+                String query = misspell(random.nextInt(5) == 0 ? title : words[random.nextInt(words.length)]);
+                long started = System.nanoTime();
+                index.search(query, 10);
+                nanos[q] = System.nanoTime() - started;
+            }
+        }
+        Arrays.sort(nanos);
+        long p50 = nanos[QUERIES / 2];
+        long p99 = nanos[QUERIES * 99 / 100];
+        System.out.printf("%,d titles: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", TITLES, p50 / 1e6, p99 / 1e6,
+                nanos[QUERIES - 1] / 1e6);
+        assertTrue(p99 < TimeUnit.MILLISECONDS.toNanos(20), "p99 was " + p99 / 1e6 + " ms");
+    }
+
+    // skewed towards the start of the vocabulary, the commonest words are in a few percent of the titles
+    private String word() {
+        double r = random.nextDouble();
+        return vocabulary[(int) (VOCABULARY * r * r * r)];
+    }
+
+    // one substitution, or a transposition for longer words
+    private String misspell(String word) {
+        char[] chars = word.toCharArray();
+        int i = random.nextInt(chars.length - 1);
+        if (chars.length > 4 && random.nextBoolean()) {
+            char c = chars[i];
+            chars[i] = chars[i + 1];
+            chars[i + 1] = c;
+        } else {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.soundcloud.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrigramIndexTests {
+
+    private final TrigramIndex index = new TrigramIndex.Builder()
+            .add("Metallica", 1)
+            .add("Nothing Else Matters", 2)
+            .add("Massive Attack", 3)
+            .add("Teardrop", 4)
+            .add("Madonna", 5)
+            .build();
+
+    @Test
+    void distanceCountsTranspositionsAsOneEdit() {
+        assertEquals(0, TrigramIndex.distance("abc", "abc", 2));
+        assertEquals(1, TrigramIndex.distance("abc", "acb", 2));
+        assertEquals(1, TrigramIndex.distance("abc", "abcd", 2));
+        assertEquals(2, TrigramIndex.distance("abcd", "badc", 2));
+    }
+
+    @Test
+    void distanceStopsPastTheBound() {
+        assertEquals(2, TrigramIndex.distance("metallica", "madonna", 1));
+        assertEquals(2, TrigramIndex.distance("a", "abcdef", 1));
+    }
+
+    @Test
+    void normalizeLowerCasesAndCollapsesPunctuation() {
+        assertEquals("nothing else matters", TrigramIndex.normalize("  Nothing-Else...Matters! "));
+    }
+
+    @Test
+    void findsMisspelledTitles() {
+        assertEquals(Arrays.asList(1L), index.search("Metalica", 10));
+        assertEquals(Arrays.asList(1L), index.search("metlalica", 10));
+        assertEquals(Arrays.asList(4L), index.search("teardorp", 10));
+    }
+
+    @Test
+    void matchesSingleWordsOfLongerTexts() {
+        assertEquals(Arrays.asList(2L), index.search("mattres", 10));
+    }
+
+    @Test
+    void matchesWholeTextsForMultiWordQueries() {
+        assertEquals(Arrays.asList(2L), index.search("nothing els matters", 10));
+        assertEquals(Arrays.asList(3L), index.search("masive atack", 10));
+    }
+
+    @Test
+    void returnsEveryTextOfAMatchingWordUpToTheLimit() {
+        TrigramIndex repeated = new TrigramIndex.Builder()
+                .add("Blue Monday", 1)
+                .add("Blue", 2)
+                .add("Kind of Blue", 3)
+                .build();
+        assertEquals(Arrays.asList(1L, 2L, 3L), repeated.search("bleu", 10));
+        assertEquals(Arrays.asList(1L, 2L), repeated.search("bleu", 2));
+    }
+
+    @Test
+    void returnsNothingBeyondTheEditBound() {
+        List<Long> result = index.search("beatles", 10);
+        assertTrue(result.isEmpty());
+        assertTrue(TrigramIndex.EMPTY.search("metallica", 10).isEmpty());
+    }
+}
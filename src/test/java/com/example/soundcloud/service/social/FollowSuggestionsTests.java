@@ -0,0 +1,138 @@
+package com.example.soundcloud.service.social;
+
+import com.example.soundcloud.models.dto.user.SuggestedUserDTO;
+import com.example.soundcloud.models.entities.User;
+import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.models.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FollowSuggestionsTests {
+
+    private FakeFollowerGraph followerGraph;
+    private Set<Long> deleted;
+    private FollowSuggestions suggestions;
+
+    // 1 follows 2, 3 and 4; 2 follows 1, 5 and 6; 3 follows only 5; 4 follows 2, 6, 7, 8 and 9
+    @BeforeEach
+    void setUp() {
+        followerGraph = new FakeFollowerGraph();
+        followerGraph.follows.put(1L, new long[]{2, 3, 4});
+        followerGraph.follows.put(2L, new long[]{1, 5, 6});
+        followerGraph.follows.put(3L, new long[]{5});
+        followerGraph.follows.put(4L, new long[]{2, 6, 7, 8, 9});
+        deleted = new HashSet<>();
+        suggestions = new FollowSuggestions();
+        ReflectionTestUtils.setField(suggestions, "followerGraph", followerGraph);
+        ReflectionTestUtils.setField(suggestions, "userRepository", userRepository(deleted));
+        suggestions.rebuild();
+    }
+
+    @Test
+    void weighsEveryFolloweeByHowManyAccountsItFollows() {
+        List<SuggestedUserDTO> result = suggestions.suggest(1, 10);
+
+        // neither the user nor 2, whom the user follows already, is suggested
+        assertEquals(5, result.size());
+        assertSuggested(result.get(0), 5, 2, 1 / Math.log(5) + 1 / Math.log(3));
+        assertSuggested(result.get(1), 6, 2, 1 / Math.log(5) + 1 / Math.log(7));
+        Set<Long> rest = new HashSet<>();
+        for (SuggestedUserDTO suggested : result.subList(2, 5)) {
+            assertSuggested(suggested, suggested.getId(), 1, 1 / Math.log(7));
+            rest.add(suggested.getId());
+        }
+        assertEquals(Set.of(7L, 8L, 9L), rest);
+    }
+
+    @Test
+    void keepsTheBestUpToTheLimit() {
+        List<SuggestedUserDTO> result = suggestions.suggest(1, 2);
+
+        assertEquals(2, result.size());
+        assertEquals(5, result.get(0).getId());
+        assertEquals(6, result.get(1).getId());
+        assertThrows(BadRequestException.class, () -> suggestions.suggest(1, 0));
+        assertThrows(BadRequestException.class, () -> suggestions.suggest(1, FollowSuggestions.MAX_SUGGESTIONS + 1));
+    }
+
+    @Test
+    void skipsAccountsFollowedSinceTheSnapshotAndDeletedUsers() {
+        followerGraph.follows.put(1L, new long[]{2, 3, 4, 5});
+        deleted.add(6L);
+
+        List<SuggestedUserDTO> result = suggestions.suggest(1, 10);
+
+        assertEquals(3, result.size());
+        for (SuggestedUserDTO suggested : result) {
+            assertTrue(suggested.getId() >= 7);
+        }
+    }
+
+    @Test
+    void suggestsNothingForUsersWhoFollowNobody() {
+        assertTrue(suggestions.suggest(42, 10).isEmpty());
+        // 3 only follows 5, who follows nobody
+        assertTrue(suggestions.suggest(3, 10).isEmpty());
+    }
+
+    private static void assertSuggested(SuggestedUserDTO suggested, long id, int followedBy, double score) {
+        assertEquals(id, suggested.getId());
+        assertEquals("user" + id, suggested.getUsername());
+        assertEquals(followedBy, suggested.getFollowedBy());
+        assertEquals(score, suggested.getScore(), 1e-5);
+    }
+
+    // every id is a user named after it, except the deleted ones
+    private static UserRepository userRepository(Set<Long> deleted) {
+        return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("findAllById")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    List<User> users = new ArrayList<>();
+                    for (Object id : (Iterable<?>) args[0]) {
+                        if (!deleted.contains(id)) {
+                            User user = new User();
+                            user.setId((Long) id);
+                            user.setUsername("user" + id);
+                            users.add(user);
+                        }
+                    }
+                    return users;
+                });
+    }
+
+    // a loaded graph that reads its sorted following lists from a map
+    private static class FakeFollowerGraph extends FollowerGraph {
+        private final Map<Long, long[]> follows = new TreeMap<>();
+
+        @Override
+        public boolean isLoaded() {
+            return true;
+        }
+
+        @Override
+        public long[] following(long userId) {
+            return follows.getOrDefault(userId, new long[0]);
+        }
+
+        @Override
+        public void forEachFollowing(BiConsumer<Long, long[]> action) {
+            follows.forEach(action);
+        }
+    }
+}
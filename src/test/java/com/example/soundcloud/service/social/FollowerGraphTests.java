@@ -0,0 +1,193 @@
+package com.example.soundcloud.service.social;
+
+import com.example.soundcloud.models.dao.FollowerDAO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FollowerGraphTests {
+
+    private FakeFollowerDAO followerDAO;
+    private FollowerGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        followerDAO = new FakeFollowerDAO();
+        followerDAO.insert(1, 2);
+        followerDAO.insert(1, 3);
+        followerDAO.insert(2, 1);
+        followerDAO.insert(3, 2);
+        graph = new FollowerGraph();
+        ReflectionTestUtils.setField(graph, "followerDAO", followerDAO);
+    }
+
+    @Test
+    void intersectsSortedArrays() {
+        assertArrayEquals(new long[]{3, 7}, FollowerGraph.intersect(new long[]{1, 3, 5, 7}, new long[]{2, 3, 7, 9}));
+        assertArrayEquals(new long[]{1, 2}, FollowerGraph.intersect(new long[]{1, 2}, new long[]{1, 2}));
+        assertArrayEquals(new long[0], FollowerGraph.intersect(new long[]{1, 3}, new long[]{2, 4}));
+        assertArrayEquals(new long[0], FollowerGraph.intersect(new long[0], new long[]{2, 4}));
+    }
+
+    @Test
+    void readsTheTableUntilLoaded() {
+        assertFalse(graph.isLoaded());
+        assertArrayEquals(new long[]{2, 3}, graph.following(1));
+        assertArrayEquals(new long[]{1, 3}, graph.followers(2));
+
+        graph.load();
+        followerDAO.pairs.clear();
+        assertTrue(graph.isLoaded());
+        assertArrayEquals(new long[]{2, 3}, graph.following(1));
+        assertArrayEquals(new long[]{1, 3}, graph.followers(2));
+        assertArrayEquals(new long[]{2}, graph.mutuals(1));
+        assertEquals(0, graph.followingCount(4));
+    }
+
+    @Test
+    void followsAndUnfollowsOnBothSides() {
+        graph.load();
+
+        assertTrue(graph.follow(4, 2));
+        assertFalse(graph.follow(4, 2));
+        assertTrue(graph.isFollowing(4, 2));
+        assertArrayEquals(new long[]{1, 3, 4}, graph.followers(2));
+        assertEquals(3, graph.followerCount(2));
+
+        assertTrue(graph.unfollow(1, 2));
+        assertFalse(graph.unfollow(1, 2));
+        assertArrayEquals(new long[]{3}, graph.following(1));
+        assertArrayEquals(new long[]{3, 4}, graph.followers(2));
+        assertFalse(followerDAO.pairs.contains(new Pair(1, 2)));
+    }
+
+    @Test
+    void keepsChangesMadeBeforeTheLoad() {
+        graph.follow(4, 1);
+        graph.unfollow(1, 3);
+
+        graph.load();
+        assertArrayEquals(new long[]{2, 4}, graph.followers(1));
+        assertArrayEquals(new long[]{2}, graph.following(1));
+        assertArrayEquals(new long[0], graph.followers(3));
+    }
+
+    @Test
+    void forgetsRemovedUsers() {
+        graph.load();
+
+        graph.removeUser(2);
+        assertArrayEquals(new long[]{3}, graph.following(1));
+        assertArrayEquals(new long[0], graph.followers(1));
+        assertArrayEquals(new long[0], graph.following(3));
+        assertArrayEquals(new long[0], graph.followers(2));
+    }
+
+    @Test
+    void concurrentFollowsOfOneUserAreAllKept() throws InterruptedException {
+        graph.load();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long first = 100 + t * 100;
+            threads.add(new Thread(() -> {
+                for (long follower = first; follower < first + 100; follower++) {
+                    graph.follow(follower, 2);
+                    graph.follow(2, follower);
+                    // every other follow is taken back again
+                    if (follower % 2 == 0) {
+                        graph.unfollow(follower, 2);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(2 + 400, graph.followerCount(2));
+        assertEquals(1 + 800, graph.followingCount(2));
+        assertEquals(1 + 400, graph.mutuals(2).length);
+        for (long follower = 100; follower < 900; follower++) {
+            assertEquals(followerDAO.pairs.contains(new Pair(follower, 2)), graph.isFollowing(follower, 2));
+        }
+    }
+
+    private static class Pair {
+        private final long follower;
+        private final long following;
+
+        private Pair(long follower, long following) {
+            this.follower = follower;
+            this.following = following;
+        }
+    }
+
+    private static class FakeFollowerDAO extends FollowerDAO {
+        private final TreeSet<Pair> pairs = new TreeSet<>(Comparator.<Pair>comparingLong(p -> p.follower)
+                .thenComparingLong(p -> p.following));
+
+        @Override
+        public void scanByFollower(RowCallbackHandler handler) {
+            scan(handler, pairs.stream().map(p -> new long[]{p.follower, p.following}).collect(Collectors.toList()));
+        }
+
+        @Override
+        public void scanByFollowing(RowCallbackHandler handler) {
+            List<long[]> rows = pairs.stream().map(p -> new long[]{p.following, p.follower})
+                    .sorted(Comparator.<long[]>comparingLong(r -> r[0]).thenComparingLong(r -> r[1]))
+                    .collect(Collectors.toList());
+            scan(handler, rows);
+        }
+
+        @Override
+        public synchronized boolean insert(long followerId, long followingId) {
+            return pairs.add(new Pair(followerId, followingId));
+        }
+
+        @Override
+        public synchronized boolean delete(long followerId, long followingId) {
+            return pairs.remove(new Pair(followerId, followingId));
+        }
+
+        @Override
+        public List<Long> followerIds(long userId) {
+            List<Long> ids = new ArrayList<>();
+            pairs.stream().filter(p -> p.following == userId).forEach(p -> ids.add(p.follower));
+            return ids;
+        }
+
+        @Override
+        public List<Long> followingIds(long userId) {
+            List<Long> ids = new ArrayList<>();
+            pairs.stream().filter(p -> p.follower == userId).forEach(p -> ids.add(p.following));
+            return ids;
+        }
+
+        private static void scan(RowCallbackHandler handler, List<long[]> rows) {
+            try {
+                for (long[] row : rows) {
+                    handler.processRow((ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                            new Class<?>[]{ResultSet.class}, (proxy, method, args) -> row[(int) args[0] - 1]));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
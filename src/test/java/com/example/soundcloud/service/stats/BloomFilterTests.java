@@ -0,0 +1,90 @@
+package com.example.soundcloud.service.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTests {
+
+    @Test
+    void sizesBitsAndHashesFromTheTargetRate() {
+        BloomFilter filter = new BloomFilter(1_000_000, 0.001);
+
+        // about 14.4 bits and 10 hashes per key
+        assertEquals(14_377_600, filter.bits(), 64);
+        assertEquals(10, filter.hashes());
+        assertEquals(filter.bits() / 8, filter.bytes());
+        assertEquals(0, filter.currentFalsePositiveRate(), 0);
+    }
+
+    @Test
+    void neverForgetsAKeyAndTellsNewKeysApart() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        int added = 0;
+        for (long key = 0; key < 10_000; key++) {
+            if (filter.put(key * 7919)) {
+                added++;
+            }
+        }
+        for (long key = 0; key < 10_000; key++) {
+            assertTrue(filter.mightContain(key * 7919));
+            assertFalse(filter.put(key * 7919));
+        }
+        // a handful of new keys are lost to false positives
+        assertEquals(10_000, added, 100);
+        assertEquals(added, filter.approximateKeys());
+    }
+
+    @Test
+    void keepsTheFalsePositiveRateItWasSizedFor() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (long key = 0; key < 100_000; key++) {
+            filter.put(key);
+        }
+        int positives = 0;
+        for (long key = 1_000_000; key < 1_200_000; key++) {
+            if (filter.mightContain(key)) {
+                positives++;
+            }
+        }
+        double observed = positives / 200_000.0;
+
+        assertEquals(0.01, observed, 0.003);
+        assertEquals(observed, filter.currentFalsePositiveRate(), 0.003);
+    }
+
+    @Test
+    void concurrentPutsLoseNoBits() throws InterruptedException {
+        BloomFilter filter = new BloomFilter(400_000, 0.001);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long first = t * 100_000L;
+            threads.add(new Thread(() -> {
+                for (long key = first; key < first + 100_000; key++) {
+                    filter.put(key);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (long key = 0; key < 400_000; key++) {
+            assertTrue(filter.mightContain(key));
+        }
+    }
+
+    @Test
+    void rejectsImpossibleSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+    }
+}
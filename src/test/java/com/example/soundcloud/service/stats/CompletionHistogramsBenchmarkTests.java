@@ -0,0 +1,137 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.StatsDAO;
+import com.example.soundcloud.models.dto.song.ResponseHeartbeatDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Heartbeats per second from 4 producers posting batches of 1000 over 10k known songs through ingest, the rings
+// and the 2 default workers, until the workers have added every accepted heartbeat to a histogram. The best of 5
+// rounds is reported, the first ones warm up the JIT. Run with -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class CompletionHistogramsBenchmarkTests {
+
+    private static final int PRODUCERS = 4;
+    private static final int SONGS = 10_000;
+    private static final long DURATION_MILLIS = 200_000;
+    private static final int BATCHES_PER_PRODUCER = 1000;
+
+    @Test
+    void ingestsMillionsOfHeartbeatsPerSecond() throws InterruptedException {
+        CompletionHistograms histograms = new CompletionHistograms();
+        ReflectionTestUtils.setField(histograms, "statsDAO", new SongsStatsDAO());
+        ReflectionTestUtils.setField(histograms, "workerCount", 2);
+        histograms.start();
+
+        long[][][] batches = new long[PRODUCERS][][];
+        Random random = new Random(42);
+        for (int p = 0; p < PRODUCERS; p++) {
+            batches[p] = new long[CompletionHistograms.MAX_BATCH][];
+            for (int i = 0; i < batches[p].length; i++) {
+                batches[p][i] = new long[]{1 + random.nextInt(SONGS), random.nextInt((int) DURATION_MILLIS)};
+            }
+        }
+
+        AtomicLong accepted = new AtomicLong();
+        AtomicLong dropped = new AtomicLong();
+        double best = 0;
+        long bestDropped = 0;
+        try {
+            for (int round = 0; round < 5; round++) {
+                long acceptedBefore = accepted.get();
+                long droppedBefore = dropped.get();
+                List<Thread> producers = new ArrayList<>();
+                for (int p = 0; p < PRODUCERS; p++) {
+                    long[][] batch = batches[p];
+                    producers.add(new Thread(() -> {
+                        for (int b = 0; b < BATCHES_PER_PRODUCER; b++) {
+                            ResponseHeartbeatDTO response = histograms.ingest(batch);
+                            accepted.addAndGet(response.getAccepted());
+                            dropped.addAndGet(response.getDropped());
+                        }
+                    }));
+                }
+                long started = System.nanoTime();
+                producers.forEach(Thread::start);
+                for (Thread producer : producers) {
+                    producer.join();
+                }
+                while (histograms.pending() > 0) {
+                    Thread.yield();
+                }
+                double seconds = (System.nanoTime() - started) / 1e9;
+                // dropping is cheaper than counting, so only the heartbeats that reached a histogram count
+                if ((accepted.get() - acceptedBefore) / seconds > best) {
+                    best = (accepted.get() - acceptedBefore) / seconds;
+                    bestDropped = dropped.get() - droppedBefore;
+                }
+            }
+        } finally {
+            histograms.stop();
+        }
+
+        long counted = 0;
+        for (long song = 1; song <= SONGS; song++) {
+            for (long heartbeats : histograms.heartbeats(song)) {
+                counted += heartbeats;
+            }
+        }
+        System.out.printf("%.2fM heartbeats/s counted from %d producers over %d songs on %d cores, "
+                        + "%d of %d dropped in that round, %d dropped in all%n", best / 1e6, PRODUCERS, SONGS,
+                Runtime.getRuntime().availableProcessors(), bestDropped,
+                PRODUCERS * BATCHES_PER_PRODUCER * CompletionHistograms.MAX_BATCH, dropped.get());
+        assertEquals(accepted.get(), counted);
+        assertTrue(best > 500_000);
+    }
+
+    // every song is known and 200 s long
+    private static class SongsStatsDAO extends StatsDAO {
+
+        @Override
+        public void createCompletionTable() {
+        }
+
+        @Override
+        public void createSongDurationTable() {
+        }
+
+        @Override
+        public void scanCompletion(RowCallbackHandler handler) {
+        }
+
+        @Override
+        public void scanSongDurations(RowCallbackHandler handler) {
+            try {
+                for (long song = 1; song <= SONGS; song++) {
+                    long id = song;
+                    handler.processRow((ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                            new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                                if (method.getName().equals("wasNull")) {
+                                    return false;
+                                }
+                                return "id".equals(args[0]) ? id : DURATION_MILLIS;
+                            }));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void saveCompletion(List<Object[]> rows) {
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.StatsDAO;
+import com.example.soundcloud.models.dto.song.ResponseHeartbeatDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompletionHistogramsTests {
+
+    private final RecordingStatsDAO statsDAO = new RecordingStatsDAO();
+    private final CompletionHistograms histograms = new CompletionHistograms();
+    private File song;
+
+    @BeforeEach
+    void start() throws IOException {
+        // 100 frames of 26.1 ms, so 2612 ms long
+        song = File.createTempFile("song", ".mp3");
+        Files.write(song.toPath(), Mp3FramesTests.frames(Mp3FramesTests.MPEG1_HEADER, 100));
+        ReflectionTestUtils.setField(histograms, "statsDAO", statsDAO);
+        ReflectionTestUtils.setField(histograms, "workerCount", 1);
+        histograms.start();
+        histograms.songAdded(7);
+    }
+
+    @AfterEach
+    void stop() {
+        histograms.stop();
+        song.delete();
+    }
+
+    @Test
+    void bucketsByTheMeasuredDurationAndIgnoresTheClientOne() throws InterruptedException {
+        ResponseHeartbeatDTO response = histograms.ingest(new long[][]{
+                {7, 0}, {7, 1306, 100_000}, {7, 2611}, {7, 3000}, {7, 5000}, {8, 0}, {7}});
+        assertEquals(4, response.getAccepted());
+        assertEquals(3, response.getRejected());
+        awaitDrained();
+        long[] heartbeats = histograms.heartbeats(7);
+        assertEquals(1, heartbeats[0]);
+        assertEquals(1, heartbeats[CompletionHistograms.BUCKETS / 2]);
+        assertEquals(2, heartbeats[CompletionHistograms.BUCKETS - 1]);
+        assertEquals(2612, statsDAO.savedDuration);
+    }
+
+    @Test
+    void flushesOnlyWhatWasAddedSinceTheLastFlush() throws InterruptedException {
+        histograms.ingest(new long[][]{{7, 0}, {7, 0}, {7, 2000}});
+        awaitDrained();
+        histograms.flush();
+        assertEquals(2, statsDAO.saved.size());
+        assertEquals(2L, statsDAO.saved.get(0)[2]);
+
+        statsDAO.saved.clear();
+        histograms.flush();
+        assertEquals(0, statsDAO.saved.size());
+
+        histograms.ingest(new long[][]{{7, 0}});
+        awaitDrained();
+        histograms.flush();
+        assertEquals(1, statsDAO.saved.size());
+        assertEquals(0, statsDAO.saved.get(0)[1]);
+        assertEquals(1L, statsDAO.saved.get(0)[2]);
+        assertEquals(3, histograms.heartbeats(7)[0]);
+    }
+
+    @Test
+    void keepsTheDeltasOfAFailedFlush() throws InterruptedException {
+        histograms.ingest(new long[][]{{7, 0}});
+        awaitDrained();
+        statsDAO.failing = true;
+        try {
+            histograms.flush();
+        } catch (IllegalStateException expected) {
+            // retried below
+        }
+        statsDAO.failing = false;
+        histograms.flush();
+        assertEquals(1, statsDAO.saved.size());
+        assertEquals(1L, statsDAO.saved.get(0)[2]);
+    }
+
+    // the worker adds to the histogram right after taking the batch out of the ring
+    private void awaitDrained() throws InterruptedException {
+        while (histograms.pending() > 0) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(20);
+    }
+
+    private class RecordingStatsDAO extends StatsDAO {
+        private final List<Object[]> saved = new ArrayList<>();
+        private long savedDuration;
+        private boolean failing;
+
+        @Override
+        public void createCompletionTable() {
+        }
+
+        @Override
+        public void createSongDurationTable() {
+        }
+
+        @Override
+        public void scanCompletion(RowCallbackHandler handler) {
+        }
+
+        @Override
+        public void scanSongDurations(RowCallbackHandler handler) {
+        }
+
+        @Override
+        public String findSongUrl(long songId) {
+            return songId == 7 ? song.getPath() : null;
+        }
+
+        @Override
+        public void saveSongDuration(long songId, long durationMillis) {
+            savedDuration = durationMillis;
+        }
+
+        @Override
+        public void saveCompletion(List<Object[]> rows) {
+            if (failing) {
+                throw new IllegalStateException("database down");
+            }
+            saved.addAll(rows);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.soundcloud.service.stats;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Events per second from four threads into a cube of 150 countries x 40 genres over 30 days, then the latency of
+// a query over the whole cube grouped by country and by genre. Run with -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class EngagementCubeBenchmarkTests {
+
+    private static final int THREADS = 4;
+    private static final int EVENTS_PER_THREAD = 2_000_000;
+    private static final int COUNTRIES = 150;
+    private static final int GENRES = 40;
+    private static final int DAYS = 30;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 3, 1);
+
+    @Test
+    void countsMillionsOfEventsAndSlicesInMilliseconds() throws InterruptedException {
+        EngagementCube cube = new EngagementCube();
+        String[] countries = new String[COUNTRIES];
+        String[] genres = new String[GENRES];
+        for (int c = 0; c < COUNTRIES; c++) {
+            countries[c] = "C" + c;
+        }
+        for (int g = 0; g < GENRES; g++) {
+            genres[g] = "G" + g;
+        }
+        long firstMillis = FIRST_DAY.toEpochDay() * 86400000L;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Random random = new Random(t);
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                    String country = countries[(int) (COUNTRIES * Math.pow(random.nextDouble(), 2))];
+                    String genre = genres[random.nextInt(GENRES)];
+                    long time = firstMillis + (long) (random.nextDouble() * DAYS * 86400000L);
+                    if (i % 10 == 0) {
+                        cube.like(country, genre, time);
+                    } else {
+                        cube.listen(country, genre, time);
+                    }
+                }
+            }));
+        }
+        long started = System.nanoTime();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double eventsPerSecond = THREADS * EVENTS_PER_THREAD / ((System.nanoTime() - started) / 1e9);
+
+        LocalDate lastDay = FIRST_DAY.plusDays(DAYS - 1);
+        List<String> none = List.of();
+        List<String> byCountryAndGenre = List.of(EngagementCube.COUNTRY, EngagementCube.GENRE);
+        for (int i = 0; i < 200; i++) {
+            cube.query(FIRST_DAY, lastDay, none, none, byCountryAndGenre);
+        }
+        long[] micros = new long[200];
+        for (int i = 0; i < micros.length; i++) {
+            long queryStarted = System.nanoTime();
+            cube.query(FIRST_DAY, lastDay, none, none, byCountryAndGenre);
+            micros[i] = (System.nanoTime() - queryStarted) / 1000;
+        }
+        Arrays.sort(micros);
+        System.out.printf("%.2fM events/s from %d threads on %d cores, query p50 %.2f ms, p99 %.2f ms%n",
+                eventsPerSecond / 1e6, THREADS, Runtime.getRuntime().availableProcessors(),
+                micros[micros.length / 2] / 1000.0, micros[micros.length * 99 / 100] / 1000.0);
+        assertTrue(eventsPerSecond > 500_000);
+        assertTrue(micros[micros.length / 2] < 20_000);
+    }
+}
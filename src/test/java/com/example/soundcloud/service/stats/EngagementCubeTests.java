@@ -0,0 +1,115 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dto.stats.ResponseEngagementDTO;
+import com.example.soundcloud.models.exceptions.BadRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EngagementCubeTests {
+
+    private static final LocalDate MONDAY = LocalDate.of(2024, 3, 4);
+    private static final LocalDate TUESDAY = MONDAY.plusDays(1);
+
+    private EngagementCube cube;
+
+    @BeforeEach
+    void setUp() {
+        cube = new EngagementCube();
+        listen("BG", "rock", MONDAY, 3);
+        listen("BG", "jazz", MONDAY, 1);
+        listen("DE", "rock", TUESDAY, 2);
+        cube.like("BG", "rock", millis(MONDAY));
+    }
+
+    @Test
+    void rollsUpEverythingWithoutGroups() {
+        List<ResponseEngagementDTO> result = cube.query(MONDAY, TUESDAY, List.of(), List.of(), List.of());
+
+        assertEquals(1, result.size());
+        assertEquals(6, result.get(0).getListens());
+        assertEquals(1, result.get(0).getLikes());
+        assertNull(result.get(0).getCountry());
+        assertNull(result.get(0).getDay());
+    }
+
+    @Test
+    void groupsByTheRequestedDimensions() {
+        List<ResponseEngagementDTO> byGenre = cube.query(MONDAY, TUESDAY, List.of(), List.of(),
+                List.of(EngagementCube.GENRE));
+
+        assertEquals(2, byGenre.size());
+        assertEquals("rock", byGenre.get(0).getGenre());
+        assertEquals(5, byGenre.get(0).getListens());
+        assertEquals("jazz", byGenre.get(1).getGenre());
+        assertEquals(1, byGenre.get(1).getListens());
+
+        List<ResponseEngagementDTO> byDay = cube.query(MONDAY, TUESDAY, List.of(), List.of(),
+                List.of(EngagementCube.DAY, EngagementCube.COUNTRY));
+        assertEquals(2, byDay.size());
+        assertEquals(MONDAY, byDay.get(0).getDay());
+        assertEquals("BG", byDay.get(0).getCountry());
+        assertEquals(4, byDay.get(0).getListens());
+        assertEquals(TUESDAY, byDay.get(1).getDay());
+        assertEquals("DE", byDay.get(1).getCountry());
+    }
+
+    @Test
+    void slicesByCountryGenreAndDays() {
+        assertEquals(4, cube.query(MONDAY, TUESDAY, List.of("BG"), List.of(), List.of()).get(0).getListens());
+        assertEquals(1, cube.query(MONDAY, TUESDAY, List.of("BG"), List.of("jazz"), List.of()).get(0).getListens());
+        assertEquals(2, cube.query(MONDAY, TUESDAY, List.of(), List.of("rock"), List.of(EngagementCube.COUNTRY))
+                .size());
+        assertEquals(2, cube.query(TUESDAY, TUESDAY, List.of(), List.of(), List.of()).get(0).getListens());
+        assertTrue(cube.query(MONDAY, TUESDAY, List.of("FR"), List.of(), List.of()).isEmpty());
+    }
+
+    @Test
+    void countsEventsWithoutCountryAsUnknown() {
+        cube.listen(null, null, millis(MONDAY));
+        cube.listen(" ", "rock", millis(MONDAY));
+
+        List<ResponseEngagementDTO> unknown = cube.query(MONDAY, MONDAY, List.of("unknown"), List.of(),
+                List.of(EngagementCube.GENRE));
+        assertEquals(2, unknown.size());
+        assertEquals(1, unknown.get(0).getListens());
+        assertEquals(1, unknown.get(1).getListens());
+    }
+
+    @Test
+    void keepsCountsWhenNewCountriesAndGenresGrowTheCube() {
+        for (int i = 0; i < 100; i++) {
+            cube.listen("C" + i, "G" + i, millis(MONDAY));
+        }
+
+        assertEquals(4, cube.query(MONDAY, MONDAY, List.of("BG"), List.of(), List.of()).get(0).getListens());
+        assertEquals(1, cube.query(MONDAY, MONDAY, List.of("C99"), List.of("G99"), List.of()).get(0).getListens());
+        assertEquals(104, cube.query(MONDAY, MONDAY, List.of(), List.of(), List.of()).get(0).getListens());
+    }
+
+    @Test
+    void rejectsUnknownDimensionsAndReversedRanges() {
+        assertThrows(BadRequestException.class,
+                () -> cube.query(MONDAY, TUESDAY, List.of(), List.of(), List.of("city")));
+        assertThrows(BadRequestException.class,
+                () -> cube.query(TUESDAY, MONDAY, List.of(), List.of(), List.of()));
+    }
+
+    private void listen(String country, String genre, LocalDate day, int times) {
+        for (int i = 0; i < times; i++) {
+            cube.listen(country, genre, millis(day));
+        }
+    }
+
+    private static long millis(LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() + 3600 * 1000;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.StatsDAO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenreHistogramsTests {
+
+    private FakeStatsDAO statsDAO;
+    private GenreHistograms histograms;
+
+    @BeforeEach
+    void setUp() {
+        statsDAO = new FakeStatsDAO();
+        histograms = load();
+    }
+
+    @Test
+    void likesDecideAndListensOnlyCountWithoutLikes() {
+        histograms.listen(1, "jazz");
+        histograms.listen(1, "jazz");
+        assertEquals("jazz", histograms.topGenreForUser(1));
+
+        histograms.like(1, "rock");
+        assertEquals("rock", histograms.topGenreForUser(1));
+        histograms.listen(2, "pop");
+        assertEquals("rock", histograms.topGenre());
+        assertNull(histograms.topGenreForUser(3));
+    }
+
+    @Test
+    void unlikingTheLeaderRescansForTheNextOne() {
+        histograms.like(1, "rock");
+        histograms.like(1, "rock");
+        histograms.like(1, "pop");
+        histograms.listen(1, "jazz");
+
+        histograms.unlike(1, "rock");
+        histograms.unlike(1, "rock");
+        assertEquals("pop", histograms.topGenreForUser(1));
+        histograms.unlike(1, "pop");
+        assertEquals("jazz", histograms.topGenreForUser(1));
+    }
+
+    @Test
+    void genresBackAtZeroAreDeletedAndNotLoadedAgain() {
+        histograms.like(1, "rock");
+        histograms.like(1, "pop");
+        histograms.flush();
+        assertEquals(4, statsDAO.table.size());
+
+        histograms.unlike(1, "rock");
+        histograms.flush();
+        // user 1 and the global histogram both lost their rock row
+        assertEquals(2, statsDAO.table.size());
+        assertEquals("pop", load().topGenreForUser(1));
+        assertEquals("pop", load().topGenre());
+    }
+
+    @Test
+    void flushesOnlyTheGenresThatChanged() {
+        histograms.like(1, "rock");
+        histograms.flush();
+        statsDAO.saved = 0;
+
+        histograms.like(1, "pop");
+        histograms.flush();
+        assertEquals(2, statsDAO.saved);
+        histograms.flush();
+        assertEquals(2, statsDAO.saved);
+    }
+
+    @Test
+    void rebuildReplacesTheStoredRowsWithTheLikeAndListenTables() {
+        histograms.like(1, "rock");
+        histograms.flush();
+        statsDAO.liked.add(new Object[]{2L, "pop", 3});
+        statsDAO.listened.add(new Object[]{1L, "jazz", 5});
+        statsDAO.totalListened.add(new Object[]{"jazz", 9});
+
+        histograms.rebuild();
+        assertEquals("jazz", histograms.topGenreForUser(1));
+        assertEquals("pop", histograms.topGenreForUser(2));
+        assertEquals("pop", histograms.topGenre());
+        // user 1's rock like is gone from the table too
+        assertTrue(statsDAO.table.keySet().stream().noneMatch(key -> key.endsWith("/rock")));
+        assertEquals("jazz", load().topGenreForUser(1));
+    }
+
+    private GenreHistograms load() {
+        GenreHistograms loaded = new GenreHistograms();
+        ReflectionTestUtils.setField(loaded, "statsDAO", statsDAO);
+        loaded.load();
+        return loaded;
+    }
+
+    // rows are {user id, genre, likes, listens}, keyed by user id and genre; the like and listen tables start empty
+    private static class FakeStatsDAO extends StatsDAO {
+        private final Map<String, Object[]> table = new TreeMap<>();
+        private final List<Object[]> liked = new ArrayList<>();
+        private final List<Object[]> listened = new ArrayList<>();
+        private final List<Object[]> totalListened = new ArrayList<>();
+        private int saved;
+
+        @Override
+        public void createGenreHistogramTable() {
+        }
+
+        @Override
+        public void scanGenreHistograms(RowCallbackHandler handler) {
+            scan(new ArrayList<>(table.values()), handler, "user_id", "genre", "likes", "listens");
+        }
+
+        @Override
+        public void saveGenreHistograms(List<Object[]> rows) {
+            for (Object[] row : rows) {
+                table.put(row[0] + "/" + row[1], row);
+            }
+            saved += rows.size();
+        }
+
+        @Override
+        public void deleteGenreHistograms(List<Object[]> keys) {
+            for (Object[] key : keys) {
+                table.remove(key[0] + "/" + key[1]);
+            }
+        }
+
+        @Override
+        public void replaceGenreHistograms(List<Object[]> rows) {
+            table.clear();
+            saveGenreHistograms(rows);
+        }
+
+        @Override
+        public void scanLikedGenres(RowCallbackHandler handler) {
+            scan(liked, handler, "user_id", "genre", "likes");
+        }
+
+        @Override
+        public void scanListenedGenres(RowCallbackHandler handler) {
+            scan(listened, handler, "user_id", "genre", "listens");
+        }
+
+        @Override
+        public void scanTotalListenedGenres(RowCallbackHandler handler) {
+            scan(totalListened, handler, "genre", "listens");
+        }
+
+        private static void scan(List<Object[]> rows, RowCallbackHandler handler, String... columns) {
+            try {
+                for (Object[] row : rows) {
+                    handler.processRow((ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                            new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                                for (int c = 0; c < columns.length; c++) {
+                                    if (columns[c].equals(args[0])) {
+                                        return row[c];
+                                    }
+                                }
+                                throw new SQLException("No column " + args[0]);
+                            }));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.soundcloud.service.stats;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTests {
+
+    private static final int DENSE_BYTES = 1 + 2048 * 6 / 8;
+
+    @Test
+    void countsSmallSetsAlmostExactly() {
+        HyperLogLog sketch = new HyperLogLog();
+        assertEquals(0, sketch.count());
+        for (long user = 0; user < 100; user++) {
+            sketch.add(user);
+            sketch.add(user);
+        }
+
+        assertEquals(100, sketch.count(), 2);
+    }
+
+    @Test
+    void staysWithinThreeStandardErrorsOfLargeCounts() {
+        for (int size : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (long user = 0; user < size; user++) {
+                sketch.add(user * 31 + 7);
+            }
+            double error = Math.abs(sketch.count() - size) / (double) size;
+            assertTrue(error < 3 * 0.023, size + " counted as " + sketch.count());
+        }
+    }
+
+    @Test
+    void switchesToPackedRegistersOnceSparseStopsSavingSpace() {
+        HyperLogLog sketch = new HyperLogLog();
+        long user = 0;
+        while (sketch.toBytes().length < DENSE_BYTES) {
+            int before = sketch.toBytes().length;
+            sketch.add(user++);
+            assertTrue(before <= 1 + 4 * 192);
+        }
+
+        assertEquals(DENSE_BYTES, sketch.toBytes().length);
+        // a new register past the 192 sparse entries is what forces the switch
+        assertTrue(user > 192);
+        assertEquals(user, sketch.count(), user * 0.1);
+    }
+
+    @Test
+    void mergingIsAUnionAndIdempotent() {
+        HyperLogLog odd = new HyperLogLog();
+        HyperLogLog even = new HyperLogLog();
+        HyperLogLog all = new HyperLogLog();
+        for (long user = 0; user < 20_000; user++) {
+            (user % 2 == 0 ? even : odd).add(user);
+            all.add(user);
+        }
+        HyperLogLog few = new HyperLogLog();
+        few.add(3);
+        few.add(5);
+
+        HyperLogLog merged = new HyperLogLog();
+        merged.merge(odd);
+        merged.merge(even);
+        merged.merge(even);
+        merged.merge(few);
+        assertArrayEquals(all.toBytes(), merged.toBytes());
+
+        HyperLogLog sparse = new HyperLogLog();
+        sparse.merge(few);
+        sparse.merge(few);
+        assertEquals(2, sparse.count());
+    }
+
+    @Test
+    void survivesARoundTripThroughBytes() {
+        HyperLogLog sparse = new HyperLogLog();
+        HyperLogLog dense = new HyperLogLog();
+        for (long user = 0; user < 5000; user++) {
+            if (user < 50) {
+                sparse.add(user);
+            }
+            dense.add(user);
+        }
+
+        assertArrayEquals(sparse.toBytes(), HyperLogLog.fromBytes(sparse.toBytes()).toBytes());
+        assertEquals(sparse.count(), HyperLogLog.fromBytes(sparse.toBytes()).count());
+        assertEquals(dense.count(), HyperLogLog.fromBytes(dense.toBytes()).count());
+        HyperLogLog restored = HyperLogLog.fromBytes(sparse.toBytes());
+        restored.add(1000);
+        assertEquals(51, restored.count(), 1);
+    }
+}
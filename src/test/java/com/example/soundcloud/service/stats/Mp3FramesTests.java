@@ -0,0 +1,71 @@
+package com.example.soundcloud.service.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Mp3FramesTests {
+
+    // MPEG 1 layer III, 128 kbps, 44.1 kHz: 417 byte frames of 1152 samples
+    static final int MPEG1_HEADER = 0xFFFB9000;
+    // MPEG 2 layer III, 64 kbps, 22.05 kHz: 208 byte frames of 576 samples
+    static final int MPEG2_HEADER = 0xFFF38000;
+
+    @Test
+    void frameLengthFollowsBitrateAndSampleRate() {
+        assertEquals(417, Mp3Frames.frameLength(MPEG1_HEADER));
+        assertEquals(418, Mp3Frames.frameLength(MPEG1_HEADER | 1 << 9));
+        assertEquals(208, Mp3Frames.frameLength(MPEG2_HEADER));
+    }
+
+    @Test
+    void rejectsWhatIsNotALayerThreeHeader() {
+        assertEquals(0, Mp3Frames.frameLength(0x54414700));
+        // layer II
+        assertEquals(0, Mp3Frames.frameLength(0xFFFD9000));
+        // free format bitrate
+        assertEquals(0, Mp3Frames.frameLength(0xFFFB0000));
+    }
+
+    @Test
+    void sumsTheSamplesOfEveryFrame() throws IOException {
+        assertEquals(2612, Mp3Frames.durationMillis(new ByteArrayInputStream(frames(MPEG1_HEADER, 100))));
+        assertEquals(2612, Mp3Frames.durationMillis(new ByteArrayInputStream(frames(MPEG2_HEADER, 100))));
+    }
+
+    @Test
+    void skipsTagsAroundTheFrames() throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        // ID3v2.3 tag with 300 bytes of content, 300 = 2 * 128 + 44
+        file.write(new byte[]{'I', 'D', '3', 3, 0, 0, 0, 0, 2, 44});
+        file.write(new byte[300]);
+        file.write(frames(MPEG1_HEADER, 50));
+        byte[] id3v1 = new byte[128];
+        id3v1[0] = 'T';
+        id3v1[1] = 'A';
+        id3v1[2] = 'G';
+        file.write(id3v1);
+        assertEquals(1306, Mp3Frames.durationMillis(new ByteArrayInputStream(file.toByteArray())));
+    }
+
+    @Test
+    void emptyOrForeignStreamsLastNothing() throws IOException {
+        assertEquals(0, Mp3Frames.durationMillis(new ByteArrayInputStream(new byte[0])));
+        assertEquals(0, Mp3Frames.durationMillis(new ByteArrayInputStream("RIFF....WAVEfmt ".getBytes())));
+    }
+
+    static byte[] frames(int header, int count) {
+        int length = Mp3Frames.frameLength(header);
+        byte[] bytes = new byte[length * count];
+        for (int f = 0; f < count; f++) {
+            for (int b = 0; b < 4; b++) {
+                bytes[f * length + b] = (byte) (header >>> (24 - 8 * b));
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dto.stats.ResponsePlayDedupDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayDeduplicatorTests {
+
+    private static final long START = 1_000_000_000L;
+    private static final long WINDOW = TimeUnit.MINUTES.toMillis(30);
+
+    @Test
+    void countsAPairOncePerWindow() {
+        PlayDeduplicator dedup = deduplicator();
+
+        assertTrue(play(dedup, 1, 10, 0, START));
+        assertFalse(play(dedup, 1, 10, 0, START));
+        assertTrue(play(dedup, 2, 10, 0, START));
+        assertTrue(play(dedup, 1, 11, 0, START));
+
+        ResponsePlayDedupDTO metrics = dedup.metrics();
+        assertEquals(3, metrics.getCounted());
+        assertEquals(1, metrics.getDuplicates());
+        assertEquals(0, metrics.getRotations());
+        assertEquals(3, metrics.getPlaysInWindow());
+    }
+
+    @Test
+    void keepsAnonymousListenersApartFromUsers() {
+        PlayDeduplicator dedup = deduplicator();
+
+        assertTrue(play(dedup, 1, 10, 0, START));
+        assertTrue(play(dedup, 1, 0, 10, START));
+        assertFalse(play(dedup, 1, 0, 10, START));
+    }
+
+    @Test
+    void holdsAPairWhileItsPlayIsBeingCounted() {
+        PlayDeduplicator dedup = deduplicator();
+
+        assertTrue(dedup.firstPlay(1, 10, 0, START));
+        // a concurrent range request of the same listener
+        assertFalse(dedup.firstPlay(1, 10, 0, START));
+        dedup.recordPlay(1, 10, 0, START);
+        assertFalse(dedup.firstPlay(1, 10, 0, START));
+        assertEquals(1, dedup.metrics().getCounted());
+    }
+
+    @Test
+    void countsTheRetryOfARolledBackPlay() {
+        PlayDeduplicator dedup = deduplicator();
+
+        assertTrue(dedup.firstPlay(1, 10, 0, START));
+        dedup.release(1, 10, 0);
+        assertTrue(play(dedup, 1, 10, 0, START));
+        assertEquals(1, dedup.metrics().getCounted());
+    }
+
+    @Test
+    void remembersAPairForOneToTwoWindows() {
+        PlayDeduplicator dedup = deduplicator();
+
+        assertTrue(play(dedup, 1, 10, 0, START));
+        // still in the previous window's filter
+        assertFalse(play(dedup, 1, 10, 0, START + WINDOW));
+        assertFalse(play(dedup, 1, 10, 0, START + WINDOW + WINDOW / 2));
+        // both filters have rotated past it
+        assertTrue(play(dedup, 1, 10, 0, START + 2 * WINDOW));
+        assertEquals(2, dedup.metrics().getRotations());
+    }
+
+    @Test
+    void forgetsEverythingAfterAnIdleGapOfTwoWindows() {
+        PlayDeduplicator dedup = deduplicator();
+
+        assertTrue(play(dedup, 1, 10, 0, START + WINDOW - 1));
+        // one rotation after the gap, but the pair was played more than a window before it
+        assertTrue(play(dedup, 1, 10, 0, START + 2 * WINDOW));
+        assertEquals(1, dedup.metrics().getRotations());
+    }
+
+    // a play that is counted and committed right away
+    private static boolean play(PlayDeduplicator dedup, long songId, long userId, long clientHash, long now) {
+        if (!dedup.firstPlay(songId, userId, clientHash, now)) {
+            return false;
+        }
+        dedup.recordPlay(songId, userId, clientHash, now);
+        return true;
+    }
+
+    private static PlayDeduplicator deduplicator() {
+        PlayDeduplicator dedup = new PlayDeduplicator();
+        ReflectionTestUtils.setField(dedup, "windowMinutes", 30L);
+        ReflectionTestUtils.setField(dedup, "expectedPlays", 10_000L);
+        ReflectionTestUtils.setField(dedup, "falsePositiveRate", 0.001);
+        dedup.init(START);
+        return dedup;
+    }
+}
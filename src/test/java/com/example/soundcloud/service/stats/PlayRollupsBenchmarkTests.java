@@ -0,0 +1,76 @@
+package com.example.soundcloud.service.stats;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Time to read a year of daily plays for every song of an uploader with 500 songs, as the song stats endpoint does,
+// with the days loaded from stored rows and the last 30 days of hours replayed on top. Run with -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class PlayRollupsBenchmarkTests {
+
+    private static final int SONGS = 500;
+    private static final int DAYS = 365;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Test
+    void readsAYearOfDaysForAllSongsInMilliseconds() {
+        long now = System.currentTimeMillis();
+        long today = now / DAY;
+        Random random = new Random(42);
+        long expected = 0;
+        PlayRollupsTests.FakeListenLog listenLog = new PlayRollupsTests.FakeListenLog(now + 1);
+        PlayRollupsTests.FakeStatsDAO statsDAO = new PlayRollupsTests.FakeStatsDAO();
+        for (long song = 0; song < SONGS; song++) {
+            // days up to 30 days back are stored, the hours since come from the replayed log
+            ByteBuffer days = ByteBuffer.allocate(4 * (DAYS - 30));
+            for (int day = 0; day < DAYS - 30; day++) {
+                int plays = random.nextInt(100);
+                days.putInt(plays);
+                expected += plays;
+            }
+            long foldedUntil = (today - 29) * 24;
+            statsDAO.saved.add(new Object[]{song, today - DAYS + 1, foldedUntil, days.array()});
+            expected += 200;
+            for (int i = 0; i < 200; i++) {
+                long time = foldedUntil * 3_600_000L + (long) (random.nextDouble() * (now - foldedUntil * 3_600_000L));
+                listenLog.records.add(new long[]{time, song});
+            }
+        }
+        PlayRollups rollups = new PlayRollups();
+        ReflectionTestUtils.setField(rollups, "statsDAO", statsDAO);
+        ReflectionTestUtils.setField(rollups, "listenLog", listenLog);
+        rollups.load();
+
+        long from = (today - DAYS + 1) * DAY;
+        long to = (today + 1) * DAY;
+        long[] micros = new long[300];
+        long total = 0;
+        for (int run = 0; run < 100 + micros.length; run++) {
+            long started = System.nanoTime();
+            total = 0;
+            for (long song = 0; song < SONGS; song++) {
+                int[] plays = rollups.plays(song, from, to, PlayRollups.DAY);
+                for (int count : plays) {
+                    total += count;
+                }
+            }
+            if (run >= 100) {
+                micros[run - 100] = (System.nanoTime() - started) / 1000;
+            }
+        }
+        Arrays.sort(micros);
+        System.out.printf("a year of days for %d songs: p50 %.2f ms, p99 %.2f ms%n", SONGS,
+                micros[micros.length / 2] / 1000.0, micros[micros.length * 99 / 100] / 1000.0);
+        assertEquals(expected, total);
+        assertTrue(micros[micros.length / 2] < 20_000);
+    }
+}
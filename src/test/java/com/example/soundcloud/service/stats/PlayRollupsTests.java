@@ -0,0 +1,180 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.StatsDAO;
+import com.example.soundcloud.models.exceptions.BadRequestException;
+import com.example.soundcloud.service.events.ListenLog;
+import com.example.soundcloud.service.events.ListenVisitor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PlayRollupsTests {
+
+    private static final long SONG = 7;
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private long now;
+    private FakeListenLog listenLog;
+    private FakeStatsDAO statsDAO;
+
+    @BeforeEach
+    void setUp() {
+        now = System.currentTimeMillis();
+        listenLog = new FakeListenLog(now + 1);
+        statsDAO = new FakeStatsDAO();
+        play(now - 40 * DAY, 5);
+        play(now - 3 * DAY, 4);
+        play(now - 90 * MINUTE, 2);
+        play(now - 5 * MINUTE, 3);
+        play(now, 1);
+        play(now - HOUR, 0);
+    }
+
+    @Test
+    void everyStepSeesEveryReplayedPlayBeforeAndAfterCompaction() {
+        PlayRollups rollups = load();
+
+        assertCounts(rollups);
+        rollups.compact();
+        assertCounts(rollups);
+        assertEquals(0, sum(rollups.plays(SONG + 1, now - 10 * DAY, now + DAY, PlayRollups.DAY)));
+    }
+
+    @Test
+    void reloadingStoredDaysDoesNotCountReplayedHoursTwice() {
+        PlayRollups first = load();
+        first.flush();
+        assertEquals(1, statsDAO.saved.size());
+        assertEquals(SONG, statsDAO.saved.get(0)[0]);
+
+        PlayRollups second = load();
+        assertCounts(second);
+        // nothing new was folded into days, so nothing is written
+        second.flush();
+        assertEquals(1, statsDAO.saved.size());
+    }
+
+    @Test
+    void rejectsUnknownStepsAndOverlongRanges() {
+        PlayRollups rollups = load();
+
+        assertThrows(BadRequestException.class, () -> rollups.plays(SONG, now - DAY, now, "week"));
+        assertThrows(BadRequestException.class, () -> rollups.plays(SONG, now, now - DAY, PlayRollups.DAY));
+        assertThrows(BadRequestException.class, () -> rollups.plays(SONG, now - 10 * DAY, now, PlayRollups.MINUTE));
+        assertEquals(24, rollups.bucketCount(0, DAY, PlayRollups.HOUR));
+        assertEquals(2, rollups.bucketCount(DAY - 1, DAY + 1, PlayRollups.DAY));
+    }
+
+    private void assertCounts(PlayRollups rollups) {
+        // the play 40 days back is older than the replayed hours and was never stored as a day
+        assertEquals(10, sum(rollups.plays(SONG, now - 10 * DAY, now + DAY, PlayRollups.DAY)));
+        assertEquals(10, sum(rollups.plays(SONG, now - 4 * DAY, now + HOUR, PlayRollups.HOUR)));
+        assertEquals(6, sum(rollups.plays(SONG, now - DAY, now + MINUTE, PlayRollups.MINUTE)));
+        // minutes are only kept for 2 days, the plays 3 days back only exist as hours
+        assertEquals(6, sum(rollups.plays(SONG, now - 4 * DAY, now + MINUTE, PlayRollups.MINUTE)));
+        long from = now - 4 * DAY;
+        int[] hours = rollups.plays(SONG, from, now + HOUR, PlayRollups.HOUR);
+        assertEquals(2, hours[(int) ((now - 90 * MINUTE) / HOUR - from / HOUR)]);
+        assertEquals(4, hours[(int) ((now - 3 * DAY) / HOUR - from / HOUR)]);
+    }
+
+    private PlayRollups load() {
+        PlayRollups rollups = new PlayRollups();
+        ReflectionTestUtils.setField(rollups, "statsDAO", statsDAO);
+        ReflectionTestUtils.setField(rollups, "listenLog", listenLog);
+        rollups.load();
+        return rollups;
+    }
+
+    private void play(long time, int times) {
+        for (int i = 0; i < times; i++) {
+            listenLog.records.add(new long[]{time, SONG});
+        }
+    }
+
+    private static long sum(int[] plays) {
+        long sum = 0;
+        for (int count : plays) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    // reads columns by name from one stored row of song_play_days
+    static ResultSet row(long songId, long firstDay, long hoursFoldedUntil, byte[] plays) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch ((String) args[0]) {
+                        case "song_id":
+                            return songId;
+                        case "first_day":
+                            return firstDay;
+                        case "hours_folded_until":
+                            return hoursFoldedUntil;
+                        default:
+                            return plays;
+                    }
+                });
+    }
+
+    static class FakeListenLog extends ListenLog {
+        final List<long[]> records = new ArrayList<>();
+        private final long cutoff;
+
+        FakeListenLog(long cutoff) {
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        public synchronized long mark() {
+            return cutoff;
+        }
+
+        @Override
+        public void scan(long fromMillis, long toMillis, ListenVisitor visitor) {
+            for (long[] record : records) {
+                if (record[0] >= fromMillis && record[0] < toMillis) {
+                    visitor.visit(record[0], record[1], 1, 0);
+                }
+            }
+        }
+    }
+
+    // keeps what flush writes and hands it back to the next load
+    static class FakeStatsDAO extends StatsDAO {
+        final List<Object[]> saved = new ArrayList<>();
+
+        @Override
+        public void createPlayDaysTable() {
+        }
+
+        @Override
+        public void scanPlayDays(RowCallbackHandler handler) {
+            try {
+                for (Object[] stored : saved) {
+                    handler.processRow(row((long) stored[0], (long) stored[1], (long) stored[2], (byte[]) stored[3]));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void savePlayDays(List<Object[]> rows) {
+            saved.addAll(rows);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.soundcloud.service.stats;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Plays per second through one window and through the three chart windows, and the share of songs estimated
+// within e / WIDTH of the window, for 2M plays over 100k songs with Zipf-like popularity spread across a simulated
+// week. Run with -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class SlidingCountMinBenchmarkTests {
+
+    private static final int SONGS = 100_000;
+    private static final int PLAYS = 2_000_000;
+    private static final long MINUTE = 60 * 1000;
+    private static final long WEEK = 7 * 24 * 60 * MINUTE;
+
+    @Test
+    void addsMillionsOfPlaysPerSecond() {
+        Random random = new Random(42);
+        long[] songs = new long[PLAYS];
+        long[] times = new long[PLAYS];
+        for (int i = 0; i < PLAYS; i++) {
+            songs[i] = (long) (SONGS * Math.pow(random.nextDouble(), 4));
+            times[i] = WEEK + i * (WEEK / PLAYS);
+        }
+
+        double single = 0;
+        for (int run = 0; run < 3; run++) {
+            SlidingCountMin day = new SlidingCountMin(60 * MINUTE, 24, 200);
+            long started = System.nanoTime();
+            for (int i = 0; i < PLAYS; i++) {
+                day.add(songs[i], times[i]);
+            }
+            single = Math.max(single, PLAYS / ((System.nanoTime() - started) / 1e9));
+        }
+        double best = 0;
+        SlidingCountMin week = null;
+        for (int run = 0; run < 3; run++) {
+            SlidingCountMin hour = new SlidingCountMin(5 * MINUTE, 12, 200);
+            SlidingCountMin day = new SlidingCountMin(60 * MINUTE, 24, 200);
+            week = new SlidingCountMin(6 * 60 * MINUTE, 28, 200);
+            long started = System.nanoTime();
+            for (int i = 0; i < PLAYS; i++) {
+                hour.add(songs[i], times[i]);
+                day.add(songs[i], times[i]);
+                week.add(songs[i], times[i]);
+            }
+            best = Math.max(best, PLAYS / ((System.nanoTime() - started) / 1e9));
+        }
+
+        long now = times[PLAYS - 1];
+        int[] exact = new int[SONGS];
+        long window = 0;
+        for (int i = 0; i < PLAYS; i++) {
+            if (times[i] / (6 * 60 * MINUTE) > now / (6 * 60 * MINUTE) - 28) {
+                exact[(int) songs[i]]++;
+                window++;
+            }
+        }
+        double bound = Math.E / 2048 * window;
+        int within = 0;
+        for (int song = 0; song < SONGS; song++) {
+            if (week.estimate(song, now) - exact[song] <= bound) {
+                within++;
+            }
+        }
+        System.out.printf("%.2fM plays/s into one window, %.2fM plays/s into the hour, day and week charts, "
+                + "%.4f of songs within %.0f plays%n", single / 1e6, best / 1e6, (double) within / SONGS, bound);
+        assertTrue(best > 500_000);
+        assertTrue(within > 0.98 * SONGS);
+    }
+}
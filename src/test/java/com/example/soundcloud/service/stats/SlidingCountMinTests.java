@@ -0,0 +1,93 @@
+package com.example.soundcloud.service.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlidingCountMinTests {
+
+    private static final long SLICE = 1000;
+    private static final long NOW = 1_000_000;
+
+    @Test
+    void countsFewSongsExactly() {
+        SlidingCountMin sketch = new SlidingCountMin(SLICE, 4, 8);
+        for (int i = 0; i < 5; i++) {
+            sketch.add(1, NOW);
+        }
+        sketch.add(2, NOW);
+
+        assertEquals(5, sketch.estimate(1, NOW));
+        assertEquals(1, sketch.estimate(2, NOW));
+        assertEquals(0, sketch.estimate(3, NOW));
+        assertEquals(6, sketch.total(NOW));
+    }
+
+    @Test
+    void overCountsWithinTheBound() {
+        SlidingCountMin sketch = new SlidingCountMin(SLICE, 4, 8);
+        int songs = 50_000;
+        int[] plays = new int[songs];
+        Random random = new Random(1);
+        for (int i = 0; i < 500_000; i++) {
+            int song = (int) (songs * Math.pow(random.nextDouble(), 3));
+            plays[song]++;
+            sketch.add(song, NOW);
+        }
+        double bound = Math.E / 2048 * 500_000;
+        int outside = 0;
+        for (int song = 0; song < songs; song++) {
+            long estimate = sketch.estimate(song, NOW);
+            assertTrue(estimate >= plays[song]);
+            if (estimate - plays[song] > bound) {
+                outside++;
+            }
+        }
+        // the bound holds per song with probability 1 - e^-4, about 98%
+        assertTrue(outside < songs / 50, outside + " songs over the bound");
+    }
+
+    @Test
+    void slicesExpireAsTheWindowSlides() {
+        SlidingCountMin sketch = new SlidingCountMin(SLICE, 4, 8);
+        sketch.add(1, NOW);
+        sketch.add(1, NOW + SLICE);
+        sketch.add(1, NOW + 2 * SLICE);
+
+        assertEquals(3, sketch.estimate(1, NOW + 3 * SLICE));
+        assertEquals(2, sketch.estimate(1, NOW + 4 * SLICE));
+        assertEquals(1, sketch.total(NOW + 5 * SLICE));
+        assertEquals(0, sketch.estimate(1, NOW + 100 * SLICE));
+        assertEquals(0, sketch.total(NOW + 100 * SLICE));
+    }
+
+    @Test
+    void replayedPlaysExpireWithTheirOwnSlice() {
+        SlidingCountMin sketch = new SlidingCountMin(SLICE, 4, 8);
+        sketch.add(1, NOW + 3 * SLICE);
+        sketch.add(1, NOW);
+        // already outside the window
+        sketch.add(1, NOW - SLICE);
+
+        assertEquals(2, sketch.estimate(1, NOW + 3 * SLICE));
+        assertEquals(1, sketch.estimate(1, NOW + 4 * SLICE));
+    }
+
+    @Test
+    void topOrdersByEstimateAndPages() {
+        SlidingCountMin sketch = new SlidingCountMin(SLICE, 4, 3);
+        for (long song = 1; song <= 5; song++) {
+            for (int i = 0; i < song * 10; i++) {
+                sketch.add(song, NOW);
+            }
+        }
+
+        assertEquals(List.of(5L, 4L, 3L), sketch.top(0, 10, NOW));
+        assertEquals(List.of(4L), sketch.top(1, 1, NOW));
+        assertTrue(sketch.top(0, 10, NOW + 10 * SLICE).isEmpty());
+    }
+}
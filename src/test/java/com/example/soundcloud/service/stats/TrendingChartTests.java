@@ -0,0 +1,113 @@
+package com.example.soundcloud.service.stats;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrendingChartTests {
+
+    private static final long START = 1_600_000_000_000L;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private TrendingChart chart;
+
+    @BeforeEach
+    void setUp() {
+        chart = new TrendingChart();
+        ReflectionTestUtils.setField(chart, "base", START);
+    }
+
+    @Test
+    void laterEventsWeighMoreByTheHalfLife() {
+        chart.record(1, "rock", TrendingChart.LIKE, START);
+        // a listen a day later is worth 2, two days later 4
+        chart.record(2, "rock", TrendingChart.LISTEN, START + DAY);
+        assertEquals(Arrays.asList(1L, 2L), chart.trending(0, 10));
+        chart.record(3, "rock", TrendingChart.LISTEN, START + 2 * DAY);
+        assertEquals(Arrays.asList(3L, 1L, 2L), chart.trending(0, 10));
+    }
+
+    @Test
+    void rebasingKeepsTheOrderAndTheScale() {
+        chart.record(1, "rock", TrendingChart.LISTEN, START);
+        chart.record(2, "rock", TrendingChart.LIKE, START);
+        // far enough ahead that the scale factor would pass exp(300)
+        long later = START + 500 * DAY;
+        chart.record(3, "pop", TrendingChart.LISTEN, later);
+        assertEquals(Arrays.asList(3L, 2L, 1L), chart.trending(0, 10));
+        chart.record(1, "rock", TrendingChart.LISTEN, later);
+        chart.record(1, "rock", TrendingChart.LISTEN, later);
+        assertEquals(Arrays.asList(1L, 3L, 2L), chart.trending(0, 10));
+        assertEquals(Arrays.asList(1L, 2L), chart.trending("rock", 0, 10));
+    }
+
+    @Test
+    void keepsTheTopHundredOfEveryGenreInOrder() {
+        // song i gets i listens, so the chart is 200, 199, ... and songs 1 to 100 fall out
+        for (long song = 1; song <= 200; song++) {
+            for (int i = 0; i < song; i++) {
+                chart.record(song, song % 2 == 0 ? "rock" : "pop", TrendingChart.LISTEN, START);
+            }
+        }
+        List<Long> top = chart.trending(0, 200);
+        assertEquals(100, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(200 - i, (long) top.get(i));
+        }
+        assertEquals(Arrays.asList(200L, 198L, 196L), chart.trending("rock", 0, 3));
+        assertEquals(Arrays.asList(199L, 197L), chart.trending("pop", 0, 2));
+
+        // a song from below the chart climbs to the top
+        for (int i = 0; i < 300; i++) {
+            chart.record(3, "pop", TrendingChart.LISTEN, START);
+        }
+        assertEquals(3L, (long) chart.trending(0, 1).get(0));
+        assertEquals(3L, (long) chart.trending("pop", 0, 1).get(0));
+        assertFalse(chart.trending(0, 200).contains(101L));
+    }
+
+    @Test
+    void togglingALikeDoesNotPumpTheScore() {
+        chart.record(1, "rock", TrendingChart.LISTEN, START);
+        chart.record(1, "rock", TrendingChart.LISTEN, START);
+        for (int i = 0; i < 50; i++) {
+            chart.record(2, "rock", TrendingChart.LIKE, START + i);
+            chart.record(2, "rock", -TrendingChart.LIKE, START + i);
+        }
+        chart.record(2, "rock", TrendingChart.LISTEN, START + 50);
+        assertEquals(Arrays.asList(1L, 2L), chart.trending(0, 10));
+        // an unlike of a song without a score does not add it
+        chart.record(3, "rock", -TrendingChart.LIKE, START);
+        assertEquals(2, chart.trending(0, 10).size());
+    }
+
+    @Test
+    void deletedSongsLeaveEveryChart() {
+        for (long song = 1; song <= 20; song++) {
+            for (int i = 0; i < song; i++) {
+                chart.record(song, "rock", TrendingChart.LISTEN, START);
+            }
+        }
+        chart.remove(20);
+        chart.remove(5);
+        chart.remove(99);
+
+        List<Long> top = chart.trending(0, 100);
+        assertEquals(18, top.size());
+        assertFalse(top.contains(20L) || top.contains(5L));
+        assertEquals(top, chart.trending("rock", 0, 100));
+        assertEquals(19L, (long) top.get(0));
+        // the heaps are still in order after the removals
+        chart.record(1, "rock", TrendingChart.LIKE * 10, START);
+        assertTrue(chart.trending(0, 100).indexOf(1L) < chart.trending(0, 100).indexOf(10L));
+        assertEquals(chart.trending(0, 100), chart.trending("rock", 0, 100));
+    }
+}
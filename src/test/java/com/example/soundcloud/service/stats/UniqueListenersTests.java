@@ -0,0 +1,124 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.StatsDAO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UniqueListenersTests {
+
+    private static final long SONG = 7;
+
+    private FakeStatsDAO statsDAO;
+    private UniqueListeners listeners;
+
+    @BeforeEach
+    void setUp() {
+        statsDAO = new FakeStatsDAO();
+        listeners = new UniqueListeners();
+        ReflectionTestUtils.setField(listeners, "statsDAO", statsDAO);
+    }
+
+    @Test
+    void flushesEveryPlayIntoTheMonthItWasPlayedIn() {
+        // the last play of January is only flushed after February started
+        for (long user = 1; user <= 100; user++) {
+            listeners.listen(SONG, user, time(2024, 1, 31, 23, 59));
+        }
+        for (long user = 51; user <= 120; user++) {
+            listeners.listen(SONG, user, time(2024, 2, 1, 0, 1));
+        }
+        listeners.flush();
+
+        assertEquals(2, statsDAO.sketches.size());
+        assertAbout(100, HyperLogLog.fromBytes(statsDAO.sketches.get(SONG + "/2024-01")).count());
+        assertAbout(70, HyperLogLog.fromBytes(statsDAO.sketches.get(SONG + "/2024-02")).count());
+        assertAbout(120, listeners.count(SONG));
+    }
+
+    @Test
+    void countsStoredAndPendingListenersOnce() {
+        for (long user = 1; user <= 100; user++) {
+            listeners.listen(SONG, user, time(2024, 3, 10, 12, 0));
+        }
+        listeners.flush();
+        for (long user = 1; user <= 200; user++) {
+            listeners.listen(SONG, user, time(2024, 3, 11, 12, 0));
+        }
+
+        assertAbout(200, listeners.count(SONG));
+        listeners.flush();
+        assertEquals(1, statsDAO.sketches.size());
+        assertAbout(200, listeners.count(SONG));
+        assertEquals(0, listeners.count(SONG + 1));
+    }
+
+    @Test
+    void keepsThePlaysWhenTheFlushFails() {
+        for (long user = 1; user <= 100; user++) {
+            listeners.listen(SONG, user, time(2024, 3, 10, 12, 0));
+        }
+        statsDAO.failing = true;
+        listeners.flush();
+        assertTrue(statsDAO.sketches.isEmpty());
+        assertAbout(100, listeners.count(SONG));
+
+        statsDAO.failing = false;
+        listeners.flush();
+        assertAbout(100, HyperLogLog.fromBytes(statsDAO.sketches.get(SONG + "/2024-03")).count());
+    }
+
+    private static long time(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(ZoneId.systemDefault()).toInstant()
+                .toEpochMilli();
+    }
+
+    // a sketch may be a few percent off
+    private static void assertAbout(long expected, long actual) {
+        assertTrue(Math.abs(expected - actual) <= expected * 0.05, expected + " expected, " + actual + " counted");
+    }
+
+    // keeps the sketches as "song/bucket" -> bytes
+    private static class FakeStatsDAO extends StatsDAO {
+        private final Map<String, byte[]> sketches = new TreeMap<>();
+        private boolean failing;
+
+        @Override
+        public void scanListenerSketches(long songId, RowCallbackHandler handler) {
+            try {
+                for (Map.Entry<String, byte[]> entry : sketches.entrySet()) {
+                    if (entry.getKey().startsWith(songId + "/")) {
+                        byte[] sketch = entry.getValue();
+                        handler.processRow((ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> sketch));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void mergeListenerSketch(long songId, String bucket, UnaryOperator<byte[]> merge) {
+            byte[] merged = merge.apply(sketches.get(songId + "/" + bucket));
+            if (failing) {
+                throw new DataAccessResourceFailureException("database down");
+            }
+            sketches.put(songId + "/" + bucket, merged);
+        }
+    }
+}
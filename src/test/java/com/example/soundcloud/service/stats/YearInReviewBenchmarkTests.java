@@ -0,0 +1,92 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.service.events.ListenVisitor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A full run over 200k listeners with 40 songs each, played twice on average on random days, out of 20k songs by
+// 2k artists in 40 genres, on 4 threads. The listen log is held in memory, so this measures the scan, the reviews
+// and building the rows, not the disk or the database. Run with -Dbenchmarks=true.
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class YearInReviewBenchmarkTests {
+
+    private static final int YEAR = 2023;
+    private static final int USERS = 200_000;
+    private static final int SONGS_PER_USER = 40;
+    private static final int SONGS = 20_000;
+
+    @Test
+    void reviewsTwoHundredThousandListeners() {
+        Random random = new Random(42);
+        YearInReviewTests.FakeYearReviewDAO yearReviewDAO = new YearInReviewTests.FakeYearReviewDAO();
+        for (long song = 1; song <= SONGS; song++) {
+            yearReviewDAO.songs.add(new Object[]{song, "title " + song, "artist " + song % 2000, "genre " + song % 40});
+        }
+        InMemoryListenLog listenLog = new InMemoryListenLog(USERS * SONGS_PER_USER * 3);
+        for (int user = 1; user <= USERS; user++) {
+            for (int i = 0; i < SONGS_PER_USER; i++) {
+                int song = 1 + random.nextInt(SONGS);
+                for (int play = 1 + random.nextInt(3); play > 0; play--) {
+                    listenLog.add(user, song, random.nextInt(365 * 24 * 3600));
+                }
+            }
+        }
+
+        YearInReview review = new YearInReview();
+        ReflectionTestUtils.setField(review, "listenLog", listenLog);
+        ReflectionTestUtils.setField(review, "yearReviewDAO", yearReviewDAO);
+        ReflectionTestUtils.setField(review, "retentionDays", 400);
+        ReflectionTestUtils.setField(review, "chunkUsers", 5000);
+        ReflectionTestUtils.setField(review, "parallelism", 4);
+        double seconds = Double.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            yearReviewDAO.chunks.clear();
+            long started = System.nanoTime();
+            review.run(YEAR);
+            seconds = Math.min(seconds, (System.nanoTime() - started) / 1e9);
+        }
+        System.out.printf("%d users, %.1fM plays reviewed in %.2f s on 4 threads, %d cores%n", USERS,
+                listenLog.size / 1e6, seconds, Runtime.getRuntime().availableProcessors());
+        assertEquals(USERS / 5000, yearReviewDAO.chunks.size());
+        assertTrue(seconds < 60);
+    }
+
+    // plays kept as (user, song, second of the year) in flat arrays rather than one array per record
+    private static class InMemoryListenLog extends YearInReviewTests.FakeListenLog {
+        private final int[] users;
+        private final int[] songs;
+        private final int[] seconds;
+        private int size;
+
+        private InMemoryListenLog(int capacity) {
+            users = new int[capacity];
+            songs = new int[capacity];
+            seconds = new int[capacity];
+        }
+
+        private void add(int user, int song, int second) {
+            users[size] = user;
+            songs[size] = song;
+            seconds[size] = second;
+            size++;
+        }
+
+        @Override
+        public void scan(long fromMillis, long toMillis, ListenVisitor visitor) {
+            long start = YearActivity.startOf(YEAR);
+            for (int i = 0; i < size; i++) {
+                long time = start + TimeUnit.SECONDS.toMillis(seconds[i]);
+                if (time >= fromMillis && time < toMillis) {
+                    visitor.visit(time, songs[i], users[i], 0);
+                }
+            }
+        }
+    }
+}
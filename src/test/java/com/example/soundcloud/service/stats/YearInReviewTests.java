@@ -0,0 +1,193 @@
+package com.example.soundcloud.service.stats;
+
+import com.example.soundcloud.models.dao.YearReviewDAO;
+import com.example.soundcloud.service.events.ListenLog;
+import com.example.soundcloud.service.events.ListenVisitor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YearInReviewTests {
+
+    private static final int YEAR = 2023;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private FakeListenLog listenLog;
+    private FakeYearReviewDAO yearReviewDAO;
+
+    @BeforeEach
+    void setUp() {
+        listenLog = new FakeListenLog();
+        yearReviewDAO = new FakeYearReviewDAO();
+        yearReviewDAO.songs.add(new Object[]{100L, "Intro", "Alpha", "rock"});
+        yearReviewDAO.songs.add(new Object[]{101L, "Blue", "Alpha", "jazz"});
+        yearReviewDAO.songs.add(new Object[]{102L, "Crash", "Beta", "rock"});
+
+        play(5, 100, 1);
+        play(5, 100, 2);
+        play(5, 100, 3);
+        play(5, 101, 10);
+        play(5, 102, 10);
+        play(5, 102, 10);
+        play(3, 101, 60);
+        // 999 was deleted since it was played
+        play(9, 999, 152);
+        play(9, 999, 152);
+        play(9, 100, 365);
+        // anonymous plays and plays of other years are not reviewed
+        play(0, 100, 5);
+        listenLog.records.add(new long[]{YearActivity.startOf(YEAR) - 1, 100, 7});
+        listenLog.records.add(new long[]{YearActivity.startOf(YEAR + 1), 100, 7});
+    }
+
+    @Test
+    void reviewsEveryListenerOfTheYear() {
+        review(400, 10).run(YEAR);
+
+        List<Object[]> reviews = yearReviewDAO.reviews();
+        assertEquals(3, reviews.size());
+        assertRow(new Object[]{3L, YEAR, 1, 1, 1, 1}, reviews.get(0));
+        assertRow(new Object[]{5L, YEAR, 6, 3, 4, 3}, reviews.get(1));
+        // the deleted song counts as plays and a day, but not as a song
+        assertRow(new Object[]{9L, YEAR, 3, 1, 2, 1}, reviews.get(2));
+    }
+
+    @Test
+    void ranksTopSongsArtistsAndGenres() {
+        review(400, 10).run(YEAR);
+
+        List<Object[]> tops = yearReviewDAO.topsOf(5L);
+        assertRow(new Object[]{5L, YEAR, YearReviewJob.SONG, 0, 100L, "Intro", 3}, tops.get(0));
+        assertRow(new Object[]{5L, YEAR, YearReviewJob.SONG, 1, 102L, "Crash", 2}, tops.get(1));
+        assertRow(new Object[]{5L, YEAR, YearReviewJob.SONG, 2, 101L, "Blue", 1}, tops.get(2));
+        assertRow(new Object[]{5L, YEAR, YearReviewJob.ARTIST, 0, null, "Alpha", 4}, tops.get(3));
+        assertRow(new Object[]{5L, YEAR, YearReviewJob.ARTIST, 1, null, "Beta", 2}, tops.get(4));
+        assertRow(new Object[]{5L, YEAR, YearReviewJob.GENRE, 0, null, "rock", 5}, tops.get(5));
+        assertRow(new Object[]{5L, YEAR, YearReviewJob.GENRE, 1, null, "jazz", 1}, tops.get(6));
+        assertEquals(7, tops.size());
+        assertEquals(3, yearReviewDAO.topsOf(9L).size());
+    }
+
+    @Test
+    void savesChunksOfConsecutiveIds() {
+        review(400, 2).run(YEAR);
+
+        assertEquals(2, yearReviewDAO.chunks.size());
+        assertArrayEquals(new long[]{0, 5}, yearReviewDAO.chunks.get(0));
+        assertArrayEquals(new long[]{5, 9}, yearReviewDAO.chunks.get(1));
+        assertEquals(3, yearReviewDAO.reviews().size());
+    }
+
+    @Test
+    void skipsTheRunWhenTheLogDoesNotKeepAYear() {
+        review(30, 10).run(YEAR);
+
+        assertTrue(yearReviewDAO.chunks.isEmpty());
+    }
+
+    private YearInReview review(int retentionDays, int chunkUsers) {
+        YearInReview review = new YearInReview();
+        ReflectionTestUtils.setField(review, "listenLog", listenLog);
+        ReflectionTestUtils.setField(review, "yearReviewDAO", yearReviewDAO);
+        ReflectionTestUtils.setField(review, "retentionDays", retentionDays);
+        ReflectionTestUtils.setField(review, "chunkUsers", chunkUsers);
+        ReflectionTestUtils.setField(review, "parallelism", 2);
+        return review;
+    }
+
+    // a play at noon of the given day of the year, 1 being the first of January
+    private void play(long userId, long songId, int dayOfYear) {
+        listenLog.records.add(new long[]{YearActivity.startOf(YEAR) + (dayOfYear - 1) * DAY + DAY / 2, songId, userId});
+    }
+
+    private static void assertRow(Object[] expected, Object[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], "column " + i);
+        }
+    }
+
+    // records are (time, song id, user id)
+    static class FakeListenLog extends ListenLog {
+        final List<long[]> records = new ArrayList<>();
+
+        @Override
+        public long oldestMillis() {
+            return 0;
+        }
+
+        @Override
+        public void scan(long fromMillis, long toMillis, ListenVisitor visitor) {
+            for (long[] record : records) {
+                if (record[0] >= fromMillis && record[0] < toMillis) {
+                    visitor.visit(record[0], record[1], record[2], 0);
+                }
+            }
+        }
+    }
+
+    // songs are (id, title, artist, genre); keeps every saved chunk
+    static class FakeYearReviewDAO extends YearReviewDAO {
+        final List<Object[]> songs = new ArrayList<>();
+        final List<long[]> chunks = new ArrayList<>();
+        private final List<Object[]> reviews = new ArrayList<>();
+        private final List<Object[]> tops = new ArrayList<>();
+
+        @Override
+        public void scanSongs(RowCallbackHandler handler) {
+            try {
+                for (Object[] song : songs) {
+                    handler.processRow((ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                            new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                                switch ((String) args[0]) {
+                                    case "id":
+                                        return song[0];
+                                    case "title":
+                                        return song[1];
+                                    case "artist":
+                                        return song[2];
+                                    default:
+                                        return song[3];
+                                }
+                            }));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public synchronized void saveChunk(int year, long afterId, long lastId, List<Object[]> reviews,
+                                           List<Object[]> tops) {
+            chunks.add(new long[]{afterId, lastId});
+            this.reviews.addAll(reviews);
+            this.tops.addAll(tops);
+        }
+
+        synchronized List<Object[]> reviews() {
+            return new ArrayList<>(reviews);
+        }
+
+        synchronized List<Object[]> topsOf(long userId) {
+            List<Object[]> result = new ArrayList<>();
+            for (Object[] top : tops) {
+                if ((long) top[0] == userId) {
+                    result.add(top);
+                }
+            }
+            return result;
+        }
+    }
+}